@@ -2,12 +2,10 @@ package echowand.app;
 
 import echowand.common.EOJ;
 import echowand.common.EPC;
-import echowand.common.PropertyMap;
 import echowand.net.Node;
 import echowand.net.Subnet;
 import echowand.object.*;
 import java.util.EnumMap;
-import java.util.HashMap;
 
 /**
  *
@@ -17,6 +15,7 @@ public class CachedRemoteObject implements EchonetObject {
 
     private RemoteObject remoteObject;
     private EnumMap<EPC, ObjectData> dataCache;
+    private PropertyCapabilities capabilities;
 
     public CachedRemoteObject(RemoteObject remoteObject) {
         this.remoteObject = remoteObject;
@@ -25,10 +24,18 @@ public class CachedRemoteObject implements EchonetObject {
 
     public void clearCache() {
         dataCache.clear();
+        capabilities = null;
     }
     
     public void clearCache(EPC epc) {
         dataCache.remove(epc);
+        if (isPropertyMapEPC(epc)) {
+            capabilities = null;
+        }
+    }
+    
+    private boolean isPropertyMapEPC(EPC epc) {
+        return epc == EPC.x9F || epc == EPC.x9E || epc == EPC.x9D;
     }
 
     public boolean isCached(EPC epc) {
@@ -43,6 +50,9 @@ public class CachedRemoteObject implements EchonetObject {
 
     public void setCachedData(EPC epc, ObjectData data) {
         dataCache.put(epc, data);
+        if (isPropertyMapEPC(epc)) {
+            capabilities = null;
+        }
     }
 
     public boolean updateCache(EPC epc) throws EchonetObjectException {
@@ -60,33 +70,39 @@ public class CachedRemoteObject implements EchonetObject {
                 && updateCache(EPC.x9D);
     }
 
-    private boolean isEPCSetAtPropertyMap(EPC epc, EPC propertyMapEpc) {
-        if (!isCached(propertyMapEpc)) {
-            return false;
+    private synchronized PropertyCapabilities getCapabilities() {
+        if (capabilities == null) {
+            if (isPropertyMapsCached()) {
+                PropertyCapabilities newCapabilities = new PropertyCapabilities(getData(EPC.x9F), getData(EPC.x9E), getData(EPC.x9D));
+                capabilities = PropertyCapabilities.intern(getEOJ().getClassEOJ(), getData(EPC.x8A), newCapabilities);
+            } else if (isCached(EPC.x9F) || isCached(EPC.x9E) || isCached(EPC.x9D)) {
+                capabilities = new PropertyCapabilities(getData(EPC.x9F), getData(EPC.x9E), getData(EPC.x9D));
+            }
         }
-
-        return new PropertyMap(getData(propertyMapEpc).toBytes()).isSet(epc);
+        return capabilities;
     }
 
     @Override
     public boolean isGettable(EPC epc) {
-        return isEPCSetAtPropertyMap(epc, EPC.x9F);
+        PropertyCapabilities current = getCapabilities();
+        return current != null && current.isGettable(epc);
     }
 
     @Override
     public boolean isSettable(EPC epc) {
-        return isEPCSetAtPropertyMap(epc, EPC.x9E);
+        PropertyCapabilities current = getCapabilities();
+        return current != null && current.isSettable(epc);
     }
 
     @Override
     public boolean isObservable(EPC epc) {
-        return isEPCSetAtPropertyMap(epc, EPC.x9D);
+        PropertyCapabilities current = getCapabilities();
+        return current != null && current.isObservable(epc);
     }
 
     public boolean isValidEPC(EPC epc) {
-        return isGettable(epc)
-                || isSettable(epc)
-                || isObservable(epc);
+        PropertyCapabilities current = getCapabilities();
+        return current != null && current.contains(epc);
     }
 
     @Override
@@ -94,82 +110,33 @@ public class CachedRemoteObject implements EchonetObject {
         return dataCache.get(epc);
     }
 
-    private int sizeCache = -1;
-    private HashMap<Integer, EPC> indexEPCCache = new HashMap<Integer, EPC>();
-    
     public synchronized int size() {
-        
-        if (sizeCache != -1) {
-            return sizeCache;
-        }
-        
         if (!isPropertyMapsCached()) {
             return 0;
         }
-
-        int count = 0;
-
-        for (byte code = (byte) 0x80; code <= (byte) 0xff; code++) {
-            EPC epc = EPC.fromByte(code);
-            if (isValidEPC(epc)) {
-                count++;
-            }
-        }
-
-        sizeCache = count;
-        
-        return count;
-    }
-    
-    private synchronized boolean updateIndexEPCCache() {
-        int count = 0;
-        
-        if (!isPropertyMapsCached()) {
-            return false;
-        }
         
-        for (byte code = (byte) 0x80; code <= (byte) 0xff; code++) {
-            EPC epc = EPC.fromByte(code);
-            if (isValidEPC(epc)) {
-                indexEPCCache.put(count, epc);
-                count++;
-            }
-        }
-        
-        return true;
+        return getCapabilities().size();
     }
 
     public synchronized EPC getEPC(int index) {
-        
-        EPC cachedEPC = indexEPCCache.get(index);
-        
-        if (cachedEPC != null) {
-            return cachedEPC;
-        }
-        
-        if (!updateIndexEPCCache()) {
+        if (!isPropertyMapsCached()) {
             return null;
         }
         
-        cachedEPC = indexEPCCache.get(index);
-        if (cachedEPC == null) {
-            indexEPCCache.put(index, EPC.Invalid);
-            cachedEPC = EPC.Invalid;
+        EPC epc = getCapabilities().getEPC(index);
+        if (epc == null) {
+            return EPC.Invalid;
         }
 
-        return cachedEPC;
+        return epc;
     }
 
     public int getIndexOfEPC(EPC epc) {
-        int size = size();
-
-        for (int i = 0; i < size; i++) {
-            if (epc.equals(getEPC(i))) {
-                return i;
-            }
+        if (!isPropertyMapsCached()) {
+            return -1;
         }
-
-        return -1;
+        
+        return getCapabilities().indexOf(epc);
     }
 
     public Subnet getSubnet() {
@@ -1,5 +1,7 @@
 package echowand.common;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
@@ -85,6 +87,15 @@ public class Data {
             System.arraycopy(data, srcOffset, destData, destOffset, length);
     }
     
+    /**
+     * データ全体を指定されたバッファの現在位置に書き込む。
+     * @param buffer 書き込み先のバッファ
+     * @throws BufferOverflowException バッファの残りが不足している場合
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.put(data);
+    }
+    
     /**
      * データの文字列表現を返す。
      * @return データの文字列表現
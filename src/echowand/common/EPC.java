@@ -1,5 +1,7 @@
 package echowand.common;
 
+import java.util.Arrays;
+
 /**
  * EPCを表す列挙型
  * @author Yoshiki Makino
@@ -81,11 +83,15 @@ public enum EPC {
      * @return 指定されたコードに対応するEPC
      */
     public static EPC fromByte(byte code) {
+        return codeTable[0xff & (int)code];
+    }
+    
+    private static final EPC[] codeTable = new EPC[256];
+    
+    static {
+        Arrays.fill(codeTable, Invalid);
         for (EPC epc : EPC.values()) {
-            if (epc.code == code) {
-                return epc;
-            }
+            codeTable[0xff & (int)epc.code] = epc;
         }
-        return Invalid;
     }
 }
\ No newline at end of file
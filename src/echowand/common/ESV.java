@@ -1,5 +1,7 @@
 package echowand.common;
 
+import java.util.Arrays;
+
 /**
  * ESVを表現する列挙型
  * @author Yoshiki Makino
@@ -151,11 +153,15 @@ public enum ESV {
      * @return 指定されたコードに対応するESV
      */
     public static ESV fromByte(byte code) {
+        return codeTable[0xff & (int)code];
+    }
+    
+    private static final ESV[] codeTable = new ESV[256];
+    
+    static {
+        Arrays.fill(codeTable, Invalid);
         for (ESV esv : ESV.values()) {
-            if (esv.code == code) {
-                return esv;
-            }
+            codeTable[0xff & (int)esv.code] = esv;
         }
-        return Invalid;
     }
 }
@@ -1,20 +1,76 @@
 package echowand.logic;
 
+import echowand.common.ClassEOJ;
+import echowand.common.ESV;
 import echowand.net.Frame;
 import echowand.net.Subnet;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  * リクエストフレームの処理を実行するRequestProcessorのサブクラスを表す。
  * このクラスを利用することにより、必要なメソッドの実装のみを行うことでRequestProcessorのサブクラスの生成が可能となる。
+ * 処理対象のESVはサブクラスでオーバーライドされたメソッドから決定され、DEOJのクラスは全てが処理対象となる。
  * @author Yoshiki Makino
  */
-public class DefaultRequestProcessor implements RequestProcessor {
+public class DefaultRequestProcessor implements SelectiveRequestProcessor {
+    private static final Class<?>[] PROCESS_PARAMETER_TYPES = new Class<?>[]{Subnet.class, Frame.class, boolean.class};
     
     /**
      * DefaultRequestProcessorを生成する。
      */
     public DefaultRequestProcessor() {}
     
+    private boolean isOverridden(String methodName) {
+        try {
+            return getClass().getMethod(methodName, PROCESS_PARAMETER_TYPES).getDeclaringClass() != DefaultRequestProcessor.class;
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
+    }
+    
+    /**
+     * 処理対象のESVの集合を返す。
+     * サブクラスでオーバーライドされたprocessメソッドに対応するESVの集合を返す。
+     * @return 処理対象のESVの集合
+     */
+    @Override
+    public Set<ESV> getHandledESVs() {
+        EnumSet<ESV> esvs = EnumSet.noneOf(ESV.class);
+        if (isOverridden("processSetI")) {
+            esvs.add(ESV.SetI);
+        }
+        if (isOverridden("processSetC")) {
+            esvs.add(ESV.SetC);
+        }
+        if (isOverridden("processGet")) {
+            esvs.add(ESV.Get);
+        }
+        if (isOverridden("processSetGet")) {
+            esvs.add(ESV.SetGet);
+        }
+        if (isOverridden("processINF_REQ")) {
+            esvs.add(ESV.INF_REQ);
+        }
+        if (isOverridden("processINF")) {
+            esvs.add(ESV.INF);
+        }
+        if (isOverridden("processINFC")) {
+            esvs.add(ESV.INFC);
+        }
+        return esvs;
+    }
+    
+    /**
+     * 処理対象のDEOJのクラスの集合を返す。
+     * 全てのクラスを処理対象とするため常にnullを返す。
+     * @return 常にnull
+     */
+    @Override
+    public Set<ClassEOJ> getHandledClassEOJs() {
+        return null;
+    }
+    
     /**
      * ESVがSetIであるフレームを受信した場合に呼び出される。
      * 常にfalseを返すダミーメソッドであり、SetIを処理するサブクラスではオーバーライドされる。
@@ -1,16 +1,26 @@
 package echowand.logic;
 
+import echowand.common.ESV;
 import echowand.net.Frame;
 import echowand.net.Subnet;
 import echowand.net.SubnetException;
-import java.util.ArrayList;
-import java.util.LinkedList;
+import echowand.util.CopyOnWriteArray;
+import echowand.util.MetricsRegistry;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * 送受信のメインループを実行する。
  * runメソッドを実行する事で、指定されたサブネットからフレームを受信し、登録されたListenerのprocessメソッドを呼び出す。
  * Runnableインタフェースを実装しているので、Threadとして動作させることができる。
+ * Listenerの登録表は変更時に複製されるため、フレームの処理中にロックやオブジェクトの割り当ては発生しない。
+ * Executorを設定した場合には、受信したフレーム毎の処理をExecutorで実行する。
+ * OrderedExecutorを設定した場合には、同じ送信ノードからのフレームは受信順に処理され、
+ * 異なる送信ノードからのフレームは並行して処理される。
+ * VirtualThreadsのExecutorを設定することで、フレーム毎の処理を仮想スレッドで実行できる。
+ * この場合、フレームの処理は並行して行われ、受信順に処理されるとは限らない。
  * @author Yoshiki Makino
  */
 public class MainLoop implements Runnable {
@@ -18,7 +28,8 @@ public class MainLoop implements Runnable {
     private static final String className = MainLoop.class.getName();
     
     private Subnet subnet;
-    private LinkedList<Listener> listeners;
+    private CopyOnWriteArray<Listener> listeners;
+    private volatile Executor executor;
     
     /**
      * MainLoopを生成する。
@@ -26,7 +37,7 @@ public class MainLoop implements Runnable {
     public MainLoop() {
         logger.entering(className, "MainLoop");
         
-        this.listeners = new LinkedList<Listener>();
+        this.listeners = new CopyOnWriteArray<Listener>(Listener.class);
         
         logger.exiting(className, "MainLoop");
     }
@@ -51,26 +62,42 @@ public class MainLoop implements Runnable {
         return this.subnet;
     }
     
+    /**
+     * 受信したフレーム毎の処理を実行するExecutorを設定する。
+     * OrderedExecutorを指定した場合には、フレームの送信ノードを順序を保つキーとする。
+     * nullを指定した場合には、runを実行しているスレッドで受信順に処理する。
+     * @param executor フレーム毎の処理を実行するExecutor
+     */
+    public void setExecutor(Executor executor) {
+        logger.entering(className, "setExecutor", executor);
+        
+        this.executor = executor;
+        
+        logger.exiting(className, "setExecutor");
+    }
+    
+    /**
+     * 設定されたExecutorを返す。
+     * @return 設定されたExecutor、設定されていない場合にはnull
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+    
     /**
      * サブネットからフレームを受信する。
      * @return 受信したフレーム
      * @throws SubnetException 受信に失敗した場合
      */
     public Frame recvFrame() throws SubnetException {
-        logger.entering(className, "recvFrame");
-        
-        Frame frame = subnet.recv();
-        
-        logger.exiting(className, "recvFrame");
-        
-        return frame;
+        return subnet.recv();
     }
     
     /**
      * 指定されたListenerを登録する
      * @param listener 登録するListener
      */
-    public synchronized void addListener(Listener listener) {
+    public void addListener(Listener listener) {
         logger.entering(className, "addListener", listener);
         
         listeners.add(listener);
@@ -82,7 +109,7 @@ public class MainLoop implements Runnable {
      * 指定されたListenerの登録を抹消する。
      * @param listener 登録を抹消するListener
      */
-    public synchronized void removeListener(Listener listener) {
+    public void removeListener(Listener listener) {
         logger.entering(className, "removeListener", listener);
         
         listeners.remove(listener);
@@ -94,7 +121,7 @@ public class MainLoop implements Runnable {
      * 登録された全Listener数を返す。
      * @return 登録されているListenerの数
      */
-    public synchronized int countListeners() {
+    public int countListeners() {
         logger.entering(className, "countListeners");
         
         int count = listeners.size();
@@ -103,20 +130,76 @@ public class MainLoop implements Runnable {
         return count;
     }
     
-    private synchronized void invokeListeners(Frame frame) {
-        logger.entering(className, "invokeListeners", frame);
+    private void invokeListeners(Frame frame) {
+        Tracer tracer = Tracing.getTracer();
+        if (tracer != null) {
+            tracer.frameReceived(subnet, frame);
+        }
+        
+        MetricsRegistry metrics = MetricsRegistry.getCurrent();
+        long begin = 0;
+        if (metrics != null) {
+            ESV esv = frame.getESV();
+            if (esv != null) {
+                metrics.recordReceived(esv);
+            }
+            begin = System.nanoTime();
+        }
         
         boolean processed = false;
-        for (Listener listener : new ArrayList<Listener>(listeners)) {
+        for (Listener listener : listeners.getArray()) {
             processed |= listener.process(subnet, frame, processed);
         }
         
-        logger.exiting(className, "invokeListeners");
+        if (metrics != null) {
+            metrics.recordDispatchTime(System.nanoTime() - begin);
+        }
+        
+        if (tracer != null) {
+            tracer.frameDispatched(subnet, frame, processed);
+        }
+    }
+    
+    private void processFrame(Frame frame) {
+        try {
+            invokeListeners(frame);
+        } finally {
+            frame.release();
+        }
+    }
+    
+    private void dispatchFrame(final Frame frame) {
+        Executor currentExecutor = executor;
+        
+        if (currentExecutor == null) {
+            processFrame(frame);
+            return;
+        }
+        
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                processFrame(frame);
+            }
+        };
+        
+        try {
+            if (currentExecutor instanceof OrderedExecutor) {
+                ((OrderedExecutor)currentExecutor).execute(frame.getSender(), task);
+            } else {
+                currentExecutor.execute(task);
+            }
+        } catch (RejectedExecutionException e) {
+            logger.logp(Level.WARNING, className, "dispatchFrame", "rejected", e);
+            processFrame(frame);
+        }
     }
 
     /**
      * メインループを実行する。
      * サブネットからフレームを受信し、全てのListenerのprocessを呼び出す。
+     * Executorが設定されている場合には、Listenerの呼び出しはExecutorで実行される。
+     * 全てのListenerの処理が終了した後、フレームが保持する受信バッファを解放する。
      */
     @Override
     public void run() {
@@ -125,8 +208,7 @@ public class MainLoop implements Runnable {
         try {
             for (;;) {
                 try {
-                    Frame frame = recvFrame();
-                    invokeListeners(frame);
+                    dispatchFrame(recvFrame());
                 } catch (SubnetException e) {
                     e.printStackTrace();
                 }
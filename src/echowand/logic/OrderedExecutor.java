@@ -0,0 +1,216 @@
+package echowand.logic;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * キー毎に順序を保ってタスクを並行に実行する。
+ * <p>
+ * 各ワーカースレッドは容量の制限されたキューを持ち、タスクはキーのハッシュ値によって選択されたワーカーで実行される。
+ * 同じキーのタスクは常に同じワーカーで追加された順に実行され、異なるキーのタスクは並行に実行される。
+ * キューが一杯の場合、executeは空きができるまで待機するため、受信側に負荷が伝えられる。
+ * MainLoopのsetExecutorに指定すると、フレームの送信ノードをキーとして処理を実行する。
+ * @author Yoshiki Makino
+ */
+public class OrderedExecutor implements Executor {
+    private static final Logger logger = Logger.getLogger(OrderedExecutor.class.getName());
+    private static final String className = OrderedExecutor.class.getName();
+
+    /**
+     * ワーカー毎のキューの容量のデフォルト
+     */
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+    private static final Runnable STOP = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    private class Worker implements Runnable {
+        private BlockingQueue<Runnable> queue;
+
+        public Worker(int queueSize) {
+            queue = new ArrayBlockingQueue<Runnable>(queueSize);
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (;;) {
+                    Runnable task = queue.take();
+                    if (task == STOP) {
+                        break;
+                    }
+
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        logger.logp(Level.WARNING, className, "Worker.run", "task failed", e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                logger.logp(Level.FINE, className, "Worker.run", "interrupted", e);
+            } finally {
+                terminated.countDown();
+            }
+        }
+    }
+
+    private Worker[] workers;
+    private AtomicInteger nextWorker = new AtomicInteger(0);
+    private CountDownLatch terminated;
+    private volatile boolean shutdown = false;
+
+    /**
+     * OrderedExecutorを生成し、ワーカースレッドを開始する。
+     * キューの容量はDEFAULT_QUEUE_SIZEとなる。
+     * @param workerCount ワーカースレッドの数
+     */
+    public OrderedExecutor(int workerCount) {
+        this(workerCount, DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * OrderedExecutorを生成し、ワーカースレッドを開始する。
+     * @param workerCount ワーカースレッドの数
+     * @param queueSize ワーカー毎のキューの容量
+     * @throws IllegalArgumentException ワーカースレッドの数あるいはキューの容量が正でない場合
+     */
+    public OrderedExecutor(int workerCount, int queueSize) {
+        logger.entering(className, "OrderedExecutor", new Object[]{workerCount, queueSize});
+
+        if (workerCount <= 0) {
+            throw new IllegalArgumentException("invalid worker count: " + workerCount);
+        }
+
+        if (queueSize <= 0) {
+            throw new IllegalArgumentException("invalid queue size: " + queueSize);
+        }
+
+        workers = new Worker[workerCount];
+        terminated = new CountDownLatch(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Worker(queueSize);
+            Thread thread = new Thread(workers[i], "OrderedExecutor-worker-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        logger.exiting(className, "OrderedExecutor");
+    }
+
+    /**
+     * ワーカースレッドの数を返す。
+     * @return ワーカースレッドの数
+     */
+    public int getWorkerCount() {
+        return workers.length;
+    }
+
+    /**
+     * 実行を待っているタスクの数を返す。
+     * @return 実行を待っているタスクの数
+     */
+    public int countQueuedTasks() {
+        int count = 0;
+        for (Worker worker : workers) {
+            count += worker.queue.size();
+        }
+        return count;
+    }
+
+    int getWorkerIndex(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return (h & 0x7fffffff) % workers.length;
+    }
+
+    private void enqueue(Worker worker, Runnable task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("shutdown");
+        }
+
+        try {
+            worker.queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("interrupted", e);
+        }
+    }
+
+    /**
+     * 指定されたキーに対応するワーカーでタスクを実行する。
+     * 同じキーのタスクは追加された順に実行される。
+     * キューが一杯の場合には空きができるまで待機する。
+     * @param key タスクの順序を保つ単位となるキー
+     * @param task 実行するタスク
+     * @throws RejectedExecutionException shutdownが呼ばれた後、あるいは待機中に割り込みが発生した場合
+     */
+    public void execute(Object key, Runnable task) {
+        if (key == null) {
+            execute(task);
+        } else {
+            enqueue(workers[getWorkerIndex(key)], task);
+        }
+    }
+
+    /**
+     * タスクをいずれかのワーカーで実行する。
+     * ワーカーは順番に選択されるため、タスク間の実行順序は保証されない。
+     * @param task 実行するタスク
+     * @throws RejectedExecutionException shutdownが呼ばれた後、あるいは待機中に割り込みが発生した場合
+     */
+    @Override
+    public void execute(Runnable task) {
+        int index = (nextWorker.getAndIncrement() & 0x7fffffff) % workers.length;
+        enqueue(workers[index], task);
+    }
+
+    /**
+     * 新しいタスクの受け付けを停止する。
+     * 既にキューに追加されたタスクを全て実行した後にワーカースレッドは終了する。
+     * キューが一杯の場合には、終了の指示を追加できるまで待機する。
+     */
+    public void shutdown() {
+        logger.entering(className, "shutdown");
+
+        shutdown = true;
+        for (Worker worker : workers) {
+            try {
+                worker.queue.put(STOP);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        logger.exiting(className, "shutdown");
+    }
+
+    /**
+     * shutdownが呼ばれたかどうかを返す。
+     * @return shutdownが呼ばれていればtrue、そうでなければfalse
+     */
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * 全てのワーカースレッドが終了するまで待機する。
+     * @param timeout 待機する時間
+     * @param unit 待機する時間の単位
+     * @return 全てのワーカースレッドが終了した場合にはtrue、時間内に終了しなかった場合にはfalse
+     * @throws InterruptedException 割り込みが発生した場合
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+}
@@ -1,22 +1,82 @@
 package echowand.logic;
 
+import echowand.common.ClassEOJ;
+import echowand.common.EOJ;
+import echowand.common.ESV;
 import echowand.net.CommonFrame;
+import echowand.net.CommonFrameView;
 import echowand.net.Frame;
 import echowand.net.StandardPayload;
 import echowand.net.Subnet;
+import echowand.util.CopyOnWriteArray;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Set;
 import java.util.logging.Logger;
 
 /**
  * リクエストフレームを受け取り、登録された全てのRequestProcessorの適切なメソッドを呼び出す。
+ * RequestProcessorの登録表は変更時に複製されるため、フレームの処理中にロックやオブジェクトの割り当ては発生しない。
+ * <p>
+ * 登録表の変更時にESVのコードを添字とする呼び出し表を構築し、フレームの処理時にはそのESVを処理対象とするRequestProcessorのみを呼び出す。
+ * SelectiveRequestProcessorは処理対象のESVとDEOJのクラスを宣言し、それ以外のRequestProcessorは全てのESVとDEOJのクラスを処理対象とする。
+ * 呼び出されなかったRequestProcessorはfalseを返したものとして扱われるため、処理済みかどうかの受け渡しは登録順に行われる。
  * @author Yoshiki Makino
  */
 public class RequestDispatcher implements Listener {
     private static final Logger logger = Logger.getLogger(RequestDispatcher.class.getName());
     private static final String className = RequestDispatcher.class.getName();
     
-    private LinkedList<RequestProcessor> processors;
+    private static final ESV[] REQUEST_ESVS = new ESV[]{ESV.SetI, ESV.SetC, ESV.Get, ESV.SetGet, ESV.INF_REQ, ESV.INF, ESV.INFC};
+    private static final int TABLE_SIZE = 256;
+    private static final Entry[] EMPTY_ENTRIES = new Entry[0];
+    
+    private static class Entry {
+        public final RequestProcessor processor;
+        public final int[] classCodes;
+        
+        public Entry(RequestProcessor processor, int[] classCodes) {
+            this.processor = processor;
+            this.classCodes = classCodes;
+        }
+        
+        public boolean accepts(Frame frame) {
+            if (classCodes == null) {
+                return true;
+            }
+            
+            int classCode;
+            CommonFrameView view = frame.getView();
+            if (view != null) {
+                if (!view.isWellFormed() || !view.isStandardPayload()) {
+                    return false;
+                }
+                
+                classCode = view.getDEOJClassValue();
+            } else {
+                CommonFrame cf = frame.getCommonFrame();
+                if (!cf.isStandardPayload()) {
+                    return false;
+                }
+            
+                EOJ deoj = ((StandardPayload)cf.getEDATA()).getDEOJ();
+                if (deoj == null) {
+                    return false;
+                }
+            
+                classCode = toClassCode(deoj.getClassGroupCode(), deoj.getClassCode());
+            }
+            
+            for (int code : classCodes) {
+                if (code == classCode) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+    
+    private CopyOnWriteArray<RequestProcessor> processors;
+    private volatile Entry[][] table;
     
     /**
      * RequestDispatcherを生成する。
@@ -24,23 +84,67 @@ public class RequestDispatcher implements Listener {
     public RequestDispatcher() {
         logger.entering(className, "RequestDispatcher");
         
-        processors = new LinkedList<RequestProcessor>();
+        processors = new CopyOnWriteArray<RequestProcessor>(RequestProcessor.class);
+        table = createTable(processors.getArray());
         
         logger.exiting(className, "RequestDispatcher");
     }
     
-    private synchronized LinkedList<RequestProcessor> cloneProcessors() {
-        return new LinkedList<RequestProcessor>(processors);
+    private static int toIndex(ESV esv) {
+        return 0xff & esv.toByte();
+    }
+    
+    private static int toClassCode(byte classGroupCode, byte classCode) {
+        return ((0xff & classGroupCode) << 8) | (0xff & classCode);
+    }
+    
+    private static Entry[][] createTable(RequestProcessor[] currentProcessors) {
+        Entry[][] newTable = new Entry[TABLE_SIZE][];
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            newTable[i] = EMPTY_ENTRIES;
+        }
+        
+        for (ESV esv : REQUEST_ESVS) {
+            ArrayList<Entry> entries = new ArrayList<Entry>();
+            for (RequestProcessor processor : currentProcessors) {
+                if (!(processor instanceof SelectiveRequestProcessor)) {
+                    entries.add(new Entry(processor, null));
+                    continue;
+                }
+                
+                SelectiveRequestProcessor selective = (SelectiveRequestProcessor)processor;
+                Set<ESV> esvs = selective.getHandledESVs();
+                if (esvs == null || !esvs.contains(esv)) {
+                    continue;
+                }
+                
+                Set<ClassEOJ> ceojs = selective.getHandledClassEOJs();
+                int[] classCodes = null;
+                if (ceojs != null) {
+                    classCodes = new int[ceojs.size()];
+                    int index = 0;
+                    for (ClassEOJ ceoj : ceojs) {
+                        classCodes[index++] = toClassCode(ceoj.getClassGroupCode(), ceoj.getClassCode());
+                    }
+                }
+                entries.add(new Entry(processor, classCodes));
+            }
+            newTable[toIndex(esv)] = entries.toArray(new Entry[entries.size()]);
+        }
+        
+        return newTable;
     }
     
     /**
      * 指定されたRequestProcessorがリクエスト処理を行なうように登録する。
+     * SelectiveRequestProcessorの場合には、この時点の宣言に従って処理対象のESVとDEOJのクラスが決定される。
      * @param processor リクエスト処理を実行するRequestProcessor
      */
     public synchronized void addRequestProcessor(RequestProcessor processor) {
         logger.entering(className, "addRequestProcessor", processor);
         
         processors.add(processor);
+        table = createTable(processors.getArray());
         
         logger.exiting(className, "addRequestProcessor");
     }
@@ -53,6 +157,7 @@ public class RequestDispatcher implements Listener {
         logger.entering(className, "removeRequestProcessor", processor);
         
         processors.remove(processor);
+        table = createTable(processors.getArray());
         
         logger.exiting(className, "removeRequestProcessor");
     }
@@ -67,15 +172,11 @@ public class RequestDispatcher implements Listener {
      */
     @Override
     public boolean process(Subnet subnet, Frame frame, boolean processed) {
-        logger.entering(className, "process", new Object[]{subnet, frame, processed});
-        
         if (processed) {
-            logger.exiting(className, "process", false);
             return false;
         }
         
         if (!frame.getCommonFrame().isStandardPayload()) {
-            logger.exiting(className, "process", false);
             return false;
         }
         
@@ -106,133 +207,125 @@ public class RequestDispatcher implements Listener {
                 break;
         }
         
-        logger.exiting(className, "process", success);
         return success;
     }
 
     /**
-     * 登録されたRequestProcessorのprocessSetIを全て呼び出す。
+     * 登録されたRequestProcessorのうち、ESVがSetIであるフレームを処理対象とするもののprocessSetIを呼び出す。
      * @param subnet 受信したフレームの送受信が行なわれたサブネット
      * @param frame 受信したフレーム
      * @return 指定されたフレームを処理した場合にはtrue、そうでなければfalse
      */
     public boolean processSetI(Subnet subnet, Frame frame) {
-        logger.entering(className, "processSetI", new Object[]{subnet, frame});
-        
         boolean processed = false;
-        for (RequestProcessor processor : cloneProcessors()) {
-            processed |= processor.processSetI(subnet, frame, processed);
+        for (Entry entry : table[toIndex(ESV.SetI)]) {
+            if (entry.accepts(frame)) {
+                processed |= entry.processor.processSetI(subnet, frame, processed);
+            }
         }
         
-        logger.exiting(className, "processSetI", processed);
         return processed;
     }
 
     /**
-     * 登録されたRequestProcessorのprocessSetCを全て呼び出す。
+     * 登録されたRequestProcessorのうち、ESVがSetCであるフレームを処理対象とするもののprocessSetCを呼び出す。
      * @param subnet 受信したフレームの送受信が行なわれたサブネット
      * @param frame 受信したフレーム
      * @return 指定されたフレームを処理した場合にはtrue、そうでなければfalse
      */
     public boolean processSetC(Subnet subnet, Frame frame) {
-        logger.entering(className, "processSetC", new Object[]{subnet, frame});
-        
         boolean processed = false;
-        for (RequestProcessor processor : cloneProcessors()) {
-            processed |= processor.processSetC(subnet, frame, processed);
+        for (Entry entry : table[toIndex(ESV.SetC)]) {
+            if (entry.accepts(frame)) {
+                processed |= entry.processor.processSetC(subnet, frame, processed);
+            }
         }
         
-        logger.exiting(className, "processSetC", processed);
         return processed;
     }
     
     /**
-     * 登録されたRequestProcessorのprocessGetを全て呼び出す。
+     * 登録されたRequestProcessorのうち、ESVがGetであるフレームを処理対象とするもののprocessGetを呼び出す。
      * @param subnet 受信したフレームの送受信が行なわれたサブネット
      * @param frame 受信したフレーム
      * @return 指定されたフレームを処理した場合にはtrue、そうでなければfalse
      */
     public boolean processGet(Subnet subnet, Frame frame) {
-        logger.entering(className, "processGet", new Object[]{subnet, frame});
-        
         boolean processed = false;
-        for (RequestProcessor processor : cloneProcessors()) {
-            processed |= processor.processGet(subnet, frame, processed);
+        for (Entry entry : table[toIndex(ESV.Get)]) {
+            if (entry.accepts(frame)) {
+                processed |= entry.processor.processGet(subnet, frame, processed);
+            }
         }
         
-        logger.exiting(className, "processGet", processed);
         return processed;
     }
     
     /**
-     * 登録されたRequestProcessorのprocessSetGetを全て呼び出す。
+     * 登録されたRequestProcessorのうち、ESVがSetGetであるフレームを処理対象とするもののprocessSetGetを呼び出す。
      * @param subnet 受信したフレームの送受信が行なわれたサブネット
      * @param frame 受信したフレーム
      * @return 指定されたフレームを処理した場合にはtrue、そうでなければfalse
      */
     public boolean processSetGet(Subnet subnet, Frame frame) {
-        logger.entering(className, "processSetGet", new Object[]{subnet, frame});
-        
         boolean processed = false;
-        for (RequestProcessor processor : cloneProcessors()) {
-            processed |= processor.processSetGet(subnet, frame, processed);
+        for (Entry entry : table[toIndex(ESV.SetGet)]) {
+            if (entry.accepts(frame)) {
+                processed |= entry.processor.processSetGet(subnet, frame, processed);
+            }
         }
         
-        logger.exiting(className, "processSetGet", processed);
         return processed;
     }
     
     /**
-     * 登録されたRequestProcessorのprocessINF_REQを全て呼び出す。
+     * 登録されたRequestProcessorのうち、ESVがINF_REQであるフレームを処理対象とするもののprocessINF_REQを呼び出す。
      * @param subnet 受信したフレームの送受信が行なわれたサブネット
      * @param frame 受信したフレーム
      * @return 指定されたフレームを処理した場合にはtrue、そうでなければfalse
      */
     public boolean processINF_REQ(Subnet subnet, Frame frame) {
-        logger.entering(className, "processINF_REQ", new Object[]{subnet, frame});
-        
         boolean processed = false;
-        for (RequestProcessor processor : cloneProcessors()) {
-            processed |= processor.processINF_REQ(subnet, frame, processed);
+        for (Entry entry : table[toIndex(ESV.INF_REQ)]) {
+            if (entry.accepts(frame)) {
+                processed |= entry.processor.processINF_REQ(subnet, frame, processed);
+            }
         }
         
-        logger.exiting(className, "processINF_REQ", processed);
         return processed;
     }
     
     /**
-     * 登録されたRequestProcessorのprocessINFを全て呼び出す。
+     * 登録されたRequestProcessorのうち、ESVがINFであるフレームを処理対象とするもののprocessINFを呼び出す。
      * @param subnet 受信したフレームの送受信が行なわれたサブネット
      * @param frame 受信したフレーム
      * @return 指定されたフレームを処理した場合にはtrue、そうでなければfalse
      */
     public boolean processINF(Subnet subnet, Frame frame) {
-        logger.entering(className, "processINF", new Object[]{subnet, frame});
-        
         boolean processed = false;
-        for (RequestProcessor processor : cloneProcessors()) {
-            processed |= processor.processINF(subnet, frame, processed);
+        for (Entry entry : table[toIndex(ESV.INF)]) {
+            if (entry.accepts(frame)) {
+                processed |= entry.processor.processINF(subnet, frame, processed);
+            }
         }
         
-        logger.exiting(className, "processINF", processed);
         return processed;
     }
     
     /**
-     * 登録されたRequestProcessorのprocessINFCを全て呼び出す。
+     * 登録されたRequestProcessorのうち、ESVがINFCであるフレームを処理対象とするもののprocessINFCを呼び出す。
      * @param subnet 受信したフレームの送受信が行なわれたサブネット
      * @param frame 受信したフレーム
      * @return 指定されたフレームを処理した場合にはtrue、そうでなければfalse
      */
     public boolean processINFC(Subnet subnet, Frame frame) {
-        logger.entering(className, "processINFC", new Object[]{subnet, frame});
-        
         boolean processed = false;
-        for (RequestProcessor processor : cloneProcessors()) {
-            processed |= processor.processINFC(subnet, frame, processed);
+        for (Entry entry : table[toIndex(ESV.INFC)]) {
+            if (entry.accepts(frame)) {
+                processed |= entry.processor.processINFC(subnet, frame, processed);
+            }
         }
         
-        logger.exiting(className, "processINFC", processed);
         return processed;
     }
 }
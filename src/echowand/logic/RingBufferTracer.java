@@ -0,0 +1,140 @@
+package echowand.logic;
+
+import echowand.common.ESV;
+import echowand.net.Frame;
+import echowand.net.Node;
+import echowand.net.Subnet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 事象を固定長のリングバッファに記録するTracer
+ * 記録は通し番号のgetAndIncrementと配列要素の書き込みのみで行われ、ロックを用いない。
+ * バッファが一杯になった場合には古い事象から上書きされる。
+ * @author Yoshiki Makino
+ */
+public class RingBufferTracer implements Tracer {
+    /**
+     * デフォルトの記録可能な事象数
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+    
+    private final AtomicReferenceArray<TraceEvent> events;
+    private final AtomicLong nextSequence;
+    private final int mask;
+    
+    /**
+     * デフォルトの容量でRingBufferTracerを生成する。
+     */
+    public RingBufferTracer() {
+        this(DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * 指定された容量でRingBufferTracerを生成する。
+     * 容量は2のべき乗に切り上げられる。
+     * @param capacity 記録可能な事象数
+     */
+    public RingBufferTracer(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("invalid capacity: " + capacity);
+        }
+        
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        
+        events = new AtomicReferenceArray<TraceEvent>(size);
+        nextSequence = new AtomicLong(0);
+        mask = size - 1;
+    }
+    
+    /**
+     * 記録可能な事象数を返す。
+     * @return 記録可能な事象数
+     */
+    public int getCapacity() {
+        return events.length();
+    }
+    
+    /**
+     * これまでに記録された事象の総数を返す。
+     * 上書きされた事象も含む。
+     * @return 記録された事象の総数
+     */
+    public long countRecordedEvents() {
+        return nextSequence.get();
+    }
+    
+    private void record(TraceEvent.Type type, short tid, ESV esv, Node node, boolean processed) {
+        long sequence = nextSequence.getAndIncrement();
+        TraceEvent event = new TraceEvent(sequence, type, System.nanoTime(), Thread.currentThread().getId(), tid, esv, node, processed);
+        events.set((int)(sequence & mask), event);
+    }
+    
+    private void recordFrame(TraceEvent.Type type, Frame frame, boolean processed) {
+        record(type, frame.getTID(), frame.getESV(), frame.getSender(), processed);
+    }
+    
+    private void recordTransaction(TraceEvent.Type type, Transaction transaction) {
+        TransactionConfig config = transaction.getTransactionConfig();
+        record(type, transaction.getTID(), config.getESV(), config.getReceiverNode(), false);
+    }
+    
+    @Override
+    public void frameReceived(Subnet subnet, Frame frame) {
+        recordFrame(TraceEvent.Type.FRAME_RECEIVED, frame, false);
+    }
+    
+    @Override
+    public void frameDispatched(Subnet subnet, Frame frame, boolean processed) {
+        recordFrame(TraceEvent.Type.FRAME_DISPATCHED, frame, processed);
+    }
+    
+    @Override
+    public void transactionBegin(Transaction transaction) {
+        recordTransaction(TraceEvent.Type.TRANSACTION_BEGIN, transaction);
+    }
+    
+    @Override
+    public void transactionResponse(Transaction transaction, Frame frame) {
+        record(TraceEvent.Type.TRANSACTION_RESPONSE, transaction.getTID(), frame.getESV(), frame.getSender(), false);
+    }
+    
+    @Override
+    public void transactionEnd(Transaction transaction) {
+        recordTransaction(TraceEvent.Type.TRANSACTION_END, transaction);
+    }
+    
+    /**
+     * バッファに残っている事象を記録された順に返す。
+     * 取得中に記録が行われた場合、上書きされた事象や書き込みが完了していない事象は含まれない。
+     * @return 記録された事象のリスト
+     */
+    public List<TraceEvent> getEvents() {
+        long end = nextSequence.get();
+        long begin = Math.max(0, end - events.length());
+        
+        ArrayList<TraceEvent> result = new ArrayList<TraceEvent>((int)(end - begin));
+        for (long sequence = begin; sequence < end; sequence++) {
+            TraceEvent event = events.get((int)(sequence & mask));
+            if (event != null && event.getSequence() == sequence) {
+                result.add(event);
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * バッファに残っている事象を全て削除する。
+     */
+    public void clear() {
+        for (int i = 0; i < events.length(); i++) {
+            events.set(i, null);
+        }
+    }
+}
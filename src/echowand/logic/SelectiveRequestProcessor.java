@@ -0,0 +1,30 @@
+package echowand.logic;
+
+import echowand.common.ClassEOJ;
+import echowand.common.ESV;
+import java.util.Set;
+
+/**
+ * 処理対象のESVとDEOJのクラスを宣言するRequestProcessorを表す。
+ * RequestDispatcherは登録時にこれらの宣言を参照してESV毎の呼び出し表を構築し、
+ * 宣言に含まれないESVやDEOJのクラスを持つフレームについてはこのRequestProcessorを呼び出さない。
+ * 呼び出されなかった場合は、該当するメソッドがfalseを返した場合と同様に扱われる。
+ * @author Yoshiki Makino
+ */
+public interface SelectiveRequestProcessor extends RequestProcessor {
+
+    /**
+     * 処理対象のESVの集合を返す。
+     * RequestDispatcherへの登録後に返す値を変更しても反映されない。
+     * @return 処理対象のESVの集合
+     */
+    public Set<ESV> getHandledESVs();
+
+    /**
+     * 処理対象のDEOJのクラスの集合を返す。
+     * 全てのクラスを処理対象とする場合にはnullを返す。
+     * RequestDispatcherへの登録後に返す値を変更しても反映されない。
+     * @return 処理対象のDEOJのクラスの集合、全てのクラスを対象とする場合にはnull
+     */
+    public Set<ClassEOJ> getHandledClassEOJs();
+}
@@ -0,0 +1,150 @@
+package echowand.logic;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * トランザクションID(TID)の割り当てを行う。
+ * <p>
+ * 処理中のTIDをビット列で管理し、処理中のTIDを再び割り当てることはない。
+ * 全ての操作はロックを用いずに行われるため、複数のスレッドから同時に利用できる。
+ * TIDの0は利用しない。
+ * @author Yoshiki Makino
+ */
+public class TIDAllocator {
+
+    /**
+     * 同時に処理中にできるTIDの最大数
+     */
+    public static final int MAX_TIDS = 0xffff;
+
+    private AtomicInteger nextTID;
+    private AtomicInteger count;
+    private AtomicLongArray inFlight;
+
+    /**
+     * TIDAllocatorを生成する。
+     */
+    public TIDAllocator() {
+        nextTID = new AtomicInteger(1);
+        count = new AtomicInteger(0);
+        inFlight = new AtomicLongArray(0x10000 / 64);
+    }
+
+    private static int toIndex(short tid) {
+        return 0xffff & tid;
+    }
+
+    private boolean isInFlight(int index) {
+        return (inFlight.get(index >>> 6) & (1L << (index & 63))) != 0;
+    }
+
+    private boolean mark(int index) {
+        int word = index >>> 6;
+        long bit = 1L << (index & 63);
+        for (;;) {
+            long value = inFlight.get(word);
+            if ((value & bit) != 0) {
+                return false;
+            }
+            if (inFlight.compareAndSet(word, value, value | bit)) {
+                count.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    private boolean unmark(int index) {
+        int word = index >>> 6;
+        long bit = 1L << (index & 63);
+        for (;;) {
+            long value = inFlight.get(word);
+            if ((value & bit) == 0) {
+                return false;
+            }
+            if (inFlight.compareAndSet(word, value, value & ~bit)) {
+                count.decrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    private int nextIndex() {
+        for (;;) {
+            int index = nextTID.getAndIncrement() & 0xffff;
+            if (index != 0) {
+                return index;
+            }
+        }
+    }
+
+    /**
+     * 処理中でないTIDを予約せずに返す。
+     * 返されるTIDは呼び出しの度に変化するが、返された後に他のスレッドによって割り当てられる可能性がある。
+     * @return 処理中でないTID、全てのTIDが処理中の場合には処理中のTID
+     */
+    public short next() {
+        for (int i = 0; i < MAX_TIDS; i++) {
+            int index = nextIndex();
+            if (!isInFlight(index)) {
+                return (short)index;
+            }
+        }
+        return (short)nextIndex();
+    }
+
+    /**
+     * 処理中でないTIDを割り当て、処理中にする。
+     * @return 割り当てたTID
+     * @throws TooManyObjectsException 全てのTIDが処理中の場合
+     */
+    public short allocate() throws TooManyObjectsException {
+        for (int i = 0; i < MAX_TIDS; i++) {
+            int index = nextIndex();
+            if (mark(index)) {
+                return (short)index;
+            }
+        }
+        throw new TooManyObjectsException("no available TID");
+    }
+
+    /**
+     * 指定されたTIDが処理中でなければ割り当て、処理中であれば他のTIDを割り当てる。
+     * @param tid 割り当てを希望するTID
+     * @return 割り当てたTID
+     * @throws TooManyObjectsException 全てのTIDが処理中の場合
+     */
+    public short allocate(short tid) throws TooManyObjectsException {
+        int index = toIndex(tid);
+        if (index != 0 && mark(index)) {
+            return tid;
+        }
+        return allocate();
+    }
+
+    /**
+     * 指定されたTIDの処理が終了したとして、再び割り当て可能にする。
+     * @param tid 処理が終了したTID
+     * @return 指定されたTIDが処理中であった場合にはtrue、そうでなければfalse
+     */
+    public boolean release(short tid) {
+        return unmark(toIndex(tid));
+    }
+
+    /**
+     * 指定されたTIDが処理中であるかどうかを返す。
+     * @param tid TIDの指定
+     * @return 処理中であればtrue、そうでなければfalse
+     */
+    public boolean isInFlight(short tid) {
+        return isInFlight(toIndex(tid));
+    }
+
+    /**
+     * 処理中のTIDの数を返す。
+     * @return 処理中のTIDの数
+     */
+    public int countInFlight() {
+        return count.get();
+    }
+}
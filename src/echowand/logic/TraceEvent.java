@@ -0,0 +1,145 @@
+package echowand.logic;
+
+import echowand.common.ESV;
+import echowand.net.Node;
+
+/**
+ * RingBufferTracerが記録する事象を表す。
+ * フレームの内容そのものは保持せず、TIDやESVなどの識別に必要な値のみを保持する。
+ * @author Yoshiki Makino
+ */
+public class TraceEvent {
+    
+    /**
+     * 記録される事象の種類を表す。
+     */
+    public enum Type {
+        /**
+         * フレームの受信
+         */
+        FRAME_RECEIVED,
+        /**
+         * 受信したフレームのListenerによる処理の終了
+         */
+        FRAME_DISPATCHED,
+        /**
+         * トランザクションの開始
+         */
+        TRANSACTION_BEGIN,
+        /**
+         * トランザクションによるレスポンスの受信
+         */
+        TRANSACTION_RESPONSE,
+        /**
+         * トランザクションの終了
+         */
+        TRANSACTION_END
+    }
+    
+    private final long sequence;
+    private final Type type;
+    private final long time;
+    private final long threadId;
+    private final short tid;
+    private final ESV esv;
+    private final Node node;
+    private final boolean processed;
+    
+    /**
+     * TraceEventを生成する。
+     * @param sequence 記録された順序を表す通し番号
+     * @param type 事象の種類
+     * @param time System.nanoTimeで取得した事象の発生時刻
+     * @param threadId 事象が発生したスレッドのID
+     * @param tid 関連するTID
+     * @param esv 関連するESV、不明な場合にはnull
+     * @param node 関連するノード、不明な場合にはnull
+     * @param processed フレームが処理されたかどうか
+     */
+    public TraceEvent(long sequence, Type type, long time, long threadId, short tid, ESV esv, Node node, boolean processed) {
+        this.sequence = sequence;
+        this.type = type;
+        this.time = time;
+        this.threadId = threadId;
+        this.tid = tid;
+        this.esv = esv;
+        this.node = node;
+        this.processed = processed;
+    }
+    
+    /**
+     * 記録された順序を表す通し番号を返す。
+     * @return 通し番号
+     */
+    public long getSequence() {
+        return sequence;
+    }
+    
+    /**
+     * 事象の種類を返す。
+     * @return 事象の種類
+     */
+    public Type getType() {
+        return type;
+    }
+    
+    /**
+     * System.nanoTimeで取得した事象の発生時刻を返す。
+     * @return 事象の発生時刻
+     */
+    public long getTime() {
+        return time;
+    }
+    
+    /**
+     * 事象が発生したスレッドのIDを返す。
+     * @return スレッドのID
+     */
+    public long getThreadId() {
+        return threadId;
+    }
+    
+    /**
+     * 関連するTIDを返す。
+     * @return TID
+     */
+    public short getTID() {
+        return tid;
+    }
+    
+    /**
+     * 関連するESVを返す。
+     * @return ESV、不明な場合にはnull
+     */
+    public ESV getESV() {
+        return esv;
+    }
+    
+    /**
+     * 関連するノードを返す。
+     * フレームの事象では送信ノード、トランザクションの事象では要求の受信ノードを表す。
+     * @return ノード、不明な場合にはnull
+     */
+    public Node getNode() {
+        return node;
+    }
+    
+    /**
+     * フレームがいずれかのListenerで処理されたかどうかを返す。
+     * FRAME_DISPATCHED以外の事象では常にfalseを返す。
+     * @return 処理された場合にはtrue、そうでなければfalse
+     */
+    public boolean isProcessed() {
+        return processed;
+    }
+    
+    /**
+     * このTraceEventの文字列表現を返す。
+     * @return 文字列表現
+     */
+    @Override
+    public String toString() {
+        return String.format("#%d %s time=%d thread=%d tid=%d esv=%s node=%s processed=%b",
+                sequence, type, time, threadId, 0xffff & tid, esv, node, processed);
+    }
+}
@@ -0,0 +1,48 @@
+package echowand.logic;
+
+import echowand.net.Frame;
+import echowand.net.Subnet;
+
+/**
+ * フレームの処理やトランザクションの進行を記録するトレーサ
+ * Tracingに設定されている場合にのみ、MainLoopやTransactionから呼び出される。
+ * 各メソッドはフレームを処理するスレッドから呼び出されるため、速やかに処理を終えるように実装する。
+ * また、呼び出し後に解放される可能性があるため、引数のFrameを保持してはならない。
+ * @author Yoshiki Makino
+ */
+public interface Tracer {
+    
+    /**
+     * MainLoopがフレームを受信し、Listenerの呼び出しを開始する時に呼び出される。
+     * @param subnet フレームを受信したサブネット
+     * @param frame 受信したフレーム
+     */
+    public void frameReceived(Subnet subnet, Frame frame);
+    
+    /**
+     * MainLoopが全てのListenerの呼び出しを終了した時に呼び出される。
+     * @param subnet フレームを受信したサブネット
+     * @param frame 受信したフレーム
+     * @param processed いずれかのListenerがフレームを処理した場合にはtrue、そうでなければfalse
+     */
+    public void frameDispatched(Subnet subnet, Frame frame, boolean processed);
+    
+    /**
+     * トランザクションが開始された時に呼び出される。
+     * @param transaction 開始したトランザクション
+     */
+    public void transactionBegin(Transaction transaction);
+    
+    /**
+     * トランザクションがレスポンスを受信した時に呼び出される。
+     * @param transaction レスポンスを受信したトランザクション
+     * @param frame 受信したレスポンスフレーム
+     */
+    public void transactionResponse(Transaction transaction, Frame frame);
+    
+    /**
+     * トランザクションが終了した時に呼び出される。
+     * @param transaction 終了したトランザクション
+     */
+    public void transactionEnd(Transaction transaction);
+}
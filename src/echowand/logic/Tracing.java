@@ -0,0 +1,45 @@
+package echowand.logic;
+
+/**
+ * フレームの処理やトランザクションの進行を記録するTracerの設定を保持する。
+ * Tracerが設定されていない場合、記録箇所ではvolatileフィールドの読み出しとnullの比較のみが行われ、
+ * 引数の配列やボクシングによるオブジェクトの割り当ては発生しない。
+ * 記録箇所は以下のように記述する。
+ * <pre>
+ * Tracer tracer = Tracing.getTracer();
+ * if (tracer != null) {
+ *     tracer.frameReceived(subnet, frame);
+ * }
+ * </pre>
+ * @author Yoshiki Makino
+ */
+public final class Tracing {
+    private static volatile Tracer tracer = null;
+    
+    private Tracing() {}
+    
+    /**
+     * 記録に利用するTracerを設定する。
+     * nullを指定した場合には記録を停止する。
+     * @param newTracer 記録に利用するTracer
+     */
+    public static void setTracer(Tracer newTracer) {
+        tracer = newTracer;
+    }
+    
+    /**
+     * 記録に利用するTracerを返す。
+     * @return 記録に利用するTracer、設定されていない場合にはnull
+     */
+    public static Tracer getTracer() {
+        return tracer;
+    }
+    
+    /**
+     * 記録が有効であるかどうかを返す。
+     * @return Tracerが設定されていればtrue、そうでなければfalse
+     */
+    public static boolean isEnabled() {
+        return tracer != null;
+    }
+}
@@ -3,11 +3,21 @@ package echowand.logic;
 import echowand.common.EOJ;
 import echowand.common.ESV;
 import echowand.net.*;
+import echowand.util.AsyncResult;
+import echowand.util.CopyOnWriteArray;
+import echowand.util.HashedWheelTimer;
+import echowand.util.MetricsRegistry;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
 /**
  * トランザクション実行クラス
+ * <p>
+ * 状態の保護と終了の待機にはReentrantLockとConditionを用いるため、
+ * 仮想スレッドからjoinを呼び出してもキャリアスレッドを占有しない。
  * @author Yoshiki Makino
  */
 public class Transaction {
@@ -16,33 +26,28 @@ public class Transaction {
     
     private TransactionConfig transactionConfig;
     private static final int DEFAULT_TIMEOUT = 60;
-    private static short nextTID;
-    
-    static {
-        nextTID = 1;
-    }
     
     private Subnet subnet;
     private TransactionManager transactionManager;
     private int timeout;
-    private short tid;
+    private volatile short tid;
+    private boolean tidAllocated;
     
-    private Timer timer;
+    private HashedWheelTimer.Timeout timeoutTask;
+    private AsyncResult<Transaction> completion;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition finished = lock.newCondition();
     private boolean done;
     private boolean waiting;
+    private Thread finishingThread;
     private int countResponse;
+    private MetricsRegistry metrics;
+    private long beginTime;
     
-    private LinkedList<TransactionListener> transactionListeners;
+    private CopyOnWriteArray<TransactionListener> transactionListeners;
     
     private static EnumMap<ESV, LinkedList<ESV>> responseESVMap = new EnumMap<ESV, LinkedList<ESV>>(ESV.class);
     
-    private static short getNextTID() {
-        if (nextTID == 0) {
-            nextTID = 1;
-        }
-        return nextTID++;
-    }
-
     /**
      * Transactionを生成する。
      * 原則としてTransactionManagerを用いて生成することを推奨する。
@@ -51,19 +56,15 @@ public class Transaction {
      * @param transactionConfig  リクエスト処理の詳細設定
      */
     public Transaction(Subnet subnet, TransactionManager transactionManager, TransactionConfig transactionConfig) {
-        logger.entering(className, "Transaction", new Object[]{subnet, transactionManager, transactionConfig});
-        
         this.subnet = subnet;
         this.transactionManager = transactionManager;
         this.transactionConfig = transactionConfig;
-        this.tid = getNextTID();
+        this.tid = transactionManager.getTIDAllocator().next();
         this.done = false;
         this.countResponse = 0;
         this.timeout = DEFAULT_TIMEOUT;
-        this.transactionListeners = new LinkedList<TransactionListener>();
+        this.transactionListeners = new CopyOnWriteArray<TransactionListener>(TransactionListener.class);
         initResponseESVMap();
-        
-        logger.exiting(className, "Transaction");
     }
     
     private void initResponseESVMap() {
@@ -112,7 +113,7 @@ public class Transaction {
      * トランザクションのレスポンス処理を行なうTransactionListenerを登録する。
      * @param listener 登録するTransactionListener
      */
-    public synchronized void addTransactionListener(TransactionListener listener) {
+    public void addTransactionListener(TransactionListener listener) {
         logger.entering(className, "addTransactionListener", listener);
         
         transactionListeners.add(listener);
@@ -125,7 +126,7 @@ public class Transaction {
      * トランザクションのレスポンス処理を行なうTransactionListenerの登録を抹消する。
      * @param listener 登録を抹消するTransactionListener
      */
-    public synchronized void removeTransactionListener(TransactionListener listener) {
+    public void removeTransactionListener(TransactionListener listener) {
         logger.entering(className, "removeTransactionListener", listener);
         
         transactionListeners.remove(listener);
@@ -133,45 +134,29 @@ public class Transaction {
         logger.exiting(className, "removeTransactionListener");
     }
     
-    private synchronized List<TransactionListener> cloneTransactionListeners() {
-        return new ArrayList<TransactionListener>(transactionListeners);
-    }
-    
     private void doCallBeginTransactionListeners() {
-        logger.entering(className, "doCallBeginTransactionListeners");
-        
-        for (TransactionListener l : cloneTransactionListeners()) {
+        for (TransactionListener l : transactionListeners.getArray()) {
             l.begin(this);
         }
-        
-        logger.exiting(className, "doCallBeginTransactionListeners");
     }
     
     private void doCallReceiveTransactionListeners(Frame frame) {
-        logger.entering(className, "doCallReceiveTransactionListeners", frame);
-        
-        for (TransactionListener l : cloneTransactionListeners()) {
+        for (TransactionListener l : transactionListeners.getArray()) {
             l.receive(this, subnet, frame);
         }
-        
-        logger.exiting(className, "doCallReceiveTransactionListeners");
     }
     
     private void doCallFinishTransactionListeners() {
-        logger.entering(className, "doCallFinishTransactionListeners");
-        
-        for (TransactionListener l : cloneTransactionListeners()) {
+        for (TransactionListener l : transactionListeners.getArray()) {
             l.finish(this);
         }
-        
-        logger.exiting(className, "doCallFinishTransactionListeners");
     }
     
     /**
      * 登録済みのTransactionListenerの個数を返す。
      * @return 登録済みのTransactionListener数
      */
-    public synchronized int countTransactionListeners() {
+    public int countTransactionListeners() {
         logger.entering(className, "countTransactionListeners", timeout);
         
         int count = transactionListeners.size();
@@ -184,24 +169,35 @@ public class Transaction {
      * トランザクションのタイムアウトをミリ秒単位で設定する
      * @param timeout タイムアウトの時間(ミリ秒)
      */
-    public synchronized void setTimeout(int timeout) {
-        logger.entering(className, "setTimeout", timeout);
+    public void setTimeout(int timeout) {
+        lock.lock();
+        try {
+            logger.entering(className, "setTimeout", timeout);
         
-        this.timeout = timeout;
+            this.timeout = timeout;
         
-        logger.exiting(className, "setTimeout");
+            logger.exiting(className, "setTimeout");
+        } finally {
+            lock.unlock();
+        }
     }
     
     /**
      * トランザクションのタイムアウト時間を返す。
      * @return timeout タイムアウトの時間(ミリ秒)
      */
-    public synchronized int getTimeout() {
-        return timeout;
+    public int getTimeout() {
+        lock.lock();
+        try {
+            return timeout;
+        } finally {
+            lock.unlock();
+        }
     }
     
     /**
      * トランザクションのTIDを返す。
+     * 生成時のTIDが実行開始時に他のトランザクションで処理中であった場合には、実行開始時に別のTIDに変更される。
      * @return リクエスト処理のTID
      */
     public short getTID() {
@@ -209,8 +205,6 @@ public class Transaction {
     }
     
     private StandardPayload createPayload(int index) {
-        logger.entering(className, "createPayload", index);
-        
         StandardPayload payload = new StandardPayload();
         payload.setDEOJ(transactionConfig.getDestinationEOJ());
         payload.setSEOJ(transactionConfig.getSourceEOJ());
@@ -219,38 +213,45 @@ public class Transaction {
         
         transactionConfig.addPayloadProperties(index, payload);
         
-        logger.exiting(className, "createPayload", payload);
         return payload;
     }
     
     private boolean sendRequest() throws SubnetException {
-        logger.entering(className, "sendRequest");
-        
         int count = transactionConfig.getCountPayloads();
+        List<Frame> frames = new ArrayList<Frame>(count);
         for (int i = 0; i < count; i++) {
             StandardPayload payload = createPayload(i);
 
             CommonFrame cf = new CommonFrame();
             cf.setEDATA(payload);
             cf.setTID(tid);
-            Frame frame = new Frame(transactionConfig.getSenderNode(), transactionConfig.getReceiverNode(), cf);
-            subnet.send(frame);
+            frames.add(new Frame(transactionConfig.getSenderNode(), transactionConfig.getReceiverNode(), cf));
+        }
+        
+        if (subnet instanceof BatchSubnet) {
+            ((BatchSubnet)subnet).sendBatch(frames);
+        } else {
+            for (Frame frame : frames) {
+                subnet.send(frame);
+            }
+        }
+        
+        if (metrics != null) {
+            for (int i = 0; i < count; i++) {
+                metrics.recordSent(transactionConfig.getESV());
+            }
         }
         
-        logger.exiting(className, "sendRequest", true);
         return true;
     }
     
     private boolean isValidTransactionESVPair(ESV req, ESV res) {
-        logger.entering(className, "isValidTransactionESVPair", new Object[]{req, res});
-
         LinkedList<ESV> esvs = responseESVMap.get(req);
         boolean valid = false;
         if (esvs != null) {
             valid = esvs.contains(res);
         }
 
-        logger.exiting(className, "isValidTransactionESVPair", valid);
         return valid;
     }
 
@@ -259,170 +260,306 @@ public class Transaction {
      * @param frame 受信したフレーム
      * @return フレームの処理に成功した場合にはtrue、そうでなければfalse
      */
-    public synchronized boolean recvResponse(Frame frame) {
-        logger.entering(className, "recvResponse");
-        
-        if (!this.waiting) {
-            logger.exiting(className, "recvResponse", false);
-            return false;
-        }
+    public boolean recvResponse(Frame frame) {
+        lock.lock();
+        try {
+            if (!this.waiting) {
+                return false;
+            }
         
-        if (!frame.getCommonFrame().isStandardPayload()) {
-            logger.exiting(className, "recvResponse", false);
-            return false;
-        }
+            if (!frame.getCommonFrame().isStandardPayload()) {
+                return false;
+            }
         
-        CommonFrame cf = frame.getCommonFrame();
+            CommonFrame cf = frame.getCommonFrame();
         
-        if (cf.getTID() != this.getTID()) {
-            logger.exiting(className, "recvResponse", false);
-            return false;
-        }
+            if (cf.getTID() != this.getTID()) {
+                return false;
+            }
         
-        StandardPayload payload = (StandardPayload)cf.getEDATA();
-        EOJ responseSEOJ = payload.getSEOJ();
-        EOJ responseDEOJ = payload.getDEOJ();
-        EOJ requestDEOJ = transactionConfig.getDestinationEOJ();
-        EOJ requestSEOJ = transactionConfig.getSourceEOJ();
+            StandardPayload payload = (StandardPayload)cf.getEDATA();
+            EOJ responseSEOJ = payload.getSEOJ();
+            EOJ responseDEOJ = payload.getDEOJ();
+            EOJ requestDEOJ = transactionConfig.getDestinationEOJ();
+            EOJ requestSEOJ = transactionConfig.getSourceEOJ();
         
-        if (!responseSEOJ.equals(requestDEOJ)) {
-            if (!requestDEOJ.isAllInstance()) {
-                logger.exiting(className, "recvResponse", false);
+            if (!responseSEOJ.equals(requestDEOJ)) {
+                if (!requestDEOJ.isAllInstance()) {
+                    return false;
+                }
+
+                if (!responseSEOJ.getClassEOJ().equals(requestDEOJ.getClassEOJ())) {
+                    return false;
+                }
+            }
+            if (!responseDEOJ.equals(requestSEOJ)) {
                 return false;
             }
 
-            if (!responseSEOJ.getClassEOJ().equals(requestDEOJ.getClassEOJ())) {
-                logger.exiting(className, "recvResponse", false);
+            ESV reqESV = transactionConfig.getESV();
+            ESV resESV = payload.getESV();
+        
+            if (!isValidTransactionESVPair(reqESV, resESV)) {
                 return false;
             }
-        }
-        if (!responseDEOJ.equals(requestSEOJ)) {
-            logger.exiting(className, "recvResponse", false);
-            return false;
-        }
-
-        ESV reqESV = transactionConfig.getESV();
-        ESV resESV = payload.getESV();
         
-        if (!isValidTransactionESVPair(reqESV, resESV)) {
-            logger.exiting(className, "recvResponse", false);
-            return false;
-        }
+            this.countResponse++;
+        
+            if (metrics != null && countResponse == 1) {
+                metrics.recordResponseLatency(System.nanoTime() - beginTime);
+            }
         
-        this.countResponse++;
+            doCallReceiveTransactionListeners(frame);
         
-        doCallReceiveTransactionListeners(frame);
+            Tracer tracer = Tracing.getTracer();
+            if (tracer != null) {
+                tracer.transactionResponse(this, frame);
+            }
         
-        logger.exiting(className, "recvResponse", true);
-        return true;
+            return true;
+        } finally {
+            lock.unlock();
+        }
     }
     
     /**
      * トランザクションを終了する。
+     * 終了時のTransactionListenerやAsyncResultの呼び出しはロックを解放してから行われる。
      */
-    public synchronized void finish() {
-        logger.entering(className, "finish");
+    public void finish() {
+        finish(false);
+    }
+    
+    private void finish(boolean timedOut) {
+        AsyncResult<Transaction> currentCompletion;
         
-        if (!this.done) {
+        lock.lock();
+        try {
+            if (this.done) {
+                return;
+            }
+            
             this.waiting = false;
             this.done = true;
+            this.finishingThread = Thread.currentThread();
 
-            if (timer != null) {
-                timer.cancel();
-                timer = null;
+            if (timeoutTask != null) {
+                timeoutTask.cancel();
+                timeoutTask = null;
             }
         
             transactionManager.removeTransaction(this);
             
-            doCallFinishTransactionListeners();
+            if (tidAllocated) {
+                transactionManager.getTIDAllocator().release(tid);
+                tidAllocated = false;
+            }
             
-            notifyAll();
+            currentCompletion = completion;
+        } finally {
+            lock.unlock();
         }
         
-        logger.exiting(className, "finish");
+        try {
+            doCallFinishTransactionListeners();
+            
+            if (metrics != null) {
+                metrics.recordTransactionEnd(timedOut);
+            }
+            
+            Tracer tracer = Tracing.getTracer();
+            if (tracer != null) {
+                tracer.transactionEnd(this);
+            }
+            
+            if (currentCompletion != null) {
+                currentCompletion.complete(this);
+            }
+        } finally {
+            lock.lock();
+            try {
+                this.finishingThread = null;
+                finished.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
     }
     
-    private static class TimeoutTimerTask extends TimerTask {
+    private static class TimeoutTask implements Runnable {
         public Transaction t;
-        public TimeoutTimerTask(Transaction t) {
+        public TimeoutTask(Transaction t) {
             this.t = t;
         }
 
         @Override
         public void run() {
-            logger.entering(className, "TimeoutTimerTask.run");
-            t.finish();
-            logger.exiting(className, "TimeoutTimerTask.run");
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    t.finish(true);
+                }
+            };
+            
+            try {
+                t.transactionManager.getExecutor().execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
         }
     }
+    
     /**
      * トランザクションを開始する。
-     * @throws SubnetException フレームの生成や送信に失敗した場合 
+     * 開始時にTIDを処理中として割り当て、終了時に解放する。
+     * 要求の送信に失敗した場合にはトランザクションを終了する。
+     * @throws SubnetException フレームの生成や送信に失敗した場合、割り当て可能なTIDがない場合、あるいはTransactionManagerが終了している場合
      */
-    public synchronized void execute() throws SubnetException {
-        logger.entering(className, "execute");
+    public void execute() throws SubnetException {
+        lock.lock();
+        try {
+            if (this.waiting || this.done) {
+                return;
+            }
+            
+            if (transactionManager.isClosed()) {
+                throw new SubnetException("transaction manager closed");
+            }
         
-        if (this.waiting || this.done) {
-            logger.exiting(className, "execute");
-            return;
-        }
+            try {
+                tid = transactionManager.getTIDAllocator().allocate(tid);
+                tidAllocated = true;
+            } catch (TooManyObjectsException e) {
+                throw new SubnetException("too many transactions", e);
+            }
         
-        doCallBeginTransactionListeners();
-
-        this.waiting = true;
+            doCallBeginTransactionListeners();
+        
+            metrics = MetricsRegistry.getCurrent();
+            if (metrics != null) {
+                metrics.recordTransactionBegin();
+                beginTime = System.nanoTime();
+            }
         
-        transactionManager.addTransaction(this);
+            Tracer tracer = Tracing.getTracer();
+            if (tracer != null) {
+                tracer.transactionBegin(this);
+            }
+
+            this.waiting = true;
+        
+            transactionManager.addTransaction(this);
+        
+            try {
+                sendRequest();
+            } catch (SubnetException e) {
+                if (completion != null) {
+                    completion.fail(e);
+                }
+                finish();
+                throw e;
+            }
         
-        sendRequest();
-        int timeout_in_ms = getTimeout();
-        if (timeout_in_ms > 0) {
-            timer = new Timer(true);
-            timer.schedule(new TimeoutTimerTask(this), timeout_in_ms);
+            int timeout_in_ms = getTimeout();
+            if (timeout_in_ms > 0) {
+                try {
+                    timeoutTask = transactionManager.getTimer().schedule(new TimeoutTask(this), timeout_in_ms);
+                } catch (IllegalStateException e) {
+                    SubnetException exception = new SubnetException("transaction manager closed", e);
+                    if (completion != null) {
+                        completion.fail(exception);
+                    }
+                    finish();
+                    throw exception;
+                }
+            }
+        } finally {
+            lock.unlock();
         }
+    }
 
-        logger.exiting(className, "execute");
+    /**
+     * トランザクションを開始し、終了を待たずに戻る。
+     * 返されるAsyncResultは、トランザクションの終了時に受信処理あるいはタイムアウト処理のスレッドで完了する。
+     * トランザクションの開始に失敗した場合には、失敗したAsyncResultを返す。
+     * 既に終了したトランザクションであれば、完了したAsyncResultを返す。
+     * @return トランザクションの終了時にこのTransactionで完了するAsyncResult
+     */
+    public AsyncResult<Transaction> executeAsync() {
+        lock.lock();
+        try {
+            if (completion == null || (!this.waiting && !this.done && completion.isDone())) {
+                completion = new AsyncResult<Transaction>();
+            }
+        
+            if (this.done) {
+                completion.complete(this);
+            } else {
+                try {
+                    execute();
+                } catch (SubnetException e) {
+                    completion.fail(e);
+                }
+            }
+        
+            return completion;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
-     * トランザクションが終了するまで待つ。
+     * トランザクションが終了し、終了時のTransactionListenerの呼び出しが完了するまで待つ。
+     * 終了時のTransactionListenerから呼び出された場合には、その呼び出しの完了を待たない。
      * @throws InterruptedException 割り込みが発生した場合
      */
-    public synchronized void join() throws InterruptedException {
-        logger.entering(className, "join");
-        
-        while (isWaitingResponse()) {
-            wait();
+    public void join() throws InterruptedException {
+        lock.lock();
+        try {
+            while (waiting || (finishingThread != null && finishingThread != Thread.currentThread())) {
+                finished.await();
+            }
+        } finally {
+            lock.unlock();
         }
-        
-        logger.exiting(className, "join");
     }
     
     /**
      * 受信したレスポンスフレームの数を返す。
      * @return 受信したレスポンスフレーム数
      */
-    public synchronized int countResponses() {
-        logger.entering(className, "countResponses");
-        
-        int count = this.countResponse;
-        
-        logger.exiting(className, "countResponses", count);
-        return count;
+    public int countResponses() {
+        lock.lock();
+        try {
+            return this.countResponse;
+        } finally {
+            lock.unlock();
+        }
     }
     
     /**
      * トランザクションが処理中であるか示す。
      * @return トランザクションが処理中であればtrue、そうでなければfalse
      */
-    public synchronized boolean isWaitingResponse() {
-        return waiting;
+    public boolean isWaitingResponse() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
      * トランザクションが終了しているか示す。
      * @return トランザクションが終了していればtrue、そうでなければfalse
      */
-    public synchronized boolean isDone() {
-        return done;
+    public boolean isDone() {
+        lock.lock();
+        try {
+            return done;
+        } finally {
+            lock.unlock();
+        }
     }
 }
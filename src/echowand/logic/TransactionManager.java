@@ -2,12 +2,25 @@ package echowand.logic;
 
 import echowand.net.Frame;
 import echowand.net.Subnet;
-import java.util.ArrayList;
-import java.util.LinkedList;
+import echowand.util.HashedWheelTimer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.Logger;
 
 /**
  * Transactionを管理するし、受信したフレームを適切なTransactionに処理させる。
+ * <p>
+ * 処理中のTransactionはTIDで索引付けされた表で管理するため、
+ * 受信したフレームに対応するTransactionの検索は処理中のTransaction数によらず一定時間で行われる。
+ * 各Transactionのタイムアウトは、このTransactionManagerが持つ一つのHashedWheelTimerで検出され、
+ * タイムアウト時の終了処理やリスナの呼び出しはExecutorで実行される。
+ * 利用を終える際にはcloseを呼び出してタイマーのスレッドを停止する必要がある。
  * @author Yoshiki Makino
  */
 public class TransactionManager implements Listener {
@@ -15,7 +28,14 @@ public class TransactionManager implements Listener {
     private static final String className = TransactionManager.class.getName();
     
     private Subnet subnet;
-    private LinkedList<Transaction> transactions;
+    private AtomicReferenceArray<Transaction[]> transactions;
+    private AtomicInteger count;
+    private TIDAllocator tidAllocator;
+    private HashedWheelTimer timer;
+    private volatile Executor executor;
+    private ExecutorService defaultExecutor;
+    private volatile boolean closed = false;
+    private static final Transaction[] EMPTY = new Transaction[0];
     
     /**
      * TransactinManagerを生成する。
@@ -25,23 +45,141 @@ public class TransactionManager implements Listener {
         logger.entering(className, "TransactionManager", subnet);
         
         this.subnet = subnet;
-        transactions = new LinkedList<Transaction>();
+        transactions = new AtomicReferenceArray<Transaction[]>(0x10000);
+        count = new AtomicInteger(0);
+        tidAllocator = new TIDAllocator();
+        timer = new HashedWheelTimer();
+        defaultExecutor = createDefaultExecutor();
+        executor = defaultExecutor;
         
         logger.exiting(className, "TransactionManager");
     }
     
-    private synchronized LinkedList<Transaction> cloneTransactions() {
-        return new LinkedList<Transaction>(transactions);
+    /**
+     * このTransactionManagerに所属するTransactionのTIDを割り当てるTIDAllocatorを返す。
+     * @return TIDAllocator
+     */
+    public TIDAllocator getTIDAllocator() {
+        return tidAllocator;
+    }
+    
+    /**
+     * このTransactionManagerに所属するTransactionのタイムアウトを処理するHashedWheelTimerを返す。
+     * @return HashedWheelTimer
+     */
+    public HashedWheelTimer getTimer() {
+        return timer;
+    }
+    
+    private static ExecutorService createDefaultExecutor() {
+        ThreadPoolExecutor service = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "TransactionManager");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        service.allowCoreThreadTimeOut(true);
+        return service;
+    }
+    
+    /**
+     * タイムアウトしたTransactionの終了処理を実行するExecutorを設定する。
+     * 終了処理ではTransactionListenerやAsyncResultのコールバックが呼び出されるため、
+     * HashedWheelTimerのスレッドではなくこのExecutorで実行される。
+     * MainLoopのExecutorを指定することで、フレームの処理と同じスレッドで実行できる。
+     * @param executor 終了処理を実行するExecutor
+     */
+    public void setExecutor(Executor executor) {
+        logger.entering(className, "setExecutor", executor);
+        
+        if (executor == null) {
+            throw new NullPointerException("executor");
+        }
+        
+        this.executor = executor;
+        
+        logger.exiting(className, "setExecutor");
+    }
+    
+    /**
+     * タイムアウトしたTransactionの終了処理を実行するExecutorを返す。
+     * @return 終了処理を実行するExecutor
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+    
+    /**
+     * このTransactionManagerの利用を終了する。
+     * HashedWheelTimerのスレッドと内部で生成したExecutorを停止し、処理中のTransactionを全て終了する。
+     * 終了後は新たにTransactionを実行することはできない。
+     */
+    public void close() {
+        logger.entering(className, "close");
+        
+        closed = true;
+        timer.stop();
+        
+        for (int i = 0; i < transactions.length(); i++) {
+            Transaction[] ts = transactions.get(i);
+            if (ts != null) {
+                for (Transaction t : ts) {
+                    t.finish();
+                }
+            }
+        }
+        
+        defaultExecutor.shutdown();
+        
+        logger.exiting(className, "close");
+    }
+    
+    /**
+     * closeが呼び出されたかどうかを返す。
+     * @return closeが呼び出されていればtrue、そうでなければfalse
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+    
+    private static int toIndex(short tid) {
+        return 0xffff & tid;
+    }
+    
+    private Transaction[] getTransactions(short tid) {
+        Transaction[] ts = transactions.get(toIndex(tid));
+        if (ts == null) {
+            return EMPTY;
+        }
+        return ts;
     }
     
     /**
      * Transactionを処理中として登録する。
      * @param t 登録するトランザクション
      */
-    protected synchronized void addTransaction(Transaction t) {
+    protected void addTransaction(Transaction t) {
         logger.entering(className, "addTransaction", t);
         
-        transactions.add(t);
+        int index = toIndex(t.getTID());
+        for (;;) {
+            Transaction[] ts = transactions.get(index);
+            Transaction[] newTs;
+            if (ts == null) {
+                newTs = new Transaction[]{t};
+            } else {
+                newTs = new Transaction[ts.length + 1];
+                System.arraycopy(ts, 0, newTs, 0, ts.length);
+                newTs[ts.length] = t;
+            }
+            
+            if (transactions.compareAndSet(index, ts, newTs)) {
+                count.incrementAndGet();
+                break;
+            }
+        }
         
         logger.exiting(className, "addTransaction");
     }
@@ -50,10 +188,36 @@ public class TransactionManager implements Listener {
      * Transactionの処理が終了したとして登録を抹消する。
      * @param t 登録を抹消するトランザクション
      */
-    protected synchronized void removeTransaction(Transaction t) {
+    protected void removeTransaction(Transaction t) {
         logger.entering(className, "removeTransaction", t);
         
-        transactions.remove(t);
+        int index = toIndex(t.getTID());
+        for (;;) {
+            Transaction[] ts = transactions.get(index);
+            int pos = -1;
+            for (int i = 0; ts != null && i < ts.length; i++) {
+                if (ts[i] == t) {
+                    pos = i;
+                    break;
+                }
+            }
+            
+            if (pos < 0) {
+                break;
+            }
+            
+            Transaction[] newTs = null;
+            if (ts.length > 1) {
+                newTs = new Transaction[ts.length - 1];
+                System.arraycopy(ts, 0, newTs, 0, pos);
+                System.arraycopy(ts, pos + 1, newTs, pos, ts.length - pos - 1);
+            }
+            
+            if (transactions.compareAndSet(index, ts, newTs)) {
+                count.decrementAndGet();
+                break;
+            }
+        }
         
         logger.exiting(className, "removeTransaction");
     }
@@ -62,8 +226,8 @@ public class TransactionManager implements Listener {
      * 処理中のTransactionの数を返す。
      * @return 処理中のTransaction数
      */
-    public synchronized int countActiveTransactions() {
-        return transactions.size();
+    public int countActiveTransactions() {
+        return count.get();
     }
     
     /**
@@ -76,22 +240,16 @@ public class TransactionManager implements Listener {
      */
     @Override
     public boolean process(Subnet subnet, Frame frame, boolean processed) {
-        logger.entering(className, "process", new Object[]{subnet, frame, processed});
-        
         boolean ret = false;
         
         if (processed) {
-            logger.exiting(className, "process", ret);
             return ret;
         }
         
-        for (Transaction transaction : cloneTransactions()) {
-            if (frame.getCommonFrame().getTID() == transaction.getTID()) {
-                ret |= transaction.recvResponse(frame);
-            }
+        for (Transaction transaction : getTransactions(frame.getTID())) {
+            ret |= transaction.recvResponse(frame);
         }
         
-        logger.exiting(className, "process", ret);
         return ret;
     }
 
@@ -0,0 +1,39 @@
+package echowand.net;
+
+/**
+ * AggregateSubnetのローカルノードおよびグループを表すノード
+ * @author Yoshiki Makino
+ */
+public class AggregateNode implements Node {
+    private AggregateSubnet subnet;
+    private String name;
+    
+    /**
+     * AggregateNodeを生成する。
+     * 直接生成は行わずにAggregateSubnetのgetLocalNodeやgetGroupNodeメソッドの利用を推奨する。
+     * @param subnet このノードの存在するサブネット
+     * @param name このノードの名前
+     */
+    public AggregateNode(AggregateSubnet subnet, String name) {
+        this.subnet = subnet;
+        this.name = name;
+    }
+    
+    /**
+     * 名前を返す。
+     * @return このノードの名前
+     */
+    public String getName() {
+        return name;
+    }
+    
+    @Override
+    public boolean isMemberOf(Subnet subnet) {
+        return this.subnet == subnet;
+    }
+    
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,251 @@
+package echowand.net;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 複数のサブネットをまとめて一つのサブネットとして扱う
+ * <p>
+ * 各ネットワークインタフェースのInet4Subnetなどをまとめることで、
+ * 一つのMainLoopやTransactionManagerで全てのネットワークを扱うことができる。
+ * ユニキャストの送信は受信ノードが含まれるサブネットに転送され、グループへの送信は全てのサブネットに転送される。
+ * 各サブネットからの受信はそれぞれ専用のスレッドで行われ、recvは受信したフレームを到着順に返す。
+ * 受信したフレームの送信ノードと受信ノードは、受信を行ったサブネットのノードのままである。
+ * @author Yoshiki Makino
+ */
+public class AggregateSubnet implements BatchSubnet {
+    private List<Subnet> subnets;
+    private AggregateNode localNode;
+    private AggregateNode groupNode;
+    private FrameReaders<Subnet> readers;
+    private boolean closed = false;
+
+    /**
+     * AggregateSubnetを生成する。
+     * @param subnets まとめるサブネット
+     * @throws IllegalArgumentException サブネットが指定されていない場合
+     */
+    public AggregateSubnet(Subnet... subnets) {
+        this(Arrays.asList(subnets));
+    }
+
+    /**
+     * AggregateSubnetを生成する。
+     * @param subnets まとめるサブネットの集合
+     * @throws IllegalArgumentException サブネットが指定されていない場合
+     */
+    public AggregateSubnet(Collection<? extends Subnet> subnets) {
+        if (subnets.isEmpty()) {
+            throw new IllegalArgumentException("no subnets");
+        }
+
+        for (Subnet subnet : subnets) {
+            if (subnet == null) {
+                throw new IllegalArgumentException("invalid subnet: " + subnet);
+            }
+        }
+
+        this.subnets = Collections.unmodifiableList(new ArrayList<Subnet>(subnets));
+        localNode = new AggregateNode(this, "LOCAL");
+        groupNode = new AggregateNode(this, "GROUP");
+    }
+
+    /**
+     * まとめられているサブネットのリストを返す。
+     * @return サブネットのリスト
+     */
+    public List<Subnet> getSubnets() {
+        return subnets;
+    }
+
+    /**
+     * 指定されたノードを含むサブネットを返す。
+     * @param node ノードの指定
+     * @return ノードを含むサブネット、存在しない場合にはnull
+     */
+    public Subnet getSubnet(Node node) {
+        for (Subnet subnet : subnets) {
+            if (node.isMemberOf(subnet)) {
+                return subnet;
+            }
+        }
+        return null;
+    }
+
+    private boolean isValidSender(Node sender, Subnet subnet) {
+        return sender == localNode || sender.isMemberOf(subnet);
+    }
+
+    private void route(Frame frame, Map<Subnet, List<Frame>> routes) throws SubnetException {
+        Node sender = frame.getSender();
+        Node receiver = frame.getReceiver();
+
+        if (receiver == groupNode) {
+            if (sender != localNode) {
+                throw new SubnetException("invalid sender");
+            }
+
+            for (Subnet subnet : subnets) {
+                addRoute(routes, subnet, new Frame(subnet.getLocalNode(), subnet.getGroupNode(), frame.getCommonFrame()));
+            }
+            return;
+        }
+
+        Subnet subnet;
+        if (receiver == localNode) {
+            subnet = subnets.get(0);
+            receiver = subnet.getLocalNode();
+        } else {
+            subnet = getSubnet(receiver);
+            if (subnet == null) {
+                throw new SubnetException("invalid receiver");
+            }
+        }
+
+        if (!isValidSender(sender, subnet)) {
+            throw new SubnetException("invalid sender");
+        }
+
+        if (sender == localNode || receiver != frame.getReceiver()) {
+            frame = new Frame(subnet.getLocalNode(), receiver, frame.getCommonFrame());
+        }
+        addRoute(routes, subnet, frame);
+    }
+
+    private void addRoute(Map<Subnet, List<Frame>> routes, Subnet subnet, Frame frame) {
+        List<Frame> frames = routes.get(subnet);
+        if (frames == null) {
+            frames = new LinkedList<Frame>();
+            routes.put(subnet, frames);
+        }
+        frames.add(frame);
+    }
+
+    private boolean sendRoutes(Map<Subnet, List<Frame>> routes) throws SubnetException {
+        boolean success = true;
+        for (Map.Entry<Subnet, List<Frame>> entry : routes.entrySet()) {
+            Subnet subnet = entry.getKey();
+            List<Frame> frames = entry.getValue();
+
+            if (frames.size() > 1 && subnet instanceof BatchSubnet) {
+                success &= ((BatchSubnet)subnet).sendBatch(frames);
+            } else {
+                for (Frame frame : frames) {
+                    success &= subnet.send(frame);
+                }
+            }
+        }
+        return success;
+    }
+
+    /**
+     * このAggregateSubnetのサブネットにフレームを転送する。
+     * 受信ノードがグループであれば全てのサブネットに、そうでなければ受信ノードを含むサブネットに転送する。
+     * ローカルノードから送信されたフレームの送信ノードは、転送先のサブネットのローカルノードに置き換えられる。
+     * @param frame 送信するフレーム
+     * @return 全ての送信に成功した場合にはtrue、そうでなければfalse
+     * @throws SubnetException 送信ノードや受信ノードが不正な場合、あるいは送信に失敗した場合
+     */
+    @Override
+    public boolean send(Frame frame) throws SubnetException {
+        Map<Subnet, List<Frame>> routes = new LinkedHashMap<Subnet, List<Frame>>();
+        route(frame, routes);
+        return sendRoutes(routes);
+    }
+
+    /**
+     * このAggregateSubnetのサブネットに複数のフレームを転送する。
+     * 全てのフレームの転送先を決定した後に、サブネット毎にまとめて送信する。
+     * 不正なフレームが含まれる場合には、何も送信せずに例外が発生する。
+     * @param frames 送信するフレームの集合
+     * @return 全ての送信に成功した場合にはtrue、そうでなければfalse
+     * @throws SubnetException 送信ノードや受信ノードが不正な場合、あるいは送信に失敗した場合
+     */
+    @Override
+    public boolean sendBatch(Collection<Frame> frames) throws SubnetException {
+        Map<Subnet, List<Frame>> routes = new LinkedHashMap<Subnet, List<Frame>>();
+        for (Frame frame : frames) {
+            route(frame, routes);
+        }
+        return sendRoutes(routes);
+    }
+
+    private synchronized FrameReaders<Subnet> getReaders() throws SubnetException {
+        if (closed) {
+            throw new SubnetException("closed");
+        }
+
+        if (readers == null) {
+            readers = new FrameReaders<Subnet>(new FrameReaders.Receiver<Subnet>() {
+                @Override
+                public Frame receive(Subnet subnet) throws SubnetException {
+                    return subnet.recv();
+                }
+
+                @Override
+                public boolean isOpen(Subnet subnet) {
+                    return true;
+                }
+            }, FrameReaders.DEFAULT_QUEUE_SIZE);
+
+            for (int i = 0; i < subnets.size(); i++) {
+                readers.start(subnets.get(i), "AggregateSubnet-reader-" + i);
+            }
+        }
+
+        return readers;
+    }
+
+    /**
+     * このAggregateSubnetのサブネットからフレームを受信する。
+     * 初めて呼ばれた時に各サブネットからの受信スレッドを開始する。
+     * 受信を行うまで待機する。
+     * @return 受信したFrame
+     * @throws SubnetException 無効なフレームを受信、あるいは受信に失敗した場合
+     */
+    @Override
+    public Frame recv() throws SubnetException {
+        return getReaders().take();
+    }
+
+    /**
+     * 受信スレッドを停止する。
+     * まとめられている各サブネットの無効化は行わない。
+     * 停止後のrecvは例外を発生させる。
+     */
+    public synchronized void close() {
+        closed = true;
+
+        if (readers != null) {
+            readers.close();
+            readers = null;
+        }
+    }
+
+    /**
+     * ローカルノードを表すNodeを返す。
+     * このノードから送信したフレームは、転送先のサブネットのローカルノードから送信される。
+     * このノード宛に送信したフレームは、最初のサブネットのローカルノードに転送される。
+     * @return ローカルノードのNode
+     */
+    @Override
+    public Node getLocalNode() {
+        return localNode;
+    }
+
+    /**
+     * グループを表すNodeを返す。
+     * このノード宛に送信したフレームは、全てのサブネットのグループに転送される。
+     * @return グループのNode
+     */
+    @Override
+    public Node getGroupNode() {
+        return groupNode;
+    }
+}
@@ -0,0 +1,21 @@
+package echowand.net;
+
+import java.util.Collection;
+
+/**
+ * 複数のフレームをまとめて送信できるサブネット
+ * <p>
+ * sendBatchは全てのフレームの送信ノードと受信ノードを先に検証し、
+ * 一つでも不正なフレームがあれば何も送信せずに例外を発生させる。
+ * @author Yoshiki Makino
+ */
+public interface BatchSubnet extends Subnet {
+    
+    /**
+     * このサブネットに複数のフレームを順番に転送する。
+     * @param frames 送信するフレームの集合
+     * @return 全ての送信に成功した場合にはtrue、そうでなければfalse
+     * @throws SubnetException 不正なフレームが含まれる場合、あるいは送信に失敗した場合
+     */
+    public boolean sendBatch(Collection<Frame> frames) throws SubnetException;
+}
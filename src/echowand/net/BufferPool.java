@@ -0,0 +1,86 @@
+package echowand.net;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * 受信に利用するバイト配列のバッファを再利用するためのプール
+ * <p>
+ * acquireで取得したPooledBufferはreleaseによりプールに返却され、次のacquireで再利用される。
+ * プールが空の場合には新たなバッファを生成し、プールが満杯の場合には返却されたバッファを破棄する。
+ * 返却されなかったバッファは通常のオブジェクトと同様にガベージコレクションにより回収される。
+ * @author Yoshiki Makino
+ */
+public class BufferPool {
+    
+    /**
+     * プールに保持するバッファ数のデフォルト
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+    
+    private int bufferSize;
+    private ArrayBlockingQueue<PooledBuffer> buffers;
+    
+    /**
+     * BufferPoolを生成する。
+     * @param bufferSize 各バッファの長さ
+     * @param capacity プールに保持するバッファの最大数
+     */
+    public BufferPool(int bufferSize, int capacity) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("invalid buffer size: " + bufferSize);
+        }
+        
+        this.bufferSize = bufferSize;
+        this.buffers = new ArrayBlockingQueue<PooledBuffer>(capacity);
+    }
+    
+    /**
+     * 保持するバッファ数がデフォルトのBufferPoolを生成する。
+     * @param bufferSize 各バッファの長さ
+     */
+    public BufferPool(int bufferSize) {
+        this(bufferSize, DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * 各バッファの長さを返す。
+     * @return 各バッファの長さ
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+    
+    /**
+     * プールに保持するバッファの最大数を返す。
+     * @return プールに保持するバッファの最大数
+     */
+    public int getCapacity() {
+        return buffers.size() + buffers.remainingCapacity();
+    }
+    
+    /**
+     * 現在プールに保持されている再利用可能なバッファの数を返す。
+     * @return 再利用可能なバッファの数
+     */
+    public int countAvailable() {
+        return buffers.size();
+    }
+    
+    /**
+     * バッファを取得する。
+     * プールが空の場合には新たにバッファを生成する。
+     * @return 取得したバッファ
+     */
+    public PooledBuffer acquire() {
+        PooledBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = new PooledBuffer(this, new byte[bufferSize]);
+        }
+        buffer.reset();
+        return buffer;
+    }
+    
+    void release(PooledBuffer buffer) {
+        buffers.offer(buffer);
+    }
+}
@@ -2,6 +2,7 @@ package echowand.net;
 
 import echowand.common.EOJ;
 import echowand.common.ESV;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 
 /**
@@ -61,16 +62,32 @@ public class CommonFrame {
      * @throws InvalidDataException バイト配列の解析に失敗した場合
      */
     public CommonFrame(byte[] bytes) throws InvalidDataException {
-        int offset = 0;
+        this(bytes, 0, bytes.length);
+    }
+    
+    /**
+     * CommonFrameを生成する。
+     * 指定されたバイト配列のoffsetからlengthバイトの範囲をフレームとみなし初期化を行う。
+     * 範囲外のデータは参照せず、範囲内のデータは全て生成されるCommonFrameにコピーされる。
+     * @param bytes フレームを含むバイト配列
+     * @param offset フレームの開始位置
+     * @param length フレームの長さ
+     * @throws InvalidDataException バイト配列の解析に失敗した場合
+     */
+    public CommonFrame(byte[] bytes, int offset, int length) throws InvalidDataException {
+        int end = offset + length;
         try {
+            if (end > bytes.length || offset + 4 > end) {
+                throw new ArrayIndexOutOfBoundsException(end);
+            }
             this.ehd1 = bytes[offset++];
             this.ehd2 = bytes[offset++];
             this.tid = (short) ((0xff & (int) bytes[offset++]) << 8);
             this.tid |= (short) (0xff & (int) bytes[offset++]);
             if (this.ehd2 == EHD2_STANDARD_PAYLOAD) {
-                this.edata = new StandardPayload(bytes, offset);
+                this.edata = new StandardPayload(bytes, offset, end - offset);
             } else {
-                this.edata = new SimplePayload(bytes, offset);
+                this.edata = new SimplePayload(bytes, offset, end - offset);
             }
         } catch (Exception e) {
             throw new InvalidDataException("invalid data at: " + offset, e);
@@ -152,18 +169,40 @@ public class CommonFrame {
      * @return バイト配列に変換されたCommonFrame
      */
     public byte[] toBytes() {
+        byte[] bytes = new byte[size()];
+        writeTo(ByteBuffer.wrap(bytes));
+        return bytes;
+    }
+    
+    /**
+     * このCommonFrameをバイト配列に変換したときの長さを返す。
+     * @return バイト配列の長さ
+     */
+    public int size() {
         int len = 4;
         if (edata != null) {
             len += edata.size();
         }
-        ByteBuffer buffer = ByteBuffer.allocate(len);
+        return len;
+    }
+    
+    /**
+     * このCommonFrameのバイト配列表現を指定されたバッファの現在位置に書き込む。
+     * StandardPayloadとSimplePayloadについては中間のバイト配列を生成せずに直接書き込む。
+     * @param buffer 書き込み先のバッファ
+     * @throws BufferOverflowException バッファの残りが不足している場合
+     */
+    public void writeTo(ByteBuffer buffer) {
         buffer.put(ehd1);
         buffer.put(ehd2);
         buffer.putShort(tid);
-        if (edata != null) {
+        if (edata instanceof StandardPayload) {
+            ((StandardPayload)edata).writeTo(buffer);
+        } else if (edata instanceof SimplePayload) {
+            ((SimplePayload)edata).writeTo(buffer);
+        } else if (edata != null) {
             buffer.put(edata.toBytes());
         }
-        return buffer.array();
     }
     
     /**
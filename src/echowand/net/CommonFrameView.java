@@ -0,0 +1,430 @@
+package echowand.net;
+
+import echowand.common.EOJ;
+import echowand.common.EPC;
+import echowand.common.ESV;
+import echowand.net.StandardPayloadValidator.PropType;
+import java.util.Arrays;
+
+/**
+ * バイト配列上のフレームを読み出し専用で参照する共通フレームのビュー
+ * <p>
+ * CommonFrameと異なり生成時にはフレームの解析を行わず、EHD1、EHD2、TID、SEOJ、DEOJ、ESVは
+ * 要求された時にバイト配列から直接読み出す。
+ * プロパティはPropertyCursorあるいはPropertyVisitorにより、PropertyやDataを生成せずに参照できる。
+ * 構造の検査とStandardPayloadValidatorと同等の検証は一度の走査でまとめて行われ、その結果は保持される。
+ * <p>
+ * CommonFrameViewは参照先のバイト配列をコピーしないため、参照先の内容が変更されてはならない。
+ * @author Yoshiki Makino
+ */
+public class CommonFrameView {
+    private static final int EHD1_OFFSET = 0;
+    private static final int EHD2_OFFSET = 1;
+    private static final int TID_OFFSET = 2;
+    private static final int SEOJ_OFFSET = 4;
+    private static final int DEOJ_OFFSET = 7;
+    private static final int ESV_OFFSET = 10;
+    private static final int OPC_OFFSET = 11;
+
+    private byte[] bytes;
+    private int offset;
+    private int length;
+
+    private boolean scanned = false;
+    private boolean wellFormed = false;
+    private boolean valid = false;
+    private int firstOPCOffset = -1;
+    private int secondOPCOffset = -1;
+    private PropType scannedPropType;
+
+    /**
+     * CommonFrameViewを生成する。
+     * 指定されたバイト配列のoffsetからlengthバイトの範囲をフレームとして参照する。
+     * @param bytes フレームを含むバイト配列
+     * @param offset フレームの開始位置
+     * @param length フレームの長さ
+     * @throws IndexOutOfBoundsException 範囲がバイト配列に収まらない場合
+     */
+    public CommonFrameView(byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length);
+        }
+
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * CommonFrameViewを生成する。
+     * 指定されたバイト配列全体をフレームとして参照する。
+     * @param bytes フレームのバイト配列
+     */
+    public CommonFrameView(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    private void checkRange(int position, int size) {
+        if (position + size > length) {
+            throw new IndexOutOfBoundsException("invalid position: " + position);
+        }
+    }
+
+    private int toInt(int position) {
+        return 0xff & (int)bytes[offset + position];
+    }
+
+    /**
+     * 参照しているフレームの長さを返す。
+     * @return フレームの長さ
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * フレームの1バイト目を返す。
+     * @return フレームの1バイト目
+     */
+    public byte getEHD1() {
+        checkRange(EHD1_OFFSET, 1);
+        return bytes[offset + EHD1_OFFSET];
+    }
+
+    /**
+     * フレームの2バイト目を返す。
+     * @return フレームの2バイト目
+     */
+    public byte getEHD2() {
+        checkRange(EHD2_OFFSET, 1);
+        return bytes[offset + EHD2_OFFSET];
+    }
+
+    /**
+     * フレームのトランザクションID(TID)を返す。
+     * @return フレームのTID
+     */
+    public short getTID() {
+        checkRange(TID_OFFSET, 2);
+        return (short)((toInt(TID_OFFSET) << 8) | toInt(TID_OFFSET + 1));
+    }
+
+    /**
+     * フレームがECHONET Liteであるか返す。
+     * @return ECHONET Liteのフレームであればtrue、そうでなければfalse
+     */
+    public boolean isEchonetLite() {
+        return length > EHD1_OFFSET && getEHD1() == CommonFrame.EHD1_ECHONET_LITE;
+    }
+
+    /**
+     * フレームのペイロードが標準形式であるか返す。
+     * @return 標準形式であればtrue、そうでなければfalse
+     */
+    public boolean isStandardPayload() {
+        return length > EHD2_OFFSET && getEHD2() == CommonFrame.EHD2_STANDARD_PAYLOAD;
+    }
+
+    private int getEOJValue(int position) {
+        checkRange(position, 3);
+        return (toInt(position) << 16) | (toInt(position + 1) << 8) | toInt(position + 2);
+    }
+
+    /**
+     * 標準形式のペイロードの送信EOJを返す。
+     * @return 送信EOJ
+     */
+    public EOJ getSEOJ() {
+        checkRange(SEOJ_OFFSET, 3);
+        return new EOJ(bytes, offset + SEOJ_OFFSET);
+    }
+
+    /**
+     * 標準形式のペイロードの宛先EOJを返す。
+     * @return 宛先EOJ
+     */
+    public EOJ getDEOJ() {
+        checkRange(DEOJ_OFFSET, 3);
+        return new EOJ(bytes, offset + DEOJ_OFFSET);
+    }
+
+    /**
+     * 標準形式のペイロードの送信EOJが指定されたEOJと等しいか返す。
+     * EOJの生成は行わない。
+     * @param eoj 比較するEOJ
+     * @return 等しければtrue、そうでなければfalse
+     */
+    public boolean hasSEOJ(EOJ eoj) {
+        return getEOJValue(SEOJ_OFFSET) == eoj.intValue();
+    }
+
+    /**
+     * 標準形式のペイロードの宛先EOJが指定されたEOJと等しいか返す。
+     * EOJの生成は行わない。
+     * @param eoj 比較するEOJ
+     * @return 等しければtrue、そうでなければfalse
+     */
+    public boolean hasDEOJ(EOJ eoj) {
+        return getEOJValue(DEOJ_OFFSET) == eoj.intValue();
+    }
+
+    /**
+     * 標準形式のペイロードの宛先EOJのクラスを整数で表現した値を返す。
+     * EOJの生成は行わない。
+     * @return 宛先EOJのClassEOJの整数表現
+     */
+    public int getDEOJClassValue() {
+        return getEOJValue(DEOJ_OFFSET) >>> 8;
+    }
+
+    /**
+     * 標準形式のペイロードのESVを返す。
+     * @return ESV
+     */
+    public ESV getESV() {
+        checkRange(ESV_OFFSET, 1);
+        return ESV.fromByte(bytes[offset + ESV_OFFSET]);
+    }
+
+    private int scanProperties(int position) {
+        int end = length;
+        if (position >= end) {
+            return -1;
+        }
+
+        int opc = toInt(position++);
+        PropType t = PropType.Nothing;
+        for (int i=0; i<opc; i++) {
+            if (position + 2 > end) {
+                return -1;
+            }
+
+            byte epc = bytes[offset + position];
+            byte pdc = bytes[offset + position + 1];
+            position += 2 + (0xff & (int)pdc);
+            if (position > end) {
+                return -1;
+            }
+
+            if (t != PropType.Invalid) {
+                if (EPC.fromByte(epc).isInvalid()) {
+                    t = PropType.Invalid;
+                } else {
+                    t = StandardPayloadValidator.nextPropType(t, pdc);
+                }
+            }
+        }
+
+        scannedPropType = t;
+        return position;
+    }
+
+    private synchronized void scan() {
+        if (scanned) {
+            return;
+        }
+        scanned = true;
+
+        if (length < SEOJ_OFFSET) {
+            return;
+        }
+
+        if (!isStandardPayload()) {
+            wellFormed = true;
+            return;
+        }
+
+        if (length < OPC_OFFSET) {
+            return;
+        }
+
+        ESV esv = getESV();
+        PropType t1 = PropType.Nothing;
+        PropType t2 = PropType.Nothing;
+
+        int position = OPC_OFFSET;
+        if (position < length) {
+            firstOPCOffset = position;
+            position = scanProperties(position);
+            if (position < 0) {
+                return;
+            }
+            t1 = scannedPropType;
+        }
+
+        if (esv.isSetGet()) {
+            secondOPCOffset = position;
+            position = scanProperties(position);
+            if (position < 0) {
+                return;
+            }
+            t2 = scannedPropType;
+        }
+
+        wellFormed = true;
+        valid = StandardPayloadValidator.validatePropTypes(esv, t1, t2);
+    }
+
+    /**
+     * フレームがCommonFrameとして解析可能な構造であるか返す。
+     * @return 解析可能であればtrue、そうでなければfalse
+     */
+    public boolean isWellFormed() {
+        scan();
+        return wellFormed;
+    }
+
+    /**
+     * フレームが標準形式のペイロードを持ち、構造とプロパティの組み合わせに問題がないか確認する。
+     * StandardPayloadValidatorのvalidateと同等の検証を、構造の検査と同じ一度の走査で行う。
+     * @return 問題がなければtrue、そうでなければfalse
+     */
+    public boolean validate() {
+        scan();
+        return valid;
+    }
+
+    private int getOPCOffset(boolean first) {
+        if (!isWellFormed() || !isStandardPayload()) {
+            throw new IllegalStateException("not a well-formed standard payload");
+        }
+
+        if (first) {
+            return firstOPCOffset;
+        } else {
+            return secondOPCOffset;
+        }
+    }
+
+    private byte getOPC(boolean first) {
+        int position = getOPCOffset(first);
+        if (position < 0) {
+            return 0;
+        }
+        return bytes[offset + position];
+    }
+
+    /**
+     * 一つ目のプロパティ列のプロパティ数を返す。
+     * @return 一つ目のプロパティ列のプロパティ数
+     * @throws IllegalStateException 解析可能な標準形式のペイロードでない場合
+     */
+    public byte getFirstOPC() {
+        return getOPC(true);
+    }
+
+    /**
+     * 二つ目のプロパティ列のプロパティ数を返す。
+     * @return 二つ目のプロパティ列のプロパティ数
+     * @throws IllegalStateException 解析可能な標準形式のペイロードでない場合
+     */
+    public byte getSecondOPC() {
+        return getOPC(false);
+    }
+
+    private PropertyCursor createCursor(boolean first) {
+        int position = getOPCOffset(first);
+        if (position < 0) {
+            return new PropertyCursor(bytes, 0, 0);
+        }
+        return new PropertyCursor(bytes, offset + position + 1, toInt(position));
+    }
+
+    /**
+     * 一つ目のプロパティ列を走査するPropertyCursorを返す。
+     * @return 一つ目のプロパティ列のPropertyCursor
+     * @throws IllegalStateException 解析可能な標準形式のペイロードでない場合
+     */
+    public PropertyCursor getFirstProperties() {
+        return createCursor(true);
+    }
+
+    /**
+     * 二つ目のプロパティ列を走査するPropertyCursorを返す。
+     * @return 二つ目のプロパティ列のPropertyCursor
+     * @throws IllegalStateException 解析可能な標準形式のペイロードでない場合
+     */
+    public PropertyCursor getSecondProperties() {
+        return createCursor(false);
+    }
+
+    private boolean visitProperties(PropertyCursor cursor, PropertyVisitor visitor) {
+        while (cursor.next()) {
+            if (!visitor.visit(cursor)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 一つ目のプロパティ列の各プロパティについてvisitorを呼び出す。
+     * @param visitor 呼び出すPropertyVisitor
+     * @return 全てのプロパティを走査した場合にはtrue、visitorにより中断された場合にはfalse
+     * @throws IllegalStateException 解析可能な標準形式のペイロードでない場合
+     */
+    public boolean visitFirstProperties(PropertyVisitor visitor) {
+        return visitProperties(getFirstProperties(), visitor);
+    }
+
+    /**
+     * 二つ目のプロパティ列の各プロパティについてvisitorを呼び出す。
+     * @param visitor 呼び出すPropertyVisitor
+     * @return 全てのプロパティを走査した場合にはtrue、visitorにより中断された場合にはfalse
+     * @throws IllegalStateException 解析可能な標準形式のペイロードでない場合
+     */
+    public boolean visitSecondProperties(PropertyVisitor visitor) {
+        return visitProperties(getSecondProperties(), visitor);
+    }
+
+    /**
+     * 参照しているフレームを解析してCommonFrameを生成する。
+     * @return 生成したCommonFrame
+     * @throws InvalidDataException 解析に失敗した場合
+     */
+    public CommonFrame toCommonFrame() throws InvalidDataException {
+        return new CommonFrame(bytes, offset, length);
+    }
+
+    /**
+     * 参照しているフレームをコピーし、そのコピーを参照するCommonFrameViewを返す。
+     * 参照先のバイト配列が再利用される場合に利用する。
+     * @return コピーを参照するCommonFrameView
+     */
+    public CommonFrameView copy() {
+        CommonFrameView view = new CommonFrameView(toBytes());
+        synchronized (this) {
+            view.scanned = scanned;
+            view.wellFormed = wellFormed;
+            view.valid = valid;
+            view.firstOPCOffset = firstOPCOffset;
+            view.secondOPCOffset = secondOPCOffset;
+        }
+        return view;
+    }
+
+    /**
+     * 参照しているフレームのバイト配列のコピーを返す。
+     * @return フレームのバイト配列
+     */
+    public byte[] toBytes() {
+        return Arrays.copyOfRange(bytes, offset, offset + length);
+    }
+
+    /**
+     * このCommonFrameViewを文字列で表す。
+     * @return CommonFrameViewを表現する文字列
+     */
+    @Override
+    public String toString() {
+        try {
+            return toCommonFrame().toString();
+        } catch (InvalidDataException e) {
+            StringBuilder builder = new StringBuilder();
+            for (int i=0; i<length; i++) {
+                builder.append(String.format("%02x", bytes[offset + i]));
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package echowand.net;
+
+/**
+ * IPv4とIPv6の両方のアドレスを持つ機器を表すDualStackSubnetのノード
+ * <p>
+ * このノード宛のフレームは、最後にフレームを受信したアドレスに転送される。
+ * 同じサブネットに属し、IPv4とIPv6のノードがそれぞれ等しいDualStackNodeは等しいとみなす。
+ * @author Yoshiki Makino
+ */
+public class DualStackNode implements Node {
+    private DualStackSubnet subnet;
+    private Node inet4Node;
+    private Node inet6Node;
+    private volatile Node preferredNode;
+    
+    /**
+     * DualStackNodeを生成する。
+     * 直接生成は行わずにDualStackSubnetのgetCanonicalNodeメソッドの利用を推奨する。
+     * @param subnet このノードの存在するサブネット
+     * @param inet4Node IPv4サブネットのノード
+     * @param inet6Node IPv6サブネットのノード
+     */
+    public DualStackNode(DualStackSubnet subnet, Node inet4Node, Node inet6Node) {
+        this.subnet = subnet;
+        this.inet4Node = inet4Node;
+        this.inet6Node = inet6Node;
+        this.preferredNode = inet4Node;
+    }
+    
+    /**
+     * IPv4サブネットのノードを返す。
+     * @return IPv4サブネットのノード
+     */
+    public Node getInet4Node() {
+        return inet4Node;
+    }
+    
+    /**
+     * IPv6サブネットのノードを返す。
+     * @return IPv6サブネットのノード
+     */
+    public Node getInet6Node() {
+        return inet6Node;
+    }
+    
+    /**
+     * このノード宛のフレームの転送先となるノードを返す。
+     * @return 転送先のノード
+     */
+    public Node getPreferredNode() {
+        return preferredNode;
+    }
+    
+    void setPreferredNode(Node node) {
+        preferredNode = node;
+    }
+    
+    @Override
+    public boolean isMemberOf(Subnet subnet) {
+        return this.subnet == subnet;
+    }
+    
+    @Override
+    public String toString() {
+        return "[" + inet4Node + ", " + inet6Node + "]";
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (! (o instanceof DualStackNode)) {
+            return false;
+        }
+        DualStackNode node = (DualStackNode)o;
+        return (this.subnet == node.subnet && this.inet4Node.equals(node.inet4Node) && this.inet6Node.equals(node.inet6Node));
+    }
+
+    @Override
+    public int hashCode() {
+        int h = 5;
+        h = 53 * h + this.inet4Node.hashCode();
+        h = 53 * h + this.inet6Node.hashCode();
+        return h;
+    }
+}
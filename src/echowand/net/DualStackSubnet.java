@@ -0,0 +1,292 @@
+package echowand.net;
+
+import echowand.common.EOJ;
+import echowand.common.EPC;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * IPv4とIPv6の両方のサブネットをまとめて一つのサブネットとして扱う
+ * <p>
+ * 224.0.23.0とff02::1の両方のグループに参加し、一つのMainLoopやTransactionManagerで両方のネットワークを扱うことができる。
+ * ノードプロファイルの識別番号(EPC 0x83)が等しいIPv4とIPv6のノードは同一の機器とみなし、
+ * 受信したフレームの送信ノードを一つのDualStackNodeに置き換える。
+ * 識別番号を通知しない機器については、setAliasにより明示的に対応付けを行うことができる。
+ * 識別番号とノードの対応は最近利用されたものから一定数まで保持し、上限を超えた場合には最も長く利用されていないものから破棄する。
+ * @author Yoshiki Makino
+ */
+public class DualStackSubnet extends AggregateSubnet {
+    private static final EOJ NODE_PROFILE_EOJ = new EOJ("0ef001");
+    private static final EOJ TRANSMISSION_ONLY_NODE_PROFILE_EOJ = new EOJ("0ef002");
+
+    /**
+     * 保持する識別番号の数の上限のデフォルト
+     */
+    public static final int DEFAULT_IDENTIFIED_CAPACITY = 4096;
+
+    private Subnet inet4Subnet;
+    private Subnet inet6Subnet;
+    private HashMap<Node, DualStackNode> canonicalNodes = new HashMap<Node, DualStackNode>();
+    private int identifiedCapacity = DEFAULT_IDENTIFIED_CAPACITY;
+    private LinkedHashMap<ByteBuffer, Node> identifiedNodes = new LinkedHashMap<ByteBuffer, Node>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Node> eldest) {
+            return size() > identifiedCapacity;
+        }
+    };
+
+    /**
+     * DualStackSubnetを生成する。
+     * IPv4にはInet4ChannelSubnet、IPv6にはInet6Subnetを利用する。
+     * Inet4ChannelSubnetはIPv4のソケットを利用するため、IPv4のユニキャストがIPv6のソケットで受信されることはない。
+     * @throws SubnetException サブネットの生成に失敗した場合
+     */
+    public DualStackSubnet() throws SubnetException {
+        this(new Inet4ChannelSubnet(), new Inet6Subnet());
+    }
+
+    /**
+     * DualStackSubnetを生成する。
+     * @param inet4Subnet IPv4のサブネット
+     * @param inet6Subnet IPv6のサブネット
+     */
+    public DualStackSubnet(Subnet inet4Subnet, Subnet inet6Subnet) {
+        super(inet4Subnet, inet6Subnet);
+        this.inet4Subnet = inet4Subnet;
+        this.inet6Subnet = inet6Subnet;
+    }
+
+    /**
+     * IPv4のサブネットを返す。
+     * @return IPv4のサブネット
+     */
+    public Subnet getInet4Subnet() {
+        return inet4Subnet;
+    }
+
+    /**
+     * IPv6のサブネットを返す。
+     * @return IPv6のサブネット
+     */
+    public Subnet getInet6Subnet() {
+        return inet6Subnet;
+    }
+
+    /**
+     * 保持する識別番号の数の上限を返す。
+     * @return 保持する識別番号の数の上限
+     */
+    public synchronized int getIdentifiedCapacity() {
+        return identifiedCapacity;
+    }
+
+    /**
+     * 保持する識別番号の数の上限を設定する。
+     * 上限を超えている場合には、最も長く利用されていないものから破棄する。
+     * 既に行われたノードの対応付けは解除されない。
+     * @param capacity 保持する識別番号の数の上限
+     * @throws IllegalArgumentException capacityが負の場合
+     */
+    public synchronized void setIdentifiedCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("invalid capacity: " + capacity);
+        }
+
+        identifiedCapacity = capacity;
+        Iterator<ByteBuffer> iterator = identifiedNodes.keySet().iterator();
+        while (identifiedNodes.size() > capacity && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * 保持している識別番号の数を返す。
+     * @return 保持している識別番号の数
+     */
+    public synchronized int countIdentifiedNodes() {
+        return identifiedNodes.size();
+    }
+
+    /**
+     * IPv4のノードとIPv6のノードを同一の機器として対応付ける。
+     * いずれかのノードが既に他のノードと対応付けられている場合には、その対応付けは解除される。
+     * 既に同じ組が対応付けられている場合には、そのDualStackNodeを返す。
+     * @param inet4Node IPv4のサブネットのノード
+     * @param inet6Node IPv6のサブネットのノード
+     * @return 両方のノードを表すDualStackNode
+     * @throws IllegalArgumentException ノードがそれぞれのサブネットに含まれない場合
+     */
+    public synchronized DualStackNode setAlias(Node inet4Node, Node inet6Node) {
+        if (!inet4Node.isMemberOf(inet4Subnet)) {
+            throw new IllegalArgumentException("invalid node: " + inet4Node);
+        }
+
+        if (!inet6Node.isMemberOf(inet6Subnet)) {
+            throw new IllegalArgumentException("invalid node: " + inet6Node);
+        }
+
+        DualStackNode current = canonicalNodes.get(inet4Node);
+        if (current != null && current.getInet6Node().equals(inet6Node)) {
+            return current;
+        }
+
+        removeAlias(inet4Node);
+        removeAlias(inet6Node);
+
+        DualStackNode node = new DualStackNode(this, inet4Node, inet6Node);
+        canonicalNodes.put(inet4Node, node);
+        canonicalNodes.put(inet6Node, node);
+        return node;
+    }
+
+    /**
+     * 指定されたノードの対応付けを解除する。
+     * @param node 対応付けを解除するノード
+     * @return 対応付けが存在した場合にはtrue、そうでなければfalse
+     */
+    public synchronized boolean removeAlias(Node node) {
+        DualStackNode dualStackNode = canonicalNodes.remove(node);
+        if (dualStackNode == null) {
+            return false;
+        }
+
+        canonicalNodes.remove(dualStackNode.getInet4Node());
+        canonicalNodes.remove(dualStackNode.getInet6Node());
+        return true;
+    }
+
+    /**
+     * 指定されたノードを表す正規のノードを返す。
+     * 対応付けが行われていればDualStackNode、そうでなければ指定されたノードをそのまま返す。
+     * @param node ノードの指定
+     * @return 正規のノード
+     */
+    public synchronized Node getCanonicalNode(Node node) {
+        DualStackNode dualStackNode = canonicalNodes.get(node);
+        if (dualStackNode == null) {
+            return node;
+        }
+        return dualStackNode;
+    }
+
+    private byte[] findIdentificationNumber(Frame frame) {
+        CommonFrameView view = frame.getView();
+        if (view == null) {
+            view = new CommonFrameView(frame.getCommonFrame().toBytes());
+        }
+
+        if (!view.isStandardPayload()) {
+            return null;
+        }
+
+        if (!view.hasSEOJ(NODE_PROFILE_EOJ) && !view.hasSEOJ(TRANSMISSION_ONLY_NODE_PROFILE_EOJ)) {
+            return null;
+        }
+
+        PropertyCursor cursor = view.getFirstProperties();
+        while (cursor.next()) {
+            if (cursor.getEPC() == EPC.x83 && cursor.getPDC() != 0) {
+                byte[] id = new byte[0xff & cursor.getPDC()];
+                cursor.copyEDT(id, 0);
+                return id;
+            }
+        }
+
+        return null;
+    }
+
+    private synchronized void identify(Node sender, byte[] id) {
+        ByteBuffer key = ByteBuffer.wrap(id);
+        Node other = identifiedNodes.put(key, sender);
+
+        if (other == null || other.equals(sender) || canonicalNodes.get(sender) != null) {
+            return;
+        }
+
+        if (sender.isMemberOf(inet4Subnet) && other.isMemberOf(inet6Subnet)) {
+            setAlias(sender, other);
+        } else if (sender.isMemberOf(inet6Subnet) && other.isMemberOf(inet4Subnet)) {
+            setAlias(other, sender);
+        }
+    }
+
+    /**
+     * このDualStackSubnetのサブネットからフレームを受信する。
+     * 送信ノードが対応付けられている場合には、送信ノードをDualStackNodeに置き換える。
+     * 受信を行うまで待機する。
+     * @return 受信したFrame
+     * @throws SubnetException 無効なフレームを受信、あるいは受信に失敗した場合
+     */
+    @Override
+    public Frame recv() throws SubnetException {
+        Frame frame = super.recv();
+        Node sender = frame.getSender();
+
+        byte[] id = findIdentificationNumber(frame);
+        if (id != null) {
+            identify(sender, id);
+        }
+
+        DualStackNode dualStackNode;
+        synchronized (this) {
+            dualStackNode = canonicalNodes.get(sender);
+        }
+
+        if (dualStackNode == null) {
+            return frame;
+        }
+
+        dualStackNode.setPreferredNode(sender);
+        return frame.withSender(dualStackNode);
+    }
+
+    private Frame toMemberFrame(Frame frame) throws SubnetException {
+        Node receiver = frame.getReceiver();
+        if (!(receiver instanceof DualStackNode)) {
+            return frame;
+        }
+
+        if (!receiver.isMemberOf(this)) {
+            throw new SubnetException("invalid receiver");
+        }
+
+        Node preferredNode = ((DualStackNode)receiver).getPreferredNode();
+        return new Frame(frame.getSender(), preferredNode, frame.getCommonFrame());
+    }
+
+    /**
+     * このDualStackSubnetのサブネットにフレームを転送する。
+     * 受信ノードがDualStackNodeであれば、最後にフレームを受信したアドレスに転送する。
+     * @param frame 送信するフレーム
+     * @return 全ての送信に成功した場合にはtrue、そうでなければfalse
+     * @throws SubnetException 送信ノードや受信ノードが不正な場合、あるいは送信に失敗した場合
+     */
+    @Override
+    public boolean send(Frame frame) throws SubnetException {
+        return super.send(toMemberFrame(frame));
+    }
+
+    /**
+     * このDualStackSubnetのサブネットに複数のフレームを転送する。
+     * 受信ノードがDualStackNodeであれば、最後にフレームを受信したアドレスに転送する。
+     * @param frames 送信するフレームの集合
+     * @return 全ての送信に成功した場合にはtrue、そうでなければfalse
+     * @throws SubnetException 送信ノードや受信ノードが不正な場合、あるいは送信に失敗した場合
+     */
+    @Override
+    public boolean sendBatch(Collection<Frame> frames) throws SubnetException {
+        ArrayList<Frame> memberFrames = new ArrayList<Frame>(frames.size());
+        for (Frame frame : frames) {
+            memberFrames.add(toMemberFrame(frame));
+        }
+        return super.sendBatch(memberFrames);
+    }
+}
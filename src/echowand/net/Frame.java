@@ -1,14 +1,21 @@
 package echowand.net;
 
+import echowand.common.ESV;
+
 /**
  * ネットワークに転送を行うフレーム形式
+ * <p>
+ * CommonFrameViewから生成されたFrameは、getCommonFrameが初めて呼ばれた時に共通フレームを解析する。
+ * TIDやESVの確認のみであればgetTIDやgetESVにより解析を行わずに済ませることができる。
  * @author Yoshiki Makino
  */
 public class Frame {
     private Node sender;
     private Node receiver;
-    private CommonFrame frame;
-    
+    private volatile CommonFrame frame;
+    private volatile CommonFrameView view;
+    private PooledBuffer buffer;
+
     /**
      * Frameを生成する。
      * @param sender 送信ノード
@@ -20,15 +27,152 @@ public class Frame {
         this.receiver = receiver;
         this.frame = frame;
     }
-    
+
+    /**
+     * 共通フレームのビューからFrameを生成する。
+     * 共通フレームの解析はgetCommonFrameが初めて呼ばれるまで行われない。
+     * @param sender 送信ノード
+     * @param receiver 受信ノード
+     * @param view 共通フレームのビュー
+     * @throws IllegalArgumentException viewが解析可能なフレームを参照していない場合
+     */
+    public Frame(Node sender, Node receiver, CommonFrameView view) {
+        if (!view.isWellFormed()) {
+            throw new IllegalArgumentException("invalid frame: " + view);
+        }
+
+        this.sender = sender;
+        this.receiver = receiver;
+        this.view = view;
+    }
+
+    /**
+     * 受信データを格納したバッファを保持するFrameを生成する。
+     * バッファはreleaseが呼ばれるまでこのFrameが保持する。
+     * @param sender 送信ノード
+     * @param receiver 受信ノード
+     * @param view バッファ上の共通フレームのビュー
+     * @param buffer 受信データを格納したバッファ
+     */
+    Frame(Node sender, Node receiver, CommonFrameView view, PooledBuffer buffer) {
+        this(sender, receiver, view);
+        this.buffer = buffer;
+    }
+
+    /**
+     * このFrameが保持している受信データのバッファを返す。
+     * バッファを保持していない、あるいはreleaseされた後であればnullを返す。
+     * @return 受信データのバッファ
+     */
+    public synchronized PooledBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * このFrameが保持している受信データのバッファをプールに返却する。
+     * バッファを保持していない場合には何もしない。
+     * 共通フレームがまだ解析されていなければ、返却前にビューの参照先をコピーするため、
+     * 返却後もgetCommonFrameやgetViewを利用できる。
+     */
+    public void release() {
+        PooledBuffer releasedBuffer;
+        synchronized (this) {
+            releasedBuffer = buffer;
+            buffer = null;
+
+            if (releasedBuffer != null && view != null) {
+                if (frame == null) {
+                    view = view.copy();
+                } else {
+                    view = null;
+                }
+            }
+        }
+
+        if (releasedBuffer != null) {
+            releasedBuffer.release();
+        }
+    }
+
+    /**
+     * このFrameの共通フレームのビューを返す。
+     * CommonFrameから生成された場合、あるいはバッファの返却時に不要となった場合にはnullを返す。
+     * @return 共通フレームのビュー
+     */
+    public CommonFrameView getView() {
+        return view;
+    }
+
+    /**
+     * 送信ノードを置き換えたFrameを生成する。
+     * このFrameが受信データのバッファを保持している場合には、その所有権は生成したFrameに移される。
+     * @param newSender 新しい送信ノード
+     * @return 送信ノードを置き換えたFrame
+     */
+    synchronized Frame withSender(Node newSender) {
+        Frame newFrame = new Frame(newSender, receiver, frame);
+        newFrame.view = view;
+        newFrame.buffer = buffer;
+        buffer = null;
+        return newFrame;
+    }
+
+    /**
+     * このFrameのトランザクションID(TID)を返す。
+     * 共通フレームが解析されていない場合には、解析を行わずにビューから読み出す。
+     * @return このFrameのTID
+     */
+    public short getTID() {
+        CommonFrameView v = view;
+        if (v != null) {
+            return v.getTID();
+        }
+        return getCommonFrame().getTID();
+    }
+
+    /**
+     * このFrameのESVを返す。
+     * 共通フレームが解析されていない場合には、解析を行わずにビューから読み出す。
+     * @return このFrameのESV、標準形式のペイロードでない場合にはnull
+     */
+    public ESV getESV() {
+        CommonFrameView v = view;
+        if (v != null) {
+            if (!v.isStandardPayload()) {
+                return null;
+            }
+            return v.getESV();
+        }
+        
+        CommonFrame cf = getCommonFrame();
+        if (!cf.isStandardPayload()) {
+            return null;
+        }
+        return ((StandardPayload)cf.getEDATA()).getESV();
+    }
+
     /**
      * このFrameから共通フレームを取得する。
      * @return 共通フレーム
      */
     public CommonFrame getCommonFrame() {
-        return frame;
+        CommonFrame cf = frame;
+        if (cf != null) {
+            return cf;
+        }
+
+        synchronized (this) {
+            if (frame == null) {
+                try {
+                    frame = view.toCommonFrame();
+                } catch (InvalidDataException e) {
+                    throw new IllegalStateException("invalid frame: " + view, e);
+                }
+            }
+            return frame;
+        }
     }
-    
+
     /**
      * このフレームの受信ノードを返す。
      * @return 受信ノード
@@ -36,7 +180,7 @@ public class Frame {
     public Node getReceiver() {
         return receiver;
     }
-    
+
     /**
      * このフレームの送信ノードを返す。
      * @return 送信ノード
@@ -44,7 +188,7 @@ public class Frame {
     public Node getSender() {
         return sender;
     }
-    
+
     /**
      * このフレームを文字列で表現する
      * @return フレームの文字列表現
@@ -52,6 +196,6 @@ public class Frame {
     @Override
     public String toString() {
         String format = "[Sender=%s Receiver=%s %s]";
-        return String.format(format, sender, receiver, frame);
+        return String.format(format, sender, receiver, getCommonFrame());
     }
 }
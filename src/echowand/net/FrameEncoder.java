@@ -0,0 +1,97 @@
+package echowand.net;
+
+import java.nio.ByteBuffer;
+
+/**
+ * CommonFrameを再利用可能なバッファに直接書き込むエンコーダ
+ * <p>
+ * encodeは内部のバッファにフレームを書き込み、読み出し可能な状態にしたバッファを返す。
+ * 返されたバッファは次にencodeが呼ばれるまで有効であり、フレームがバッファに収まらない場合にのみ新たなバッファを確保する。
+ * FrameEncoderはスレッドセーフではないため、複数のスレッドから利用する場合には外部で同期を行う必要がある。
+ * @author Yoshiki Makino
+ */
+public class FrameEncoder {
+    
+    /**
+     * バッファの初期容量のデフォルト
+     */
+    public static final int DEFAULT_CAPACITY = 1500;
+    
+    private ByteBuffer buffer;
+    private boolean direct;
+    
+    /**
+     * 初期容量がデフォルトのヒープバッファを利用するFrameEncoderを生成する。
+     */
+    public FrameEncoder() {
+        this(DEFAULT_CAPACITY, false);
+    }
+    
+    /**
+     * FrameEncoderを生成する。
+     * @param capacity バッファの初期容量
+     * @param direct ダイレクトバッファを利用する場合にはtrue、ヒープバッファを利用する場合にはfalse
+     */
+    public FrameEncoder(int capacity, boolean direct) {
+        this.direct = direct;
+        this.buffer = allocate(capacity);
+    }
+    
+    private ByteBuffer allocate(int capacity) {
+        if (direct) {
+            return ByteBuffer.allocateDirect(capacity);
+        } else {
+            return ByteBuffer.allocate(capacity);
+        }
+    }
+    
+    /**
+     * 現在のバッファの容量を返す。
+     * @return バッファの容量
+     */
+    public int getCapacity() {
+        return buffer.capacity();
+    }
+    
+    /**
+     * 少なくとも指定された容量を持つ内部のバッファを、位置0の空の状態にして返す。
+     * 複数のフレームを一つのバッファに続けて書き込む場合に利用する。
+     * @param capacity 必要な容量
+     * @return 内部のバッファ
+     */
+    public ByteBuffer getBuffer(int capacity) {
+        if (buffer.capacity() < capacity) {
+            buffer = allocate(capacity);
+        }
+        
+        buffer.clear();
+        return buffer;
+    }
+    
+    /**
+     * 指定されたCommonFrameを内部のバッファに書き込む。
+     * 返されるバッファの位置は0、リミットはフレームの長さに設定される。
+     * ヒープバッファを利用している場合には、返されたバッファのarrayメソッドで配列を取得できる。
+     * @param frame 書き込むCommonFrame
+     * @return フレームを書き込んだバッファ
+     */
+    public ByteBuffer encode(CommonFrame frame) {
+        ByteBuffer buffer = getBuffer(frame.size());
+        frame.writeTo(buffer);
+        buffer.flip();
+        return buffer;
+    }
+    
+    /**
+     * 指定されたCommonFrameを呼び出し側が用意したバッファの現在位置に書き込む。
+     * @param frame 書き込むCommonFrame
+     * @param dest 書き込み先のバッファ
+     * @return 書き込んだバイト数
+     * @throws java.nio.BufferOverflowException バッファの残りが不足している場合
+     */
+    public static int encode(CommonFrame frame, ByteBuffer dest) {
+        int position = dest.position();
+        frame.writeTo(dest);
+        return dest.position() - position;
+    }
+}
@@ -0,0 +1,189 @@
+package echowand.net;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * 複数の受信元からそれぞれ専用のスレッドで受信を行い、受信したフレームを一つのキューにまとめる。
+ * 受信元はソケットやサブネットなど、Receiverがフレームを受信できるものであればよい。
+ * 同じ受信元から受信したフレームの順序は保たれる。
+ * @param <S> 受信元の型
+ * @author Yoshiki Makino
+ */
+class FrameReaders<S> {
+
+    /**
+     * 受信キューの長さのデフォルト
+     */
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+    /**
+     * 受信元からフレームの受信を行う。
+     * @param <S> 受信元の型
+     */
+    interface Receiver<S> {
+        /**
+         * 指定された受信元からフレームを受信する。
+         * @param source 受信元
+         * @return 受信したFrame
+         * @throws SubnetException 無効なフレームを受信、あるいは受信に失敗した場合
+         */
+        public Frame receive(S source) throws SubnetException;
+        
+        /**
+         * 指定された受信元からの受信を継続できるかどうかを返す。
+         * @param source 受信元
+         * @return 受信を継続できる場合にはtrue、そうでなければfalse
+         */
+        public boolean isOpen(S source);
+    }
+
+    private static class Entry {
+        private Frame frame;
+        private SubnetException exception;
+
+        public Entry(Frame frame, SubnetException exception) {
+            this.frame = frame;
+            this.exception = exception;
+        }
+    }
+
+    private final Entry closedEntry = new Entry(null, new SubnetException("not enabled"));
+
+    private Receiver<S> receiver;
+    private LinkedBlockingQueue<Entry> queue;
+    private LinkedList<Thread> threads = new LinkedList<Thread>();
+    private volatile boolean closed = false;
+
+    /**
+     * FrameReadersを生成する。
+     * @param receiver 各ソケットからの受信を行うReceiver
+     * @param queueSize 受信キューの長さ
+     */
+    public FrameReaders(Receiver<S> receiver, int queueSize) {
+        this.receiver = receiver;
+        this.queue = new LinkedBlockingQueue<Entry>(queueSize);
+    }
+
+    private void read(S source) {
+        while (!closed) {
+            Entry entry;
+            try {
+                entry = new Entry(receiver.receive(source), null);
+            } catch (SubnetException e) {
+                if (closed || !receiver.isOpen(source)) {
+                    return;
+                }
+                entry = new Entry(null, e);
+            }
+
+            try {
+                queue.put(entry);
+            } catch (InterruptedException e) {
+                if (entry.frame != null) {
+                    entry.frame.release();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * 指定された受信元からの受信を行うスレッドを開始する。
+     * @param source 受信元
+     * @param name スレッドの名前
+     */
+    public synchronized void start(final S source, String name) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                read(source);
+            }
+        }, name);
+        thread.setDaemon(true);
+        threads.add(thread);
+        thread.start();
+    }
+
+    /**
+     * 受信を行っているスレッドの数を返す。
+     * @return 受信スレッドの数
+     */
+    public synchronized int countThreads() {
+        return threads.size();
+    }
+
+    /**
+     * 受信キューからフレームを取り出す。
+     * キューが空の場合には、新たにフレームを受信するまで待機する。
+     * @return 受信したFrame
+     * @throws SubnetException 無効なフレームを受信した場合、あるいはcloseが呼ばれた場合
+     */
+    public Frame take() throws SubnetException {
+        if (closed) {
+            throw closedEntry.exception;
+        }
+
+        Entry entry;
+        try {
+            entry = queue.take();
+        } catch (InterruptedException e) {
+            throw new SubnetException("catched exception", e);
+        }
+
+        if (entry == closedEntry) {
+            queue.offer(closedEntry);
+        }
+
+        if (entry.exception != null) {
+            throw entry.exception;
+        }
+        return entry.frame;
+    }
+
+    /**
+     * 全ての受信スレッドに停止を要求し、受信キューに残っているフレームを破棄する。
+     * 待機中のtakeは例外を発生させて戻る。受信元の切断は呼び出し側で行う。
+     * 受信スレッドの終了を待つ場合には、受信元を切断した後にjoinを呼び出す。
+     */
+    public synchronized void close() {
+        closed = true;
+
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+
+        for (Entry entry = queue.poll(); entry != null; entry = queue.poll()) {
+            if (entry.frame != null) {
+                entry.frame.release();
+            }
+        }
+        queue.offer(closedEntry);
+    }
+
+    /**
+     * closeの後、全ての受信スレッドが終了するまで待機する。
+     * 受信元からの受信で待機しているスレッドは、受信元が切断されるまで終了しない。
+     * 待機中に割り込まれた場合には、割り込み状態を設定して直ちに戻る。
+     */
+    public void join() {
+        Thread[] current;
+        synchronized (this) {
+            current = threads.toArray(new Thread[threads.size()]);
+        }
+
+        for (Thread thread : current) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        synchronized (this) {
+            threads.removeAll(Arrays.asList(current));
+        }
+    }
+}
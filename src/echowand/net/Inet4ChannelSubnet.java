@@ -0,0 +1,516 @@
+package echowand.net;
+
+import echowand.util.MetricsRegistry;
+import java.io.IOException;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Enumeration;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * DatagramChannelを利用したIPv4ネットワークのサブネット
+ * <p>
+ * ノンブロッキングのDatagramChannelとSelectorにより送受信を行う。
+ * 送受信にはダイレクトバッファを利用し、recvNoWaitにより待機せずに受信を行うことができる。
+ * registerメソッドにより外部のSelectorにも登録できるため、
+ * 一つのスレッドで複数のサブネットの受信を監視することも可能である。
+ * @author Yoshiki Makino
+ */
+public class Inet4ChannelSubnet implements Subnet {
+    private static final Logger logger = Logger.getLogger(Inet4ChannelSubnet.class.getName());
+    private static final String className = Inet4ChannelSubnet.class.getName();
+
+    /**
+     * ECHONET Liteが利用するIPv4マルチキャストアドレス
+     */
+    public static final String MULTICAST_ADDRESS = Inet4Subnet.MULTICAST_ADDRESS;
+
+    /**
+     * ECHONET Liteが利用するポート番号
+     */
+    public static final short  DEFAULT_PORT = Inet4Subnet.DEFAULT_PORT;
+
+    /**
+     * 受信データ用バッファの最大長のデフォルト
+     */
+    public static final short  DEFAULT_BUFSIZE = Inet4Subnet.DEFAULT_BUFSIZE;
+
+    private DatagramChannel channel;
+    private Selector selector;
+    private NetworkInterface networkInterface;
+    private Inet4Address groupAddress;
+    private Inet4Address localAddress;
+    private Inet4Node groupNode;
+    private Inet4Node localNode;
+    private final InetNodeCache nodeCache = new InetNodeCache(InetNodeCache.DEFAULT_CAPACITY) {
+        @Override
+        protected Node createNode(InetAddress addr, int port) {
+            return createRemoteNode((Inet4Address)addr, port);
+        }
+    };
+    private int bufferSize = DEFAULT_BUFSIZE;
+    private ByteBuffer recvBuffer;
+    private ByteBuffer sendBuffer;
+    private final Object recvLock = new Object();
+    private final Object sendLock = new Object();
+    private boolean enable = false;
+
+    /**
+     * Inet4ChannelSubnetを生成する。
+     * チャネルの初期化も同時に行い、このInet4ChannelSubnetを有効にする。
+     * @throws SubnetException 生成に失敗した場合
+     */
+    public Inet4ChannelSubnet() throws SubnetException {
+        initInet4ChannelSubnet(true);
+    }
+
+    /**
+     * Inet4ChannelSubnetを生成する。
+     * 与えられたdoInitがtrueであればチャネルの初期化も行い、このInet4ChannelSubnetを有効にする。
+     * doInitがfalseであればチャネルの初期化は行わず、enableが呼ばれるまで無効状態になる。
+     * @param doInit チャネルの初期化処理の有無
+     * @throws SubnetException 生成に失敗した場合
+     */
+    public Inet4ChannelSubnet(boolean doInit) throws SubnetException {
+        initInet4ChannelSubnet(doInit);
+    }
+
+    /**
+     * Inet4ChannelSubnetを生成する。
+     * 与えられたdoInitがtrueであればチャネルの初期化も行い、このInet4ChannelSubnetを有効にする。
+     * doInitがfalseであればチャネルの初期化は行わず、enableが呼ばれるまで無効状態になる。
+     * addressにより利用するネットワークインタフェースの指定を行う。
+     * @param address 利用するネットワークインタフェースにつけられたアドレス
+     * @param doInit 初期化処理を行うかどうかの指定
+     * @throws SubnetException 生成に失敗した場合
+     */
+    public Inet4ChannelSubnet(Inet4Address address, boolean doInit) throws SubnetException {
+        if (address == null) {
+            throw new SubnetException("invalid address: " + address);
+        }
+
+        try {
+            localAddress = address;
+            networkInterface = NetworkInterface.getByInetAddress(address);
+
+            if (networkInterface == null) {
+                throw new SubnetException("invalid address: " + address);
+            }
+
+            initInet4ChannelSubnet(doInit);
+        } catch (SocketException e) {
+            throw new SubnetException("catched exception", e);
+        }
+    }
+
+    /**
+     * Inet4ChannelSubnetを生成する。
+     * 与えられたdoInitがtrueであればチャネルの初期化も行い、このInet4ChannelSubnetを有効にする。
+     * doInitがfalseであればチャネルの初期化は行わず、enableが呼ばれるまで無効状態になる。
+     * networkInterfaceにより利用するネットワークインタフェースの指定を行う。
+     * @param networkInterface 利用するネットワークインタフェース
+     * @param doInit チャネルの初期化処理の有無
+     * @throws SubnetException 生成に失敗した場合
+     */
+    public Inet4ChannelSubnet(NetworkInterface networkInterface, boolean doInit) throws SubnetException {
+        if (networkInterface == null) {
+            throw new SubnetException("invalid network interface: " + networkInterface);
+        }
+
+        this.networkInterface = networkInterface;
+        initInet4ChannelSubnet(doInit);
+    }
+
+    private static void recordParseError() {
+        MetricsRegistry metrics = MetricsRegistry.getCurrent();
+        if (metrics != null) {
+            metrics.recordParseError();
+        }
+    }
+    
+    private void initInet4ChannelSubnet(boolean doInit) throws SubnetException {
+        try {
+            groupAddress = (Inet4Address)Inet4Address.getByName(MULTICAST_ADDRESS);
+            if (localAddress == null) {
+                localAddress = (Inet4Address)Inet4Address.getLocalHost();
+            }
+        } catch (UnknownHostException e) {
+            throw new SubnetException("catched exception", e);
+        }
+
+        if (doInit) {
+            initChannel();
+        }
+    }
+
+    private NetworkInterface selectNetworkInterface() throws SocketException {
+        if (networkInterface != null) {
+            return networkInterface;
+        }
+
+        NetworkInterface nif = NetworkInterface.getByInetAddress(localAddress);
+        if (nif != null && nif.isUp() && nif.supportsMulticast()) {
+            return nif;
+        }
+
+        NetworkInterface loopback = null;
+        Enumeration<NetworkInterface> nifs = NetworkInterface.getNetworkInterfaces();
+        while (nifs != null && nifs.hasMoreElements()) {
+            nif = nifs.nextElement();
+            if (!nif.isUp() || !nif.supportsMulticast()) {
+                continue;
+            }
+
+            Enumeration<InetAddress> addrs = nif.getInetAddresses();
+            while (addrs.hasMoreElements()) {
+                if (addrs.nextElement() instanceof Inet4Address) {
+                    if (!nif.isLoopback()) {
+                        return nif;
+                    } else if (loopback == null) {
+                        loopback = nif;
+                    }
+                }
+            }
+        }
+
+        return loopback;
+    }
+
+    private void initChannel() throws SubnetException {
+        try {
+            closeChannel();
+
+            NetworkInterface nif = selectNetworkInterface();
+            if (nif == null) {
+                throw new SubnetException("no available network interface");
+            }
+
+            channel = DatagramChannel.open(StandardProtocolFamily.INET);
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            channel.bind(new InetSocketAddress(DEFAULT_PORT));
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, nif);
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+            channel.join(groupAddress, nif);
+            channel.configureBlocking(false);
+
+            selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_READ);
+
+            enable = true;
+        } catch (IOException e) {
+            closeChannel();
+            throw new SubnetException("catched exception", e);
+        }
+    }
+
+    private void closeChannel() {
+        if (selector != null) {
+            try {
+                selector.close();
+            } catch (IOException e) {
+                logger.logp(Level.WARNING, className, "closeChannel", "failed to close selector", e);
+            }
+            selector = null;
+        }
+
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.logp(Level.WARNING, className, "closeChannel", "failed to close channel", e);
+            }
+            channel = null;
+        }
+
+        enable = false;
+    }
+
+    private synchronized DatagramChannel getEnabledChannel() throws SubnetException {
+        if (!enable) {
+            throw new SubnetException("not enabled");
+        }
+        return channel;
+    }
+
+    private synchronized Selector getEnabledSelector() throws SubnetException {
+        if (!enable) {
+            throw new SubnetException("not enabled");
+        }
+        return selector;
+    }
+
+    /**
+     * 設定されたネットワークインタフェースを返す。
+     * @return 設定されたネットワークインタフェース
+     */
+    public NetworkInterface getNetworkInterface() {
+        return networkInterface;
+    }
+
+    /**
+     * バッファの最大長を返す。
+     * @return バッファの最大長
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * バッファの最大長を設定する。
+     * 次の送受信から新しい長さのバッファが利用される。
+     * @param bufferSize バッファの最大長
+     */
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * このInet4ChannelSubnetが利用しているDatagramChannelを返す。
+     * 無効な状態であればnullを返す。
+     * @return 利用しているDatagramChannel
+     */
+    public synchronized DatagramChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * このInet4ChannelSubnetのチャネルを読み込み可能の監視対象としてselectorに登録する。
+     * selectorにより読み込み可能となったことを検知した後にはrecvNoWaitで受信を行う。
+     * @param selector 登録先のSelector
+     * @param attachment 生成されるSelectionKeyに付加するオブジェクト
+     * @return 生成されたSelectionKey
+     * @throws SubnetException 無効な状態、あるいは登録に失敗した場合
+     */
+    public SelectionKey register(Selector selector, Object attachment) throws SubnetException {
+        try {
+            return getEnabledChannel().register(selector, SelectionKey.OP_READ, attachment);
+        } catch (ClosedChannelException e) {
+            throw new SubnetException("catched exception", e);
+        }
+    }
+
+    /**
+     * このInet4ChannelSubnetが有効であるかどうか返す。
+     * @return 有効であればtrue、そうでなければfalse
+     */
+    public synchronized boolean isEnabled() {
+        return enable;
+    }
+
+    /**
+     * このInet4ChannelSubnetを無効にする。
+     * @return 有効から無効に変更した場合はtrue、そうでなければfalse
+     */
+    public synchronized boolean disable() {
+        if (enable) {
+            closeChannel();
+            return !enable;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * このInet4ChannelSubnetを有効にする。
+     * @return 無効から有効に変更した場合はtrue、そうでなければfalse
+     * @throws SubnetException 有効にするのに失敗した場合
+     */
+    public synchronized boolean enable() throws SubnetException {
+        if (enable) {
+            return false;
+        } else {
+            initChannel();
+            return enable;
+        }
+    }
+
+    private ByteBuffer prepareBuffer(ByteBuffer buffer, int size) {
+        if (buffer == null || buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(size);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * このInet4ChannelSubnetのサブネットにフレームを転送する。
+     * フレームの送信ノードや受信ノードがこのInet4ChannelSubnetに含まれない場合には例外が発生する。
+     * @param frame 送信するフレーム
+     * @return 送信に成功した場合にはtrue、送信バッファに空きがなく送信できなかった場合にはfalse
+     * @throws SubnetException 送信に失敗した場合
+     */
+    @Override
+    public boolean send(Frame frame) throws SubnetException {
+        DatagramChannel ch = getEnabledChannel();
+
+        CommonFrame cf = frame.getCommonFrame();
+
+        if (!frame.getSender().isMemberOf(this)) {
+            throw new SubnetException("invalid sender");
+        }
+
+        if (!frame.getReceiver().isMemberOf(this)) {
+            throw new SubnetException("invalid receiver");
+        }
+
+        try {
+            Inet4Node node = (Inet4Node) frame.getReceiver();
+            InetSocketAddress target = new InetSocketAddress(node.getAddress(), node.getPort());
+
+            synchronized (sendLock) {
+                sendBuffer = prepareBuffer(sendBuffer, Math.max(bufferSize, cf.size()));
+                cf.writeTo(sendBuffer);
+                sendBuffer.flip();
+                return ch.send(sendBuffer, target) != 0;
+            }
+        } catch (IOException e) {
+            throw new SubnetException("catched exception", e);
+        }
+    }
+
+    /**
+     * このInet4ChannelSubnetのサブネットからフレームを受信する。
+     * 受信可能なフレームが存在しない場合には待機せずにnullを返す。
+     * @return 受信したFrame、受信可能なフレームが存在しない場合にはnull
+     * @throws SubnetException 無効なフレームを受信、あるいは受信に失敗した場合
+     */
+    public Frame recvNoWait() throws SubnetException {
+        DatagramChannel ch = getEnabledChannel();
+
+        try {
+            byte[] data;
+            InetSocketAddress sender;
+
+            synchronized (recvLock) {
+                recvBuffer = prepareBuffer(recvBuffer, bufferSize);
+                recvBuffer.limit(bufferSize);
+                sender = (InetSocketAddress)ch.receive(recvBuffer);
+                if (sender == null) {
+                    return null;
+                }
+
+                recvBuffer.flip();
+                data = new byte[recvBuffer.remaining()];
+                recvBuffer.get(data);
+            }
+
+            CommonFrameView view = new CommonFrameView(data);
+            if (!view.isWellFormed()) {
+                recordParseError();
+                throw new SubnetException("invalid frame");
+            }
+
+            Node node = getRemoteNode((Inet4Address)sender.getAddress(), sender.getPort());
+            return new Frame(node, getLocalNode(), view);
+        } catch (IOException e) {
+            throw new SubnetException("catched exception", e);
+        }
+    }
+
+    /**
+     * このInet4ChannelSubnetのサブネットからフレームを受信する。
+     * 受信を行うまで待機する。
+     * @return 受信したFrame
+     * @throws SubnetException 無効なフレームを受信、あるいは受信に失敗した場合
+     */
+    @Override
+    public Frame recv() throws SubnetException {
+        for (;;) {
+            Frame frame = recvNoWait();
+            if (frame != null) {
+                return frame;
+            }
+
+            Selector sel = getEnabledSelector();
+            try {
+                sel.select();
+                sel.selectedKeys().clear();
+            } catch (ClosedSelectorException e) {
+                throw new SubnetException("not enabled");
+            } catch (IOException e) {
+                throw new SubnetException("catched exception", e);
+            }
+        }
+    }
+
+    /**
+     * リモートノードを表すNodeを返す。
+     * 同じアドレスとポート番号に対しては、キャッシュに保持されている限り同一のインスタンスを返す。
+     * @param addr リモートノードのIPv4アドレス
+     * @param port リモートノードのポート番号
+     * @return リモートノードのNode
+     */
+    public Node getRemoteNode(Inet4Address addr, int port) {
+        return nodeCache.get(addr, port);
+    }
+
+    /**
+     * リモートノードを表すNodeを返す。
+     * 同じアドレスとポート番号に対しては、キャッシュに保持されている限り同一のインスタンスを返す。
+     * @param addr リモートノードのIPv4アドレス
+     * @return リモートノードのNode
+     */
+    public Node getRemoteNode(Inet4Address addr) {
+        return nodeCache.get(addr, DEFAULT_PORT);
+    }
+
+    private Node createRemoteNode(Inet4Address addr, int port) {
+        if (port == DEFAULT_PORT) {
+            if (addr.equals(localAddress)) {
+                return getLocalNode();
+            }
+            if (addr.equals(groupAddress)) {
+                return getGroupNode();
+            }
+        }
+        return new Inet4Node(this, addr, port);
+    }
+    
+    /**
+     * リモートノードのキャッシュに保持するノード数の上限を返す。
+     * @return 保持するノード数の上限
+     */
+    public int getNodeCacheSize() {
+        return nodeCache.getCapacity();
+    }
+    
+    /**
+     * リモートノードのキャッシュに保持するノード数の上限を設定する。
+     * 上限を超えた場合には最も長い間利用されていないアドレスのノードから破棄される。
+     * @param size 保持するノード数の上限
+     */
+    public void setNodeCacheSize(int size) {
+        nodeCache.setCapacity(size);
+    }
+    
+    /**
+     * ローカルノードを表すNodeを返す。
+     * @return ローカルノードのNode
+     */
+    @Override
+    public synchronized Node getLocalNode() {
+        if (localNode == null) {
+            localNode = new Inet4Node(this, localAddress, DEFAULT_PORT);
+        }
+        return localNode;
+    }
+
+    /**
+     * グループを表すNodeを返す。
+     * このノード宛にフレームを転送するとマルチキャスト転送になる。
+     * @return グループのNode
+     */
+    @Override
+    public synchronized Node getGroupNode() {
+        if (groupNode == null) {
+            groupNode = new Inet4Node(this, groupAddress, DEFAULT_PORT);
+        }
+        return groupNode;
+    }
+}
@@ -7,18 +7,20 @@ import java.net.Inet4Address;
  * @author Yoshiki Makino
  */
 public class Inet4Node implements Node {
-    private Inet4Subnet subnet;
+    private Subnet subnet;
     private Inet4Address addr;
     private int port;
+    private int hash;
         
     /**
      * Inet4Nodeを生成する。トランスポートプロトコルは常にUDPになる。
-     * 直接生成は行わずにInet4SubnetのgetRemoteNodeメソッドの利用を推奨する。
+     * 直接生成は行わずにInet4SubnetやInet4ChannelSubnetのgetRemoteNodeメソッドの利用を推奨する。
+     * getRemoteNodeは同じアドレスとポート番号に対して同一のインスタンスを返す。
      * @param subnet このノードの存在するサブネット
      * @param addr このノードのIPv4アドレス
      * @param port このノードのポート番号
      */
-    public Inet4Node(Inet4Subnet subnet, Inet4Address addr, int port) {
+    public Inet4Node(Subnet subnet, Inet4Address addr, int port) {
         this.subnet = subnet;
         this.addr = addr;
         this.port = port;
@@ -56,6 +58,9 @@ public class Inet4Node implements Node {
     
     @Override
     public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
         if (! (o instanceof Inet4Node)) {
             return false;
         }
@@ -65,9 +70,12 @@ public class Inet4Node implements Node {
 
     @Override
     public int hashCode() {
-        int hash = 3;
-        hash = 67 * hash + (this.addr != null ? this.addr.hashCode() : 0);
-        hash = 67 * hash + this.port;
+        if (hash == 0) {
+            int h = 3;
+            h = 67 * h + (this.addr != null ? this.addr.hashCode() : 0);
+            h = 67 * h + this.port;
+            hash = h;
+        }
         return hash;
     }
 }
\ No newline at end of file
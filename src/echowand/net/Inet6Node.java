@@ -7,18 +7,20 @@ import java.net.Inet6Address;
  * @author Yoshiki Makino
  */
 public class Inet6Node implements Node {
-    private Inet6Subnet subnet;
+    private Subnet subnet;
     private Inet6Address addr;
     private int port;
+    private int hash;
         
     /**
      * Inet6Nodeを生成する。トランスポートプロトコルは常にUDPになる。
      * 直接生成は行わずにInet6SubnetのgetRemoteNodeメソッドの利用を推奨する。
+     * getRemoteNodeは同じアドレスとポート番号に対して同一のインスタンスを返す。
      * @param subnet このノードの存在するサブネット
      * @param addr このノードのIPv6アドレス
      * @param port このノードのポート番号
      */
-    public Inet6Node(Inet6Subnet subnet, Inet6Address addr, int port) {
+    public Inet6Node(Subnet subnet, Inet6Address addr, int port) {
         this.subnet = subnet;
         this.addr = addr;
         this.port = port;
@@ -56,6 +58,9 @@ public class Inet6Node implements Node {
     
     @Override
     public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
         if (! (o instanceof Inet6Node)) {
             return false;
         }
@@ -65,9 +70,12 @@ public class Inet6Node implements Node {
 
     @Override
     public int hashCode() {
-        int hash = 3;
-        hash = 67 * hash + (this.addr != null ? this.addr.hashCode() : 0);
-        hash = 67 * hash + this.port;
+        if (hash == 0) {
+            int h = 3;
+            h = 67 * h + (this.addr != null ? this.addr.hashCode() : 0);
+            h = 67 * h + this.port;
+            hash = h;
+        }
         return hash;
     }
 }
\ No newline at end of file
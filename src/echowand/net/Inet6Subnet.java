@@ -1,13 +1,17 @@
 package echowand.net;
 
+import echowand.util.MetricsRegistry;
 import java.io.IOException;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.LinkedList;
 
 /**
  * IPv6ネットワークのサブネット
  * @author Yoshiki Makino
  */
-public class Inet6Subnet implements Subnet {
+public class Inet6Subnet implements BatchSubnet {
     
     /**
      * ECHONET Liteが利用するIPv6マルチキャストアドレス
@@ -28,9 +32,21 @@ public class Inet6Subnet implements Subnet {
     private NetworkInterface networkInterface;
     private Inet6Address groupAddress;
     private Inet6Address localAddress;
-    private Inet6Node groupNode;
-    private Inet6Node localNode;
+    private volatile Inet6Node groupNode;
+    private volatile Inet6Node localNode;
+    private final InetNodeCache nodeCache = new InetNodeCache(InetNodeCache.DEFAULT_CAPACITY) {
+        @Override
+        protected Node createNode(InetAddress addr, int port) {
+            return createRemoteNode((Inet6Address)addr, port);
+        }
+    };
     private int bufferSize = DEFAULT_BUFSIZE;
+    private volatile BufferPool bufferPool;
+    private final FrameEncoder encoder = new FrameEncoder();
+    private DatagramPacket sendPacket;
+    private int receiverCount = 0;
+    private LinkedList<DatagramSocket> unicastSockets = new LinkedList<DatagramSocket>();
+    private FrameReaders<DatagramSocket> readers;
     private boolean enable = false;
     
     /**
@@ -99,6 +115,13 @@ public class Inet6Subnet implements Subnet {
         initInet6Subnet(doInit);
     }
     
+    private static void recordParseError() {
+        MetricsRegistry metrics = MetricsRegistry.getCurrent();
+        if (metrics != null) {
+            metrics.recordParseError();
+        }
+    }
+    
     private synchronized void setGroupAddress(Inet6Address address) {
         groupAddress = address;
     }
@@ -136,7 +159,12 @@ public class Inet6Subnet implements Subnet {
             
             multicastSocket.joinGroup(getGroupAddress());
             multicastSocket.setLoopbackMode(false);
-            multicastSocket.setReuseAddress(false);
+            
+            if (receiverCount > 0) {
+                initReaders();
+            } else {
+                multicastSocket.setReuseAddress(false);
+            }
             
             enable = true;
         } catch (BindException e) {
@@ -172,12 +200,116 @@ public class Inet6Subnet implements Subnet {
         this.bufferSize = bufferSize;
     }
     
+    private void initReaders() throws IOException {
+        getLocalNode();
+        getGroupNode();
+        
+        int count = ReusePortSockets.isSupported() ? receiverCount : 1;
+        InetSocketAddress address = new InetSocketAddress(localAddress, DEFAULT_PORT);
+        for (int i = 0; i < count; i++) {
+            unicastSockets.add(ReusePortSockets.open(StandardProtocolFamily.INET6, address));
+        }
+        
+        readers = new FrameReaders<DatagramSocket>(new FrameReaders.Receiver<DatagramSocket>() {
+            @Override
+            public Frame receive(DatagramSocket socket) throws SubnetException {
+                return Inet6Subnet.this.receive(socket);
+            }
+            
+            @Override
+            public boolean isOpen(DatagramSocket socket) {
+                return !socket.isClosed();
+            }
+        }, FrameReaders.DEFAULT_QUEUE_SIZE);
+        
+        readers.start(multicastSocket, "Inet6Subnet-multicast");
+        for (int i = 0; i < unicastSockets.size(); i++) {
+            readers.start(unicastSockets.get(i), "Inet6Subnet-unicast-" + i);
+        }
+    }
+    
     private void closeSocket() {
+        FrameReaders<DatagramSocket> closedReaders = readers;
+        if (readers != null) {
+            readers.close();
+            readers = null;
+        }
+        
+        for (DatagramSocket socket : unicastSockets) {
+            socket.close();
+        }
+        unicastSockets.clear();
+        
         if (multicastSocket != null) {
             multicastSocket.close();
             multicastSocket = null;
             enable = false;
         }
+        
+        if (closedReaders != null) {
+            closedReaders.join();
+        }
+    }
+    
+    /**
+     * ユニキャスト受信用のソケットの数を返す。
+     * @return ユニキャスト受信用のソケットの数、0であれば追加のソケットを利用しない
+     */
+    public synchronized int getReceiverCount() {
+        return receiverCount;
+    }
+    
+    /**
+     * ユニキャスト受信用のソケットの数を設定する。
+     * 1以上を設定すると、ローカルアドレスにSO_REUSEPORTを設定した指定数のソケットを割り当て、
+     * マルチキャスト受信用のソケットと合わせてそれぞれ専用のスレッドで受信を行うようになる。
+     * recvはそれらのスレッドが受信したフレームを一つのキューから取り出す。
+     * 同じノードからのフレームはカーネルによって同じソケットに振り分けられるため、ノード毎の順序は保たれる。
+     * SO_REUSEPORTが利用できない環境ではユニキャスト受信用のソケットは1つになる。
+     * 設定は次にソケットの初期化を行った時に有効になる。
+     * @param count ユニキャスト受信用のソケットの数、0であれば追加のソケットを利用しない
+     */
+    public synchronized void setReceiverCount(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("invalid count: " + count);
+        }
+        receiverCount = count;
+    }
+    
+    /**
+     * 受信スレッドの数を返す。
+     * ユニキャスト受信用のソケットを利用していない場合には0を返す。
+     * @return 受信スレッドの数
+     */
+    public synchronized int countReaders() {
+        if (readers == null) {
+            return 0;
+        }
+        return readers.countThreads();
+    }
+    
+    private synchronized FrameReaders<DatagramSocket> getReaders() {
+        return readers;
+    }
+    
+    /**
+     * 受信に利用するバッファプールを返す。
+     * @return 受信に利用するバッファプール、設定されていなければnull
+     */
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+    
+    /**
+     * 受信に利用するバッファプールを設定する。
+     * バッファプールが設定されている場合、recvはプールから取得したバッファに直接受信を行い、
+     * 受信したFrameはreleaseが呼ばれるまでそのバッファを保持し、共通フレームの解析もバッファ上で行う。
+     * この場合、受信データの最大長はバッファプールのバッファの長さになる。
+     * nullを設定すると受信のたびにバッファを生成する動作に戻る。
+     * @param bufferPool 受信に利用するバッファプール
+     */
+    public synchronized void setBufferPool(BufferPool bufferPool) {
+        this.bufferPool = bufferPool;
     }
     
     /**
@@ -229,7 +361,6 @@ public class Inet6Subnet implements Subnet {
         }
 
         CommonFrame cf = frame.getCommonFrame();
-        byte[] data = cf.toBytes();
 
         if (!frame.getSender().isMemberOf(this)) {
             throw new SubnetException("invalid sender");
@@ -243,9 +374,18 @@ public class Inet6Subnet implements Subnet {
             Inet6Node node = (Inet6Node) frame.getReceiver();
             Inet6Address addr = (Inet6Address)node.getAddress();
             int port = node.getPort();
-            DatagramPacket packet = new DatagramPacket(data, data.length, addr, port);
             
-            multicastSocket.send(packet);
+            synchronized (encoder) {
+                ByteBuffer buffer = encoder.encode(cf);
+                if (sendPacket == null) {
+                    sendPacket = new DatagramPacket(buffer.array(), buffer.limit(), addr, port);
+                } else {
+                    sendPacket.setData(buffer.array(), 0, buffer.limit());
+                    sendPacket.setAddress(addr);
+                    sendPacket.setPort(port);
+                }
+                multicastSocket.send(sendPacket);
+            }
 
             return true;
         } catch (IOException e) {
@@ -253,6 +393,62 @@ public class Inet6Subnet implements Subnet {
         }
     }
     
+    /**
+     * このInet6Subnetのサブネットに複数のフレームを転送する。
+     * 全てのフレームの検証を行った後に一つのバッファにまとめて変換し、順番に送信する。
+     * フレームの送信ノードや受信ノードがこのInet6Subnetに含まれない場合には、何も送信せずに例外が発生する。
+     * @param frames 送信するフレームの集合
+     * @return 常にtrue
+     * @throws SubnetException 送信に失敗した場合
+     */
+    @Override
+    public boolean sendBatch(Collection<Frame> frames) throws SubnetException {
+        if (!isEnabled()) {
+            throw new SubnetException("not enabled");
+        }
+        
+        int total = 0;
+        for (Frame frame : frames) {
+            if (!frame.getSender().isMemberOf(this)) {
+                throw new SubnetException("invalid sender");
+            }
+
+            if (!frame.getReceiver().isMemberOf(this)) {
+                throw new SubnetException("invalid receiver");
+            }
+            
+            total += frame.getCommonFrame().size();
+        }
+        
+        try {
+            synchronized (encoder) {
+                ByteBuffer buffer = encoder.getBuffer(total);
+                for (Frame frame : frames) {
+                    frame.getCommonFrame().writeTo(buffer);
+                }
+                
+                int offset = 0;
+                for (Frame frame : frames) {
+                    Inet6Node node = (Inet6Node) frame.getReceiver();
+                    int end = offset + frame.getCommonFrame().size();
+                    if (sendPacket == null) {
+                        sendPacket = new DatagramPacket(buffer.array(), offset, end - offset);
+                    } else {
+                        sendPacket.setData(buffer.array(), offset, end - offset);
+                    }
+                    sendPacket.setAddress(node.getAddress());
+                    sendPacket.setPort(node.getPort());
+                    multicastSocket.send(sendPacket);
+                    offset = end;
+                }
+            }
+            
+            return true;
+        } catch (IOException e) {
+            throw new SubnetException("catched exception", e);
+        }
+    }
+    
     /**
      * このInet6Subnetのサブネットからフレームを受信する。
      * 受信を行うまで待機する。
@@ -265,46 +461,139 @@ public class Inet6Subnet implements Subnet {
             throw new SubnetException("not enabled");
         }
         
+        FrameReaders<DatagramSocket> currentReaders = getReaders();
+        if (currentReaders != null) {
+            return currentReaders.take();
+        }
+        
+        return receive(multicastSocket);
+    }
+    
+    private Frame receive(DatagramSocket socket) throws SubnetException {
+        for (;;) {
+            Frame frame = receiveOnce(socket);
+            if (frame != null) {
+                return frame;
+            }
+        }
+    }
+    
+    private Frame receiveOnce(DatagramSocket socket) throws SubnetException {
+        BufferPool pool = getBufferPool();
+        if (pool != null) {
+            return recvPooled(pool, socket);
+        }
+        
         try {
             byte[] packetData = new byte[this.bufferSize];
 
             DatagramPacket packet = new DatagramPacket(packetData, packetData.length);
-            multicastSocket.receive(packet);
+            socket.receive(packet);
+            if (!(packet.getAddress() instanceof Inet6Address)) {
+                return null;
+            }
+            
             int len = packet.getLength();
             byte[] data = new byte[len];
             System.arraycopy(packetData, 0, data, 0, len);
 
-            CommonFrame cf = new CommonFrame(data);
+            CommonFrameView view = new CommonFrameView(data);
+            if (!view.isWellFormed()) {
+                recordParseError();
+                throw new SubnetException("invalid frame");
+            }
+            
             Inet6Address addr = (Inet6Address)packet.getAddress();
             int port = packet.getPort();
 
             Node node = getRemoteNode(addr, port);
-            Frame frame = new Frame(node, getLocalNode(), cf);
+            Frame frame = new Frame(node, getLocalNode(), view);
             return frame;
         } catch (IOException e) {
             throw new SubnetException("catched exception", e);
-        } catch (InvalidDataException e) {
-            throw new SubnetException("invalid frame", e);
+        }
+    }
+    
+    private Frame recvPooled(BufferPool pool, DatagramSocket socket) throws SubnetException {
+        PooledBuffer buffer = pool.acquire();
+        
+        try {
+            DatagramPacket packet = buffer.getPacket();
+            socket.receive(packet);
+            if (!(packet.getAddress() instanceof Inet6Address)) {
+                buffer.release();
+                return null;
+            }
+            
+            int len = packet.getLength();
+            buffer.setLength(len);
+            
+            CommonFrameView view = new CommonFrameView(buffer.getBytes(), 0, len);
+            if (!view.isWellFormed()) {
+                buffer.release();
+                recordParseError();
+                throw new SubnetException("invalid frame");
+            }
+            
+            Inet6Address addr = (Inet6Address)packet.getAddress();
+            int port = packet.getPort();
+            
+            Node node = getRemoteNode(addr, port);
+            return new Frame(node, getLocalNode(), view, buffer);
+        } catch (IOException e) {
+            buffer.release();
+            throw new SubnetException("catched exception", e);
         }
     }
     
     /**
-     * リモートノードを表すNodeを生成する。
+     * リモートノードを表すNodeを返す。
+     * 同じアドレスとポート番号に対しては、キャッシュに保持されている限り同一のインスタンスを返す。
      * @param addr リモートノードのIPv6アドレス
      * @param port リモートノードのポート番号
      * @return リモートノードのNode
      */
     public Node getRemoteNode(Inet6Address addr, int port) {
-        return new Inet6Node(this, addr, port);
+        return nodeCache.get(addr, port);
     }
     
     /**
-     * リモートノードを表すNodeを生成する。
+     * リモートノードを表すNodeを返す。
+     * 同じアドレスとポート番号に対しては、キャッシュに保持されている限り同一のインスタンスを返す。
      * @param addr リモートノードのIPv6アドレス
      * @return リモートノードのNode
      */
     public Node getRemoteNode(Inet6Address addr) {
-        return new Inet6Node(this, addr, DEFAULT_PORT);
+        return nodeCache.get(addr, DEFAULT_PORT);
+    }
+    
+    private Node createRemoteNode(Inet6Address addr, int port) {
+        if (port == DEFAULT_PORT) {
+            if (addr.equals(localAddress)) {
+                return getLocalNode();
+            }
+            if (addr.equals(groupAddress)) {
+                return getGroupNode();
+            }
+        }
+        return new Inet6Node(this, addr, port);
+    }
+    
+    /**
+     * リモートノードのキャッシュに保持するノード数の上限を返す。
+     * @return 保持するノード数の上限
+     */
+    public int getNodeCacheSize() {
+        return nodeCache.getCapacity();
+    }
+    
+    /**
+     * リモートノードのキャッシュに保持するノード数の上限を設定する。
+     * 上限を超えた場合には最も長い間利用されていないアドレスのノードから破棄される。
+     * @param size 保持するノード数の上限
+     */
+    public void setNodeCacheSize(int size) {
+        nodeCache.setCapacity(size);
     }
     
     /**
@@ -312,11 +601,17 @@ public class Inet6Subnet implements Subnet {
      * @return ローカルノードのNode
      */
     @Override
-    public synchronized Node getLocalNode() {
-        if (localNode == null) {
-            localNode = new Inet6Node(this, localAddress, DEFAULT_PORT);
+    public Node getLocalNode() {
+        Inet6Node node = localNode;
+        if (node == null) {
+            synchronized (this) {
+                if (localNode == null) {
+                    localNode = new Inet6Node(this, localAddress, DEFAULT_PORT);
+                }
+                node = localNode;
+            }
         }
-        return localNode;
+        return node;
     }
     
     /**
@@ -325,10 +620,16 @@ public class Inet6Subnet implements Subnet {
      * @return グループのNode
      */
     @Override
-    public synchronized Node getGroupNode() {
-        if (groupNode == null) {
-            groupNode = new Inet6Node(this, groupAddress, DEFAULT_PORT);
+    public Node getGroupNode() {
+        Inet6Node node = groupNode;
+        if (node == null) {
+            synchronized (this) {
+                if (groupNode == null) {
+                    groupNode = new Inet6Node(this, groupAddress, DEFAULT_PORT);
+                }
+                node = groupNode;
+            }
         }
-        return groupNode;
+        return node;
     }
 }
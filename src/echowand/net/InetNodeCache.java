@@ -0,0 +1,170 @@
+package echowand.net;
+
+import java.net.InetAddress;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * IPアドレスとポート番号に対応するノードを保持するキャッシュ
+ * <p>
+ * サブネットごとに一つ生成され、同じアドレスとポート番号に対しては同一のNodeインスタンスを返す。
+ * 保持するノード数は上限を持ち、上限を超えた場合は最も長い間利用されていないアドレスのノードから破棄する。
+ * 一つのアドレスのノードだけで上限を超えた場合には、そのアドレスの古いポート番号のノードを破棄する。
+ * 破棄されたノードと新たに生成されたノードはequalsにより等しいと判定される。
+ * createNodeはロックを保持せずに呼び出されるため、サブネットのロックを取得しても構わない。
+ * @author Yoshiki Makino
+ */
+abstract class InetNodeCache {
+    
+    /**
+     * 保持するノード数の上限のデフォルト
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+    
+    private static class Entry {
+        final int port;
+        final Node node;
+        Entry next;
+        
+        Entry(int port, Node node, Entry next) {
+            this.port = port;
+            this.node = node;
+            this.next = next;
+        }
+    }
+    
+    private int capacity;
+    private int count;
+    private LinkedHashMap<InetAddress, Entry> entries;
+    
+    /**
+     * InetNodeCacheを生成する。
+     * @param capacity 保持するノード数の上限
+     */
+    public InetNodeCache(int capacity) {
+        this.capacity = capacity;
+        this.count = 0;
+        this.entries = new LinkedHashMap<InetAddress, Entry>(16, 0.75f, true);
+    }
+    
+    /**
+     * キャッシュに存在しないノードを生成する。
+     * @param addr ノードのアドレス
+     * @param port ノードのポート番号
+     * @return 生成したノード
+     */
+    protected abstract Node createNode(InetAddress addr, int port);
+    
+    private Node find(InetAddress addr, int port) {
+        for (Entry entry = entries.get(addr); entry != null; entry = entry.next) {
+            if (entry.port == port) {
+                return entry.node;
+            }
+        }
+        return null;
+    }
+    
+    private static int length(Entry head) {
+        int length = 0;
+        for (Entry entry = head; entry != null; entry = entry.next) {
+            length++;
+        }
+        return length;
+    }
+    
+    private void trim(InetAddress recent) {
+        Iterator<Map.Entry<InetAddress, Entry>> iterator = entries.entrySet().iterator();
+        while (count > capacity && iterator.hasNext()) {
+            Map.Entry<InetAddress, Entry> eldest = iterator.next();
+            if (!eldest.getKey().equals(recent)) {
+                count -= length(eldest.getValue());
+                iterator.remove();
+            }
+        }
+        
+        if (count > capacity) {
+            if (capacity == 0) {
+                entries.clear();
+                count = 0;
+                return;
+            }
+            
+            Entry last = entries.get(recent);
+            for (int i = 1; i < capacity; i++) {
+                last = last.next;
+            }
+            last.next = null;
+            count = capacity;
+        }
+    }
+    
+    /**
+     * 指定されたアドレスとポート番号に対応するノードを返す。
+     * キャッシュに存在しなければcreateNodeにより生成し、キャッシュに追加する。
+     * ノードの生成はロックの外で行い、その間に他のスレッドが同じノードを追加した場合にはそちらを返す。
+     * @param addr ノードのアドレス
+     * @param port ノードのポート番号
+     * @return 対応するノード
+     */
+    public Node get(InetAddress addr, int port) {
+        synchronized (this) {
+            Node node = find(addr, port);
+            if (node != null) {
+                return node;
+            }
+        }
+        
+        Node newNode = createNode(addr, port);
+        
+        synchronized (this) {
+            Node node = find(addr, port);
+            if (node != null) {
+                return node;
+            }
+            
+            entries.put(addr, new Entry(port, newNode, entries.get(addr)));
+            count++;
+            trim(addr);
+            return newNode;
+        }
+    }
+    
+    /**
+     * 保持しているノード数を返す。
+     * @return 保持しているノード数
+     */
+    public synchronized int size() {
+        return count;
+    }
+    
+    /**
+     * 保持するノード数の上限を返す。
+     * @return 保持するノード数の上限
+     */
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+    
+    /**
+     * 保持するノード数の上限を設定する。
+     * 現在の保持数が上限を超える場合には、利用されていない順に破棄する。
+     * @param capacity 保持するノード数の上限
+     */
+    public synchronized void setCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("invalid capacity: " + capacity);
+        }
+        
+        this.capacity = capacity;
+        trim(null);
+    }
+    
+    /**
+     * 保持している全てのノードを破棄する。
+     */
+    public synchronized void clear() {
+        entries.clear();
+        count = 0;
+    }
+}
@@ -1,15 +1,19 @@
 package echowand.net;
 
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * プログラム内でのみ利用可能な簡易ブロードキャストネットワーク
+ * <p>
+ * 名前を持つポートは経路表に登録され、その名前のInternalNode宛のフレームはそのポートにのみ転送される。
+ * それ以外のフレームは全てのポートに転送される。
+ * 転送されるフレームは送信時に一度だけ複製され、全ての受信ポートで同じインスタンスが共有される。
  * @author Yoshiki Makino
  */
 public class InternalNetwork {
     private static final String DEFAULT_NAME = "DEFAULT";
-    private static HashMap<String, InternalNetwork> networks = new HashMap<String, InternalNetwork>();
+    private static ConcurrentHashMap<String, InternalNetwork> networks = new ConcurrentHashMap<String, InternalNetwork>();
     
     /**
      * デフォルトのInternalNetworkを返す。
@@ -29,14 +33,18 @@ public class InternalNetwork {
         InternalNetwork network = networks.get(name);
         
         if (network == null) {
-            network = new InternalNetwork();
-            networks.put(name, network);
+            InternalNetwork newNetwork = new InternalNetwork();
+            network = networks.putIfAbsent(name, newNetwork);
+            if (network == null) {
+                network = newNetwork;
+            }
         }
         
         return network;
     }
     
-    private LinkedList<InternalNetworkPort> ports;
+    private CopyOnWriteArrayList<InternalNetworkPort> ports;
+    private ConcurrentHashMap<String, InternalNetworkPort> routes;
 
     /**
      * InternalNetworkを生成する。
@@ -44,7 +52,8 @@ public class InternalNetwork {
      * getDefault または getByNameの利用を推奨する。
      */
     public InternalNetwork() {
-        ports = new LinkedList<InternalNetworkPort>();
+        ports = new CopyOnWriteArrayList<InternalNetworkPort>();
+        routes = new ConcurrentHashMap<String, InternalNetworkPort>();
     }
 
     /**
@@ -61,6 +70,10 @@ public class InternalNetwork {
             return true;
         }
         
+        if (port.getName() != null) {
+            routes.put(port.getName(), port);
+        }
+        
         return ports.add(port);
     }
 
@@ -74,19 +87,63 @@ public class InternalNetwork {
             port.setNetwork(null);
         }
         
+        if (port.getName() != null) {
+            routes.remove(port.getName(), port);
+        }
+        
         return ports.remove(port);
     }
     
 
+    /**
+     * 指定された名前のポートを返す。
+     * @param name ポートの名前
+     * @return 指定された名前のポート、存在しなければnull
+     */
+    public InternalNetworkPort getPort(String name) {
+        return routes.get(name);
+    }
+
     /**
      * このInternalNetworkにフレームを転送する。
      * このInternalNetworkに接続している全てのポートの受信キューに、指定されたフレームが追加される。
+     * フレームは一度だけ複製され、全てのポートで同じインスタンスが共有される。
      * @param frame 転送するフレーム
      * @throws SubnetException 転送に失敗した場合
      */
-    public synchronized void broadcast(Frame frame) throws SubnetException {
+    public void broadcast(Frame frame) throws SubnetException {
+        Frame sharedFrame = cloneFrame(frame);
+        for (InternalNetworkPort port : ports) {
+            port.deliver(sharedFrame);
+        }
+    }
+
+    /**
+     * 複製済みのフレームを受信ノードに応じて転送する。
+     * 受信ノードの名前を持つポートが存在すればそのポートにのみ、そうでなければ全てのポートに転送する。
+     * @param frame 転送する複製済みのフレーム
+     * @throws SubnetException 転送に失敗した場合
+     */
+    void route(Frame frame) throws SubnetException {
+        Node receiver = frame.getReceiver();
+        if (receiver instanceof InternalNode) {
+            InternalNetworkPort port = routes.get(((InternalNode)receiver).getName());
+            if (port != null) {
+                port.deliver(frame);
+                return;
+            }
+        }
+
         for (InternalNetworkPort port : ports) {
-            port.enqueue(frame);
+            port.deliver(frame);
+        }
+    }
+
+    private static Frame cloneFrame(Frame frame) throws SubnetException {
+        try {
+            return InternalNetworkPort.cloneFrame(frame);
+        } catch (InvalidDataException e) {
+            throw new SubnetException("invalid frame", e);
         }
     }
-}
\ No newline at end of file
+}
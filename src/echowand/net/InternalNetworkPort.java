@@ -1,5 +1,7 @@
 package echowand.net;
 
+import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.concurrent.LinkedBlockingQueue;
 
 /**
@@ -8,11 +10,50 @@ import java.util.concurrent.LinkedBlockingQueue;
  */
 public class InternalNetworkPort {
     private InternalNetwork network;
+    private String name;
     private LinkedBlockingQueue<Frame> loopbackQueue = new LinkedBlockingQueue<Frame>();
+    
+    /**
+     * 名前を持たないInternalNetworkPortを生成する。
+     * このポートはInternalNetworkに転送される全てのフレームを受信する。
+     */
+    public InternalNetworkPort() {
+        this(null);
+    }
+    
+    /**
+     * 指定された名前を持つInternalNetworkPortを生成する。
+     * 接続先のInternalNetworkは、この名前を持つInternalNode宛のフレームをこのポートにのみ転送する。
+     * @param name このポートの名前
+     */
+    public InternalNetworkPort(String name) {
+        this.name = name;
+    }
 
-    private Frame cloneFrame(Frame frame) throws InvalidDataException {
-        CommonFrame cf = new CommonFrame(frame.getCommonFrame().toBytes());
-        return new Frame(frame.getSender(), frame.getReceiver(), cf);
+    static Frame cloneFrame(Frame frame) throws InvalidDataException {
+        byte[] bytes;
+        CommonFrameView view = frame.getView();
+        if (view != null) {
+            bytes = view.toBytes();
+        } else {
+            CommonFrame cf = frame.getCommonFrame();
+            bytes = new byte[cf.size()];
+            FrameEncoder.encode(cf, ByteBuffer.wrap(bytes));
+        }
+        
+        CommonFrameView clonedView = new CommonFrameView(bytes);
+        if (!clonedView.isWellFormed()) {
+            throw new InvalidDataException("invalid frame");
+        }
+        return new Frame(frame.getSender(), frame.getReceiver(), clonedView);
+    }
+    
+    /**
+     * このポートの名前を返す。
+     * @return このポートの名前、名前を持たない場合にはnull
+     */
+    public String getName() {
+        return name;
     }
     
     /**
@@ -22,11 +63,12 @@ public class InternalNetworkPort {
      * @return 設定に精巧した場合はtrue、失敗した場合にはfalse
      */
     public synchronized boolean setNetwork(InternalNetwork network) {
-        if (this.network != null) {
-            network.removePort(this);
-        }
-
+        InternalNetwork oldNetwork = this.network;
         this.network = network;
+        
+        if (oldNetwork != null && oldNetwork != network) {
+            oldNetwork.removePort(this);
+        }
 
         if (network == null) {
             return true;
@@ -60,9 +102,23 @@ public class InternalNetworkPort {
         }
     }
     
+    /**
+     * 複製済みのフレームを複製せずに受信キューに追加する。
+     * フレームは他のポートと共有される。
+     * @param frame 受信キューに追加するフレーム
+     * @throws SubnetException 追加に失敗した場合
+     */
+    void deliver(Frame frame) throws SubnetException {
+        try {
+            loopbackQueue.put(frame);
+        } catch (InterruptedException e) {
+            throw new SubnetException("catched exception", e);
+        }
+    }
+    
     /**
      * このポートを用いてフレームを送信する。
-     * 指定されたフレームはこのポートが関連付けられたInternalNetworkを経由して他のポートに転送される。
+     * 指定されたフレームはこのポートが関連付けられたInternalNetworkを経由して、受信ノードに応じたポートに転送される。
      * @param frame 転送するフレーム
      * @return  キューへの追加が成功した場合にはtrue、それ以外の場合はfalse
      * @throws SubnetException 転送に失敗した場合
@@ -70,7 +126,33 @@ public class InternalNetworkPort {
     public synchronized boolean send(Frame frame) throws SubnetException {
         try {
             if (network != null) {
-                network.broadcast(cloneFrame(frame));
+                network.route(cloneFrame(frame));
+            }
+            return true;
+        } catch (InvalidDataException e) {
+            throw new SubnetException("invalid frame", e);
+        }
+    }
+    
+    /**
+     * このポートを用いて複数のフレームを順番に送信する。
+     * 全てのフレームの複製を作成した後に、まとめてInternalNetworkに転送する。
+     * @param frames 転送するフレームの集合
+     * @return  キューへの追加が成功した場合にはtrue、それ以外の場合はfalse
+     * @throws SubnetException 転送に失敗した場合
+     */
+    public synchronized boolean send(Collection<Frame> frames) throws SubnetException {
+        try {
+            if (network != null) {
+                Frame[] clonedFrames = new Frame[frames.size()];
+                int i = 0;
+                for (Frame frame : frames) {
+                    clonedFrames[i++] = cloneFrame(frame);
+                }
+                
+                for (Frame frame : clonedFrames) {
+                    network.route(frame);
+                }
             }
             return true;
         } catch (InvalidDataException e) {
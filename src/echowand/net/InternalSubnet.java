@@ -1,11 +1,13 @@
 package echowand.net;
 
+import java.util.Collection;
+
 /**
  * プログラム内でのみ有効なサブネット
  * InternalSubnetを生成する度にユニークなIDが割り振られる。
  * @author Yoshiki Makino
  */
-public class InternalSubnet implements Subnet {
+public class InternalSubnet implements BatchSubnet {
     private static int nextId = 0;
     
     private InternalNetwork network;
@@ -39,11 +41,15 @@ public class InternalSubnet implements Subnet {
     
     private void initialize(InternalNetwork network) {
         id = getNextId();
-        port = new InternalNetworkPort();
+        port = new InternalNetworkPort(getLocalNodeName());
         this.network = network;
         network.addPort(port);
     }
     
+    private String getLocalNodeName() {
+        return "LOCAL(" + id + ")";
+    }
+    
     private void validateSender(Frame frame) throws SubnetException {
         if (!frame.getSender().isMemberOf(this)) {
             throw new SubnetException("invalid sender");
@@ -58,7 +64,16 @@ public class InternalSubnet implements Subnet {
     
     private boolean shouldLocalNodeReceive(Frame frame) {
             Node node = frame.getReceiver();
-            return (node == getGroupNode() || node == getLocalNode());
+            return (node == getGroupNode() || getLocalNode().equals(node));
+    }
+    
+    private Frame toLocalFrame(Frame frame) {
+        Node sender = frame.getSender();
+        if (sender.isMemberOf(this) || !(sender instanceof InternalNode)) {
+            return frame;
+        }
+        
+        return frame.withSender(getRemoteNode(((InternalNode)sender).getName()));
     }
     
     /**
@@ -83,9 +98,26 @@ public class InternalSubnet implements Subnet {
         return port.send(frame);
     }
 
+    /**
+     * このInternalSubnetのサブネットに複数のフレームを転送する。
+     * フレームの送信ノードや受信ノードがこのInternalSubnetに含まれない場合には、何も送信せずに例外が発生する。
+     * @param frames 送信するフレームの集合
+     * @return 送信に成功した場合はtrue、そうでなければfalse
+     * @throws SubnetException 送信に失敗した場合
+     */
+    @Override
+    public boolean sendBatch(Collection<Frame> frames) throws SubnetException {
+        for (Frame frame : frames) {
+            validateSender(frame);
+            validateReceiver(frame);
+        }
+        return port.send(frames);
+    }
+
     /**
      * このInternalSubnetのサブネットからフレームを受信する。
      * 受信を行うまで待機する。
+     * 受信したFrameの送信ノードは、このInternalSubnetのノードに置き換えられる。
      * @return 受信したFrame
      * @throws SubnetException 無効なフレームを受信、あるいは受信に失敗した場合
      */
@@ -95,7 +127,7 @@ public class InternalSubnet implements Subnet {
             Frame frame = port.recv();
             
             if (shouldLocalNodeReceive(frame)) {
-                return frame;
+                return toLocalFrame(frame);
             }
         }
     }
@@ -104,6 +136,7 @@ public class InternalSubnet implements Subnet {
     /**
      * このInternalSubnetのサブネットからフレームを受信する。
      * 受信フレームがない場合には即座に戻る。
+     * 受信したFrameの送信ノードは、このInternalSubnetのノードに置き換えられる。
      * @return 受信したFrame、もし受信フレームがない場合にはnull
      * @throws SubnetException 無効なフレームを受信、あるいは受信に失敗した場合
      */
@@ -116,7 +149,7 @@ public class InternalSubnet implements Subnet {
             }
             
             if (shouldLocalNodeReceive(frame)) {
-                return frame;
+                return toLocalFrame(frame);
             }
         }
     }
@@ -137,7 +170,7 @@ public class InternalSubnet implements Subnet {
     @Override
     public synchronized Node getLocalNode() {
         if (localNode == null) {
-            localNode = new InternalNode(this, "LOCAL(" + id + ")");
+            localNode = new InternalNode(this, getLocalNodeName());
         }
         return localNode;
     }
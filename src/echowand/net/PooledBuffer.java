@@ -0,0 +1,80 @@
+package echowand.net;
+
+import java.net.DatagramPacket;
+
+/**
+ * BufferPoolから取得したバッファ
+ * <p>
+ * バイト配列の先頭からgetLengthで返される長さまでが有効なデータである。
+ * releaseを呼び出した後はバイト配列の内容が他の受信により上書きされるため、参照してはならない。
+ * @author Yoshiki Makino
+ */
+public class PooledBuffer {
+    private BufferPool pool;
+    private byte[] bytes;
+    private int length;
+    private DatagramPacket packet;
+    private boolean released;
+    
+    PooledBuffer(BufferPool pool, byte[] bytes) {
+        this.pool = pool;
+        this.bytes = bytes;
+    }
+    
+    synchronized void reset() {
+        length = 0;
+        released = false;
+    }
+    
+    DatagramPacket getPacket() {
+        if (packet == null) {
+            packet = new DatagramPacket(bytes, bytes.length);
+        } else {
+            packet.setData(bytes, 0, bytes.length);
+        }
+        return packet;
+    }
+    
+    void setLength(int length) {
+        this.length = length;
+    }
+    
+    /**
+     * バッファのバイト配列を返す。
+     * コピーは行わないため、返されたバイト配列はrelease後に再利用される。
+     * @return バッファのバイト配列
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+    
+    /**
+     * バッファに格納された有効なデータの長さを返す。
+     * @return 有効なデータの長さ
+     */
+    public int getLength() {
+        return length;
+    }
+    
+    /**
+     * このバッファが返却済みであるか返す。
+     * @return 返却済みであればtrue、そうでなければfalse
+     */
+    public synchronized boolean isReleased() {
+        return released;
+    }
+    
+    /**
+     * このバッファをプールに返却する。
+     * 既に返却済みの場合には何もしない。
+     */
+    public void release() {
+        synchronized (this) {
+            if (released) {
+                return;
+            }
+            released = true;
+        }
+        pool.release(this);
+    }
+}
@@ -2,6 +2,8 @@ package echowand.net;
 
 import echowand.common.Data;
 import echowand.common.EPC;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 
 /**
  * ペイロードのプロパティ
@@ -117,6 +119,20 @@ public class Property {
         return bytes;
     }
     
+    /**
+     * このPropertyのバイト配列表現を指定されたバッファの現在位置に書き込む。
+     * @param buffer 書き込み先のバッファ
+     * @throws BufferOverflowException バッファの残りが不足している場合
+     */
+    public void writeTo(ByteBuffer buffer) {
+        byte pdc = getPDC();
+        buffer.put(epc.toByte());
+        buffer.put(pdc);
+        if (pdc != 0) {
+            edt.writeTo(buffer);
+        }
+    }
+    
     /**
      * このPropertyをバイト配列に変換したときの長さを返す。
      * @return バイト配列の長さ
@@ -0,0 +1,143 @@
+package echowand.net;
+
+import echowand.common.Data;
+import echowand.common.EPC;
+
+/**
+ * CommonFrameViewのプロパティ列を先頭から順に参照するカーソル
+ * <p>
+ * nextにより次のプロパティに移動し、EPC、PDC、EDTをバイト配列から直接読み出す。
+ * PropertyやDataの生成は、toPropertyあるいはgetEDTを明示的に呼び出した場合にのみ行われる。
+ * @author Yoshiki Makino
+ */
+public class PropertyCursor {
+    private byte[] bytes;
+    private int start;
+    private int count;
+    private int index;
+    private int position;
+    
+    PropertyCursor(byte[] bytes, int start, int count) {
+        this.bytes = bytes;
+        this.start = start;
+        this.count = count;
+        reset();
+    }
+    
+    /**
+     * カーソルを先頭のプロパティの前に戻す。
+     */
+    public void reset() {
+        index = -1;
+        position = start;
+    }
+    
+    /**
+     * プロパティ列のプロパティ数を返す。
+     * @return プロパティ数
+     */
+    public int count() {
+        return count;
+    }
+    
+    /**
+     * 現在のプロパティの位置を返す。
+     * @return 現在のプロパティの位置、nextが呼ばれていなければ-1
+     */
+    public int getIndex() {
+        return index;
+    }
+    
+    /**
+     * 次のプロパティに移動する。
+     * @return 次のプロパティが存在すればtrue、そうでなければfalse
+     */
+    public boolean next() {
+        if (index + 1 >= count) {
+            return false;
+        }
+        
+        if (index >= 0) {
+            position += 2 + getPDCInt();
+        }
+        index++;
+        return true;
+    }
+    
+    private void checkPosition() {
+        if (index < 0 || index >= count) {
+            throw new IllegalStateException("invalid cursor position: " + index);
+        }
+    }
+    
+    private int getPDCInt() {
+        return 0xff & (int)bytes[position + 1];
+    }
+    
+    /**
+     * 現在のプロパティのEPCを返す。
+     * @return 現在のプロパティのEPC
+     */
+    public EPC getEPC() {
+        checkPosition();
+        return EPC.fromByte(bytes[position]);
+    }
+    
+    /**
+     * 現在のプロパティのPDCを返す。
+     * @return 現在のプロパティのPDC
+     */
+    public byte getPDC() {
+        checkPosition();
+        return bytes[position + 1];
+    }
+    
+    /**
+     * 現在のプロパティのEDTの指定された位置のバイトを返す。
+     * @param edtIndex EDT中の位置
+     * @return EDTの指定された位置のバイト
+     * @throws IndexOutOfBoundsException edtIndexがEDTの範囲外の場合
+     */
+    public byte getEDTAt(int edtIndex) {
+        checkPosition();
+        if (edtIndex < 0 || edtIndex >= getPDCInt()) {
+            throw new IndexOutOfBoundsException("invalid index: " + edtIndex);
+        }
+        return bytes[position + 2 + edtIndex];
+    }
+    
+    /**
+     * 現在のプロパティのEDTを指定されたバイト配列にコピーする。
+     * @param dest コピー先のバイト配列
+     * @param destOffset コピー先のオフセット
+     * @return コピーしたバイト数
+     */
+    public int copyEDT(byte[] dest, int destOffset) {
+        checkPosition();
+        int pdc = getPDCInt();
+        System.arraycopy(bytes, position + 2, dest, destOffset, pdc);
+        return pdc;
+    }
+    
+    /**
+     * 現在のプロパティのEDTを表すDataを生成して返す。
+     * @return EDTを表すData、PDCが0の場合にはnull
+     */
+    public Data getEDT() {
+        checkPosition();
+        int pdc = getPDCInt();
+        if (pdc == 0) {
+            return null;
+        }
+        return new Data(bytes, position + 2, pdc);
+    }
+    
+    /**
+     * 現在のプロパティを表すPropertyを生成して返す。
+     * @return 現在のプロパティを表すProperty
+     */
+    public Property toProperty() {
+        checkPosition();
+        return new Property(bytes, position);
+    }
+}
@@ -0,0 +1,16 @@
+package echowand.net;
+
+/**
+ * CommonFrameViewのプロパティ列を走査する際に各プロパティについて呼び出されるインタフェース
+ * @author Yoshiki Makino
+ */
+public interface PropertyVisitor {
+    
+    /**
+     * プロパティごとに呼び出される。
+     * cursorは呼び出しの間だけ有効であり、保持してはならない。
+     * @param cursor 現在のプロパティを指すPropertyCursor
+     * @return 走査を続ける場合にはtrue、中断する場合にはfalse
+     */
+    public boolean visit(PropertyCursor cursor);
+}
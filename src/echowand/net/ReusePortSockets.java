@@ -0,0 +1,74 @@
+package echowand.net;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * SO_REUSEPORTを設定したソケットを生成する。
+ * <p>
+ * SO_REUSEPORTを利用して同じアドレスとポートに複数のソケットを割り当てた場合、
+ * カーネルは送信元のアドレスとポートのハッシュによって受信ソケットを選択するため、
+ * 同じノードからのフレームは常に同じソケットで受信される。
+ * SO_REUSEPORTはJava 9以降でのみ定義されているため、リフレクションにより取得する。
+ * @author Yoshiki Makino
+ */
+class ReusePortSockets {
+    private static final SocketOption<Boolean> REUSE_PORT = findReusePortOption();
+    
+    private ReusePortSockets() {
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SocketOption<Boolean> findReusePortOption() {
+        try {
+            SocketOption<Boolean> option = (SocketOption<Boolean>)StandardSocketOptions.class.getField("SO_REUSEPORT").get(null);
+            DatagramChannel channel = DatagramChannel.open();
+            try {
+                if (channel.supportedOptions().contains(option)) {
+                    return option;
+                }
+            } finally {
+                channel.close();
+            }
+        } catch (NoSuchFieldException e) {
+        } catch (IllegalAccessException e) {
+        } catch (IOException e) {
+        }
+        return null;
+    }
+
+    /**
+     * SO_REUSEPORTが利用可能であるかどうかを返す。
+     * @return SO_REUSEPORTが利用可能であればtrue、そうでなければfalse
+     */
+    public static boolean isSupported() {
+        return REUSE_PORT != null;
+    }
+
+    /**
+     * SO_REUSEADDRと、利用可能であればSO_REUSEPORTを設定したソケットを生成し、指定されたアドレスに割り当てる。
+     * @param family ソケットのプロトコルファミリ
+     * @param address 割り当てるアドレス
+     * @return 生成したソケット
+     * @throws IOException ソケットの生成に失敗した場合
+     */
+    public static DatagramSocket open(ProtocolFamily family, InetSocketAddress address) throws IOException {
+        DatagramChannel channel = DatagramChannel.open(family);
+        try {
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            if (REUSE_PORT != null) {
+                channel.setOption(REUSE_PORT, true);
+            }
+            channel.bind(address);
+            return channel.socket();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package echowand.net;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
@@ -30,7 +32,16 @@ public class SimplePayload implements Payload {
      * @param offset バイト配列のオフセット
      */
     public SimplePayload(byte[] payload, int offset) {
-        int length = payload.length - offset;
+        this(payload, offset, payload.length - offset);
+    }
+    
+    /**
+     * 指定されたバイト配列の指定された範囲からSimplePayloadを生成する。
+     * @param payload ペイロードを含むバイト配列
+     * @param offset バイト配列のオフセット
+     * @param length ペイロードの長さ
+     */
+    public SimplePayload(byte[] payload, int offset, int length) {
         this.payload = new byte[length];
         System.arraycopy(payload, offset, this.payload, 0, length);
     }
@@ -69,6 +80,15 @@ public class SimplePayload implements Payload {
         return Arrays.copyOf(payload, payload.length);
     }
     
+    /**
+     * このSimplePayloadのバイト配列表現を指定されたバッファの現在位置に書き込む。
+     * @param buffer 書き込み先のバッファ
+     * @throws BufferOverflowException バッファの残りが不足している場合
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.put(payload);
+    }
+    
     /**
      * このSimplePayloadの文字列表現を返す。
      * @return このSimplePayloadの文字列表現
@@ -2,6 +2,7 @@ package echowand.net;
 
 import echowand.common.EOJ;
 import echowand.common.ESV;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.LinkedList;
@@ -46,7 +47,7 @@ public class StandardPayload implements Payload {
     public StandardPayload(byte[] bytes) throws InvalidDataException {
         this();
         if (bytes != null) {
-            parse(bytes, 0);
+            parse(bytes, 0, bytes.length);
         }
     }
     
@@ -59,22 +60,40 @@ public class StandardPayload implements Payload {
     public StandardPayload(byte[] bytes, int offset) throws InvalidDataException {
         this();
         if (bytes != null) {
-            parse(bytes, offset);
+            parse(bytes, offset, bytes.length);
         }
     }
     
-    private int parse(byte[] bytes, int offset) throws InvalidDataException {
+    /**
+     * 指定されたバイト配列の指定された範囲を解析してStandardPayloadを生成する。
+     * 範囲外のデータは参照しない。
+     * @param bytes ペイロードを含むバイト配列
+     * @param offset バイト配列のオフセット
+     * @param length ペイロードの長さ
+     * @throws InvalidDataException 解析に失敗した場合
+     */
+    public StandardPayload(byte[] bytes, int offset, int length) throws InvalidDataException {
+        this();
+        if (bytes != null) {
+            parse(bytes, offset, offset + length);
+        }
+    }
+    
+    private int parse(byte[] bytes, int offset, int end) throws InvalidDataException {
         try {
+            if (end > bytes.length || offset + 7 > end) {
+                throw new ArrayIndexOutOfBoundsException(end);
+            }
             this.seoj = new EOJ(bytes, offset);
             offset += 3;
             this.deoj = new EOJ(bytes, offset);
             offset += 3;
             this.esv = ESV.fromByte(bytes[offset++]);
-            if (bytes.length > offset) {
-                offset = parseProperties(firstProperties, bytes, offset);
+            if (end > offset) {
+                offset = parseProperties(firstProperties, bytes, offset, end);
             }
             if (esv.isSetGet()) {
-                offset = parseProperties(secondProperties, bytes, offset);
+                offset = parseProperties(secondProperties, bytes, offset, end);
             }
             return offset;
         } catch (Exception e) {
@@ -82,9 +101,15 @@ public class StandardPayload implements Payload {
         }
     }
     
-    private int parseProperties(LinkedList<Property> properties, byte[] bytes, int offset) {
+    private int parseProperties(LinkedList<Property> properties, byte[] bytes, int offset, int end) {
+        if (offset >= end) {
+            throw new ArrayIndexOutOfBoundsException(offset);
+        }
         int len = 0xff & (int)bytes[offset++];
         for (int i=0; i<len; i++) {
+            if (offset + 2 > end || offset + 2 + (0xff & (int)bytes[offset + 1]) > end) {
+                throw new ArrayIndexOutOfBoundsException(offset);
+            }
             Property property = new Property(bytes, offset);
             properties.add(property);
             offset += 2 + (0xff & property.getPDC());
@@ -208,14 +233,17 @@ public class StandardPayload implements Payload {
         return len;
     }
 
-    private byte[] propertiesBytes(Collection<Property> properties) {
-        int len = propertiesLength(properties);
-        ByteBuffer buffer = ByteBuffer.allocate(len);
+    private void writeProperties(ByteBuffer buffer, Collection<Property> properties) {
         buffer.put((byte) properties.size());
         for (Property p : properties) {
-            buffer.put(p.toBytes());
+            p.writeTo(buffer);
         }
-        return buffer.array();
+    }
+    
+    private void writeEOJ(ByteBuffer buffer, EOJ eoj) {
+        buffer.put(eoj.getClassGroupCode());
+        buffer.put(eoj.getClassCode());
+        buffer.put(eoj.getInstanceCode());
     }
     
     /**
@@ -238,15 +266,25 @@ public class StandardPayload implements Payload {
      */
     @Override
     public byte[] toBytes() {
-        ByteBuffer buffer = ByteBuffer.allocate(size());
-        buffer.put(seoj.toBytes());
-        buffer.put(deoj.toBytes());
+        byte[] bytes = new byte[size()];
+        writeTo(ByteBuffer.wrap(bytes));
+        return bytes;
+    }
+    
+    /**
+     * このStandardPayloadのバイト配列表現を指定されたバッファの現在位置に書き込む。
+     * 中間のバイト配列は生成しない。
+     * @param buffer 書き込み先のバッファ
+     * @throws BufferOverflowException バッファの残りが不足している場合
+     */
+    public void writeTo(ByteBuffer buffer) {
+        writeEOJ(buffer, seoj);
+        writeEOJ(buffer, deoj);
         buffer.put(esv.toByte());
-        buffer.put(propertiesBytes(firstProperties));
+        writeProperties(buffer, firstProperties);
         if (esv.isSetGet()) {
-            buffer.put(propertiesBytes(secondProperties));
+            writeProperties(buffer, secondProperties);
         }
-        return buffer.array();
     }
     
     private String propertiesToString(LinkedList<Property> properties) {
@@ -47,7 +47,7 @@ public class StandardPayloadValidator {
         return esv != null && esv != ESV.Invalid; 
     }
     
-    private enum PropType {
+    enum PropType {
         Invalid,
         Nothing,
         WithData,
@@ -72,8 +72,11 @@ public class StandardPayloadValidator {
     }
     
     private PropType nextPropType(PropType lastType, Property property) {
-        PropType nextType = PropType.Nothing;
-        byte pdc = property.getPDC();
+        return nextPropType(lastType, property.getPDC());
+    }
+    
+    static PropType nextPropType(PropType lastType, byte pdc) {
+        PropType nextType = lastType;
         switch (lastType) {
             case Nothing:
                 if (pdc == 0) {
@@ -147,11 +150,15 @@ public class StandardPayloadValidator {
         PropType t1 = getFirstPropType(payload);
         PropType t2 = getSecondPropType(payload);
         
+        return validatePropTypes(payload.getESV(), t1, t2);
+    }
+    
+    static boolean validatePropTypes(ESV esv, PropType t1, PropType t2) {
         if (t1 == PropType.Invalid || t2 == PropType.Invalid) {
             return false;
         }
         
-        switch (payload.getESV()) {
+        switch (esv) {
             case Invalid:
                 return false;
             case SetI:
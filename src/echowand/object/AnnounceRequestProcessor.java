@@ -4,6 +4,7 @@ import echowand.common.EOJ;
 import echowand.common.ESV;
 import echowand.logic.DefaultRequestProcessor;
 import echowand.net.*;
+import echowand.util.MetricsRegistry;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.logging.Logger;
@@ -75,6 +76,11 @@ public class AnnounceRequestProcessor extends DefaultRequestProcessor {
         Frame replyFrame = new Frame(subnet.getLocalNode(), frame.getSender(), replyCommonFrame);
         try {
             subnet.send(replyFrame);
+            
+            MetricsRegistry metrics = MetricsRegistry.getCurrent();
+            if (metrics != null) {
+                metrics.recordSent(ESV.INFC_Res);
+            }
         } catch (SubnetException e) {
             e.printStackTrace();
         }
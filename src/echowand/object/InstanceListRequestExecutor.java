@@ -7,6 +7,7 @@ import echowand.logic.Transaction;
 import echowand.logic.TransactionManager;
 import echowand.net.Subnet;
 import echowand.net.SubnetException;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
 /**
@@ -23,6 +24,7 @@ public class InstanceListRequestExecutor {
     private Transaction transaction;
     private int timeout;
     private boolean done;
+    private final ReentrantLock lock = new ReentrantLock();
     
     /**
      * InstanceListRequestExecutorを生成する。
@@ -66,19 +68,24 @@ public class InstanceListRequestExecutor {
      * @return 成功した場合はtrue、トランザクションがすでに開始されている場合にはfalse
      * @throws SubnetException トランザクションに問題が発生した場合
      */
-    public synchronized boolean execute() throws SubnetException {
-        logger.entering(className, "execute");
+    public boolean execute() throws SubnetException {
+        lock.lock();
+        try {
+            logger.entering(className, "execute");
 
-        if (transaction != null) {
-            logger.exiting(className, "execute", false);
-            return false;
-        }
+            if (transaction != null) {
+                logger.exiting(className, "execute", false);
+                return false;
+            }
 
-        transaction = createTransaction();
-        transaction.execute();
+            transaction = createTransaction();
+            transaction.execute();
 
-        logger.exiting(className, "execute", true);
-        return true;
+            logger.exiting(className, "execute", true);
+            return true;
+        } finally {
+            lock.unlock();
+        }
     }
     
     /**
@@ -86,18 +93,23 @@ public class InstanceListRequestExecutor {
      * @return 成功した場合はtrue、トランザクションの開始前、あるいは複数回joinが呼ばれた時はfalse
      * @throws InterruptedException 割り込みが発生した場合
      */
-    public synchronized boolean join() throws InterruptedException {
-        logger.entering(className, "join");
+    public boolean join() throws InterruptedException {
+        lock.lock();
+        try {
+            logger.entering(className, "join");
         
-        if (done || transaction == null) {
-            logger.exiting(className, "join", false);
-            return false;
-        }
+            if (done || transaction == null) {
+                logger.exiting(className, "join", false);
+                return false;
+            }
         
-        transaction.join();
-        done = true;
+            transaction.join();
+            done = true;
         
-        logger.exiting(className, "join", true);
-        return true;
+            logger.exiting(className, "join", true);
+            return true;
+        } finally {
+            lock.unlock();
+        }
     }
 }
@@ -5,8 +5,8 @@ import echowand.common.EPC;
 import echowand.info.ObjectInfo;
 import echowand.info.PropertyInfo;
 import echowand.util.Constraint;
+import echowand.util.CopyOnWriteArray;
 import java.util.EnumMap;
-import java.util.LinkedList;
 import java.util.logging.Logger;
 
 /**
@@ -20,7 +20,7 @@ public class LocalObject implements EchonetObject {
     private EOJ eoj;
     private ObjectInfo objectInfo;
     private EnumMap<EPC, ObjectData> propertyData;
-    private LinkedList<LocalObjectDelegate> delegates;
+    private CopyOnWriteArray<LocalObjectDelegate> delegates;
     
     /**
      * 指定されたオブジェクト情報を用いてLocaObjectを生成
@@ -32,7 +32,7 @@ public class LocalObject implements EchonetObject {
         this.objectInfo = objectInfo;
         this.eoj = objectInfo.getClassEOJ().getEOJWithInstanceCode((byte)0x01);
         propertyData = new EnumMap<EPC, ObjectData>(EPC.class);
-        delegates = new LinkedList<LocalObjectDelegate>();
+        delegates = new CopyOnWriteArray<LocalObjectDelegate>(LocalObjectDelegate.class);
         
         int len = objectInfo.size();
         for (int i=0; i<len; i++) {
@@ -43,10 +43,6 @@ public class LocalObject implements EchonetObject {
         logger.exiting(className, "LocalObject");
     }
     
-    private synchronized LinkedList<LocalObjectDelegate> cloneDelegates() {
-        return new LinkedList<LocalObjectDelegate>(delegates);
-    }
-    
     /**
      * EOJのインスタンスコードを新たに設定する。
      * @param instanceCode 設定するインスタンスコード
@@ -149,13 +145,7 @@ public class LocalObject implements EchonetObject {
      * @return プロパティのデータ、存在しない場合にはnull
      */
     public synchronized ObjectData getInternalData(EPC epc) {
-        logger.entering(className, "getInternalData", epc);
-        
-        ObjectData data = propertyData.get(epc);
-        
-        logger.exiting(className, "getInternalData", data);
-        
-        return data;
+        return propertyData.get(epc);
     }
 
     /**
@@ -168,16 +158,12 @@ public class LocalObject implements EchonetObject {
      * @return プロパティのデータ、存在しない場合にはnull
      */
     public ObjectData forceGetData(EPC epc) {
-        logger.entering(className, "forceGetData", epc);
-        
         LocalObjectDelegate.GetState result = getDataDelegate(epc);
         
         if (result.isFail()) {
-            logger.exiting(className, "forceGetData", null);
             return null;
         }
 
-        logger.exiting(className, "forceGetData", result.getGetData());
         return result.getGetData();
     }
 
@@ -192,17 +178,11 @@ public class LocalObject implements EchonetObject {
      */
     @Override
     public ObjectData getData(EPC epc) {
-        logger.entering(className, "getData", epc);
-        
         if (!this.isGettable(epc)) {
-            logger.exiting(className, "getData", null);
             return null;
         }
 
-        ObjectData data = forceGetData(epc);
-        
-        logger.exiting(className, "getData", data);
-        return data;
+        return forceGetData(epc);
     }
 
     /**
@@ -269,10 +249,8 @@ public class LocalObject implements EchonetObject {
      * @return 処理中にエラーが発生しなかった場合にはtrue、そうでなければfalse
      */
     public boolean notifyDataChanged(EPC epc, ObjectData curData, ObjectData oldData) {
-        logger.entering(className, "notifyDataChanged", new Object[]{epc, curData, oldData});
-        
         LocalObjectDelegate.NotifyState result = new LocalObjectDelegate.NotifyState();
-        for (LocalObjectDelegate delegate: cloneDelegates()) {
+        for (LocalObjectDelegate delegate: delegates.getArray()) {
             delegate.notifyDataChanged(result, this, epc, curData, oldData);
             if (result.isDone()) {
                 break;
@@ -281,7 +259,6 @@ public class LocalObject implements EchonetObject {
         
         logMessages(result);
         
-        logger.exiting(className, "notifyDataChanged", result.isFail());
         return result.isFail();
     }
     
@@ -289,7 +266,7 @@ public class LocalObject implements EchonetObject {
         logger.entering(className, "setDataDelegate", new Object[]{epc, newData, curData});
         
         LocalObjectDelegate.SetState result = new LocalObjectDelegate.SetState(newData, curData);
-        for (LocalObjectDelegate delegate: cloneDelegates()) {
+        for (LocalObjectDelegate delegate: delegates.getArray()) {
             delegate.setData(result, this, epc, newData, curData);
             if (result.isDone()) {
                 break;
@@ -303,10 +280,8 @@ public class LocalObject implements EchonetObject {
     }
     
     private LocalObjectDelegate.GetState getDataDelegate(EPC epc) {
-        logger.entering(className, "getDataDelegate", new Object[]{epc});
-        
         LocalObjectDelegate.GetState result = new LocalObjectDelegate.GetState(this.getInternalData(epc));
-        for (LocalObjectDelegate delegate: cloneDelegates()) {
+        for (LocalObjectDelegate delegate: delegates.getArray()) {
             delegate.getData(result, this, epc);
             if (result.isDone()) {
                 break;
@@ -315,7 +290,6 @@ public class LocalObject implements EchonetObject {
         
         logMessages(result);
         
-        logger.exiting(className, "getDataDelegate", result);
         return result;
     }
     
@@ -323,7 +297,7 @@ public class LocalObject implements EchonetObject {
      * Delegateを登録する。
      * @param delegate 登録するDelegate
      */
-    public synchronized void addDelegate(LocalObjectDelegate delegate) {
+    public void addDelegate(LocalObjectDelegate delegate) {
         logger.entering(className, "addDelegate", delegate);
         
         delegates.add(delegate);
@@ -335,7 +309,7 @@ public class LocalObject implements EchonetObject {
      * Delegateの登録を抹消する。
      * @param delegate 抹消するDelegate
      */
-    public synchronized void removeDelegate(LocalObjectDelegate delegate) {
+    public void removeDelegate(LocalObjectDelegate delegate) {
         logger.entering(className, "removeDelegate", delegate);
         
         delegates.remove(delegate);
@@ -44,8 +44,6 @@ public class LocalObjectNotifyDelegate extends LocalObjectDefaultDelegate {
      */
     @Override
     public void notifyDataChanged(NotifyState result, LocalObject object, EPC epc, ObjectData curData, ObjectData oldData) {
-        logger.entering(className, "notifyDataChanged", new Object[]{object, epc, curData, oldData});
-        
         if (object.isObservable(epc) && !curData.equals(oldData)) {
             try {
                 AnnounceTransactionConfig transactionConfig = new AnnounceTransactionConfig();
@@ -64,7 +62,5 @@ public class LocalObjectNotifyDelegate extends LocalObjectDefaultDelegate {
         }
         
         result.setDone();
-        
-        logger.exiting(className, "notifyDataChanged");
     }
 }
@@ -0,0 +1,298 @@
+package echowand.object;
+
+import echowand.common.ClassEOJ;
+import echowand.common.EPC;
+import echowand.common.PropertyMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ECHONETオブジェクトのプロパティのアクセス可否を表す変更不可能な記述子
+ * <p>
+ * Get、Set、Anno各プロパティマップ(0x9F、0x9E、0x9D)を一度だけ解析し、0x80から0xFFまでのEPCを128ビットのビット集合として保持する。
+ * 判定はビット演算のみで行われ、ネットワークへのアクセスやオブジェクトの割り当ては発生しない。
+ * 同じクラスで同じメーカーコードを持つ機器は同じ記述子を持つことが多いため、internにより一つのインスタンスを共有できる。
+ * internで登録される記述子の数はMAX_INTERNEDを上限とし、上限に達した後は登録せずに指定された記述子をそのまま利用する。
+ * @author Yoshiki Makino
+ */
+public final class PropertyCapabilities {
+    private static final int MIN_CODE = 0x80;
+    private static final int MAX_CODE = 0xff;
+
+    /**
+     * internにより登録される記述子の数の上限
+     */
+    public static final int MAX_INTERNED = 1024;
+
+    private static final ConcurrentHashMap<Key, PropertyCapabilities> interned = new ConcurrentHashMap<Key, PropertyCapabilities>();
+
+    private static final class Key {
+        private final ClassEOJ classEOJ;
+        private final ObjectData manufacturerCode;
+        private final PropertyCapabilities capabilities;
+
+        public Key(ClassEOJ classEOJ, ObjectData manufacturerCode, PropertyCapabilities capabilities) {
+            this.classEOJ = classEOJ;
+            this.manufacturerCode = manufacturerCode;
+            this.capabilities = capabilities;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key)o;
+            return classEOJ.equals(other.classEOJ)
+                    && (manufacturerCode == null ? other.manufacturerCode == null : manufacturerCode.equals(other.manufacturerCode))
+                    && capabilities.equals(other.capabilities);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = classEOJ.hashCode();
+            hash = 31 * hash + (manufacturerCode != null ? manufacturerCode.hashCode() : 0);
+            hash = 31 * hash + capabilities.hashCode();
+            return hash;
+        }
+    }
+
+    private final long gettableLow;
+    private final long gettableHigh;
+    private final long settableLow;
+    private final long settableHigh;
+    private final long observableLow;
+    private final long observableHigh;
+    private final EPC[] epcs;
+
+    /**
+     * 各プロパティマップからPropertyCapabilitiesを生成する。
+     * @param getPropertyMap Getプロパティマップ
+     * @param setPropertyMap Setプロパティマップ
+     * @param announcePropertyMap Annoプロパティマップ
+     */
+    public PropertyCapabilities(PropertyMap getPropertyMap, PropertyMap setPropertyMap, PropertyMap announcePropertyMap) {
+        long[] gettable = toBits(getPropertyMap);
+        long[] settable = toBits(setPropertyMap);
+        long[] observable = toBits(announcePropertyMap);
+
+        gettableLow = gettable[0];
+        gettableHigh = gettable[1];
+        settableLow = settable[0];
+        settableHigh = settable[1];
+        observableLow = observable[0];
+        observableHigh = observable[1];
+
+        long low = gettableLow | settableLow | observableLow;
+        long high = gettableHigh | settableHigh | observableHigh;
+        epcs = new EPC[Long.bitCount(low) + Long.bitCount(high)];
+        int index = 0;
+        for (int code = MIN_CODE; code <= MAX_CODE; code++) {
+            if (isSet(low, high, code - MIN_CODE)) {
+                epcs[index++] = EPC.fromByte((byte)code);
+            }
+        }
+    }
+
+    /**
+     * 各プロパティマップのデータからPropertyCapabilitiesを生成する。
+     * データがnullのプロパティマップは、EPCを一つも含まないものとして扱う。
+     * @param getPropertyMap Getプロパティマップのデータ、取得できていない場合にはnull
+     * @param setPropertyMap Setプロパティマップのデータ、取得できていない場合にはnull
+     * @param announcePropertyMap Annoプロパティマップのデータ、取得できていない場合にはnull
+     */
+    public PropertyCapabilities(ObjectData getPropertyMap, ObjectData setPropertyMap, ObjectData announcePropertyMap) {
+        this(toPropertyMap(getPropertyMap), toPropertyMap(setPropertyMap), toPropertyMap(announcePropertyMap));
+    }
+
+    private static PropertyMap toPropertyMap(ObjectData data) {
+        if (data == null) {
+            return new PropertyMap();
+        }
+        return new PropertyMap(data.toBytes());
+    }
+
+    private static long[] toBits(PropertyMap propertyMap) {
+        long[] bits = new long[2];
+        for (int code = MIN_CODE; code <= MAX_CODE; code++) {
+            EPC epc = EPC.fromByte((byte)code);
+            if (!epc.isInvalid() && propertyMap.isSet(epc)) {
+                int index = code - MIN_CODE;
+                bits[index >> 6] |= 1L << (index & 0x3f);
+            }
+        }
+        return bits;
+    }
+
+    private static int toIndex(EPC epc) {
+        int code = 0xff & epc.toByte();
+        if (code < MIN_CODE || epc.isInvalid()) {
+            return -1;
+        }
+        return code - MIN_CODE;
+    }
+
+    private static boolean isSet(long low, long high, int index) {
+        if (index < 0) {
+            return false;
+        }
+        long bits = index < 64 ? low : high;
+        return (bits & (1L << (index & 0x3f))) != 0;
+    }
+
+    /**
+     * 指定されたクラスとメーカーコードを持つオブジェクトの記述子として、共有されるインスタンスを返す。
+     * 同じクラス、同じメーカーコード、同じ内容の記述子が既に登録されていればそのインスタンスを返し、
+     * そうでなければ指定された記述子を登録して返す。
+     * 登録数がMAX_INTERNEDに達している場合には、登録せずに指定された記述子を返す。
+     * @param classEOJ オブジェクトのクラス
+     * @param manufacturerCode メーカーコード(0x8A)のデータ、不明な場合にはnull
+     * @param capabilities 登録する記述子
+     * @return 共有されるインスタンス
+     */
+    public static PropertyCapabilities intern(ClassEOJ classEOJ, ObjectData manufacturerCode, PropertyCapabilities capabilities) {
+        Key key = new Key(classEOJ, manufacturerCode, capabilities);
+        PropertyCapabilities current = interned.get(key);
+        if (current != null) {
+            return current;
+        }
+
+        if (interned.size() >= MAX_INTERNED) {
+            return capabilities;
+        }
+
+        current = interned.putIfAbsent(key, capabilities);
+        if (current != null) {
+            return current;
+        }
+        return capabilities;
+    }
+
+    /**
+     * internにより登録されている記述子の数を返す。
+     * @return 登録されている記述子の数
+     */
+    public static int countInterned() {
+        return interned.size();
+    }
+
+    /**
+     * internにより登録されている全ての記述子の登録を抹消する。
+     * 既に共有されているインスタンスはそのまま利用できる。
+     */
+    public static void clearInterned() {
+        interned.clear();
+    }
+
+    /**
+     * 指定されたEPCがGet可能であるかを返す。
+     * @param epc EPCの指定
+     * @return Get可能であればtrue、そうでなければfalse
+     */
+    public boolean isGettable(EPC epc) {
+        return isSet(gettableLow, gettableHigh, toIndex(epc));
+    }
+
+    /**
+     * 指定されたEPCがSet可能であるかを返す。
+     * @param epc EPCの指定
+     * @return Set可能であればtrue、そうでなければfalse
+     */
+    public boolean isSettable(EPC epc) {
+        return isSet(settableLow, settableHigh, toIndex(epc));
+    }
+
+    /**
+     * 指定されたEPCが通知を行うかを返す。
+     * @param epc EPCの指定
+     * @return 通知を行うのであればtrue、そうでなければfalse
+     */
+    public boolean isObservable(EPC epc) {
+        return isSet(observableLow, observableHigh, toIndex(epc));
+    }
+
+    /**
+     * 指定されたEPCがいずれかのプロパティマップに含まれているかを返す。
+     * @param epc EPCの指定
+     * @return 含まれていればtrue、そうでなければfalse
+     */
+    public boolean contains(EPC epc) {
+        return isGettable(epc) || isSettable(epc) || isObservable(epc);
+    }
+
+    /**
+     * いずれかのプロパティマップに含まれているEPCの数を返す。
+     * @return EPCの数
+     */
+    public int size() {
+        return epcs.length;
+    }
+
+    /**
+     * いずれかのプロパティマップに含まれているEPCのうち、コードの昇順で指定された位置にあるものを返す。
+     * @param index EPCの位置
+     * @return 指定された位置のEPC、範囲外であればnull
+     */
+    public EPC getEPC(int index) {
+        if (index < 0 || index >= epcs.length) {
+            return null;
+        }
+        return epcs[index];
+    }
+
+    /**
+     * 指定されたEPCの、コードの昇順での位置を返す。
+     * @param epc EPCの指定
+     * @return EPCの位置、含まれていなければ-1
+     */
+    public int indexOf(EPC epc) {
+        for (int i = 0; i < epcs.length; i++) {
+            if (epcs[i] == epc) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * いずれかのプロパティマップに含まれているEPCをコードの昇順で返す。
+     * @return EPCの変更不可能なリスト
+     */
+    public List<EPC> getEPCs() {
+        List<EPC> list = new ArrayList<EPC>(epcs.length);
+        Collections.addAll(list, epcs);
+        return Collections.unmodifiableList(list);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof PropertyCapabilities)) {
+            return false;
+        }
+
+        PropertyCapabilities other = (PropertyCapabilities)o;
+        return gettableLow == other.gettableLow && gettableHigh == other.gettableHigh
+                && settableLow == other.settableLow && settableHigh == other.settableHigh
+                && observableLow == other.observableLow && observableHigh == other.observableHigh;
+    }
+
+    @Override
+    public int hashCode() {
+        long hash = gettableLow;
+        hash = 31 * hash + gettableHigh;
+        hash = 31 * hash + settableLow;
+        hash = 31 * hash + settableHigh;
+        hash = 31 * hash + observableLow;
+        hash = 31 * hash + observableHigh;
+        return (int)(hash ^ (hash >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PropertyCapabilities{get: %016x%016x, set: %016x%016x, anno: %016x%016x}",
+                gettableHigh, gettableLow, settableHigh, settableLow, observableHigh, observableLow);
+    }
+}
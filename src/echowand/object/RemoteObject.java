@@ -3,13 +3,23 @@ package echowand.object;
 import echowand.common.Data;
 import echowand.common.EOJ;
 import echowand.common.EPC;
-import echowand.common.PropertyMap;
+import echowand.common.ESV;
 import echowand.logic.SetGetTransactionConfig;
 import echowand.logic.Transaction;
 import echowand.logic.TransactionListener;
 import echowand.logic.TransactionManager;
 import echowand.net.*;
+import echowand.util.AsyncCallback;
+import echowand.util.AsyncResult;
+import echowand.util.CopyOnWriteArray;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Logger;
 
 /**
@@ -40,14 +50,32 @@ public class RemoteObject implements EchonetObject {
      * AnnoプロパティマップのEPC
      */
     public static final EPC ANNOUNCE_PROPERTYMAP_EPC = EPC.x9D;
+    /**
+     * 一つのGetフレームに含めるプロパティ数のデフォルト値
+     */
+    public static final int DEFAULT_MAX_GET_PROPERTIES = 32;
+    /**
+     * 一つのSetCフレームに含めるプロパティ数のデフォルト値
+     */
+    public static final int DEFAULT_MAX_SET_PROPERTIES = 32;
+    /**
+     * 一つのGetフレームに含めることのできるプロパティ数の上限(OPCの最大値)
+     */
+    public static final int MAX_OPC = 255;
     
     private TransactionManager transactionManager;
     private Subnet subnet;
     private Node node;
     private EOJ eoj;
     private int timeout;
+    private int maxGetProperties;
+    private int maxSetProperties;
+    private volatile boolean coalescing;
+    private RemoteObjectGetCoalescer coalescer;
+    private volatile PropertyCapabilities capabilities;
+    private volatile boolean capabilityCheckEnabled;
     
-    private LinkedList<RemoteObjectObserver> observers;
+    private CopyOnWriteArray<RemoteObjectObserver> observers;
     
     /**
      * RemoteObjectを生成する。
@@ -63,16 +91,18 @@ public class RemoteObject implements EchonetObject {
         this.node = node;
         this.eoj = eoj;
         this.transactionManager = transactionManager;
-        this.observers = new LinkedList<RemoteObjectObserver>();
+        this.observers = new CopyOnWriteArray<RemoteObjectObserver>(RemoteObjectObserver.class);
         this.timeout = TRANSACTION_TIMEOUT;
+        this.maxGetProperties = DEFAULT_MAX_GET_PROPERTIES;
+        this.maxSetProperties = DEFAULT_MAX_SET_PROPERTIES;
+        this.coalescing = false;
+        this.coalescer = new RemoteObjectGetCoalescer(this);
+        this.capabilities = null;
+        this.capabilityCheckEnabled = false;
         
         logger.entering(className, "RemoteObject");
     }
     
-    private synchronized LinkedList<RemoteObjectObserver> cloneObservers() {
-        return new LinkedList<RemoteObjectObserver>(observers);
-    }
-    
     /**
      * 設定されたTransactionManagerを返す。
      * @return 設定されているTransactionManager
@@ -125,6 +155,117 @@ public class RemoteObject implements EchonetObject {
         }
     }
     
+    /**
+     * 複数のプロパティを一括して取得する際に、一つのGetフレームに含めるプロパティ数の上限を設定する。
+     * 上限は1以上MAX_OPC以下の整数で指定する。
+     * @param maxGetProperties 一つのGetフレームに含めるプロパティ数の上限
+     * @return 上限の設定に成功したらtrue、そうでなければfalse
+     */
+    public boolean setMaxGetProperties(int maxGetProperties) {
+        logger.entering(className, "setMaxGetProperties", maxGetProperties);
+        
+        if (maxGetProperties > 0 && maxGetProperties <= MAX_OPC) {
+            this.maxGetProperties = maxGetProperties;
+            logger.exiting(className, "setMaxGetProperties", true);
+            return true;
+        } else {
+            logger.exiting(className, "setMaxGetProperties", false);
+            return false;
+        }
+    }
+    
+    /**
+     * 一つのGetフレームに含めるプロパティ数の上限を返す。
+     * @return 一つのGetフレームに含めるプロパティ数の上限
+     */
+    public int getMaxGetProperties() {
+        return maxGetProperties;
+    }
+    
+    /**
+     * 複数のプロパティを一括してセットする際に、一つのSetCフレームに含めるプロパティ数の上限を設定する。
+     * 上限は1以上MAX_OPC以下の整数で指定する。
+     * @param maxSetProperties 一つのSetCフレームに含めるプロパティ数の上限
+     * @return 上限の設定に成功したらtrue、そうでなければfalse
+     */
+    public boolean setMaxSetProperties(int maxSetProperties) {
+        logger.entering(className, "setMaxSetProperties", maxSetProperties);
+        
+        if (maxSetProperties > 0 && maxSetProperties <= MAX_OPC) {
+            this.maxSetProperties = maxSetProperties;
+            logger.exiting(className, "setMaxSetProperties", true);
+            return true;
+        } else {
+            logger.exiting(className, "setMaxSetProperties", false);
+            return false;
+        }
+    }
+    
+    /**
+     * 一つのSetCフレームに含めるプロパティ数の上限を返す。
+     * @return 一つのSetCフレームに含めるプロパティ数の上限
+     */
+    public int getMaxSetProperties() {
+        return maxSetProperties;
+    }
+    
+    /**
+     * getDataおよびgetDataAsyncによる読み出しの共有を有効にするかどうかを設定する。
+     * 有効にした場合、同じEPCの読み出しが実行中であれば新しいTransactionを開始せずにその結果を共有する。
+     * また、setMergeDelayで待ち時間を設定すると、その間に要求された異なるEPCの読み出しを一つのGetフレームにまとめる。
+     * @param coalescing 有効にする場合はtrue、無効にする場合はfalse
+     */
+    public void setCoalescingEnabled(boolean coalescing) {
+        logger.entering(className, "setCoalescingEnabled", coalescing);
+        
+        this.coalescing = coalescing;
+        
+        logger.exiting(className, "setCoalescingEnabled");
+    }
+    
+    /**
+     * getDataおよびgetDataAsyncによる読み出しの共有が有効かどうかを返す。
+     * @return 有効であればtrue、そうでなければfalse
+     */
+    public boolean isCoalescingEnabled() {
+        return coalescing;
+    }
+    
+    /**
+     * 読み出しの共有が有効な場合に、異なるEPCの読み出しを一つのGetフレームにまとめるための待ち時間を設定する。
+     * 待ち時間は0以上の整数で指定し、0の場合にはまとめずに直ちに送信する。
+     * @param mergeDelay 待ち時間(ミリ秒)
+     * @return 待ち時間の設定に成功したらtrue、そうでなければfalse
+     */
+    public boolean setMergeDelay(int mergeDelay) {
+        logger.entering(className, "setMergeDelay", mergeDelay);
+        
+        if (mergeDelay >= 0) {
+            coalescer.setMergeDelay(mergeDelay);
+            logger.exiting(className, "setMergeDelay", true);
+            return true;
+        } else {
+            logger.exiting(className, "setMergeDelay", false);
+            return false;
+        }
+    }
+    
+    /**
+     * 異なるEPCの読み出しを一つのGetフレームにまとめるための待ち時間を返す。
+     * @return 待ち時間(ミリ秒)
+     */
+    public int getMergeDelay() {
+        return coalescer.getMergeDelay();
+    }
+    
+    /**
+     * 実行中の読み出しの結果を共有したgetDataおよびgetDataAsyncの呼び出し回数を返す。
+     * @return 結果を共有した呼び出し回数
+     */
+    public long countSharedRequests() {
+        return coalescer.countSharedRequests();
+    }
+    
     private boolean isValidFrame(Frame frame) {
         logger.entering(className, "isValidFrame", frame);
 
@@ -223,6 +364,132 @@ public class RemoteObject implements EchonetObject {
         }
     }
     
+    class RemoteObjectGetMapTransactionListener implements TransactionListener {
+
+        private EnumSet<EPC> epcs;
+        private EnumMap<EPC, ObjectData> dataMap;
+
+        public RemoteObjectGetMapTransactionListener(EnumSet<EPC> epcs) {
+            this.epcs = epcs;
+            this.dataMap = new EnumMap<EPC, ObjectData>(EPC.class);
+        }
+
+        public EnumMap<EPC, ObjectData> getDataMap() {
+            return dataMap;
+        }
+        
+        @Override
+        public void begin(Transaction t) {
+        }
+
+        @Override
+        public void receive(Transaction t, Subnet subnet, Frame frame) {
+            logger.entering(className, "RemoteObjectGetMapTransactionListener.receive", new Object[]{t, subnet, frame});
+            
+            if (!isValidFrame(frame)) {
+                logger.exiting(className, "RemoteObjectGetMapTransactionListener.receive");
+                return;
+            }
+            
+            StandardPayload payload = (StandardPayload) frame.getCommonFrame().getEDATA();
+            if (payload.getESV() != ESV.Get_Res && payload.getESV() != ESV.Get_SNA) {
+                logger.exiting(className, "RemoteObjectGetMapTransactionListener.receive");
+                return;
+            }
+            
+            int len = payload.getFirstOPC();
+            for (int i = 0; i < len; i++) {
+                Property property = payload.getFirstPropertyAt(i);
+                if (epcs.contains(property.getEPC()) && property.getPDC() != 0) {
+                    dataMap.put(property.getEPC(), new ObjectData(property.getEDT()));
+                }
+            }
+            t.finish();
+            
+            logger.exiting(className, "RemoteObjectGetMapTransactionListener.receive");
+        }
+
+        @Override
+        public void finish(Transaction t) {
+        }
+    }
+    
+    class RemoteObjectSetGetMapTransactionListener implements TransactionListener {
+
+        private EnumSet<EPC> setEPCs;
+        private EnumSet<EPC> getEPCs;
+        private EnumMap<EPC, Boolean> setResults;
+        private EnumMap<EPC, ObjectData> dataMap;
+
+        public RemoteObjectSetGetMapTransactionListener(EnumSet<EPC> setEPCs, EnumSet<EPC> getEPCs) {
+            this.setEPCs = setEPCs;
+            this.getEPCs = getEPCs;
+            this.setResults = new EnumMap<EPC, Boolean>(EPC.class);
+            this.dataMap = new EnumMap<EPC, ObjectData>(EPC.class);
+        }
+
+        public EnumMap<EPC, Boolean> getSetResults() {
+            EnumMap<EPC, Boolean> results = new EnumMap<EPC, Boolean>(EPC.class);
+            for (EPC epc : setEPCs) {
+                results.put(epc, Boolean.TRUE.equals(setResults.get(epc)));
+            }
+            return results;
+        }
+
+        public EnumMap<EPC, ObjectData> getDataMap() {
+            return dataMap;
+        }
+        
+        @Override
+        public void begin(Transaction t) {
+        }
+
+        @Override
+        public void receive(Transaction t, Subnet subnet, Frame frame) {
+            logger.entering(className, "RemoteObjectSetGetMapTransactionListener.receive", new Object[]{t, subnet, frame});
+            
+            if (!isValidFrame(frame)) {
+                logger.exiting(className, "RemoteObjectSetGetMapTransactionListener.receive");
+                return;
+            }
+            
+            StandardPayload payload = (StandardPayload) frame.getCommonFrame().getEDATA();
+            switch (payload.getESV()) {
+                case Set_Res:
+                case SetC_SNA:
+                    break;
+                case SetGet_Res:
+                case SetGet_SNA:
+                    int secondLen = payload.getSecondOPC();
+                    for (int i = 0; i < secondLen; i++) {
+                        Property property = payload.getSecondPropertyAt(i);
+                        if (getEPCs.contains(property.getEPC()) && property.getPDC() != 0) {
+                            dataMap.put(property.getEPC(), new ObjectData(property.getEDT()));
+                        }
+                    }
+                    break;
+                default:
+                    logger.exiting(className, "RemoteObjectSetGetMapTransactionListener.receive");
+                    return;
+            }
+            
+            int firstLen = payload.getFirstOPC();
+            for (int i = 0; i < firstLen; i++) {
+                Property property = payload.getFirstPropertyAt(i);
+                if (setEPCs.contains(property.getEPC())) {
+                    setResults.put(property.getEPC(), property.getPDC() == 0);
+                }
+            }
+            t.finish();
+            
+            logger.exiting(className, "RemoteObjectSetGetMapTransactionListener.receive");
+        }
+
+        @Override
+        public void finish(Transaction t) {
+        }
+    }
+    
     class RemoteObjectSetTransactionListener implements TransactionListener {
         private EPC epc;
         private boolean success;
@@ -294,6 +561,18 @@ public class RemoteObject implements EchonetObject {
     public ObjectData getData(EPC epc) throws EchonetObjectException {
         logger.entering(className, "getData", epc);
         
+        if (capabilityCheckEnabled && !getCapabilities().isGettable(epc)) {
+            EchonetObjectException exception = new EchonetObjectException("not gettable: " + epc);
+            logger.throwing(className, "getData", exception);
+            throw exception;
+        }
+        
+        if (coalescing) {
+            ObjectData data = waitCoalescedData(coalescer.getDataAsync(epc));
+            logger.exiting(className, "getData", data);
+            return data;
+        }
+        
         RemoteObjectGetTransactionListener transactionListener;
 
         SetGetTransactionConfig transactionConfig = createSetGetTransactionConfig();
@@ -318,23 +597,248 @@ public class RemoteObject implements EchonetObject {
             throw exception;
         }
         
+        ObjectData data = getResponseData(transaction, transactionListener);
+        
+        logger.exiting(className, "getData", data);
+        return data;
+    }
+    
+    private ObjectData waitCoalescedData(AsyncResult<ObjectData> result) throws EchonetObjectException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            EchonetObjectException exception = new EchonetObjectException("interrupted", e);
+            logger.throwing(className, "waitCoalescedData", exception);
+            throw exception;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof EchonetObjectException) {
+                EchonetObjectException cause = (EchonetObjectException) e.getCause();
+                EchonetObjectException exception = new EchonetObjectException(cause.getMessage(), cause);
+                logger.throwing(className, "waitCoalescedData", exception);
+                throw exception;
+            }
+            EchonetObjectException exception = new EchonetObjectException("getData failed", e);
+            logger.throwing(className, "waitCoalescedData", exception);
+            throw exception;
+        }
+    }
+    
+    private ObjectData getResponseData(Transaction transaction, RemoteObjectGetTransactionListener transactionListener) throws EchonetObjectException {
         if (transaction.countResponses() == 0) {
             EchonetObjectException exception = new EchonetObjectException("no response");
-            logger.throwing(className, "getData", exception);
+            logger.throwing(className, "getResponseData", exception);
             throw exception;
         }
         
         ObjectData data =  transactionListener.getData();
         if (data == null) {
             EchonetObjectException exception = new EchonetObjectException("no valid data");
-            logger.throwing(className, "getData", exception);
+            logger.throwing(className, "getResponseData", exception);
             throw exception;
         }
         
-        logger.exiting(className, "getData", data);
         return data;
     }
     
+    /**
+     * 指定された複数のEPCのデータを一括して取得する。
+     * EPCはgetMaxGetPropertiesで指定された数ずつ一つのGetフレームにまとめられ、
+     * フレーム毎のTransactionは並行して実行される。
+     * 不可応答(Get_SNA)を受信した場合には、データが含まれていたプロパティのみを結果に含める。
+     * 取得できなかったEPCは返される対応に含まれない。
+     * プロパティマップによる確認が有効な場合には、Get可能でないEPCは要求せずに結果から除外する。
+     * @param epcs EPCの指定
+     * @return 取得できたEPCとデータの対応
+     * @throws EchonetObjectException ネットワークに問題が発生した場合、あるいは応答のないフレームがあった場合
+     */
+    public EnumMap<EPC, ObjectData> getData(Collection<EPC> epcs) throws EchonetObjectException {
+        if (capabilityCheckEnabled) {
+            epcs = selectSupported(epcs, false);
+        }
+        return getDataWithoutCheck(epcs);
+    }
+    
+    private EnumMap<EPC, ObjectData> getDataWithoutCheck(Collection<EPC> epcs) throws EchonetObjectException {
+        logger.entering(className, "getDataWithoutCheck", epcs);
+        
+        EnumMap<EPC, ObjectData> dataMap = new EnumMap<EPC, ObjectData>(EPC.class);
+        if (epcs.isEmpty()) {
+            logger.exiting(className, "getDataWithoutCheck", dataMap);
+            return dataMap;
+        }
+        
+        EnumSet<EPC> remaining = EnumSet.copyOf(epcs);
+        LinkedList<Transaction> transactions = new LinkedList<Transaction>();
+        LinkedList<RemoteObjectGetMapTransactionListener> transactionListeners = new LinkedList<RemoteObjectGetMapTransactionListener>();
+        
+        while (!remaining.isEmpty()) {
+            EnumSet<EPC> chunk = EnumSet.noneOf(EPC.class);
+            for (EPC epc : remaining) {
+                if (chunk.size() >= maxGetProperties) {
+                    break;
+                }
+                chunk.add(epc);
+            }
+            remaining.removeAll(chunk);
+            
+            SetGetTransactionConfig transactionConfig = createSetGetTransactionConfig();
+            for (EPC epc : chunk) {
+                transactionConfig.addGet(epc);
+            }
+            
+            RemoteObjectGetMapTransactionListener transactionListener = new RemoteObjectGetMapTransactionListener(chunk);
+            transactions.add(createSetGetTransaction(transactionConfig, transactionListener));
+            transactionListeners.add(transactionListener);
+        }
+        
+        executeAll(transactions, "getDataWithoutCheck");
+        
+        for (RemoteObjectGetMapTransactionListener transactionListener : transactionListeners) {
+            dataMap.putAll(transactionListener.getDataMap());
+        }
+        
+        logger.exiting(className, "getDataWithoutCheck", dataMap);
+        return dataMap;
+    }
+    
+    private void executeAll(List<Transaction> transactions, String methodName) throws EchonetObjectException {
+        try {
+            for (Transaction transaction : transactions) {
+                transaction.execute();
+            }
+        } catch (SubnetException e) {
+            for (Transaction transaction : transactions) {
+                transaction.finish();
+            }
+            EchonetObjectException exception = new EchonetObjectException(methodName + " failed", e);
+            logger.throwing(className, methodName, exception);
+            throw exception;
+        }
+        
+        try {
+            for (Transaction transaction : transactions) {
+                transaction.join();
+            }
+        } catch (InterruptedException e) {
+            for (Transaction transaction : transactions) {
+                transaction.finish();
+            }
+            EchonetObjectException exception = new EchonetObjectException("interrupted", e);
+            logger.throwing(className, methodName, exception);
+            throw exception;
+        }
+        
+        for (Transaction transaction : transactions) {
+            if (transaction.countResponses() == 0) {
+                EchonetObjectException exception = new EchonetObjectException("no response");
+                logger.throwing(className, methodName, exception);
+                throw exception;
+            }
+        }
+    }
+    
+    /**
+     * 指定された複数のEPCのデータを一括して取得する。
+     * getData(Collection)と同様に動作する。
+     * @param epcs EPCの指定
+     * @return 取得できたEPCとデータの対応
+     * @throws EchonetObjectException ネットワークに問題が発生した場合、あるいは応答のないフレームがあった場合
+     */
+    public EnumMap<EPC, ObjectData> getDataMap(EPC... epcs) throws EchonetObjectException {
+        return getData(Arrays.asList(epcs));
+    }
+    
+    /**
+     * 指定されたEPCのデータを非同期に取得する。
+     * 返されるAsyncResultは、応答の受信あるいはタイムアウト時に完了する。
+     * 取得に失敗した場合には、EchonetObjectExceptionにより失敗する。
+     * プロパティマップによる確認が有効で、既に取得したプロパティマップでGet可能でない場合には、要求を送信せずに失敗する。
+     * @param epc EPCの指定
+     * @return 指定したEPCのデータで完了するAsyncResult
+     */
+    public AsyncResult<ObjectData> getDataAsync(EPC epc) {
+        logger.entering(className, "getDataAsync", epc);
+        
+        PropertyCapabilities current = capabilities;
+        if (capabilityCheckEnabled && current != null && !current.isGettable(epc)) {
+            AsyncResult<ObjectData> result = new AsyncResult<ObjectData>();
+            result.fail(new EchonetObjectException("not gettable: " + epc));
+            logger.exiting(className, "getDataAsync", result);
+            return result;
+        }
+        
+        if (coalescing) {
+            AsyncResult<ObjectData> result = coalescer.getDataAsync(epc);
+            logger.exiting(className, "getDataAsync", result);
+            return result;
+        }
+        
+        SetGetTransactionConfig transactionConfig = createSetGetTransactionConfig();
+        transactionConfig.addGet(epc);
+
+        final RemoteObjectGetTransactionListener transactionListener = new RemoteObjectGetTransactionListener(epc);
+        Transaction transaction = createSetGetTransaction(transactionConfig, transactionListener);
+        
+        final AsyncResult<ObjectData> result = new AsyncResult<ObjectData>();
+        transaction.executeAsync().addCallback(new AsyncCallback<Transaction>() {
+            @Override
+            public void completed(Transaction t) {
+                try {
+                    result.complete(getResponseData(t, transactionListener));
+                } catch (EchonetObjectException e) {
+                    result.fail(e);
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                result.fail(new EchonetObjectException("getData failed", e));
+            }
+        });
+        
+        logger.exiting(className, "getDataAsync", result);
+        return result;
+    }
+    
+    /**
+     * 指定された複数のEPCのデータを一つのGetフレームで非同期に取得する。
+     * 返されるAsyncResultは、応答の受信あるいはタイムアウト時に完了する。
+     * 応答がなかった場合には、EchonetObjectExceptionにより失敗する。
+     * @param epcs EPCの指定、getMaxGetProperties以下の数でなければならない
+     * @return 取得できたEPCとデータの対応で完了するAsyncResult
+     */
+    AsyncResult<EnumMap<EPC, ObjectData>> getDataMapAsync(EnumSet<EPC> epcs) {
+        logger.entering(className, "getDataMapAsync", epcs);
+        
+        SetGetTransactionConfig transactionConfig = createSetGetTransactionConfig();
+        for (EPC epc : epcs) {
+            transactionConfig.addGet(epc);
+        }
+        
+        final RemoteObjectGetMapTransactionListener transactionListener = new RemoteObjectGetMapTransactionListener(epcs);
+        Transaction transaction = createSetGetTransaction(transactionConfig, transactionListener);
+        
+        final AsyncResult<EnumMap<EPC, ObjectData>> result = new AsyncResult<EnumMap<EPC, ObjectData>>();
+        transaction.executeAsync().addCallback(new AsyncCallback<Transaction>() {
+            @Override
+            public void completed(Transaction t) {
+                if (t.countResponses() == 0) {
+                    result.fail(new EchonetObjectException("no response"));
+                } else {
+                    result.complete(transactionListener.getDataMap());
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                result.fail(new EchonetObjectException("getData failed", e));
+            }
+        });
+        
+        logger.exiting(className, "getDataMapAsync", result);
+        return result;
+    }
+    
     /**
      * 指定されたEPCのデータをアナウンスするように要求する。
      * @param epc EPCの指定
@@ -375,6 +879,11 @@ public class RemoteObject implements EchonetObject {
     public boolean setData(EPC epc, ObjectData data) throws EchonetObjectException {
         logger.entering(className, "setData", new Object[]{epc, data});
         
+        if (capabilityCheckEnabled && !getCapabilities().isSettable(epc)) {
+            logger.exiting(className, "setData", false);
+            return false;
+        }
+        
         RemoteObjectSetTransactionListener transactionListener;
 
         SetGetTransactionConfig transactionConfig = createSetGetTransactionConfig();
@@ -400,10 +909,259 @@ public class RemoteObject implements EchonetObject {
         logger.exiting(className, "setData", success);
         return success;
     }
+    
+    /**
+     * 指定された複数のEPCにそれぞれのデータを一括してセットする。
+     * EPCはgetMaxSetPropertiesで指定された数ずつ一つのSetCフレームにまとめられ、
+     * フレーム毎のTransactionは並行して実行される。
+     * 応答(Set_ResあるいはSetC_SNA)に含まれるプロパティ毎に受理の可否を判定する。
+     * プロパティマップによる確認が有効な場合には、Set可能でないEPCは要求せずにfalseとする。
+     * @param dataMap EPCとセットするデータの対応
+     * @return EPCと受理の可否の対応
+     * @throws EchonetObjectException ネットワークに問題が発生した場合、あるいは応答のないフレームがあった場合
+     */
+    public EnumMap<EPC, Boolean> setData(Map<EPC, ObjectData> dataMap) throws EchonetObjectException {
+        logger.entering(className, "setData", dataMap);
+        
+        EnumMap<EPC, Boolean> results = new EnumMap<EPC, Boolean>(EPC.class);
+        EnumSet<EPC> remaining = EnumSet.noneOf(EPC.class);
+        remaining.addAll(dataMap.keySet());
+        if (capabilityCheckEnabled) {
+            remaining = selectSupported(remaining, true);
+            for (EPC epc : dataMap.keySet()) {
+                if (!remaining.contains(epc)) {
+                    results.put(epc, false);
+                }
+            }
+        }
+        
+        if (remaining.isEmpty()) {
+            logger.exiting(className, "setData", results);
+            return results;
+        }
+        
+        LinkedList<Transaction> transactions = new LinkedList<Transaction>();
+        LinkedList<RemoteObjectSetGetMapTransactionListener> transactionListeners = new LinkedList<RemoteObjectSetGetMapTransactionListener>();
+        
+        while (!remaining.isEmpty()) {
+            EnumSet<EPC> chunk = EnumSet.noneOf(EPC.class);
+            for (EPC epc : remaining) {
+                if (chunk.size() >= maxSetProperties) {
+                    break;
+                }
+                chunk.add(epc);
+            }
+            remaining.removeAll(chunk);
+            
+            SetGetTransactionConfig transactionConfig = createSetGetTransactionConfig();
+            for (EPC epc : chunk) {
+                transactionConfig.addSet(epc, dataMap.get(epc).getData());
+            }
+            
+            RemoteObjectSetGetMapTransactionListener transactionListener = new RemoteObjectSetGetMapTransactionListener(chunk, EnumSet.noneOf(EPC.class));
+            transactions.add(createSetGetTransaction(transactionConfig, transactionListener));
+            transactionListeners.add(transactionListener);
+        }
+        
+        executeAll(transactions, "setData");
+        
+        for (RemoteObjectSetGetMapTransactionListener transactionListener : transactionListeners) {
+            results.putAll(transactionListener.getSetResults());
+        }
+        
+        logger.exiting(className, "setData", results);
+        return results;
+    }
+    
+    /**
+     * 指定された複数のEPCにそれぞれのデータをセットし、同じ要求で指定された複数のEPCのデータを読み出す。
+     * 一つのSetGetフレームを送信し、応答(SetGet_ResあるいはSetGet_SNA)から各Setの受理の可否と読み出されたデータを取得する。
+     * セットしたEPCを読み出すEPCとして指定することで、機器が受理した値を一度のやり取りで確認できる。
+     * プロパティマップによる確認が有効な場合には、Set可能でないEPCは要求せずに受理されなかったものとし、
+     * Get可能でないEPCは要求せずに結果から除外する。
+     * その結果セットあるいは読み出すEPCがなくなった場合には、SetCあるいはGetのみを送信する。
+     * @param dataMap EPCとセットするデータの対応
+     * @param epcs 読み出すEPCの指定
+     * @return Setの受理の可否と読み出されたデータ
+     * @throws EchonetObjectException ネットワークに問題が発生した場合、あるいは応答がなかった場合
+     * @throws IllegalArgumentException セットあるいは読み出すEPCが指定されていない場合、あるいはその数がMAX_OPCを超える場合
+     */
+    public SetGetResult setGetData(Map<EPC, ObjectData> dataMap, Collection<EPC> epcs) throws EchonetObjectException {
+        logger.entering(className, "setGetData", new Object[]{dataMap, epcs});
+        
+        if (dataMap.isEmpty() || epcs.isEmpty()) {
+            throw new IllegalArgumentException("no properties");
+        }
+        
+        EnumSet<EPC> setEPCs = EnumSet.copyOf(dataMap.keySet());
+        EnumSet<EPC> getEPCs = EnumSet.copyOf(epcs);
+        if (setEPCs.size() > MAX_OPC || getEPCs.size() > MAX_OPC) {
+            throw new IllegalArgumentException("too many properties");
+        }
+        
+        if (capabilityCheckEnabled) {
+            EnumSet<EPC> settableEPCs = selectSupported(setEPCs, true);
+            EnumSet<EPC> gettableEPCs = selectSupported(getEPCs, false);
+            if (settableEPCs.isEmpty() || gettableEPCs.isEmpty()) {
+                EnumMap<EPC, ObjectData> settableDataMap = new EnumMap<EPC, ObjectData>(EPC.class);
+                for (EPC epc : settableEPCs) {
+                    settableDataMap.put(epc, dataMap.get(epc));
+                }
+                EnumMap<EPC, Boolean> setResults = setData(settableDataMap);
+                for (EPC epc : setEPCs) {
+                    if (!setResults.containsKey(epc)) {
+                        setResults.put(epc, false);
+                    }
+                }
+                SetGetResult result = new SetGetResult(setResults, getDataWithoutCheck(gettableEPCs));
+                logger.exiting(className, "setGetData", result);
+                return result;
+            }
+            setEPCs = settableEPCs;
+            getEPCs = gettableEPCs;
+        }
+        
+        SetGetTransactionConfig transactionConfig = createSetGetTransactionConfig();
+        for (EPC epc : setEPCs) {
+            transactionConfig.addSet(epc, dataMap.get(epc).getData());
+        }
+        for (EPC epc : getEPCs) {
+            transactionConfig.addGet(epc);
+        }
+        
+        RemoteObjectSetGetMapTransactionListener transactionListener = new RemoteObjectSetGetMapTransactionListener(setEPCs, getEPCs);
+        LinkedList<Transaction> transactions = new LinkedList<Transaction>();
+        transactions.add(createSetGetTransaction(transactionConfig, transactionListener));
+        
+        executeAll(transactions, "setGetData");
+        
+        EnumMap<EPC, Boolean> setResults = transactionListener.getSetResults();
+        for (EPC epc : dataMap.keySet()) {
+            if (!setResults.containsKey(epc)) {
+                setResults.put(epc, false);
+            }
+        }
+        SetGetResult result = new SetGetResult(setResults, transactionListener.getDataMap());
+        logger.exiting(className, "setGetData", result);
+        return result;
+    }
+    
+    /**
+     * 指定されたEPCに指定されたデータを非同期にセットする。
+     * 返されるAsyncResultは、応答の受信あるいはタイムアウト時に完了する。
+     * 送信に失敗した場合には、EchonetObjectExceptionにより失敗する。
+     * @param epc EPCの指定
+     * @param data セットするデータの指定
+     * @return セットを受け付けた場合にはtrue、そうでなければfalseで完了するAsyncResult
+     */
+    public AsyncResult<Boolean> setDataAsync(EPC epc, ObjectData data) {
+        logger.entering(className, "setDataAsync", new Object[]{epc, data});
+        
+        SetGetTransactionConfig transactionConfig = createSetGetTransactionConfig();
+        transactionConfig.addSet(epc, data.getData());
 
-    private PropertyMap getPropertyMap(EPC epc) throws EchonetObjectException {
-        return new PropertyMap(getData(epc).toBytes());
+        final RemoteObjectSetTransactionListener transactionListener = new RemoteObjectSetTransactionListener(epc);
+        Transaction transaction = createSetGetTransaction(transactionConfig, transactionListener);
+        
+        final AsyncResult<Boolean> result = new AsyncResult<Boolean>();
+        transaction.executeAsync().addCallback(new AsyncCallback<Transaction>() {
+            @Override
+            public void completed(Transaction t) {
+                result.complete(transactionListener.isSuccess());
+            }
 
+            @Override
+            public void failed(Exception e) {
+                result.fail(new EchonetObjectException("setData failed", e));
+            }
+        });
+        
+        logger.exiting(className, "setDataAsync", result);
+        return result;
+    }
+
+    /**
+     * このオブジェクトのプロパティマップから生成したPropertyCapabilitiesを返す。
+     * 最初の呼び出し時にメーカーコードと各プロパティマップを一つのGetで取得し、以降は保持しているものを返す。
+     * 一部のプロパティマップのみが取得できた場合には、取得できなかったプロパティマップをEPCを含まないものとして扱う。
+     * 全てのプロパティマップを取得できた場合には、同じクラスとメーカーコードで同じ内容を持つPropertyCapabilitiesは他のRemoteObjectと共有される。
+     * @return このオブジェクトのPropertyCapabilities
+     * @throws EchonetObjectException いずれのプロパティマップの取得にも失敗した場合
+     */
+    public PropertyCapabilities getCapabilities() throws EchonetObjectException {
+        PropertyCapabilities current = capabilities;
+        if (current != null) {
+            return current;
+        }
+        
+        logger.entering(className, "getCapabilities");
+        
+        EnumMap<EPC, ObjectData> dataMap = getDataWithoutCheck(Arrays.asList(EPC.x8A, ANNOUNCE_PROPERTYMAP_EPC, SET_PROPERTYMAP_EPC, GET_PROPERTYMAP_EPC));
+        ObjectData getPropertyMap = dataMap.get(GET_PROPERTYMAP_EPC);
+        ObjectData setPropertyMap = dataMap.get(SET_PROPERTYMAP_EPC);
+        ObjectData announcePropertyMap = dataMap.get(ANNOUNCE_PROPERTYMAP_EPC);
+        if (getPropertyMap == null && setPropertyMap == null && announcePropertyMap == null) {
+            EchonetObjectException exception = new EchonetObjectException("no valid data");
+            logger.throwing(className, "getCapabilities", exception);
+            throw exception;
+        }
+        
+        current = new PropertyCapabilities(getPropertyMap, setPropertyMap, announcePropertyMap);
+        if (getPropertyMap != null && setPropertyMap != null && announcePropertyMap != null) {
+            current = PropertyCapabilities.intern(eoj.getClassEOJ(), dataMap.get(EPC.x8A), current);
+        }
+        capabilities = current;
+        
+        logger.exiting(className, "getCapabilities", current);
+        return current;
+    }
+    
+    /**
+     * 保持しているPropertyCapabilitiesを破棄し、次の利用時にプロパティマップを取得し直すようにする。
+     */
+    public void clearCapabilities() {
+        logger.entering(className, "clearCapabilities");
+        
+        capabilities = null;
+        
+        logger.exiting(className, "clearCapabilities");
+    }
+    
+    /**
+     * プロパティマップによる確認を有効にするかどうかを設定する。
+     * 有効にした場合、getData、setData、setGetDataはプロパティマップでGetあるいはSet可能とされていないEPCの要求を送信せず、
+     * 不可応答を待たずに直ちに失敗として扱う。
+     * @param capabilityCheckEnabled 有効にする場合はtrue、無効にする場合はfalse
+     */
+    public void setCapabilityCheckEnabled(boolean capabilityCheckEnabled) {
+        logger.entering(className, "setCapabilityCheckEnabled", capabilityCheckEnabled);
+        
+        this.capabilityCheckEnabled = capabilityCheckEnabled;
+        
+        logger.exiting(className, "setCapabilityCheckEnabled");
+    }
+    
+    /**
+     * プロパティマップによる確認が有効かどうかを返す。
+     * @return 有効であればtrue、そうでなければfalse
+     */
+    public boolean isCapabilityCheckEnabled() {
+        return capabilityCheckEnabled;
+    }
+    
+    private EnumSet<EPC> selectSupported(Collection<EPC> epcs, boolean set) throws EchonetObjectException {
+        EnumSet<EPC> selected = EnumSet.noneOf(EPC.class);
+        if (epcs.isEmpty()) {
+            return selected;
+        }
+        
+        PropertyCapabilities current = getCapabilities();
+        for (EPC epc : epcs) {
+            if (set ? current.isSettable(epc) : current.isGettable(epc)) {
+                selected.add(epc);
+            }
+        }
+        return selected;
     }
     
     /**
@@ -414,7 +1172,7 @@ public class RemoteObject implements EchonetObject {
      */
     @Override
     public boolean contains(EPC epc) throws EchonetObjectException {
-        return isGettable(epc) || isSettable(epc) || isObservable(epc);
+        return getCapabilities().contains(epc);
     }
     
     /**
@@ -425,7 +1183,7 @@ public class RemoteObject implements EchonetObject {
      */
     @Override
     public boolean isGettable(EPC epc) throws EchonetObjectException {
-        return getPropertyMap(GET_PROPERTYMAP_EPC).isSet(epc);
+        return getCapabilities().isGettable(epc);
     }
     
     /**
@@ -436,7 +1194,7 @@ public class RemoteObject implements EchonetObject {
      */
     @Override
     public boolean isSettable(EPC epc) throws EchonetObjectException {
-        return getPropertyMap(SET_PROPERTYMAP_EPC).isSet(epc);
+        return getCapabilities().isSettable(epc);
     }
     
     /**
@@ -447,14 +1205,14 @@ public class RemoteObject implements EchonetObject {
      */
     @Override
     public boolean isObservable(EPC epc) throws EchonetObjectException {
-        return getPropertyMap(ANNOUNCE_PROPERTYMAP_EPC).isSet(epc);
+        return getCapabilities().isObservable(epc);
     }
     
     /**
      * プロパティデータ変更通知オブザーバを登録する。
      * @param observer 登録するオブザーバ
      */
-    public synchronized void addObserver(RemoteObjectObserver observer) {
+    public void addObserver(RemoteObjectObserver observer) {
         logger.entering(className, "addObserver", observer);
         
         observers.add(observer);
@@ -466,7 +1224,7 @@ public class RemoteObject implements EchonetObject {
      * プロパティデータ変更通知オブザーバの登録を抹消する。
      * @param observer 登録を抹消するオブザーバ
      */
-    public synchronized void removeObserver(RemoteObjectObserver observer) {
+    public void removeObserver(RemoteObjectObserver observer) {
         logger.entering(className, "removeObserver", observer);
         
         observers.remove(observer);
@@ -478,7 +1236,7 @@ public class RemoteObject implements EchonetObject {
      * プロパティデータ変更通知オブザーバの数を返す。
      * @return オブザーバの数
      */
-    public synchronized int countObservers() {
+    public int countObservers() {
         return observers.size();
     }
     
@@ -488,13 +1246,9 @@ public class RemoteObject implements EchonetObject {
      * @param data 通知データ
      */
     public void notifyData(EPC epc, ObjectData data) {
-        logger.entering(className, "notifyData", new Object[]{epc, data});
-        
-        for (RemoteObjectObserver observer : cloneObservers()) {
+        for (RemoteObjectObserver observer : observers.getArray()) {
             observer.notifyData(this, epc, data);
         }
-        
-        logger.exiting(className, "notifyData");
     }
     
     @Override
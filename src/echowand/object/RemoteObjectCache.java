@@ -0,0 +1,580 @@
+package echowand.object;
+
+import echowand.common.EOJ;
+import echowand.common.EPC;
+import echowand.common.PropertyMap;
+import echowand.util.AsyncCallback;
+import echowand.util.StripedCounter;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * RemoteObjectのプロパティデータを保持する読み出しキャッシュ
+ * <p>
+ * getDataは有効期間内のデータがあればネットワークにアクセスせずに返し、なければRemoteObjectから取得して保持する。
+ * 有効期間はEPC毎に設定できる。
+ * 有効期間を過ぎてから再検証期間が経過するまでは保持しているデータを返し、同時にバックグラウンドで取得し直す。
+ * <p>
+ * 生成時にRemoteObjectのRemoteObjectObserverとして登録され、AnnounceRequestProcessorが処理したINF、INFCの通知により
+ * 保持しているデータを更新あるいは無効化する。
+ * 通知を受け取るためには、RemoteObjectがAnnounceRequestProcessorの参照するRemoteObjectManagerに登録されている必要がある。
+ * 全てのメソッドは複数のスレッドから同時に呼び出すことができる。
+ * @author Yoshiki Makino
+ */
+public class RemoteObjectCache implements EchonetObject, RemoteObjectObserver {
+    private static final Logger logger = Logger.getLogger(RemoteObjectCache.class.getName());
+    private static final String className = RemoteObjectCache.class.getName();
+
+    /**
+     * データの有効期間のデフォルト(ミリ秒)
+     */
+    public static final long DEFAULT_TIME_TO_LIVE = 60000;
+
+    /**
+     * キャッシュの利用状況
+     */
+    public static class Statistics {
+        private long hits;
+        private long staleHits;
+        private long misses;
+        private long loadFailures;
+        private long announceUpdates;
+
+        private Statistics(long hits, long staleHits, long misses, long loadFailures, long announceUpdates) {
+            this.hits = hits;
+            this.staleHits = staleHits;
+            this.misses = misses;
+            this.loadFailures = loadFailures;
+            this.announceUpdates = announceUpdates;
+        }
+
+        /**
+         * 有効期間内のデータを返した回数を返す。
+         * @return 有効期間内のデータを返した回数
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * 有効期間を過ぎたデータを再検証期間内に返した回数を返す。
+         * @return 再検証期間内のデータを返した回数
+         */
+        public long getStaleHits() {
+            return staleHits;
+        }
+
+        /**
+         * データを保持しておらずRemoteObjectから取得した回数を返す。
+         * @return RemoteObjectから取得した回数
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * RemoteObjectからの取得に失敗した回数を返す。再検証の失敗も含む。
+         * @return 取得に失敗した回数
+         */
+        public long getLoadFailures() {
+            return loadFailures;
+        }
+
+        /**
+         * INF、INFCの通知によりデータを更新あるいは無効化した回数を返す。
+         * @return 通知による更新あるいは無効化の回数
+         */
+        public long getAnnounceUpdates() {
+            return announceUpdates;
+        }
+
+        /**
+         * 読み出しのうちネットワークへのアクセスを待たずにデータを返した割合を返す。
+         * 読み出しがなければ0を返す。
+         * @return ネットワークへのアクセスを待たずにデータを返した割合
+         */
+        public double getHitRatio() {
+            long total = hits + staleHits + misses;
+            if (total == 0) {
+                return 0;
+            }
+            return (double)(hits + staleHits) / total;
+        }
+
+        @Override
+        public String toString() {
+            return "Statistics{hits: " + hits + ", staleHits: " + staleHits + ", misses: " + misses
+                    + ", loadFailures: " + loadFailures + ", announceUpdates: " + announceUpdates + "}";
+        }
+    }
+
+    /**
+     * 保持しているデータと取得を開始した時刻
+     * 無効化されたEPCはdataがnullのEntryで表し、無効化より前に開始した取得の結果で上書きされないようにする。
+     */
+    private static class Entry {
+        public final ObjectData data;
+        public final long time;
+        public final AtomicBoolean revalidating = new AtomicBoolean(false);
+
+        public Entry(ObjectData data, long time) {
+            this.data = data;
+            this.time = time;
+        }
+    }
+
+    private RemoteObject object;
+    private ConcurrentHashMap<EPC, Entry> entries;
+    private ConcurrentHashMap<EPC, Long> timeToLives;
+    private volatile long defaultTimeToLive;
+    private volatile long staleWhileRevalidate;
+    private volatile boolean updateOnAnnounce;
+
+    private StripedCounter hits;
+    private StripedCounter staleHits;
+    private StripedCounter misses;
+    private StripedCounter loadFailures;
+    private StripedCounter announceUpdates;
+
+    /**
+     * RemoteObjectCacheを生成し、指定されたRemoteObjectのRemoteObjectObserverとして登録する。
+     * 有効期間はDEFAULT_TIME_TO_LIVE、再検証期間は0、通知によるデータの更新は有効に設定される。
+     * @param object データを取得するRemoteObject
+     */
+    public RemoteObjectCache(RemoteObject object) {
+        logger.entering(className, "RemoteObjectCache", object);
+
+        this.object = object;
+        this.entries = new ConcurrentHashMap<EPC, Entry>();
+        this.timeToLives = new ConcurrentHashMap<EPC, Long>();
+        this.defaultTimeToLive = DEFAULT_TIME_TO_LIVE;
+        this.staleWhileRevalidate = 0;
+        this.updateOnAnnounce = true;
+        this.hits = new StripedCounter();
+        this.staleHits = new StripedCounter();
+        this.misses = new StripedCounter();
+        this.loadFailures = new StripedCounter();
+        this.announceUpdates = new StripedCounter();
+
+        object.addObserver(this);
+
+        logger.exiting(className, "RemoteObjectCache");
+    }
+
+    /**
+     * RemoteObjectからこのRemoteObjectCacheの登録を解除する。
+     * 解除後はINF、INFCの通知によるデータの更新が行われなくなる。
+     */
+    public void close() {
+        logger.entering(className, "close");
+
+        object.removeObserver(this);
+
+        logger.exiting(className, "close");
+    }
+
+    /**
+     * データを取得するRemoteObjectを返す。
+     * @return データを取得するRemoteObject
+     */
+    public RemoteObject getRemoteObject() {
+        return object;
+    }
+
+    /**
+     * このオブジェクトのEOJを返す。
+     * @return このオブジェクトのEOJ
+     */
+    @Override
+    public EOJ getEOJ() {
+        return object.getEOJ();
+    }
+
+    /**
+     * 個別に設定されていないEPCのデータの有効期間を設定する。
+     * 有効期間は0以上の整数で指定し、0の場合には常にRemoteObjectから取得する。
+     * @param timeToLive 有効期間(ミリ秒)
+     * @return 有効期間の設定に成功したらtrue、そうでなければfalse
+     */
+    public boolean setDefaultTimeToLive(long timeToLive) {
+        if (timeToLive < 0) {
+            return false;
+        }
+        defaultTimeToLive = timeToLive;
+        return true;
+    }
+
+    /**
+     * 個別に設定されていないEPCのデータの有効期間を返す。
+     * @return 有効期間(ミリ秒)
+     */
+    public long getDefaultTimeToLive() {
+        return defaultTimeToLive;
+    }
+
+    /**
+     * 指定されたEPCのデータの有効期間を設定する。
+     * 有効期間は0以上の整数で指定する。
+     * @param epc EPCの指定
+     * @param timeToLive 有効期間(ミリ秒)
+     * @return 有効期間の設定に成功したらtrue、そうでなければfalse
+     */
+    public boolean setTimeToLive(EPC epc, long timeToLive) {
+        if (timeToLive < 0) {
+            return false;
+        }
+        timeToLives.put(epc, timeToLive);
+        return true;
+    }
+
+    /**
+     * 指定されたEPCのデータの有効期間の個別の設定を削除し、デフォルトの有効期間を用いるようにする。
+     * @param epc EPCの指定
+     */
+    public void removeTimeToLive(EPC epc) {
+        timeToLives.remove(epc);
+    }
+
+    /**
+     * 指定されたEPCのデータの有効期間を返す。
+     * @param epc EPCの指定
+     * @return 有効期間(ミリ秒)
+     */
+    public long getTimeToLive(EPC epc) {
+        Long timeToLive = timeToLives.get(epc);
+        if (timeToLive == null) {
+            return defaultTimeToLive;
+        }
+        return timeToLive;
+    }
+
+    /**
+     * 有効期間を過ぎたデータを返しながらバックグラウンドで取得し直す再検証期間を設定する。
+     * 再検証期間は0以上の整数で指定し、0の場合には有効期間を過ぎたデータは返さない。
+     * @param staleWhileRevalidate 再検証期間(ミリ秒)
+     * @return 再検証期間の設定に成功したらtrue、そうでなければfalse
+     */
+    public boolean setStaleWhileRevalidate(long staleWhileRevalidate) {
+        if (staleWhileRevalidate < 0) {
+            return false;
+        }
+        this.staleWhileRevalidate = staleWhileRevalidate;
+        return true;
+    }
+
+    /**
+     * 有効期間を過ぎたデータを返しながらバックグラウンドで取得し直す再検証期間を返す。
+     * @return 再検証期間(ミリ秒)
+     */
+    public long getStaleWhileRevalidate() {
+        return staleWhileRevalidate;
+    }
+
+    /**
+     * INF、INFCの通知を受けた時に、通知されたデータで更新するか無効化するかを設定する。
+     * @param updateOnAnnounce 更新する場合はtrue、無効化する場合はfalse
+     */
+    public void setUpdateOnAnnounce(boolean updateOnAnnounce) {
+        this.updateOnAnnounce = updateOnAnnounce;
+    }
+
+    /**
+     * INF、INFCの通知を受けた時に、通知されたデータで更新するかどうかを返す。
+     * @return 更新する場合はtrue、無効化する場合はfalse
+     */
+    public boolean isUpdateOnAnnounce() {
+        return updateOnAnnounce;
+    }
+
+    private boolean store(EPC epc, ObjectData data, long time) {
+        for (;;) {
+            Entry current = entries.get(epc);
+            if (current == null) {
+                if (entries.putIfAbsent(epc, new Entry(data, time)) == null) {
+                    return true;
+                }
+            } else if (current.time - time > 0) {
+                return false;
+            } else if (entries.replace(epc, current, new Entry(data, time))) {
+                return true;
+            }
+        }
+    }
+
+    private long getAge(Entry entry, long now) {
+        return TimeUnit.NANOSECONDS.toMillis(now - entry.time);
+    }
+
+    private void revalidate(final EPC epc, final Entry entry) {
+        logger.entering(className, "revalidate", epc);
+
+        final long time = System.nanoTime();
+        object.getDataAsync(epc).addCallback(new AsyncCallback<ObjectData>() {
+            @Override
+            public void completed(ObjectData data) {
+                store(epc, data, time);
+                entry.revalidating.set(false);
+            }
+
+            @Override
+            public void failed(Exception e) {
+                loadFailures.increment();
+                entry.revalidating.set(false);
+            }
+        });
+
+        logger.exiting(className, "revalidate");
+    }
+
+    /**
+     * 有効期間内のデータを保持していれば返し、そうでなければnullを返す。
+     * 再検証期間内のデータを保持している場合には、そのデータを返してバックグラウンドで取得し直す。
+     * ネットワークへのアクセスを待つことはない。
+     * @param epc EPCの指定
+     * @return 保持しているデータ、保持していない場合にはnull
+     */
+    public ObjectData getCachedData(EPC epc) {
+        Entry entry = entries.get(epc);
+        if (entry == null || entry.data == null) {
+            return null;
+        }
+
+        long age = getAge(entry, System.nanoTime());
+        long timeToLive = getTimeToLive(epc);
+        if (age < timeToLive) {
+            hits.increment();
+            return entry.data;
+        }
+
+        if (age < timeToLive + staleWhileRevalidate) {
+            staleHits.increment();
+            if (entry.revalidating.compareAndSet(false, true)) {
+                revalidate(epc, entry);
+            }
+            return entry.data;
+        }
+
+        return null;
+    }
+
+    /**
+     * 指定されたEPCのデータを返す。
+     * 有効期間内あるいは再検証期間内のデータを保持していなければ、RemoteObjectから取得して保持する。
+     * @param epc EPCの指定
+     * @return 指定したEPCのデータ
+     * @throws EchonetObjectException RemoteObjectからの取得に失敗した場合
+     */
+    @Override
+    public ObjectData getData(EPC epc) throws EchonetObjectException {
+        ObjectData data = getCachedData(epc);
+        if (data != null) {
+            return data;
+        }
+
+        logger.entering(className, "getData", epc);
+
+        misses.increment();
+        long time = System.nanoTime();
+        try {
+            data = object.getData(epc);
+        } catch (EchonetObjectException e) {
+            loadFailures.increment();
+            logger.throwing(className, "getData", e);
+            throw e;
+        }
+        store(epc, data, time);
+
+        logger.exiting(className, "getData", data);
+        return data;
+    }
+
+    /**
+     * 指定された複数のEPCのデータを返す。
+     * 有効期間内あるいは再検証期間内のデータを保持していないEPCは、RemoteObjectのgetData(Collection)によりまとめて取得して保持する。
+     * 取得できなかったEPCは返される対応に含まれない。
+     * @param epcs EPCの指定
+     * @return 取得できたEPCとデータの対応
+     * @throws EchonetObjectException RemoteObjectからの取得に失敗した場合
+     */
+    public EnumMap<EPC, ObjectData> getData(Collection<EPC> epcs) throws EchonetObjectException {
+        logger.entering(className, "getData", epcs);
+
+        EnumMap<EPC, ObjectData> dataMap = new EnumMap<EPC, ObjectData>(EPC.class);
+        EnumSet<EPC> missing = EnumSet.noneOf(EPC.class);
+        for (EPC epc : epcs) {
+            ObjectData data = getCachedData(epc);
+            if (data != null) {
+                dataMap.put(epc, data);
+            } else {
+                missing.add(epc);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            misses.add(missing.size());
+            long time = System.nanoTime();
+            EnumMap<EPC, ObjectData> loaded;
+            try {
+                loaded = object.getData(missing);
+            } catch (EchonetObjectException e) {
+                loadFailures.add(missing.size());
+                logger.throwing(className, "getData", e);
+                throw e;
+            }
+            for (EPC epc : loaded.keySet()) {
+                store(epc, loaded.get(epc), time);
+            }
+            dataMap.putAll(loaded);
+        }
+
+        logger.exiting(className, "getData", dataMap);
+        return dataMap;
+    }
+
+    /**
+     * 指定されたEPCに指定されたデータをセットする。
+     * セットの成否にかかわらず、保持している指定されたEPCのデータは無効化される。
+     * @param epc EPCの指定
+     * @param data セットするデータ
+     * @return 成功した場合にはtrue、そうでなければfalse
+     * @throws EchonetObjectException ネットワークに問題が発生した場合
+     */
+    @Override
+    public boolean setData(EPC epc, ObjectData data) throws EchonetObjectException {
+        logger.entering(className, "setData", new Object[]{epc, data});
+
+        try {
+            boolean result = object.setData(epc, data);
+            logger.exiting(className, "setData", result);
+            return result;
+        } finally {
+            invalidate(epc);
+        }
+    }
+
+    /**
+     * 指定されたEPCのデータを無効化する。
+     * @param epc EPCの指定
+     */
+    public void invalidate(EPC epc) {
+        store(epc, null, System.nanoTime());
+    }
+
+    /**
+     * 保持している全てのデータを無効化する。
+     */
+    public void invalidateAll() {
+        for (EPC epc : entries.keySet()) {
+            invalidate(epc);
+        }
+    }
+
+    /**
+     * 指定されたEPCのデータを保持しているかどうかを返す。
+     * 有効期間や再検証期間を過ぎたデータも含む。
+     * @param epc EPCの指定
+     * @return 保持していればtrue、そうでなければfalse
+     */
+    public boolean isCached(EPC epc) {
+        Entry entry = entries.get(epc);
+        return entry != null && entry.data != null;
+    }
+
+    /**
+     * INF、INFCの通知を受けて、保持しているデータを更新あるいは無効化する。
+     * @param object 更新されたオブジェクト
+     * @param epc 更新されたEPC
+     * @param data 更新された新しいデータ
+     */
+    @Override
+    public void notifyData(RemoteObject object, EPC epc, ObjectData data) {
+        announceUpdates.increment();
+        if (updateOnAnnounce) {
+            store(epc, data, System.nanoTime());
+        } else {
+            invalidate(epc);
+        }
+    }
+
+    private boolean isEPCSetAtPropertyMap(EPC epc, EPC propertyMapEPC) throws EchonetObjectException {
+        ObjectData data = getData(propertyMapEPC);
+        return new PropertyMap(data.toBytes()).isSet(epc);
+    }
+
+    /**
+     * 指定されたEPCがこのオブジェクトに含まれているかどうかを返す。
+     * プロパティマップはこのRemoteObjectCacheを通して取得する。
+     * @param epc EPCの指定
+     * @return 含まれていればtrue、そうでなければfalse
+     * @throws EchonetObjectException ネットワークに問題が発生した場合
+     */
+    @Override
+    public boolean contains(EPC epc) throws EchonetObjectException {
+        return isGettable(epc) || isSettable(epc) || isObservable(epc);
+    }
+
+    /**
+     * 指定されたEPCがGet可能であるかを返す。
+     * プロパティマップはこのRemoteObjectCacheを通して取得する。
+     * @param epc EPCの指定
+     * @return Get可能であればtrue、そうでなければfalse
+     * @throws EchonetObjectException ネットワークに問題が発生した場合
+     */
+    @Override
+    public boolean isGettable(EPC epc) throws EchonetObjectException {
+        return isEPCSetAtPropertyMap(epc, RemoteObject.GET_PROPERTYMAP_EPC);
+    }
+
+    /**
+     * 指定されたEPCがSet可能であるかを返す。
+     * プロパティマップはこのRemoteObjectCacheを通して取得する。
+     * @param epc EPCの指定
+     * @return Set可能であればtrue、そうでなければfalse
+     * @throws EchonetObjectException ネットワークに問題が発生した場合
+     */
+    @Override
+    public boolean isSettable(EPC epc) throws EchonetObjectException {
+        return isEPCSetAtPropertyMap(epc, RemoteObject.SET_PROPERTYMAP_EPC);
+    }
+
+    /**
+     * 指定されたEPCが通知を行うかを返す。
+     * プロパティマップはこのRemoteObjectCacheを通して取得する。
+     * @param epc EPCの指定
+     * @return 通知を行うのであればtrue、そうでなければfalse
+     * @throws EchonetObjectException ネットワークに問題が発生した場合
+     */
+    @Override
+    public boolean isObservable(EPC epc) throws EchonetObjectException {
+        return isEPCSetAtPropertyMap(epc, RemoteObject.ANNOUNCE_PROPERTYMAP_EPC);
+    }
+
+    /**
+     * 現在の利用状況を返す。
+     * @return 利用状況
+     */
+    public Statistics getStatistics() {
+        return new Statistics(hits.sum(), staleHits.sum(), misses.sum(), loadFailures.sum(), announceUpdates.sum());
+    }
+
+    /**
+     * 利用状況の計数を0に戻す。
+     */
+    public void resetStatistics() {
+        hits.reset();
+        staleHits.reset();
+        misses.reset();
+        loadFailures.reset();
+        announceUpdates.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "RemoteObjectCache{object: " + object + "}";
+    }
+}
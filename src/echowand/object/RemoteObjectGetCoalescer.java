@@ -0,0 +1,195 @@
+package echowand.object;
+
+import echowand.common.EPC;
+import echowand.util.AsyncCallback;
+import echowand.util.AsyncResult;
+import echowand.util.HashedWheelTimer;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Logger;
+
+/**
+ * RemoteObjectに対する実行中のGet要求の表
+ * <p>
+ * 同じEPCに対する読み出しが実行中であれば、新しいTransactionを開始せずにその結果を共有する。
+ * 併合の待ち時間が正の場合には、その間に要求された異なるEPCを一つのGetフレームにまとめて送信する。
+ * まとめるEPCの数がRemoteObjectのgetMaxGetPropertiesに達した場合には、待ち時間を待たずに送信する。
+ * 待ち時間の計測にはTransactionManagerのHashedWheelTimerを利用し、
+ * 待ち時間の経過後の送信はタイマーのスレッドではなくTransactionManagerのExecutorで行う。
+ * @author Yoshiki Makino
+ */
+class RemoteObjectGetCoalescer {
+    private static final Logger logger = Logger.getLogger(RemoteObjectGetCoalescer.class.getName());
+    private static final String className = RemoteObjectGetCoalescer.class.getName();
+
+    private RemoteObject object;
+    private int mergeDelay;
+    private EnumMap<EPC, AsyncResult<ObjectData>> inflight;
+    private EnumSet<EPC> pending;
+    private HashedWheelTimer.Timeout flushTimeout;
+    private long sharedCount;
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+    private final Runnable scheduleFlushTask = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                object.getListener().getExecutor().execute(flushTask);
+            } catch (RejectedExecutionException e) {
+                flush();
+            }
+        }
+    };
+
+    /**
+     * RemoteObjectGetCoalescerを生成する。
+     * @param object 読み出しを行うRemoteObject
+     */
+    public RemoteObjectGetCoalescer(RemoteObject object) {
+        this.object = object;
+        this.mergeDelay = 0;
+        this.inflight = new EnumMap<EPC, AsyncResult<ObjectData>>(EPC.class);
+        this.pending = EnumSet.noneOf(EPC.class);
+    }
+
+    /**
+     * 異なるEPCの読み出しを一つのGetフレームにまとめるための待ち時間を設定する。
+     * 0を指定した場合にはまとめずに直ちに送信する。
+     * @param mergeDelay 待ち時間(ミリ秒)
+     */
+    public synchronized void setMergeDelay(int mergeDelay) {
+        this.mergeDelay = mergeDelay;
+    }
+
+    /**
+     * 異なるEPCの読み出しを一つのGetフレームにまとめるための待ち時間を返す。
+     * @return 待ち時間(ミリ秒)
+     */
+    public synchronized int getMergeDelay() {
+        return mergeDelay;
+    }
+
+    /**
+     * 実行中の読み出しの結果を共有した要求の数を返す。
+     * @return 結果を共有した要求の数
+     */
+    public synchronized long countSharedRequests() {
+        return sharedCount;
+    }
+
+    /**
+     * 指定されたEPCのデータを非同期に取得する。
+     * 同じEPCの読み出しが実行中であれば、その結果で完了する。
+     * 返されるAsyncResultは呼び出し毎に生成されるため、取り消しは他の要求に影響しない。
+     * @param epc EPCの指定
+     * @return 指定したEPCのデータで完了するAsyncResult
+     */
+    public AsyncResult<ObjectData> getDataAsync(EPC epc) {
+        logger.entering(className, "getDataAsync", epc);
+
+        AsyncResult<ObjectData> shared;
+        EnumSet<EPC> flushEPCs = null;
+
+        synchronized (this) {
+            shared = inflight.get(epc);
+            if (shared != null) {
+                sharedCount++;
+            } else {
+                shared = new AsyncResult<ObjectData>();
+                inflight.put(epc, shared);
+                pending.add(epc);
+
+                if (mergeDelay <= 0 || pending.size() >= object.getMaxGetProperties()) {
+                    flushEPCs = takePending();
+                } else if (flushTimeout == null) {
+                    flushTimeout = object.getListener().getTimer().schedule(scheduleFlushTask, mergeDelay);
+                }
+            }
+        }
+
+        if (flushEPCs != null) {
+            execute(flushEPCs);
+        }
+
+        final AsyncResult<ObjectData> result = new AsyncResult<ObjectData>();
+        shared.addCallback(new AsyncCallback<ObjectData>() {
+            @Override
+            public void completed(ObjectData data) {
+                result.complete(data);
+            }
+
+            @Override
+            public void failed(Exception e) {
+                result.fail(e);
+            }
+        });
+
+        logger.exiting(className, "getDataAsync", result);
+        return result;
+    }
+
+    private synchronized EnumSet<EPC> takePending() {
+        if (flushTimeout != null) {
+            flushTimeout.cancel();
+            flushTimeout = null;
+        }
+
+        if (pending.isEmpty()) {
+            return null;
+        }
+
+        EnumSet<EPC> epcs = pending;
+        pending = EnumSet.noneOf(EPC.class);
+        return epcs;
+    }
+
+    private void flush() {
+        EnumSet<EPC> epcs = takePending();
+
+        if (epcs != null) {
+            execute(epcs);
+        }
+    }
+
+    private synchronized EnumMap<EPC, AsyncResult<ObjectData>> removeInflight(EnumSet<EPC> epcs) {
+        EnumMap<EPC, AsyncResult<ObjectData>> results = new EnumMap<EPC, AsyncResult<ObjectData>>(EPC.class);
+        for (EPC epc : epcs) {
+            results.put(epc, inflight.remove(epc));
+        }
+        return results;
+    }
+
+    private void execute(final EnumSet<EPC> epcs) {
+        logger.entering(className, "execute", epcs);
+
+        object.getDataMapAsync(epcs).addCallback(new AsyncCallback<EnumMap<EPC, ObjectData>>() {
+            @Override
+            public void completed(EnumMap<EPC, ObjectData> dataMap) {
+                EnumMap<EPC, AsyncResult<ObjectData>> results = removeInflight(epcs);
+                for (EPC epc : epcs) {
+                    ObjectData data = dataMap.get(epc);
+                    if (data != null) {
+                        results.get(epc).complete(data);
+                    } else {
+                        results.get(epc).fail(new EchonetObjectException("no valid data"));
+                    }
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                EnumMap<EPC, AsyncResult<ObjectData>> results = removeInflight(epcs);
+                for (EPC epc : epcs) {
+                    results.get(epc).fail(e);
+                }
+            }
+        });
+
+        logger.exiting(className, "execute");
+    }
+}
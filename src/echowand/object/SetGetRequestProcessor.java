@@ -4,6 +4,7 @@ import echowand.common.EOJ;
 import echowand.common.ESV;
 import echowand.logic.DefaultRequestProcessor;
 import echowand.net.*;
+import echowand.util.MetricsRegistry;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
@@ -34,71 +35,45 @@ public class SetGetRequestProcessor extends DefaultRequestProcessor {
     }
     
     private void addAllSetFromFirst(LocalSetGetAtomic localSetGetAtomic, StandardPayload payload) {
-        logger.entering(className, "addAllSetFromFirst", new Object[]{localSetGetAtomic, payload});
-        
         int len = payload.getFirstOPC();
         for (int i=0; i<len; i++) {
             localSetGetAtomic.addSet(payload.getFirstPropertyAt(i));
         }
-        
-        logger.exiting(className, "addAllSetFromFirst");
     }
     
     private void addAllGetFromFirst(LocalSetGetAtomic localSetGetAtomic, StandardPayload payload) {
-        logger.entering(className, "addAllGetFromFirst", new Object[]{localSetGetAtomic, payload});
-        
         int len = payload.getFirstOPC();
         for (int i=0; i<len; i++) {
             localSetGetAtomic.addGet(payload.getFirstPropertyAt(i));
         }
-        
-        logger.exiting(className, "addAllGetFromFirst");
     }
     
     private void addAllGetFromSecond(LocalSetGetAtomic localSetGetAtomic, StandardPayload payload) {
-        logger.entering(className, "addAllGetFromSecond", new Object[]{localSetGetAtomic, payload});
-        
         int len = payload.getSecondOPC();
         for (int i=0; i<len; i++) {
             localSetGetAtomic.addGet(payload.getSecondPropertyAt(i));
         }
-        
-        logger.exiting(className, "addAllGetFromSecond");
     }
     
     private void addAllSetToFirst(LocalSetGetAtomic localSetGetAtomic, StandardPayload payload) {
-        logger.entering(className, "addAllSetToFirst", new Object[]{localSetGetAtomic, payload});
-        
         for (Property property : localSetGetAtomic.getSetResult()) {
             payload.addFirstProperty(property);
         }
-        
-        logger.exiting(className, "addAllSetToFirst");
     }
     
     private void addAllGetToFirst(LocalSetGetAtomic localSetGetAtomic, StandardPayload payload) {
-        logger.entering(className, "addAllGetToFirst", new Object[]{localSetGetAtomic, payload});
-        
         for (Property property : localSetGetAtomic.getGetResult()) {
             payload.addFirstProperty(property);
         }
-        
-        logger.exiting(className, "addAllGetToFirst");
     }
     
     private void addAllGetToSecond(LocalSetGetAtomic localSetGetAtomic, StandardPayload payload) {
-        logger.entering(className, "addAllGetToSecond", new Object[]{localSetGetAtomic, payload});
-        
         for (Property property : localSetGetAtomic.getGetResult()) {
             payload.addSecondProperty(property);
         }
-        
-        logger.exiting(className, "addAllGetToSecond");
     }
     
     private boolean doSetAllData(Frame frame, LocalObject object, StandardPayload res) {
-        logger.entering(className, "doSetAllData", new Object[]{frame, object, res});
-        
         StandardPayload req = (StandardPayload)frame.getCommonFrame().getEDATA();
         
         LocalSetGetAtomic localSetGetAtomic = new LocalSetGetAtomic(object);
@@ -109,15 +84,10 @@ public class SetGetRequestProcessor extends DefaultRequestProcessor {
         
         addAllSetToFirst(localSetGetAtomic, res);
         
-        boolean success = localSetGetAtomic.isSuccess();
-        
-        logger.exiting(className, "doSetAllData", success);
-        return success;
+        return localSetGetAtomic.isSuccess();
     }
     
     private boolean doGetAllData(Frame frame, LocalObject object, StandardPayload res, boolean announce) {
-        logger.entering(className, "doGetAllData", new Object[]{frame, object, res, announce});
-        
         StandardPayload req = (StandardPayload)frame.getCommonFrame().getEDATA();
         
         LocalSetGetAtomic localSetGetAtomic = new LocalSetGetAtomic(object);
@@ -129,15 +99,10 @@ public class SetGetRequestProcessor extends DefaultRequestProcessor {
         
         addAllGetToFirst(localSetGetAtomic, res);
         
-        boolean success = localSetGetAtomic.isSuccess();
-        
-        logger.exiting(className, "doGetAllData", success);
-        return success;
+        return localSetGetAtomic.isSuccess();
     }
     
     private boolean doSetGetAllData(Frame frame, LocalObject object, StandardPayload res) {
-        logger.entering(className, "doSetGetAllData", new Object[]{frame, object, res});
-        
         StandardPayload req = (StandardPayload)frame.getCommonFrame().getEDATA();
         
         LocalSetGetAtomic localSetGetAtomic = new LocalSetGetAtomic(object);
@@ -150,24 +115,14 @@ public class SetGetRequestProcessor extends DefaultRequestProcessor {
         addAllSetToFirst(localSetGetAtomic, res);
         addAllGetToSecond(localSetGetAtomic, res);
         
-        boolean success = localSetGetAtomic.isSuccess();
-        
-        logger.exiting(className, "doSetGetAllData", success);
-        return success;
+        return localSetGetAtomic.isSuccess();
     }
     
     private Frame createResponse(Node sender, Frame frame, LocalObject object, StandardPayload res) {
-        logger.entering(className, "createResponse", new Object[]{sender, frame, object, res});
-        
-        Frame resFrame = createResponse(sender, frame, object, res, false, null);
-        
-        logger.exiting(className, "createResponse", resFrame);
-        return resFrame;
+        return createResponse(sender, frame, object, res, false, null);
     }
     
     private Frame createResponse(Node sender, Frame frame, LocalObject object, StandardPayload res, boolean useGroup, Subnet subnet) {
-        logger.entering(className, "createResponse", new Object[]{sender, frame, object, res, useGroup, subnet});
-        
         short tid = frame.getCommonFrame().getTID();
         CommonFrame cf = new CommonFrame();
         cf.setTID(tid);
@@ -182,10 +137,7 @@ public class SetGetRequestProcessor extends DefaultRequestProcessor {
             peer = subnet.getGroupNode();
         }
         
-        Frame resFrame =  new Frame(sender, peer, cf);
-        
-        logger.exiting(className, "createResponse", resFrame);
-        return resFrame;
+        return new Frame(sender, peer, cf);
     }
     
     private List<LocalObject> getDestinationObject(Frame frame) {
@@ -204,25 +156,28 @@ public class SetGetRequestProcessor extends DefaultRequestProcessor {
         }
     }
     
-    private void processObjectSetI(Subnet subnet, Frame frame, LocalObject object, boolean processed) {
-        logger.entering(className, "processObjectSetI", new Object[]{subnet, frame, object, processed});
+    private void sendResponse(Subnet subnet, Frame response) throws SubnetException {
+        subnet.send(response);
         
+        MetricsRegistry metrics = MetricsRegistry.getCurrent();
+        if (metrics != null) {
+            metrics.recordSent(response.getESV());
+        }
+    }
+    
+    private void processObjectSetI(Subnet subnet, Frame frame, LocalObject object, boolean processed) {
         StandardPayload res = new StandardPayload();
         if (!doSetAllData(frame, object, res)) {
             res.setESV(ESV.SetI_SNA);
             try {
-                subnet.send(createResponse(subnet.getLocalNode(), frame, object, res));
+                sendResponse(subnet, createResponse(subnet.getLocalNode(), frame, object, res));
             } catch (SubnetException e) {
                 e.printStackTrace();
             }
         }
-        
-        logger.entering(className, "processObjectSetI");
     }
     
     private void processObjectSetC(Subnet subnet, Frame frame, LocalObject object, boolean processed) {
-        logger.entering(className, "processObjectSetC", new Object[]{subnet, frame, object, processed});
-        
         StandardPayload res = new StandardPayload();
         if (doSetAllData(frame, object, res)) {
             res.setESV(ESV.Set_Res);
@@ -230,17 +185,13 @@ public class SetGetRequestProcessor extends DefaultRequestProcessor {
             res.setESV(ESV.SetC_SNA);
         }
         try {
-            subnet.send(createResponse(subnet.getLocalNode(), frame, object, res));
+            sendResponse(subnet, createResponse(subnet.getLocalNode(), frame, object, res));
         } catch (SubnetException e) {
             e.printStackTrace();
         }
-        
-        logger.exiting(className, "processObjectSetC");
     }
     
     private void processObjectGet(Subnet subnet, Frame frame, LocalObject object, boolean processed) {
-        logger.entering(className, "processObjectGet", new Object[]{subnet, frame, object, processed});
-        
         StandardPayload res = new StandardPayload();
         if (doGetAllData(frame, object, res, false)) {
             res.setESV(ESV.Get_Res);
@@ -248,17 +199,13 @@ public class SetGetRequestProcessor extends DefaultRequestProcessor {
             res.setESV(ESV.Get_SNA);
         }
         try {
-            subnet.send(createResponse(subnet.getLocalNode(), frame, object, res));
+            sendResponse(subnet, createResponse(subnet.getLocalNode(), frame, object, res));
         } catch (SubnetException e) {
             e.printStackTrace();
         }
-        
-        logger.exiting(className, "processObjectGet");
     }
 
     private void processObjectSetGet(Subnet subnet, Frame frame, LocalObject object, boolean processed) {
-        logger.entering(className, "processObjectSetGet", new Object[]{subnet, frame, object, processed});
-        
         StandardPayload res = new StandardPayload();
         if (doSetGetAllData(frame, object, res)) {
             res.setESV(ESV.SetGet_Res);
@@ -266,16 +213,12 @@ public class SetGetRequestProcessor extends DefaultRequestProcessor {
             res.setESV(ESV.SetGet_SNA);
         }
         try {
-            subnet.send(createResponse(subnet.getLocalNode(), frame, object, res));
+            sendResponse(subnet, createResponse(subnet.getLocalNode(), frame, object, res));
         } catch (SubnetException e) {
             e.printStackTrace();
         }
-        
-        logger.exiting(className, "processObjectSetGet");
     }
     private void processObjectINF_REQ(Subnet subnet, Frame frame, LocalObject object, boolean processed) {
-        logger.entering(className, "processObjectINF_REQ", new Object[]{subnet, frame, object, processed});
-        
         StandardPayload res = new StandardPayload();
         if (doGetAllData(frame, object, res, true)) {
             res.setESV(ESV.INF);
@@ -283,25 +226,19 @@ public class SetGetRequestProcessor extends DefaultRequestProcessor {
             res.setESV(ESV.INF_SNA);
         }
         try {
-            subnet.send(createResponse(subnet.getLocalNode(), frame, object, res, true, subnet));
+            sendResponse(subnet, createResponse(subnet.getLocalNode(), frame, object, res, true, subnet));
         } catch (SubnetException e) {
             e.printStackTrace();
         }
-        
-        logger.exiting(className, "processObjectINF_REQ");
     }
     
     private boolean processRequest(Subnet subnet, Frame frame, ESV esv, boolean processed) {
-        logger.entering(className, "processRequest", new Object[]{subnet, frame, esv, processed});
-        
         if (processed) {
-            logger.exiting(className, "processRequest", false);
             return false;
         }
         
         List<LocalObject> objects = getDestinationObject(frame);
         if (objects.isEmpty()) {
-            logger.exiting(className, "processRequest", false);
             return false;
         }
         
@@ -323,12 +260,10 @@ public class SetGetRequestProcessor extends DefaultRequestProcessor {
                     processObjectINF_REQ(subnet, frame, object, processed);
                     break;
                 default:
-                    logger.exiting(className, "processRequest", false);
                     return false;
             }
         }
 
-        logger.exiting(className, "processRequest", true);
         return true;
     }
     
@@ -341,12 +276,7 @@ public class SetGetRequestProcessor extends DefaultRequestProcessor {
      */
     @Override
     public boolean processSetI(Subnet subnet, Frame frame, boolean processed) {
-        logger.entering(className, "processRequest", new Object[]{subnet, frame, processed});
-        
-        boolean ret = processRequest(subnet, frame, ESV.SetI, processed);
-        
-        logger.entering(className, "processRequest", ret);
-        return ret;
+        return processRequest(subnet, frame, ESV.SetI, processed);
     }
     
     /**
@@ -358,12 +288,7 @@ public class SetGetRequestProcessor extends DefaultRequestProcessor {
      */
     @Override
     public boolean processSetC(Subnet subnet, Frame frame, boolean processed) {
-        logger.entering(className, "processSetC", new Object[]{subnet, frame, processed});
-        
-        boolean ret = processRequest(subnet, frame, ESV.SetC, processed);
-        
-        logger.entering(className, "processSetC", ret);
-        return ret;
+        return processRequest(subnet, frame, ESV.SetC, processed);
     }
     
     /**
@@ -375,12 +300,7 @@ public class SetGetRequestProcessor extends DefaultRequestProcessor {
      */
     @Override
     public boolean processGet(Subnet subnet, Frame frame, boolean processed) {
-        logger.entering(className, "processGet", new Object[]{subnet, frame, processed});
-        
-        boolean ret = processRequest(subnet, frame, ESV.Get, processed);
-        
-        logger.exiting(className, "processGet", ret);
-        return ret;
+        return processRequest(subnet, frame, ESV.Get, processed);
     }
 
     /**
@@ -392,12 +312,7 @@ public class SetGetRequestProcessor extends DefaultRequestProcessor {
      */
     @Override
     public boolean processSetGet(Subnet subnet, Frame frame, boolean processed) {
-        logger.entering(className, "processSetGet", new Object[]{subnet, frame, processed});
-        
-        boolean ret = processRequest(subnet, frame, ESV.SetGet, processed);
-        
-        logger.exiting(className, "processSetGet", ret);
-        return ret;
+        return processRequest(subnet, frame, ESV.SetGet, processed);
     }
     
     /**
@@ -409,11 +324,6 @@ public class SetGetRequestProcessor extends DefaultRequestProcessor {
      */
     @Override
     public boolean processINF_REQ(Subnet subnet, Frame frame, boolean processed) {
-        logger.entering(className, "processSetGet", new Object[]{subnet, frame, processed});
-        
-        boolean ret = processRequest(subnet, frame, ESV.INF_REQ, processed);
-        
-        logger.exiting(className, "processSetGet", ret);
-        return ret;
+        return processRequest(subnet, frame, ESV.INF_REQ, processed);
     }
 }
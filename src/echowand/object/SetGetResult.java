@@ -0,0 +1,75 @@
+package echowand.object;
+
+import echowand.common.EPC;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * RemoteObjectのsetGetDataの結果を表す。
+ * Setを要求した各EPCの受理の可否と、Getで読み出された各EPCのデータを保持する。
+ * @author Yoshiki Makino
+ */
+public class SetGetResult {
+    private Map<EPC, Boolean> setResults;
+    private Map<EPC, ObjectData> dataMap;
+    
+    /**
+     * SetGetResultを生成する。
+     * @param setResults Setを要求したEPCと受理の可否の対応
+     * @param dataMap 読み出されたEPCとデータの対応
+     */
+    public SetGetResult(Map<EPC, Boolean> setResults, Map<EPC, ObjectData> dataMap) {
+        this.setResults = Collections.unmodifiableMap(new EnumMap<EPC, Boolean>(setResults));
+        this.dataMap = Collections.unmodifiableMap(new EnumMap<EPC, ObjectData>(dataMap));
+    }
+    
+    /**
+     * Setを要求したEPCと受理の可否の対応を返す。
+     * @return EPCと受理の可否の対応
+     */
+    public Map<EPC, Boolean> getSetResults() {
+        return setResults;
+    }
+    
+    /**
+     * 指定されたEPCのSetが受理されたかどうかを返す。
+     * @param epc EPCの指定
+     * @return 受理された場合にはtrue、そうでなければfalse
+     */
+    public boolean isSetAccepted(EPC epc) {
+        Boolean accepted = setResults.get(epc);
+        return accepted != null && accepted;
+    }
+    
+    /**
+     * 読み出されたEPCとデータの対応を返す。
+     * 読み出せなかったEPCは含まれない。
+     * @return EPCとデータの対応
+     */
+    public Map<EPC, ObjectData> getDataMap() {
+        return dataMap;
+    }
+    
+    /**
+     * 指定されたEPCの読み出されたデータを返す。
+     * @param epc EPCの指定
+     * @return 読み出されたデータ、読み出せなかった場合にはnull
+     */
+    public ObjectData getData(EPC epc) {
+        return dataMap.get(epc);
+    }
+    
+    /**
+     * 全てのSetが受理されたかどうかを返す。
+     * @return 全て受理された場合にはtrue、そうでなければfalse
+     */
+    public boolean isAllSetAccepted() {
+        return !setResults.containsValue(false);
+    }
+    
+    @Override
+    public String toString() {
+        return "SetGetResult(set: " + setResults + ", get: " + dataMap + ")";
+    }
+}
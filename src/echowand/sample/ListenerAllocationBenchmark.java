@@ -0,0 +1,196 @@
+package echowand.sample;
+
+import echowand.common.Data;
+import echowand.common.EOJ;
+import echowand.common.EPC;
+import echowand.common.ESV;
+import echowand.info.TemperatureSensorInfo;
+import echowand.logic.*;
+import echowand.net.*;
+import echowand.object.*;
+import echowand.util.AllocationMeter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MainLoopが受信したフレームをListener、RequestProcessor、TransactionListener、
+ * RemoteObjectObserver、LocalObjectDelegateに渡す処理のスループットとヒープ領域の割り当て量を計測するプログラム
+ * Getリクエスト、Get応答、INFの三種類のフレームを順に処理し、一秒当たりのフレーム数とフレーム一つ当たりの割り当て量を表示する。
+ * ネットワークへの送信は行わない。
+ * @author Yoshiki Makino
+ */
+public class ListenerAllocationBenchmark {
+    private static final int REGISTRY_SIZE = 4;
+    private static final EOJ LOCAL_EOJ = new EOJ("001101");
+    private static final EOJ REMOTE_EOJ = new EOJ("001101");
+    private static final EOJ CONTROLLER_EOJ = new EOJ("05ff01");
+
+    private static class Stop extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static class BenchmarkSubnet implements Subnet {
+        private InternalSubnet subnet;
+        private Frame[] frames;
+        private int warmup;
+        private int count;
+        private int index = 0;
+        private AllocationMeter meter;
+        private long begin;
+        public long allocated;
+        public long elapsed;
+
+        public BenchmarkSubnet(InternalSubnet subnet, Frame[] frames, int warmup, int count) {
+            this.subnet = subnet;
+            this.frames = frames;
+            this.warmup = warmup;
+            this.count = count;
+        }
+
+        @Override
+        public boolean send(Frame frame) {
+            return true;
+        }
+
+        @Override
+        public Frame recv() {
+            if (index == warmup) {
+                meter = new AllocationMeter();
+                begin = System.nanoTime();
+            } else if (index == warmup + count) {
+                elapsed = System.nanoTime() - begin;
+                allocated = meter.getAllocatedBytes();
+                throw new Stop();
+            }
+            return frames[index++ % frames.length];
+        }
+
+        @Override
+        public Node getLocalNode() {
+            return subnet.getLocalNode();
+        }
+
+        @Override
+        public Node getGroupNode() {
+            return subnet.getGroupNode();
+        }
+    }
+
+    private static class NullListener implements Listener {
+        @Override
+        public boolean process(Subnet subnet, Frame frame, boolean processed) {
+            return false;
+        }
+    }
+
+    private static class NullTransactionListener implements TransactionListener {
+        @Override
+        public void begin(Transaction t) {
+        }
+
+        @Override
+        public void receive(Transaction t, Subnet subnet, Frame frame) {
+        }
+
+        @Override
+        public void finish(Transaction t) {
+        }
+    }
+
+    private static class NullObserver implements RemoteObjectObserver {
+        @Override
+        public void notifyData(RemoteObject object, EPC epc, ObjectData data) {
+        }
+    }
+
+    private static Frame createFrame(Node sender, Node receiver, EOJ seoj, EOJ deoj, ESV esv, short tid, Property property) {
+        CommonFrame commonFrame = new CommonFrame(seoj, deoj, esv);
+        commonFrame.setTID(tid);
+        ((StandardPayload)commonFrame.getEDATA()).addFirstProperty(property);
+        return new Frame(sender, receiver, commonFrame);
+    }
+
+    private static void measure(int count) throws Exception {
+        InternalSubnet internalSubnet = new InternalSubnet("ListenerAllocationBenchmark");
+        Node device = internalSubnet.getRemoteNode("DEVICE");
+        TransactionManager transactionManager = new TransactionManager(internalSubnet);
+
+        LocalObjectManager localManager = new LocalObjectManager();
+        LocalObject localObject = new LocalObject(new TemperatureSensorInfo());
+        localManager.add(localObject);
+        for (int i = 1; i < REGISTRY_SIZE; i++) {
+            localObject.addDelegate(new LocalObjectDefaultDelegate());
+        }
+
+        RemoteObjectManager remoteManager = new RemoteObjectManager();
+        RemoteObject remoteObject = new RemoteObject(internalSubnet, device, REMOTE_EOJ, transactionManager);
+        remoteManager.add(remoteObject);
+        for (int i = 0; i < REGISTRY_SIZE; i++) {
+            remoteObject.addObserver(new NullObserver());
+        }
+
+        RequestDispatcher dispatcher = new RequestDispatcher();
+        dispatcher.addRequestProcessor(new SetGetRequestProcessor(localManager));
+        dispatcher.addRequestProcessor(new AnnounceRequestProcessor(localManager, remoteManager));
+        for (int i = 2; i < REGISTRY_SIZE; i++) {
+            dispatcher.addRequestProcessor(new DefaultRequestProcessor());
+        }
+
+        SetGetTransactionConfig config = new SetGetTransactionConfig();
+        config.setSenderNode(internalSubnet.getLocalNode());
+        config.setReceiverNode(device);
+        config.setSourceEOJ(CONTROLLER_EOJ);
+        config.setDestinationEOJ(REMOTE_EOJ);
+        config.addGet(EPC.x80);
+        Transaction transaction = transactionManager.createTransaction(config);
+        transaction.setTimeout(0);
+        for (int i = 0; i < REGISTRY_SIZE; i++) {
+            transaction.addTransactionListener(new NullTransactionListener());
+        }
+        transaction.execute();
+
+        Property get = new Property(EPC.x80);
+        Property data = new Property(EPC.x80, new Data((byte)0x30));
+        Frame[] frames = new Frame[]{
+            createFrame(device, internalSubnet.getLocalNode(), CONTROLLER_EOJ, localObject.getEOJ(), ESV.Get, (short)1, get),
+            createFrame(device, internalSubnet.getLocalNode(), REMOTE_EOJ, CONTROLLER_EOJ, ESV.Get_Res, transaction.getTID(), data),
+            createFrame(device, internalSubnet.getLocalNode(), REMOTE_EOJ, CONTROLLER_EOJ, ESV.INF, (short)2, data),
+        };
+        for (Frame frame : frames) {
+            frame.getCommonFrame();
+        }
+
+        BenchmarkSubnet subnet = new BenchmarkSubnet(internalSubnet, frames, count, count);
+        MainLoop mainLoop = new MainLoop();
+        mainLoop.setSubnet(subnet);
+        mainLoop.addListener(dispatcher);
+        mainLoop.addListener(transactionManager);
+        for (int i = 2; i < REGISTRY_SIZE; i++) {
+            mainLoop.addListener(new NullListener());
+        }
+
+        try {
+            mainLoop.run();
+        } catch (Stop e) {
+        }
+
+        transaction.finish();
+        transactionManager.close();
+
+        double seconds = (double)subnet.elapsed / TimeUnit.SECONDS.toNanos(1);
+        System.out.format("%.0f frames/s, %.1f bytes/frame%n", count / seconds, (double)subnet.allocated / count);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (!AllocationMeter.isSupported()) {
+            System.err.println("allocation measurement is not supported");
+            return;
+        }
+
+        int count = 300000;
+        if (args.length > 0) {
+            count = Integer.parseInt(args[0]);
+        }
+
+        measure(count);
+    }
+}
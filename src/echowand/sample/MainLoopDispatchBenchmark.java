@@ -0,0 +1,108 @@
+package echowand.sample;
+
+import echowand.common.EOJ;
+import echowand.common.EPC;
+import echowand.common.ESV;
+import echowand.logic.Listener;
+import echowand.logic.MainLoop;
+import echowand.logic.OrderedExecutor;
+import echowand.net.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * MainLoopが受信したフレームをListenerで処理する際のスループットを計測するプログラム
+ * InternalSubnet上の複数の送信ノードからフレームを受信し、フレーム毎に一定時間待機するListenerで処理する。
+ * Executorを設定しない場合と、ワーカー数の異なるOrderedExecutorを設定した場合について、一秒当たりの処理フレーム数を表示する。
+ * @author Yoshiki Makino
+ */
+public class MainLoopDispatchBenchmark {
+    private static final int[] WORKER_COUNTS = {0, 1, 2, 4, 8, 16};
+    private static final int SENDER_COUNT = 32;
+
+    private static class SlowListener implements Listener {
+        private long workNanos;
+        private CountDownLatch latch;
+
+        public SlowListener(long workNanos, int count) {
+            this.workNanos = workNanos;
+            this.latch = new CountDownLatch(count);
+        }
+
+        @Override
+        public boolean process(Subnet subnet, Frame frame, boolean processed) {
+            LockSupport.parkNanos(workNanos);
+            latch.countDown();
+            return true;
+        }
+
+        public void await() throws InterruptedException {
+            latch.await();
+        }
+    }
+
+    private static double measure(int workers, int count, long workNanos) throws SubnetException, InterruptedException {
+        String networkName = "MainLoopDispatchBenchmark" + workers;
+        InternalSubnet subnet = new InternalSubnet(networkName);
+        String receiverName = "LOCAL(" + subnet.getId() + ")";
+
+        InternalSubnet[] senders = new InternalSubnet[SENDER_COUNT];
+        for (int i = 0; i < senders.length; i++) {
+            senders[i] = new InternalSubnet(networkName);
+        }
+
+        for (int i = 0; i < count; i++) {
+            InternalSubnet sender = senders[i % senders.length];
+            CommonFrame commonFrame = new CommonFrame(new EOJ("05ff01"), new EOJ("001101"), ESV.Get);
+            commonFrame.setTID((short)i);
+            ((StandardPayload)commonFrame.getEDATA()).addFirstProperty(new Property(EPC.x80));
+            sender.send(new Frame(sender.getLocalNode(), sender.getRemoteNode(receiverName), commonFrame));
+        }
+
+        SlowListener listener = new SlowListener(workNanos, count);
+        MainLoop mainLoop = new MainLoop();
+        mainLoop.setSubnet(subnet);
+        mainLoop.addListener(listener);
+
+        OrderedExecutor executor = null;
+        if (workers > 0) {
+            executor = new OrderedExecutor(workers);
+            mainLoop.setExecutor(executor);
+        }
+
+        Thread thread = new Thread(mainLoop);
+        thread.setDaemon(true);
+
+        long begin = System.nanoTime();
+        thread.start();
+        listener.await();
+        long end = System.nanoTime();
+
+        if (executor != null) {
+            executor.shutdown();
+        }
+
+        return count / ((double)(end - begin) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    public static void main(String[] args) throws SubnetException, InterruptedException {
+        int count = 10000;
+        long workMicros = 100;
+        if (args.length > 0) {
+            count = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1) {
+            workMicros = Long.parseLong(args[1]);
+        }
+
+        for (int workers : WORKER_COUNTS) {
+            double throughput = measure(workers, count, TimeUnit.MICROSECONDS.toNanos(workMicros));
+            if (workers == 0) {
+                System.out.format("  inline: %.0f frames/s%n", throughput);
+            } else {
+                System.out.format("%2d workers: %.0f frames/s%n", workers, throughput);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package echowand.sample;
+
+import echowand.common.Data;
+import echowand.common.EOJ;
+import echowand.common.EPC;
+import echowand.common.ESV;
+import echowand.net.*;
+import echowand.util.AllocationMeter;
+
+/**
+ * Inet4Subnetの受信処理で割り当てられるヒープ領域の量を計測するプログラム
+ * 通常の受信とバッファプールを利用した受信について、フレーム一つ当たりの割り当て量を表示する。
+ * ループバックでローカルノードにフレームを送信し、それを受信するまでの処理を計測する。
+ * @author Yoshiki Makino
+ */
+public class ReceiveAllocationBenchmark {
+    
+    private static Frame createFrame(Subnet subnet) {
+        CommonFrame commonFrame = new CommonFrame(new EOJ("013001"), new EOJ("0ef001"), ESV.INF);
+        StandardPayload payload = (StandardPayload) commonFrame.getEDATA();
+        payload.addFirstProperty(new Property(EPC.x80, new Data((byte)0x30)));
+        return new Frame(subnet.getLocalNode(), subnet.getLocalNode(), commonFrame);
+    }
+    
+    private static double measure(Inet4Subnet subnet, int count) throws SubnetException {
+        Frame frame = createFrame(subnet);
+        long allocated = 0;
+        
+        for (int i=0; i<count; i++) {
+            subnet.send(frame);
+            
+            AllocationMeter meter = new AllocationMeter();
+            Frame recvFrame = subnet.recv();
+            recvFrame.release();
+            allocated += meter.getAllocatedBytes();
+        }
+        
+        return (double)allocated / count;
+    }
+    
+    public static void main(String[] args) throws SubnetException {
+        if (!AllocationMeter.isSupported()) {
+            System.err.println("allocation measurement is not supported");
+            return;
+        }
+        
+        int count = 10000;
+        if (args.length > 0) {
+            count = Integer.parseInt(args[0]);
+        }
+        
+        Inet4Subnet subnet = new Inet4Subnet();
+        
+        try {
+            measure(subnet, count);
+            System.out.format("default: %.1f bytes/frame%n", measure(subnet, count));
+            
+            subnet.setBufferPool(new BufferPool(Inet4Subnet.DEFAULT_BUFSIZE));
+            measure(subnet, count);
+            System.out.format("pooled:  %.1f bytes/frame%n", measure(subnet, count));
+        } finally {
+            subnet.disable();
+        }
+    }
+}
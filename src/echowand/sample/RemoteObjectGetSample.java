@@ -50,7 +50,8 @@ public class RemoteObjectGetSample {
                     }
                 }
             }
-
+            
+            transactionManager.close();
         } catch (Exception ex) {
             Logger.getLogger(RemoteObjectGetSample.class.getName()).log(Level.SEVERE, null, ex);
         }
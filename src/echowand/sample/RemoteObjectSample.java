@@ -63,6 +63,8 @@ public class RemoteObjectSample {
                     }
                 }
             }
+            
+            transactionManager.close();
         } catch (SubnetException ex) {
             Logger.getLogger(RemoteObjectSample.class.getName()).log(Level.SEVERE, null, ex);
         } catch (TooManyObjectsException ex) {
@@ -61,5 +61,7 @@ public class Sample3 {
         } catch (EchonetObjectException e) {
             e.printStackTrace();
         }
+        
+        transactionManager.close();
     }
 }
@@ -111,5 +111,7 @@ public class Sample5 {
                 }
             }
         }
+        
+        transactionManager.close();
     }
 }
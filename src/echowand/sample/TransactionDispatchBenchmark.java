@@ -0,0 +1,92 @@
+package echowand.sample;
+
+import echowand.common.EOJ;
+import echowand.common.EPC;
+import echowand.common.ESV;
+import echowand.logic.SetGetTransactionConfig;
+import echowand.logic.Transaction;
+import echowand.logic.TransactionManager;
+import echowand.net.*;
+import java.util.LinkedList;
+
+/**
+ * TransactionManagerが受信したフレームを対応するTransactionに渡す処理の時間を計測するプログラム
+ * 処理中のTransactionが10、1,000、10,000の場合について、フレーム一つ当たりの処理時間を表示する。
+ * 受信フレームの半分は処理中のTransactionのTIDを、残りは処理中でないTIDを持つ。
+ * @author Yoshiki Makino
+ */
+public class TransactionDispatchBenchmark {
+    private static final int[] ACTIVE_COUNTS = {10, 1000, 10000};
+    
+    private static Transaction createTransaction(InternalSubnet subnet, TransactionManager manager) throws SubnetException {
+        SetGetTransactionConfig config = new SetGetTransactionConfig();
+        config.setSenderNode(subnet.getLocalNode());
+        config.setReceiverNode(subnet.getLocalNode());
+        config.setSourceEOJ(new EOJ("05ff01"));
+        config.setDestinationEOJ(new EOJ("001101"));
+        config.addGet(EPC.x80);
+        
+        Transaction t = manager.createTransaction(config);
+        t.setTimeout(0);
+        t.execute();
+        return t;
+    }
+    
+    private static Frame createResponse(InternalSubnet subnet, short tid) {
+        CommonFrame commonFrame = new CommonFrame(new EOJ("001101"), new EOJ("05ff01"), ESV.Get_Res);
+        commonFrame.setTID(tid);
+        ((StandardPayload)commonFrame.getEDATA()).addFirstProperty(new Property(EPC.x80));
+        return new Frame(subnet.getLocalNode(), subnet.getLocalNode(), commonFrame);
+    }
+    
+    private static double measure(int active, int count) throws SubnetException {
+        InternalSubnet subnet = new InternalSubnet("TransactionDispatchBenchmark" + active);
+        TransactionManager manager = new TransactionManager(subnet);
+        LinkedList<Transaction> transactions = new LinkedList<Transaction>();
+        
+        for (int i = 0; i < active; i++) {
+            transactions.add(createTransaction(subnet, manager));
+            subnet.recvNoWait();
+        }
+        
+        Frame[] frames = new Frame[1024];
+        for (int i = 0; i < frames.length; i++) {
+            short tid;
+            if (i % 2 == 0) {
+                tid = transactions.get(i % active).getTID();
+            } else {
+                tid = manager.getTIDAllocator().next();
+            }
+            frames[i] = createResponse(subnet, tid);
+            frames[i].getCommonFrame();
+        }
+        
+        for (int i = 0; i < count; i++) {
+            manager.process(subnet, frames[i % frames.length], false);
+        }
+        
+        long begin = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            manager.process(subnet, frames[i % frames.length], false);
+        }
+        long end = System.nanoTime();
+        
+        for (Transaction t : transactions) {
+            t.finish();
+        }
+        manager.close();
+        
+        return (double)(end - begin) / count;
+    }
+    
+    public static void main(String[] args) throws SubnetException {
+        int count = 100000;
+        if (args.length > 0) {
+            count = Integer.parseInt(args[0]);
+        }
+        
+        for (int active : ACTIVE_COUNTS) {
+            System.out.format("%6d active: %.1f ns/frame%n", active, measure(active, count));
+        }
+    }
+}
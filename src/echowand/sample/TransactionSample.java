@@ -38,6 +38,8 @@ public class TransactionSample {
             
             transaction.execute();
             transaction.join();
+            
+            transactionManager.close();
         } catch (Exception ex) {
             Logger.getLogger(TransactionSample.class.getName()).log(Level.SEVERE, null, ex);
         }
@@ -0,0 +1,71 @@
+package echowand.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * 現在のスレッドが割り当てたヒープ領域の量を計測する。
+ * スレッドごとの割り当て量の計測に対応したJava VMでのみ利用可能である。
+ * 性能評価用のプログラムから利用することを想定している。
+ * @author Yoshiki Makino
+ */
+public class AllocationMeter {
+    private static final com.sun.management.ThreadMXBean threadBean;
+    
+    static {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean)bean;
+            if (sunBean.isThreadAllocatedMemorySupported()) {
+                sunBean.setThreadAllocatedMemoryEnabled(true);
+                threadBean = sunBean;
+            } else {
+                threadBean = null;
+            }
+        } else {
+            threadBean = null;
+        }
+    }
+    
+    private long threadId;
+    private long startBytes;
+    
+    /**
+     * このJava VMでスレッドごとの割り当て量の計測が可能であるか返す。
+     * @return 計測可能であればtrue、そうでなければfalse
+     */
+    public static boolean isSupported() {
+        return threadBean != null;
+    }
+    
+    private static long currentAllocatedBytes(long threadId) {
+        if (threadBean == null) {
+            return 0;
+        }
+        return threadBean.getThreadAllocatedBytes(threadId);
+    }
+    
+    /**
+     * 現在のスレッドを対象とするAllocationMeterを生成し、計測を開始する。
+     */
+    public AllocationMeter() {
+        threadId = Thread.currentThread().getId();
+        reset();
+    }
+    
+    /**
+     * 計測の開始点を現在の割り当て量にリセットする。
+     */
+    public void reset() {
+        startBytes = currentAllocatedBytes(threadId);
+    }
+    
+    /**
+     * 計測開始から対象のスレッドが割り当てたヒープ領域のバイト数を返す。
+     * 計測に対応していない場合には常に0を返す。
+     * @return 割り当てたバイト数
+     */
+    public long getAllocatedBytes() {
+        return currentAllocatedBytes(threadId) - startBytes;
+    }
+}
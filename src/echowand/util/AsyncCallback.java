@@ -0,0 +1,20 @@
+package echowand.util;
+
+/**
+ * 非同期処理の完了の通知を受ける
+ * @param <T> 処理結果の型
+ * @author Yoshiki Makino
+ */
+public interface AsyncCallback<T> {
+    /**
+     * 処理が正常に完了した時に呼ばれる。
+     * @param result 処理結果
+     */
+    public void completed(T result);
+
+    /**
+     * 処理が失敗あるいは取り消された時に呼ばれる。
+     * @param exception 失敗の原因となった例外
+     */
+    public void failed(Exception exception);
+}
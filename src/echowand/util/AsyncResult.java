@@ -0,0 +1,221 @@
+package echowand.util;
+
+import java.util.LinkedList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 非同期処理の結果
+ * <p>
+ * 処理を行う側がcompleteあるいはfailを呼び出すことで完了する。
+ * 結果はgetで待機して受け取るか、addCallbackで登録したAsyncCallbackで受け取る。
+ * AsyncCallbackは完了させたスレッドで呼び出されるため、長時間かかる処理を行ってはならない。
+ * 待機にはReentrantLockとConditionを用いるため、仮想スレッドからgetを呼び出してもキャリアスレッドを占有しない。
+ * @param <T> 処理結果の型
+ * @author Yoshiki Makino
+ */
+public class AsyncResult<T> implements Future<T> {
+    private static final Logger logger = Logger.getLogger(AsyncResult.class.getName());
+    private static final String className = AsyncResult.class.getName();
+
+    private boolean done = false;
+    private boolean cancelled = false;
+    private T result;
+    private Exception exception;
+    private LinkedList<AsyncCallback<? super T>> callbacks;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition completed = lock.newCondition();
+
+    /**
+     * 完了していないAsyncResultを生成する。
+     */
+    public AsyncResult() {
+    }
+
+    private void invokeCallback(AsyncCallback<? super T> callback) {
+        try {
+            if (exception == null) {
+                callback.completed(result);
+            } else {
+                callback.failed(exception);
+            }
+        } catch (RuntimeException e) {
+            logger.logp(Level.WARNING, className, "invokeCallback", "callback failed", e);
+        }
+    }
+
+    private boolean setResult(T result, Exception exception, boolean cancelled) {
+        LinkedList<AsyncCallback<? super T>> list;
+
+        lock.lock();
+        try {
+            if (done) {
+                return false;
+            }
+
+            this.result = result;
+            this.exception = exception;
+            this.cancelled = cancelled;
+            this.done = true;
+            list = callbacks;
+            callbacks = null;
+            completed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        if (list != null) {
+            for (AsyncCallback<? super T> callback : list) {
+                invokeCallback(callback);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * 処理結果を設定して完了させる。
+     * @param result 処理結果
+     * @return 完了させた場合にはtrue、既に完了していた場合にはfalse
+     */
+    public boolean complete(T result) {
+        return setResult(result, null, false);
+    }
+
+    /**
+     * 処理の失敗を設定して完了させる。
+     * @param exception 失敗の原因となった例外
+     * @return 完了させた場合にはtrue、既に完了していた場合にはfalse
+     */
+    public boolean fail(Exception exception) {
+        if (exception == null) {
+            throw new IllegalArgumentException("invalid exception: " + exception);
+        }
+        return setResult(null, exception, false);
+    }
+
+    /**
+     * 完了の通知を受けるAsyncCallbackを登録する。
+     * 既に完了している場合には、呼び出したスレッドで直ちに通知する。
+     * @param callback 登録するAsyncCallback
+     */
+    public void addCallback(AsyncCallback<? super T> callback) {
+        lock.lock();
+        try {
+            if (!done) {
+                if (callbacks == null) {
+                    callbacks = new LinkedList<AsyncCallback<? super T>>();
+                }
+                callbacks.add(callback);
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        invokeCallback(callback);
+    }
+
+    /**
+     * 処理を取り消したものとして完了させる。
+     * 実行中の処理自体を中断することはない。
+     * @param mayInterruptIfRunning 利用されない
+     * @return 取り消した場合にはtrue、既に完了していた場合にはfalse
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return setResult(null, new CancellationException("cancelled"), true);
+    }
+
+    /**
+     * 取り消されたかどうかを返す。
+     * @return 取り消された場合にはtrue、そうでなければfalse
+     */
+    @Override
+    public boolean isCancelled() {
+        lock.lock();
+        try {
+            return cancelled;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 完了したかどうかを返す。
+     * @return 完了した場合にはtrue、そうでなければfalse
+     */
+    @Override
+    public boolean isDone() {
+        lock.lock();
+        try {
+            return done;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private T getResult() throws ExecutionException {
+        if (cancelled) {
+            throw (CancellationException)exception;
+        }
+
+        if (exception != null) {
+            throw new ExecutionException(exception);
+        }
+
+        return result;
+    }
+
+    /**
+     * 完了するまで待機し、処理結果を返す。
+     * @return 処理結果
+     * @throws InterruptedException 割り込みが発生した場合
+     * @throws ExecutionException 処理が失敗した場合
+     */
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        lock.lock();
+        try {
+            while (!done) {
+                completed.await();
+            }
+            return getResult();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 指定された時間まで完了を待機し、処理結果を返す。
+     * @param timeout 待機する時間
+     * @param unit 待機する時間の単位
+     * @return 処理結果
+     * @throws InterruptedException 割り込みが発生した場合
+     * @throws ExecutionException 処理が失敗した場合
+     * @throws TimeoutException 指定された時間内に完了しなかった場合
+     */
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        lock.lock();
+        try {
+            long remaining = unit.toNanos(timeout);
+            while (!done) {
+                if (remaining <= 0) {
+                    throw new TimeoutException();
+                }
+                remaining = completed.awaitNanos(remaining);
+            }
+            return getResult();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package echowand.util;
+
+import java.lang.reflect.Array;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 変更時に配列を複製する要素の登録表
+ * <p>
+ * 要素の追加と削除は新しい配列を生成してCASで置き換えるため、ロックを用いない。
+ * getArrayは現在の配列をそのまま返すため、走査の際にオブジェクトの割り当てやロックは発生しない。
+ * リスナーなどの、変更が少なく走査が頻繁に行われる登録表での利用を想定している。
+ * @param <T> 要素の型
+ * @author Yoshiki Makino
+ */
+public class CopyOnWriteArray<T> {
+    private final AtomicReference<T[]> elements;
+
+    /**
+     * 空のCopyOnWriteArrayを生成する。
+     * @param type 要素の型
+     */
+    @SuppressWarnings("unchecked")
+    public CopyOnWriteArray(Class<T> type) {
+        elements = new AtomicReference<T[]>((T[])Array.newInstance(type, 0));
+    }
+
+    /**
+     * 現在の要素の配列を返す。
+     * 返された配列はその後の追加や削除によって変更されないが、呼び出し側が変更してはならない。
+     * @return 現在の要素の配列
+     */
+    public T[] getArray() {
+        return elements.get();
+    }
+
+    /**
+     * 要素を末尾に追加する。
+     * @param element 追加する要素
+     */
+    public void add(T element) {
+        for (;;) {
+            T[] current = elements.get();
+            T[] next = copyOf(current, current.length + 1);
+            next[current.length] = element;
+            if (elements.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 指定された要素と等しい最初の要素を削除する。
+     * @param element 削除する要素
+     * @return 削除した場合にはtrue、そうでなければfalse
+     */
+    public boolean remove(Object element) {
+        for (;;) {
+            T[] current = elements.get();
+            int index = indexOf(current, element);
+            if (index < 0) {
+                return false;
+            }
+
+            T[] next = copyOf(current, current.length - 1);
+            System.arraycopy(current, index + 1, next, index, current.length - index - 1);
+            if (elements.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 指定された要素と等しい要素が含まれているかどうかを返す。
+     * @param element 要素の指定
+     * @return 含まれていればtrue、そうでなければfalse
+     */
+    public boolean contains(Object element) {
+        return indexOf(elements.get(), element) >= 0;
+    }
+
+    /**
+     * 要素の数を返す。
+     * @return 要素の数
+     */
+    public int size() {
+        return elements.get().length;
+    }
+
+    /**
+     * 全ての要素を削除する。
+     */
+    public void clear() {
+        T[] current = elements.get();
+        elements.set(copyOf(current, 0));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T[] copyOf(T[] array, int length) {
+        T[] copy = (T[])Array.newInstance(array.getClass().getComponentType(), length);
+        System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+        return copy;
+    }
+
+    private static int indexOf(Object[] array, Object element) {
+        for (int i = 0; i < array.length; i++) {
+            if (element == null ? array[i] == null : element.equals(array[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,302 @@
+package echowand.util;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * ハッシュ化タイミングホイールによるタイマー
+ * <p>
+ * 一つのスレッドで多数のタイムアウト処理を扱う。登録と取り消しはロックを用いずに一定時間で行われる。
+ * 時間の精度はティックの間隔に依存する。
+ * タスクはタイマーのスレッドで実行されるため、長時間かかる処理を行ってはならない。
+ * スレッドは最初の登録時に開始され、実行待ちのタスクが無い間はティックを刻まずに待機する。
+ * @author Yoshiki Makino
+ */
+public class HashedWheelTimer {
+    private static final Logger logger = Logger.getLogger(HashedWheelTimer.class.getName());
+    private static final String className = HashedWheelTimer.class.getName();
+
+    /**
+     * ティックの間隔のデフォルト(ミリ秒)
+     */
+    public static final long DEFAULT_TICK_DURATION = 10;
+
+    /**
+     * ホイールのスロット数のデフォルト
+     */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static final int STATE_INIT = 0;
+    private static final int STATE_CANCELLED = 1;
+    private static final int STATE_EXPIRED = 2;
+
+    private static final int WORKER_INIT = 0;
+    private static final int WORKER_STARTED = 1;
+    private static final int WORKER_SHUTDOWN = 2;
+
+    /**
+     * HashedWheelTimerに登録されたタスク
+     */
+    public static class Timeout {
+        private HashedWheelTimer timer;
+        private Runnable task;
+        private long deadline;
+        private long remainingRounds;
+        private AtomicInteger state = new AtomicInteger(STATE_INIT);
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * タスクの実行を取り消す。
+         * ロックやスレッド間の受け渡しは行わない。
+         * @return 取り消しに成功した場合にはtrue、既に実行済みあるいは取り消し済みの場合にはfalse
+         */
+        public boolean cancel() {
+            if (state.compareAndSet(STATE_INIT, STATE_CANCELLED)) {
+                timer.pendingCount.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * タスクの実行が取り消されたかどうかを返す。
+         * @return 取り消された場合にはtrue、そうでなければfalse
+         */
+        public boolean isCancelled() {
+            return state.get() == STATE_CANCELLED;
+        }
+
+        /**
+         * タスクが実行されたかどうかを返す。
+         * @return 実行された場合にはtrue、そうでなければfalse
+         */
+        public boolean isExpired() {
+            return state.get() == STATE_EXPIRED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(STATE_INIT, STATE_EXPIRED)) {
+                return;
+            }
+
+            timer.pendingCount.decrementAndGet();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.logp(Level.WARNING, className, "expire", "task failed", e);
+            }
+        }
+    }
+
+    private static class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        private Timeout remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            return next;
+        }
+
+        private void expire(long deadline) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                if (timeout.isCancelled()) {
+                    timeout = remove(timeout);
+                } else if (timeout.remainingRounds <= 0 && timeout.deadline <= deadline) {
+                    Timeout next = remove(timeout);
+                    timeout.expire();
+                    timeout = next;
+                } else {
+                    timeout.remainingRounds--;
+                    timeout = timeout.next;
+                }
+            }
+        }
+    }
+
+    private long tickDuration;
+    private Bucket[] wheel;
+    private int mask;
+    private ConcurrentLinkedQueue<Timeout> newTimeouts = new ConcurrentLinkedQueue<Timeout>();
+    private AtomicInteger pendingCount = new AtomicInteger(0);
+    private long startTime;
+    private Thread worker;
+    private AtomicInteger workerState = new AtomicInteger(WORKER_INIT);
+    private long tick;
+
+    /**
+     * デフォルトのティックの間隔とスロット数でHashedWheelTimerを生成する。
+     */
+    public HashedWheelTimer() {
+        this(DEFAULT_TICK_DURATION, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * HashedWheelTimerを生成する。
+     * スロット数は2のべき乗に切り上げられる。
+     * @param tickDuration ティックの間隔(ミリ秒)
+     * @param wheelSize ホイールのスロット数
+     */
+    public HashedWheelTimer(long tickDuration, int wheelSize) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("invalid tick duration: " + tickDuration);
+        }
+
+        if (wheelSize <= 0 || wheelSize > (1 << 30)) {
+            throw new IllegalArgumentException("invalid wheel size: " + wheelSize);
+        }
+
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+
+        this.tickDuration = TimeUnit.MILLISECONDS.toNanos(tickDuration);
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+
+        startTime = System.nanoTime();
+        worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                work();
+            }
+        }, "HashedWheelTimer");
+        worker.setDaemon(true);
+    }
+
+    /**
+     * タスクを登録する。
+     * @param task 実行するタスク
+     * @param delay タスクを実行するまでの時間(ミリ秒)
+     * @return 登録されたタスクを表すTimeout
+     * @throws IllegalStateException stopが呼ばれた後の場合
+     */
+    public Timeout schedule(Runnable task, long delay) {
+        int state = workerState.get();
+        if (state == WORKER_SHUTDOWN) {
+            throw new IllegalStateException("stopped");
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay) - startTime;
+        Timeout timeout = new Timeout(this, task, deadline);
+        newTimeouts.add(timeout);
+
+        if (pendingCount.incrementAndGet() == 1) {
+            LockSupport.unpark(worker);
+        }
+
+        if (state == WORKER_INIT && workerState.compareAndSet(WORKER_INIT, WORKER_STARTED)) {
+            worker.start();
+        }
+
+        return timeout;
+    }
+
+    /**
+     * 実行も取り消しもされていないタスクの数を返す。
+     * @return 実行待ちのタスク数
+     */
+    public int countPendingTimeouts() {
+        return pendingCount.get();
+    }
+
+    /**
+     * タイマーのスレッドを停止する。実行待ちのタスクは実行されない。
+     */
+    public void stop() {
+        if (workerState.getAndSet(WORKER_SHUTDOWN) == WORKER_STARTED) {
+            worker.interrupt();
+        }
+    }
+
+    private void transferTimeouts() {
+        for (Timeout timeout = newTimeouts.poll(); timeout != null; timeout = newTimeouts.poll()) {
+            if (timeout.isCancelled()) {
+                continue;
+            }
+
+            long calculated = timeout.deadline / tickDuration;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+            long ticks = Math.max(calculated, tick);
+            wheel[(int)(ticks & mask)].add(timeout);
+        }
+    }
+
+    private long waitForNextTick() throws InterruptedException {
+        long deadline = tickDuration * (tick + 1);
+        for (;;) {
+            long current = System.nanoTime() - startTime;
+            long sleepTime = deadline - current;
+            if (sleepTime <= 0) {
+                return current;
+            }
+            TimeUnit.NANOSECONDS.sleep(sleepTime);
+        }
+    }
+
+    private void skipIdleTicks() {
+        long current = (System.nanoTime() - startTime) / tickDuration;
+        if (current > tick) {
+            tick = current;
+        }
+    }
+
+    private void work() {
+        try {
+            skipIdleTicks();
+            while (workerState.get() != WORKER_SHUTDOWN) {
+                if (pendingCount.get() == 0) {
+                    LockSupport.park(this);
+                    skipIdleTicks();
+                    continue;
+                }
+
+                long deadline = waitForNextTick();
+                transferTimeouts();
+                wheel[(int)(tick & mask)].expire(deadline);
+                tick++;
+            }
+        } catch (InterruptedException e) {
+            logger.logp(Level.FINE, className, "work", "interrupted", e);
+        }
+    }
+}
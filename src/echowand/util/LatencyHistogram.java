@@ -0,0 +1,221 @@
+package echowand.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 経過時間の分布を2のべき乗のマイクロ秒を境界とするバケットに集計するヒストグラム
+ * バケットiには、getUpperBoundMicros(i - 1)以上getUpperBoundMicros(i)未満の経過時間が集計される。
+ * 最後のバケットにはそれ以上の全ての経過時間が集計される。
+ * 記録はロックを用いずに行われる。
+ * StripedCounterと同様に、スレッド毎に異なるストライプへ記録することで同時更新による競合を減らし、
+ * スナップショットの取得時に全てのストライプを集計する。
+ * 各ストライプはバケット、合計、最大値を持ち、異なるキャッシュラインに配置されるように間隔を空けて確保される。
+ * @author Yoshiki Makino
+ */
+public class LatencyHistogram {
+    /**
+     * バケットの数
+     */
+    public static final int BUCKET_COUNT = 32;
+    
+    private static final int TOTAL_OFFSET = BUCKET_COUNT;
+    private static final int MAX_OFFSET = BUCKET_COUNT + 1;
+    private static final int STRIPE_SIZE = 48;
+    
+    private final AtomicLongArray cells;
+    private final int mask;
+    
+    /**
+     * 集計結果のスナップショットを表す。
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+        
+        private Snapshot(long[] counts, long totalNanos, long maxNanos) {
+            this.counts = counts;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            
+            long sum = 0;
+            for (long c : counts) {
+                sum += c;
+            }
+            this.count = sum;
+        }
+        
+        /**
+         * 各バケットに集計された数を返す。
+         * @return 各バケットの集計数
+         */
+        public long[] getCounts() {
+            return counts.clone();
+        }
+        
+        /**
+         * 集計された経過時間の数を返す。
+         * @return 集計数
+         */
+        public long getCount() {
+            return count;
+        }
+        
+        /**
+         * 集計された経過時間の合計をナノ秒で返す。
+         * @return 経過時間の合計
+         */
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+        
+        /**
+         * 集計された経過時間の最大値をナノ秒で返す。
+         * @return 経過時間の最大値
+         */
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+        
+        /**
+         * 集計された経過時間の平均をナノ秒で返す。
+         * @return 経過時間の平均、集計数が0の場合には0
+         */
+        public long getMeanNanos() {
+            if (count == 0) {
+                return 0;
+            }
+            return totalNanos / count;
+        }
+        
+        /**
+         * 指定された割合の経過時間が含まれるバケットの上限をマイクロ秒で返す。
+         * @param ratio 0以上1以下の割合
+         * @return バケットの上限、集計数が0の場合には0
+         */
+        public long getPercentileMicros(double ratio) {
+            if (ratio < 0 || ratio > 1) {
+                throw new IllegalArgumentException("invalid ratio: " + ratio);
+            }
+            
+            if (count == 0) {
+                return 0;
+            }
+            
+            long threshold = (long)Math.ceil(count * ratio);
+            long sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                sum += counts[i];
+                if (sum >= threshold && sum > 0) {
+                    if (i == counts.length - 1) {
+                        return TimeUnit.NANOSECONDS.toMicros(maxNanos);
+                    }
+                    return getUpperBoundMicros(i);
+                }
+            }
+            return TimeUnit.NANOSECONDS.toMicros(maxNanos);
+        }
+    }
+    
+    /**
+     * 利用可能なプロセッサ数に応じたストライプ数の空のLatencyHistogramを生成する。
+     */
+    public LatencyHistogram() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * 指定されたストライプ数の空のLatencyHistogramを生成する。
+     * ストライプ数は2のべき乗に切り上げられる。
+     * @param stripes ストライプ数
+     */
+    public LatencyHistogram(int stripes) {
+        int size = StripedCounter.toStripes(stripes);
+        cells = new AtomicLongArray(size * STRIPE_SIZE);
+        mask = size - 1;
+    }
+    
+    /**
+     * ストライプ数を返す。
+     * @return ストライプ数
+     */
+    public int getStripes() {
+        return mask + 1;
+    }
+    
+    /**
+     * 指定されたバケットの上限をマイクロ秒で返す。
+     * @param index バケットの番号
+     * @return バケットの上限
+     */
+    public static long getUpperBoundMicros(int index) {
+        if (index < 0 || index >= BUCKET_COUNT) {
+            throw new IndexOutOfBoundsException("invalid index: " + index);
+        }
+        return 1L << index;
+    }
+    
+    /**
+     * 指定された経過時間が集計されるバケットの番号を返す。
+     * @param nanos ナノ秒で表した経過時間
+     * @return バケットの番号
+     */
+    public static int getBucketIndex(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos));
+        int index = 64 - Long.numberOfLeadingZeros(micros);
+        return Math.min(index, BUCKET_COUNT - 1);
+    }
+    
+    /**
+     * 経過時間を記録する。
+     * @param nanos ナノ秒で表した経過時間
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        
+        int base = StripedCounter.getStripeIndex(mask) * STRIPE_SIZE;
+        cells.getAndIncrement(base + getBucketIndex(nanos));
+        cells.getAndAdd(base + TOTAL_OFFSET, nanos);
+        
+        long max = cells.get(base + MAX_OFFSET);
+        while (nanos > max) {
+            if (cells.compareAndSet(base + MAX_OFFSET, max, nanos)) {
+                break;
+            }
+            max = cells.get(base + MAX_OFFSET);
+        }
+    }
+    
+    /**
+     * 現在の集計結果のスナップショットを返す。
+     * 全てのストライプを足し合わせるため、取得中に行われた記録は含まれない場合がある。
+     * @return 集計結果のスナップショット
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long totalNanos = 0;
+        long maxNanos = 0;
+        for (int base = 0; base < cells.length(); base += STRIPE_SIZE) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] += cells.get(base + i);
+            }
+            totalNanos += cells.get(base + TOTAL_OFFSET);
+            maxNanos = Math.max(maxNanos, cells.get(base + MAX_OFFSET));
+        }
+        return new Snapshot(counts, totalNanos, maxNanos);
+    }
+    
+    /**
+     * 集計結果を全て消去する。
+     * 同時に行われた記録は失われる場合がある。
+     */
+    public void reset() {
+        for (int i = 0; i < cells.length(); i++) {
+            cells.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package echowand.util;
+
+import echowand.common.ESV;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * プロトコル処理の各種統計を集計する。
+ * ESV毎の送受信フレーム数、解析に失敗した受信フレーム数、トランザクションの開始数と終了数、
+ * レスポンスの受信までの時間と受信フレームの処理時間の分布を集計する。
+ * 集計はStripedCounterとLatencyHistogramを用いてロックを用いずに行われる。
+ * <p>
+ * setCurrentで設定されたMetricsRegistryに対して、MainLoopやTransactionなどから記録が行われる。
+ * 設定されていない場合、記録箇所ではvolatileフィールドの読み出しとnullの比較のみが行われる。
+ * 集計結果はsnapshotで取得できるほか、registerMBeanによりJMXのMBeanとして公開できる。
+ * @author Yoshiki Makino
+ */
+public class MetricsRegistry implements MetricsRegistryMXBean {
+    /**
+     * デフォルトのMBeanの名前
+     */
+    public static final String DEFAULT_OBJECT_NAME = "echowand:type=MetricsRegistry";
+    
+    private static volatile MetricsRegistry current = null;
+    
+    private final StripedCounter[] received;
+    private final StripedCounter[] sent;
+    private final StripedCounter parseErrors;
+    private final StripedCounter startedTransactions;
+    private final StripedCounter completedTransactions;
+    private final StripedCounter timedOutTransactions;
+    private final LatencyHistogram responseLatency;
+    private final LatencyHistogram dispatchTime;
+    private ObjectName objectName = null;
+    
+    /**
+     * 空のMetricsRegistryを生成する。
+     */
+    public MetricsRegistry() {
+        int esvCount = ESV.values().length;
+        received = new StripedCounter[esvCount];
+        sent = new StripedCounter[esvCount];
+        for (int i = 0; i < esvCount; i++) {
+            received[i] = new StripedCounter();
+            sent[i] = new StripedCounter();
+        }
+        parseErrors = new StripedCounter();
+        startedTransactions = new StripedCounter();
+        completedTransactions = new StripedCounter();
+        timedOutTransactions = new StripedCounter();
+        responseLatency = new LatencyHistogram();
+        dispatchTime = new LatencyHistogram();
+    }
+    
+    /**
+     * 記録に利用するMetricsRegistryを設定する。
+     * nullを指定した場合には記録を停止する。
+     * @param registry 記録に利用するMetricsRegistry
+     */
+    public static void setCurrent(MetricsRegistry registry) {
+        current = registry;
+    }
+    
+    /**
+     * 記録に利用するMetricsRegistryを返す。
+     * @return 記録に利用するMetricsRegistry、設定されていない場合にはnull
+     */
+    public static MetricsRegistry getCurrent() {
+        return current;
+    }
+    
+    /**
+     * フレームの受信を記録する。
+     * @param esv 受信したフレームのESV
+     */
+    public void recordReceived(ESV esv) {
+        received[esv.ordinal()].increment();
+    }
+    
+    /**
+     * フレームの送信を記録する。
+     * @param esv 送信したフレームのESV
+     */
+    public void recordSent(ESV esv) {
+        sent[esv.ordinal()].increment();
+    }
+    
+    /**
+     * 解析に失敗した受信フレームの破棄を記録する。
+     */
+    public void recordParseError() {
+        parseErrors.increment();
+    }
+    
+    /**
+     * トランザクションの開始を記録する。
+     */
+    public void recordTransactionBegin() {
+        startedTransactions.increment();
+    }
+    
+    /**
+     * トランザクションの終了を記録する。
+     * @param timedOut タイムアウトで終了した場合にはtrue、そうでなければfalse
+     */
+    public void recordTransactionEnd(boolean timedOut) {
+        if (timedOut) {
+            timedOutTransactions.increment();
+        } else {
+            completedTransactions.increment();
+        }
+    }
+    
+    /**
+     * トランザクションの開始から最初のレスポンスを受信するまでの時間を記録する。
+     * @param nanos ナノ秒で表した経過時間
+     */
+    public void recordResponseLatency(long nanos) {
+        responseLatency.record(nanos);
+    }
+    
+    /**
+     * 受信したフレーム一つ当たりのListenerの処理時間を記録する。
+     * @param nanos ナノ秒で表した経過時間
+     */
+    public void recordDispatchTime(long nanos) {
+        dispatchTime.record(nanos);
+    }
+    
+    private static Map<ESV, Long> toMap(StripedCounter[] counters) {
+        EnumMap<ESV, Long> map = new EnumMap<ESV, Long>(ESV.class);
+        for (ESV esv : ESV.values()) {
+            long count = counters[esv.ordinal()].sum();
+            if (count != 0) {
+                map.put(esv, count);
+            }
+        }
+        return map;
+    }
+    
+    private static Map<String, Long> toNamedMap(Map<ESV, Long> map) {
+        LinkedHashMap<String, Long> namedMap = new LinkedHashMap<String, Long>();
+        for (Map.Entry<ESV, Long> entry : map.entrySet()) {
+            namedMap.put(entry.getKey().name(), entry.getValue());
+        }
+        return namedMap;
+    }
+    
+    /**
+     * 現在の集計結果のスナップショットを返す。
+     * @return 集計結果のスナップショット
+     */
+    public MetricsSnapshot snapshot() {
+        long timedOut = timedOutTransactions.sum();
+        long completed = completedTransactions.sum();
+        long started = startedTransactions.sum();
+        return new MetricsSnapshot(toMap(received), toMap(sent), parseErrors.sum(),
+                started, completed, timedOut, responseLatency.snapshot(), dispatchTime.snapshot());
+    }
+    
+    /**
+     * 全ての集計結果を消去する。
+     */
+    @Override
+    public void reset() {
+        for (int i = 0; i < received.length; i++) {
+            received[i].reset();
+            sent[i].reset();
+        }
+        parseErrors.reset();
+        startedTransactions.reset();
+        completedTransactions.reset();
+        timedOutTransactions.reset();
+        responseLatency.reset();
+        dispatchTime.reset();
+    }
+    
+    /**
+     * このMetricsRegistryをデフォルトの名前でプラットフォームのMBeanServerに登録する。
+     * @return 登録に利用した名前
+     * @throws JMException 登録に失敗した場合
+     */
+    public ObjectName registerMBean() throws JMException {
+        return registerMBean(new ObjectName(DEFAULT_OBJECT_NAME));
+    }
+    
+    /**
+     * このMetricsRegistryを指定された名前でプラットフォームのMBeanServerに登録する。
+     * @param name 登録する名前
+     * @return 登録に利用した名前
+     * @throws JMException 登録に失敗した場合
+     */
+    public synchronized ObjectName registerMBean(ObjectName name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        objectName = server.registerMBean(this, name).getObjectName();
+        return objectName;
+    }
+    
+    /**
+     * このMetricsRegistryの登録をプラットフォームのMBeanServerから抹消する。
+     * 登録されていない場合には何も行わない。
+     * @throws JMException 登録の抹消に失敗した場合
+     */
+    public synchronized void unregisterMBean() throws JMException {
+        if (objectName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            objectName = null;
+        }
+    }
+    
+    @Override
+    public Map<String, Long> getReceivedCounts() {
+        return toNamedMap(toMap(received));
+    }
+    
+    @Override
+    public Map<String, Long> getSentCounts() {
+        return toNamedMap(toMap(sent));
+    }
+    
+    @Override
+    public long getReceivedSNACount() {
+        return snapshot().getReceivedSNA();
+    }
+    
+    @Override
+    public long getSentSNACount() {
+        return snapshot().getSentSNA();
+    }
+    
+    @Override
+    public long getParseErrorCount() {
+        return parseErrors.sum();
+    }
+    
+    @Override
+    public long getActiveTransactionCount() {
+        return snapshot().getActiveTransactions();
+    }
+    
+    @Override
+    public long getStartedTransactionCount() {
+        return startedTransactions.sum();
+    }
+    
+    @Override
+    public long getCompletedTransactionCount() {
+        return completedTransactions.sum();
+    }
+    
+    @Override
+    public long getTimedOutTransactionCount() {
+        return timedOutTransactions.sum();
+    }
+    
+    @Override
+    public long[] getHistogramUpperBoundsMicros() {
+        long[] bounds = new long[LatencyHistogram.BUCKET_COUNT];
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = LatencyHistogram.getUpperBoundMicros(i);
+        }
+        return bounds;
+    }
+    
+    @Override
+    public long[] getResponseLatencyHistogram() {
+        return responseLatency.snapshot().getCounts();
+    }
+    
+    @Override
+    public long getResponseLatencyMeanMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(responseLatency.snapshot().getMeanNanos());
+    }
+    
+    @Override
+    public long getResponseLatency99thPercentileMicros() {
+        return responseLatency.snapshot().getPercentileMicros(0.99);
+    }
+    
+    @Override
+    public long[] getDispatchTimeHistogram() {
+        return dispatchTime.snapshot().getCounts();
+    }
+    
+    @Override
+    public long getDispatchTimeMeanMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(dispatchTime.snapshot().getMeanNanos());
+    }
+    
+    @Override
+    public long getDispatchTime99thPercentileMicros() {
+        return dispatchTime.snapshot().getPercentileMicros(0.99);
+    }
+}
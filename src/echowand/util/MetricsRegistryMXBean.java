@@ -0,0 +1,111 @@
+package echowand.util;
+
+import java.util.Map;
+
+/**
+ * MetricsRegistryをJMXで公開するためのインタフェース
+ * @author Yoshiki Makino
+ */
+public interface MetricsRegistryMXBean {
+    
+    /**
+     * ESV毎の受信フレーム数を返す。
+     * @return ESVの名前と受信フレーム数の対応
+     */
+    public Map<String, Long> getReceivedCounts();
+    
+    /**
+     * ESV毎の送信フレーム数を返す。
+     * @return ESVの名前と送信フレーム数の対応
+     */
+    public Map<String, Long> getSentCounts();
+    
+    /**
+     * 受信した不可応答の数を返す。
+     * @return 受信した不可応答の数
+     */
+    public long getReceivedSNACount();
+    
+    /**
+     * 送信した不可応答の数を返す。
+     * @return 送信した不可応答の数
+     */
+    public long getSentSNACount();
+    
+    /**
+     * 解析に失敗して破棄された受信フレームの数を返す。
+     * @return 破棄された受信フレームの数
+     */
+    public long getParseErrorCount();
+    
+    /**
+     * 処理中のトランザクションの数を返す。
+     * @return 処理中のトランザクションの数
+     */
+    public long getActiveTransactionCount();
+    
+    /**
+     * 開始されたトランザクションの数を返す。
+     * @return 開始されたトランザクションの数
+     */
+    public long getStartedTransactionCount();
+    
+    /**
+     * タイムアウト以外で終了したトランザクションの数を返す。
+     * @return タイムアウト以外で終了したトランザクションの数
+     */
+    public long getCompletedTransactionCount();
+    
+    /**
+     * タイムアウトで終了したトランザクションの数を返す。
+     * @return タイムアウトで終了したトランザクションの数
+     */
+    public long getTimedOutTransactionCount();
+    
+    /**
+     * ヒストグラムの各バケットの上限をマイクロ秒で返す。
+     * @return 各バケットの上限
+     */
+    public long[] getHistogramUpperBoundsMicros();
+    
+    /**
+     * トランザクションの開始から最初のレスポンスを受信するまでの時間のヒストグラムを返す。
+     * @return 各バケットの集計数
+     */
+    public long[] getResponseLatencyHistogram();
+    
+    /**
+     * トランザクションの開始から最初のレスポンスを受信するまでの時間の平均をマイクロ秒で返す。
+     * @return 平均時間
+     */
+    public long getResponseLatencyMeanMicros();
+    
+    /**
+     * トランザクションの開始から最初のレスポンスを受信するまでの時間の99パーセンタイルをマイクロ秒で返す。
+     * @return 99パーセンタイルを含むバケットの上限
+     */
+    public long getResponseLatency99thPercentileMicros();
+    
+    /**
+     * 受信したフレーム一つ当たりのListenerの処理時間のヒストグラムを返す。
+     * @return 各バケットの集計数
+     */
+    public long[] getDispatchTimeHistogram();
+    
+    /**
+     * 受信したフレーム一つ当たりのListenerの処理時間の平均をマイクロ秒で返す。
+     * @return 平均時間
+     */
+    public long getDispatchTimeMeanMicros();
+    
+    /**
+     * 受信したフレーム一つ当たりのListenerの処理時間の99パーセンタイルをマイクロ秒で返す。
+     * @return 99パーセンタイルを含むバケットの上限
+     */
+    public long getDispatchTime99thPercentileMicros();
+    
+    /**
+     * 全ての集計結果を消去する。
+     */
+    public void reset();
+}
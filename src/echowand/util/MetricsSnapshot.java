@@ -0,0 +1,165 @@
+package echowand.util;
+
+import echowand.common.ESV;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * MetricsRegistryの集計結果のスナップショットを表す。
+ * 各値は異なる時点で読み出されるため、値の間の厳密な整合性は保証されない。
+ * @author Yoshiki Makino
+ */
+public class MetricsSnapshot {
+    private final Map<ESV, Long> received;
+    private final Map<ESV, Long> sent;
+    private final long parseErrors;
+    private final long startedTransactions;
+    private final long completedTransactions;
+    private final long timedOutTransactions;
+    private final LatencyHistogram.Snapshot responseLatency;
+    private final LatencyHistogram.Snapshot dispatchTime;
+    
+    /**
+     * MetricsSnapshotを生成する。
+     * @param received ESV毎の受信フレーム数
+     * @param sent ESV毎の送信フレーム数
+     * @param parseErrors 解析に失敗して破棄された受信フレームの数
+     * @param startedTransactions 開始されたトランザクションの数
+     * @param completedTransactions タイムアウト以外で終了したトランザクションの数
+     * @param timedOutTransactions タイムアウトで終了したトランザクションの数
+     * @param responseLatency レスポンスの受信までの時間の集計結果
+     * @param dispatchTime Listenerの処理時間の集計結果
+     */
+    public MetricsSnapshot(Map<ESV, Long> received, Map<ESV, Long> sent, long parseErrors,
+            long startedTransactions, long completedTransactions, long timedOutTransactions,
+            LatencyHistogram.Snapshot responseLatency, LatencyHistogram.Snapshot dispatchTime) {
+        this.received = Collections.unmodifiableMap(new EnumMap<ESV, Long>(received));
+        this.sent = Collections.unmodifiableMap(new EnumMap<ESV, Long>(sent));
+        this.parseErrors = parseErrors;
+        this.startedTransactions = startedTransactions;
+        this.completedTransactions = completedTransactions;
+        this.timedOutTransactions = timedOutTransactions;
+        this.responseLatency = responseLatency;
+        this.dispatchTime = dispatchTime;
+    }
+    
+    private static long get(Map<ESV, Long> map, ESV esv) {
+        Long value = map.get(esv);
+        if (value == null) {
+            return 0;
+        }
+        return value;
+    }
+    
+    private static long countSNA(Map<ESV, Long> map) {
+        return get(map, ESV.SetI_SNA) + get(map, ESV.SetC_SNA) + get(map, ESV.Get_SNA)
+                + get(map, ESV.INF_SNA) + get(map, ESV.SetGet_SNA);
+    }
+    
+    /**
+     * 指定されたESVの受信フレーム数を返す。
+     * @param esv ESVの指定
+     * @return 受信フレーム数
+     */
+    public long getReceived(ESV esv) {
+        return get(received, esv);
+    }
+    
+    /**
+     * ESV毎の受信フレーム数を返す。
+     * @return ESVと受信フレーム数の対応
+     */
+    public Map<ESV, Long> getReceivedCounts() {
+        return received;
+    }
+    
+    /**
+     * 指定されたESVの送信フレーム数を返す。
+     * @param esv ESVの指定
+     * @return 送信フレーム数
+     */
+    public long getSent(ESV esv) {
+        return get(sent, esv);
+    }
+    
+    /**
+     * ESV毎の送信フレーム数を返す。
+     * @return ESVと送信フレーム数の対応
+     */
+    public Map<ESV, Long> getSentCounts() {
+        return sent;
+    }
+    
+    /**
+     * 受信した不可応答の数を返す。
+     * @return 受信した不可応答の数
+     */
+    public long getReceivedSNA() {
+        return countSNA(received);
+    }
+    
+    /**
+     * 送信した不可応答の数を返す。
+     * @return 送信した不可応答の数
+     */
+    public long getSentSNA() {
+        return countSNA(sent);
+    }
+    
+    /**
+     * 解析に失敗して破棄された受信フレームの数を返す。
+     * @return 破棄された受信フレームの数
+     */
+    public long getParseErrors() {
+        return parseErrors;
+    }
+    
+    /**
+     * 処理中のトランザクションの数を返す。
+     * @return 処理中のトランザクションの数
+     */
+    public long getActiveTransactions() {
+        return Math.max(0, startedTransactions - completedTransactions - timedOutTransactions);
+    }
+    
+    /**
+     * 開始されたトランザクションの数を返す。
+     * @return 開始されたトランザクションの数
+     */
+    public long getStartedTransactions() {
+        return startedTransactions;
+    }
+    
+    /**
+     * タイムアウト以外で終了したトランザクションの数を返す。
+     * @return タイムアウト以外で終了したトランザクションの数
+     */
+    public long getCompletedTransactions() {
+        return completedTransactions;
+    }
+    
+    /**
+     * タイムアウトで終了したトランザクションの数を返す。
+     * @return タイムアウトで終了したトランザクションの数
+     */
+    public long getTimedOutTransactions() {
+        return timedOutTransactions;
+    }
+    
+    /**
+     * トランザクションの開始から最初のレスポンスを受信するまでの時間の集計結果を返す。
+     * @return レスポンスの受信までの時間の集計結果
+     */
+    public LatencyHistogram.Snapshot getResponseLatency() {
+        return responseLatency;
+    }
+    
+    /**
+     * 受信したフレーム一つ当たりのListenerの処理時間の集計結果を返す。
+     * @return Listenerの処理時間の集計結果
+     */
+    public LatencyHistogram.Snapshot getDispatchTime() {
+        return dispatchTime;
+    }
+}
@@ -0,0 +1,117 @@
+package echowand.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 複数のセルに分散して加算を行うカウンタ
+ * スレッド毎に異なるセルに加算することで、複数のスレッドからの同時更新による競合を減らす。
+ * 各セルは異なるキャッシュラインに配置されるように間隔を空けて確保される。
+ * 加算はロックを用いずに行われ、合計はsumを呼び出した時点で各セルを足し合わせて求める。
+ * @author Yoshiki Makino
+ */
+public class StripedCounter {
+    private static final int PADDING = 8;
+    private static final int MAX_STRIPES = 64;
+    
+    private final AtomicLongArray cells;
+    private final int mask;
+    
+    /**
+     * 利用可能なプロセッサ数に応じたセル数のStripedCounterを生成する。
+     */
+    public StripedCounter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * 指定されたセル数のStripedCounterを生成する。
+     * セル数は2のべき乗に切り上げられる。
+     * @param stripes セル数
+     */
+    public StripedCounter(int stripes) {
+        int size = toStripes(stripes);
+        cells = new AtomicLongArray(size * PADDING);
+        mask = size - 1;
+    }
+    
+    /**
+     * 指定されたセル数を2のべき乗に切り上げ、上限で制限したセル数を返す。
+     * @param stripes セル数
+     * @return 実際に利用するセル数
+     */
+    static int toStripes(int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("invalid stripes: " + stripes);
+        }
+        
+        int size = 1;
+        while (size < stripes && size < MAX_STRIPES) {
+            size <<= 1;
+        }
+        return size;
+    }
+    
+    /**
+     * 現在のスレッドが利用するセルの番号を返す。
+     * @param mask セル数から1を引いた値
+     * @return セルの番号
+     */
+    static int getStripeIndex(int mask) {
+        long id = Thread.currentThread().getId();
+        int h = (int)(id ^ (id >>> 32));
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h & mask;
+    }
+    
+    private int getCellIndex() {
+        return getStripeIndex(mask) * PADDING;
+    }
+    
+    /**
+     * セル数を返す。
+     * @return セル数
+     */
+    public int getStripes() {
+        return mask + 1;
+    }
+    
+    /**
+     * 指定された値を加算する。
+     * @param x 加算する値
+     */
+    public void add(long x) {
+        cells.getAndAdd(getCellIndex(), x);
+    }
+    
+    /**
+     * 1を加算する。
+     */
+    public void increment() {
+        add(1);
+    }
+    
+    /**
+     * 現在の合計を返す。
+     * 合計の計算中に行われた加算は含まれない場合がある。
+     * @return 現在の合計
+     */
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < cells.length(); i += PADDING) {
+            sum += cells.get(i);
+        }
+        return sum;
+    }
+    
+    /**
+     * 全てのセルを0に戻す。
+     * 同時に行われた加算は失われる場合がある。
+     */
+    public void reset() {
+        for (int i = 0; i < cells.length(); i += PADDING) {
+            cells.set(i, 0);
+        }
+    }
+}
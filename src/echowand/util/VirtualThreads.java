@@ -0,0 +1,55 @@
+package echowand.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 仮想スレッドを利用するExecutorServiceを生成する。
+ * <p>
+ * 仮想スレッドはJava 21以降でのみ利用可能であるため、リフレクションにより生成する。
+ * MainLoopのsetExecutorに指定することで、フレーム毎の処理を仮想スレッドで実行できる。
+ * @author Yoshiki Makino
+ */
+public class VirtualThreads {
+    private static final Method NEW_EXECUTOR = findNewExecutorMethod();
+
+    private VirtualThreads() {
+    }
+
+    private static Method findNewExecutorMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 仮想スレッドが利用可能であるかどうかを返す。
+     * @return 仮想スレッドが利用可能であればtrue、そうでなければfalse
+     */
+    public static boolean isSupported() {
+        return NEW_EXECUTOR != null;
+    }
+
+    /**
+     * タスク毎に新しい仮想スレッドを生成して実行するExecutorServiceを生成する。
+     * @return 生成したExecutorService
+     * @throws UnsupportedOperationException 仮想スレッドが利用できない場合
+     */
+    public static ExecutorService newExecutor() {
+        if (NEW_EXECUTOR == null) {
+            throw new UnsupportedOperationException("virtual threads are not supported");
+        }
+
+        try {
+            return (ExecutorService)NEW_EXECUTOR.invoke(null);
+        } catch (IllegalAccessException e) {
+            throw new UnsupportedOperationException("virtual threads are not supported", e);
+        } catch (InvocationTargetException e) {
+            throw new UnsupportedOperationException("virtual threads are not supported", e);
+        }
+    }
+}
@@ -6,7 +6,20 @@ import echowand.object.LocalObjectManager;
 import echowand.net.Frame;
 import echowand.net.InternalSubnet;
 import echowand.net.Subnet;
-import static org.junit.Assert.assertEquals;
+import echowand.net.SubnetException;
+import echowand.common.EOJ;
+import echowand.common.ESV;
+import echowand.net.CommonFrame;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
 import org.junit.*;
 
 /**
@@ -35,4 +48,112 @@ public class MainLoopTest {
         echonet.removeListener(listener);
         assertEquals(0, echonet.countListeners());
     }
+    
+    private static class CountListener implements Listener {
+        public CountDownLatch latch;
+        public AtomicInteger count = new AtomicInteger(0);
+        
+        public CountListener(int n) {
+            latch = new CountDownLatch(n);
+        }
+        
+        @Override
+        public boolean process(Subnet subnet, Frame frame, boolean processed) {
+            count.incrementAndGet();
+            latch.countDown();
+            return false;
+        }
+    }
+    
+    @Test
+    public void testExecutor() throws SubnetException, InterruptedException {
+        MainLoop mainLoop = new MainLoop();
+        InternalSubnet subnet = new InternalSubnet("MainLoopTest.testExecutor");
+        mainLoop.setSubnet(subnet);
+        CountListener listener = new CountListener(100);
+        mainLoop.addListener(listener);
+        
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        assertNull(mainLoop.getExecutor());
+        mainLoop.setExecutor(executor);
+        assertEquals(executor, mainLoop.getExecutor());
+        
+        Thread thread = new Thread(mainLoop);
+        thread.setDaemon(true);
+        thread.start();
+        
+        for (int i = 0; i < 100; i++) {
+            CommonFrame cf = new CommonFrame(new EOJ("0ef001"), new EOJ("0ef001"), ESV.Get);
+            subnet.send(new Frame(subnet.getLocalNode(), subnet.getLocalNode(), cf));
+        }
+        
+        assertTrue(listener.latch.await(5, TimeUnit.SECONDS));
+        assertEquals(100, listener.count.get());
+        
+        executor.shutdown();
+    }
+    
+    private static class OrderListener implements Listener {
+        public CountDownLatch latch;
+        public HashMap<String, List<Short>> tids = new HashMap<String, List<Short>>();
+        
+        public OrderListener(int n) {
+            latch = new CountDownLatch(n);
+        }
+        
+        @Override
+        public boolean process(Subnet subnet, Frame frame, boolean processed) {
+            String sender = frame.getSender().toString();
+            List<Short> list;
+            synchronized (tids) {
+                list = tids.get(sender);
+                if (list == null) {
+                    list = Collections.synchronizedList(new ArrayList<Short>());
+                    tids.put(sender, list);
+                }
+            }
+            list.add(frame.getCommonFrame().getTID());
+            latch.countDown();
+            return false;
+        }
+    }
+    
+    @Test
+    public void testOrderedExecutor() throws SubnetException, InterruptedException {
+        String networkName = "MainLoopTest.testOrderedExecutor";
+        MainLoop mainLoop = new MainLoop();
+        InternalSubnet subnet = new InternalSubnet(networkName);
+        mainLoop.setSubnet(subnet);
+        OrderListener listener = new OrderListener(400);
+        mainLoop.addListener(listener);
+        
+        OrderedExecutor executor = new OrderedExecutor(4);
+        mainLoop.setExecutor(executor);
+        
+        Thread thread = new Thread(mainLoop);
+        thread.setDaemon(true);
+        thread.start();
+        
+        InternalSubnet sender1 = new InternalSubnet(networkName);
+        InternalSubnet sender2 = new InternalSubnet(networkName);
+        String receiverName = "LOCAL(" + subnet.getId() + ")";
+        for (int i = 0; i < 200; i++) {
+            for (InternalSubnet sender : new InternalSubnet[]{sender1, sender2}) {
+                CommonFrame cf = new CommonFrame(new EOJ("0ef001"), new EOJ("0ef001"), ESV.Get);
+                cf.setTID((short)i);
+                sender.send(new Frame(sender.getLocalNode(), sender.getRemoteNode(receiverName), cf));
+            }
+        }
+        
+        assertTrue(listener.latch.await(5, TimeUnit.SECONDS));
+        assertEquals(2, listener.tids.size());
+        for (List<Short> list : listener.tids.values()) {
+            assertEquals(200, list.size());
+            for (int i = 0; i < 200; i++) {
+                assertEquals((short)i, (short)list.get(i));
+            }
+        }
+        
+        executor.shutdown();
+    }
 }
@@ -0,0 +1,151 @@
+package echowand.logic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Yoshiki Makino
+ */
+public class OrderedExecutorTest {
+
+    @Test
+    public void testOrderPerKey() throws InterruptedException {
+        OrderedExecutor executor = new OrderedExecutor(4, 16);
+        assertEquals(4, executor.getWorkerCount());
+
+        int keyCount = 10;
+        int taskCount = 1000;
+        final List<List<Integer>> results = new ArrayList<List<Integer>>();
+        for (int i = 0; i < keyCount; i++) {
+            results.add(Collections.synchronizedList(new ArrayList<Integer>()));
+        }
+        final CountDownLatch latch = new CountDownLatch(keyCount * taskCount);
+
+        for (int n = 0; n < taskCount; n++) {
+            for (int k = 0; k < keyCount; k++) {
+                final List<Integer> result = results.get(k);
+                final int value = n;
+                executor.execute("KEY" + k, new Runnable() {
+                    @Override
+                    public void run() {
+                        result.add(value);
+                        latch.countDown();
+                    }
+                });
+            }
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        for (List<Integer> result : results) {
+            assertEquals(taskCount, result.size());
+            for (int n = 0; n < taskCount; n++) {
+                assertEquals(n, (int)result.get(n));
+            }
+        }
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testParallelKeys() throws InterruptedException {
+        OrderedExecutor executor = new OrderedExecutor(2);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        String key1 = "KEY0";
+        String key2 = "KEY1";
+        for (int i = 2; executor.getWorkerIndex(key1) == executor.getWorkerIndex(key2); i++) {
+            key2 = "KEY" + i;
+        }
+
+        executor.execute(key1, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                }
+            }
+        });
+
+        executor.execute(key2, new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        blocked.countDown();
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testShutdown() throws InterruptedException {
+        OrderedExecutor executor = new OrderedExecutor(2);
+        final AtomicInteger count = new AtomicInteger(0);
+
+        for (int i = 0; i < 100; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    count.incrementAndGet();
+                }
+            });
+        }
+
+        executor.shutdown();
+        assertTrue(executor.isShutdown());
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        assertEquals(100, count.get());
+        assertEquals(0, executor.countQueuedTasks());
+
+        try {
+            executor.execute("KEY", new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+            fail();
+        } catch (RejectedExecutionException e) {
+        }
+    }
+
+    @Test
+    public void testTaskException() throws InterruptedException {
+        OrderedExecutor executor = new OrderedExecutor(1);
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                throw new RuntimeException("test");
+            }
+        });
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidWorkerCount() {
+        new OrderedExecutor(0);
+    }
+}
@@ -1,6 +1,7 @@
 package echowand.logic;
 
 import echowand.net.CommonFrame;
+import echowand.net.CommonFrameView;
 import echowand.net.Frame;
 import echowand.net.Property;
 import echowand.net.StandardPayload;
@@ -11,6 +12,7 @@ import echowand.net.SubnetException;
 import echowand.net.Subnet;
 import echowand.logic.RequestProcessor;
 import echowand.logic.TooManyObjectsException;
+import echowand.common.ClassEOJ;
 import echowand.common.Data;
 import echowand.common.ESV;
 import echowand.logic.RequestDispatcher;
@@ -21,6 +23,11 @@ import echowand.info.DeviceObjectInfo;
 import echowand.object.LocalObjectManager;
 import echowand.object.LocalObject;
 import echowand.info.TemperatureSensorInfo;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
 import org.junit.*;
 import static org.junit.Assert.*;
 
@@ -176,6 +183,142 @@ public class RequestDispatcherTest {
         commonFrame.setEDATA(new SimplePayload());
         assertFalse(dispatcher.process(subnet, frame, false));
     }
+    
+    private Frame createFrame(InternalSubnet subnet, ESV esv, EOJ deoj) {
+        CommonFrame commonFrame = new CommonFrame(new EOJ("05ff01"), deoj, esv);
+        ((StandardPayload)commonFrame.getEDATA()).addFirstProperty(new Property(EPC.x80));
+        return new Frame(subnet.getLocalNode(), subnet.getLocalNode(), commonFrame);
+    }
+    
+    private Frame createViewFrame(InternalSubnet subnet, ESV esv, EOJ deoj) {
+        CommonFrameView view = new CommonFrameView(createFrame(subnet, esv, deoj).getCommonFrame().toBytes());
+        return new Frame(subnet.getLocalNode(), subnet.getLocalNode(), view);
+    }
+    
+    @Test
+    public void testSelectiveRequestProcessor() {
+        InternalSubnet subnet = new InternalSubnet();
+        RecordingRequestProcessor processor = new RecordingRequestProcessor(EnumSet.of(ESV.Get), Collections.singleton(new ClassEOJ("0011")), false);
+        RequestDispatcher dispatcher = new RequestDispatcher();
+        dispatcher.addRequestProcessor(processor);
+        
+        dispatcher.process(subnet, createFrame(subnet, ESV.Get, new EOJ("001101")), false);
+        assertEquals(1, processor.calls.size());
+        
+        dispatcher.process(subnet, createFrame(subnet, ESV.Get, new EOJ("001201")), false);
+        dispatcher.process(subnet, createFrame(subnet, ESV.SetC, new EOJ("001101")), false);
+        dispatcher.process(subnet, createFrame(subnet, ESV.INF, new EOJ("001101")), false);
+        assertEquals(1, processor.calls.size());
+        
+        dispatcher.process(subnet, createViewFrame(subnet, ESV.Get, new EOJ("001101")), false);
+        assertEquals(2, processor.calls.size());
+        dispatcher.process(subnet, createViewFrame(subnet, ESV.Get, new EOJ("001201")), false);
+        assertEquals(2, processor.calls.size());
+        
+        dispatcher.removeRequestProcessor(processor);
+        dispatcher.process(subnet, createFrame(subnet, ESV.Get, new EOJ("001101")), false);
+        assertEquals(2, processor.calls.size());
+    }
+    
+    @Test
+    public void testDefaultRequestProcessorHandledESVs() {
+        assertTrue(new DefaultRequestProcessor().getHandledESVs().isEmpty());
+        
+        DefaultRequestProcessor processor = new DefaultRequestProcessor() {
+            @Override
+            public boolean processGet(Subnet subnet, Frame frame, boolean processed) {
+                return true;
+            }
+        };
+        assertEquals(EnumSet.of(ESV.Get), processor.getHandledESVs());
+        assertNull(processor.getHandledClassEOJs());
+        
+        SetGetRequestProcessor setGetProcessor = new SetGetRequestProcessor(new LocalObjectManager());
+        assertEquals(EnumSet.of(ESV.SetI, ESV.SetC, ESV.Get, ESV.SetGet, ESV.INF_REQ), setGetProcessor.getHandledESVs());
+        
+        SetGetRequestProcessor extendedProcessor = new SetGetRequestProcessor(new LocalObjectManager()) {
+            @Override
+            public boolean processINF(Subnet subnet, Frame frame, boolean processed) {
+                return true;
+            }
+        };
+        assertEquals(EnumSet.of(ESV.SetI, ESV.SetC, ESV.Get, ESV.SetGet, ESV.INF_REQ, ESV.INF), extendedProcessor.getHandledESVs());
+        
+        InternalSubnet subnet = new InternalSubnet();
+        RequestDispatcher dispatcher = new RequestDispatcher();
+        dispatcher.addRequestProcessor(processor);
+        assertTrue(dispatcher.process(subnet, createFrame(subnet, ESV.Get, new EOJ("001101")), false));
+        assertFalse(dispatcher.process(subnet, createFrame(subnet, ESV.SetC, new EOJ("001101")), false));
+    }
+    
+    @Test
+    public void testProcessedChaining() {
+        InternalSubnet subnet = new InternalSubnet();
+        RecordingRequestProcessor first = new RecordingRequestProcessor(EnumSet.of(ESV.Get), null, true);
+        RecordingRequestProcessor skipped = new RecordingRequestProcessor(EnumSet.of(ESV.SetC), null, true);
+        RecordingRequestProcessor filtered = new RecordingRequestProcessor(EnumSet.of(ESV.Get), Collections.singleton(new ClassEOJ("0012")), true);
+        RecordingRequestProcessor last = new RecordingRequestProcessor(EnumSet.allOf(ESV.class), null, false);
+        RequestDispatcher dispatcher = new RequestDispatcher();
+        dispatcher.addRequestProcessor(first);
+        dispatcher.addRequestProcessor(skipped);
+        dispatcher.addRequestProcessor(filtered);
+        dispatcher.addRequestProcessor(last);
+        
+        assertTrue(dispatcher.process(subnet, createFrame(subnet, ESV.Get, new EOJ("001101")), false));
+        assertEquals(1, first.calls.size());
+        assertFalse(first.calls.get(0));
+        assertTrue(skipped.calls.isEmpty());
+        assertTrue(filtered.calls.isEmpty());
+        assertEquals(1, last.calls.size());
+        assertTrue(last.calls.get(0));
+        
+        assertTrue(dispatcher.process(subnet, createFrame(subnet, ESV.SetC, new EOJ("001101")), false));
+        assertEquals(1, skipped.calls.size());
+        assertFalse(skipped.calls.get(0));
+        assertEquals(2, last.calls.size());
+        assertTrue(last.calls.get(1));
+        
+        assertFalse(dispatcher.process(subnet, createFrame(subnet, ESV.INF, new EOJ("001101")), false));
+        assertEquals(3, last.calls.size());
+        assertFalse(last.calls.get(2));
+    }
+}
+
+class RecordingRequestProcessor extends DefaultRequestProcessor {
+    private Set<ESV> esvs;
+    private Set<ClassEOJ> ceojs;
+    private boolean result;
+    public List<Boolean> calls = new LinkedList<Boolean>();
+    
+    public RecordingRequestProcessor(Set<ESV> esvs, Set<ClassEOJ> ceojs, boolean result) {
+        this.esvs = esvs;
+        this.ceojs = ceojs;
+        this.result = result;
+    }
+    
+    private boolean record(boolean processed) {
+        calls.add(processed);
+        return result;
+    }
+    
+    @Override
+    public Set<ESV> getHandledESVs() { return esvs; }
+    @Override
+    public Set<ClassEOJ> getHandledClassEOJs() { return ceojs; }
+    @Override
+    public boolean processSetI(Subnet subnet, Frame frame, boolean processed){ return record(processed); }
+    @Override
+    public boolean processSetC(Subnet subnet, Frame frame, boolean processed){ return record(processed); }
+    @Override
+    public boolean processGet(Subnet subnet, Frame frame, boolean processed){ return record(processed); }
+    @Override
+    public boolean processSetGet(Subnet subnet, Frame frame, boolean processed){ return record(processed); }
+    @Override
+    public boolean processINF_REQ(Subnet subnet, Frame frame, boolean processed){ return record(processed); }
+    @Override
+    public boolean processINF(Subnet subnet, Frame frame, boolean processed){ return record(processed); }
+    @Override
+    public boolean processINFC(Subnet subnet, Frame frame, boolean processed){ return record(processed); }
 }
 
 class ReturnTrueRequestProcessor implements RequestProcessor {
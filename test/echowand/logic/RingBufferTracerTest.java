@@ -0,0 +1,202 @@
+package echowand.logic;
+
+import echowand.common.Data;
+import echowand.common.EOJ;
+import echowand.common.EPC;
+import echowand.common.ESV;
+import echowand.net.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Yoshiki Makino
+ */
+public class RingBufferTracerTest {
+    
+    private Frame createFrame(Node sender, Node receiver, ESV esv, short tid) {
+        CommonFrame commonFrame = new CommonFrame(new EOJ("05ff01"), new EOJ("001101"), esv);
+        commonFrame.setTID(tid);
+        ((StandardPayload)commonFrame.getEDATA()).addFirstProperty(new Property(EPC.x80));
+        return new Frame(sender, receiver, commonFrame);
+    }
+    
+    private List<TraceEvent> filter(List<TraceEvent> events, Node node) {
+        List<TraceEvent> result = new ArrayList<TraceEvent>();
+        for (TraceEvent event : events) {
+            if (node.equals(event.getNode())) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+    
+    @After
+    public void tearDown() {
+        Tracing.setTracer(null);
+    }
+    
+    @Test
+    public void testRecordAndOverwrite() {
+        InternalSubnet subnet = new InternalSubnet("RingBufferTracerTest.testRecordAndOverwrite");
+        RingBufferTracer tracer = new RingBufferTracer(3);
+        assertEquals(4, tracer.getCapacity());
+        assertTrue(tracer.getEvents().isEmpty());
+        
+        for (int i = 0; i < 6; i++) {
+            tracer.frameReceived(subnet, createFrame(subnet.getLocalNode(), subnet.getLocalNode(), ESV.Get, (short)i));
+        }
+        
+        assertEquals(6, tracer.countRecordedEvents());
+        List<TraceEvent> events = tracer.getEvents();
+        assertEquals(4, events.size());
+        for (int i = 0; i < 4; i++) {
+            TraceEvent event = events.get(i);
+            assertEquals(i + 2, event.getSequence());
+            assertEquals((short)(i + 2), event.getTID());
+            assertEquals(TraceEvent.Type.FRAME_RECEIVED, event.getType());
+            assertEquals(ESV.Get, event.getESV());
+            assertEquals(subnet.getLocalNode(), event.getNode());
+            assertEquals(Thread.currentThread().getId(), event.getThreadId());
+        }
+        
+        tracer.clear();
+        assertTrue(tracer.getEvents().isEmpty());
+        assertEquals(6, tracer.countRecordedEvents());
+    }
+    
+    @Test
+    public void testConcurrentRecord() throws InterruptedException {
+        final InternalSubnet subnet = new InternalSubnet("RingBufferTracerTest.testConcurrentRecord");
+        final RingBufferTracer tracer = new RingBufferTracer(8192);
+        final int threadCount = 4;
+        final int eventCount = 1000;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+        
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    Frame frame = createFrame(subnet.getLocalNode(), subnet.getLocalNode(), ESV.INF, (short)0);
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < eventCount; j++) {
+                        tracer.frameDispatched(subnet, frame, true);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        List<TraceEvent> events = tracer.getEvents();
+        assertEquals(threadCount * eventCount, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(i, events.get(i).getSequence());
+            assertEquals(TraceEvent.Type.FRAME_DISPATCHED, events.get(i).getType());
+            assertTrue(events.get(i).isProcessed());
+        }
+    }
+    
+    @Test
+    public void testMainLoopTracing() throws SubnetException, InterruptedException {
+        String networkName = "RingBufferTracerTest.testMainLoopTracing";
+        InternalSubnet subnet = new InternalSubnet(networkName);
+        InternalSubnet sender = new InternalSubnet(networkName);
+        final CountDownLatch latch = new CountDownLatch(1);
+        
+        MainLoop mainLoop = new MainLoop();
+        mainLoop.setSubnet(subnet);
+        mainLoop.addListener(new Listener() {
+            @Override
+            public boolean process(Subnet subnet, Frame frame, boolean processed) {
+                latch.countDown();
+                return true;
+            }
+        });
+        
+        RingBufferTracer tracer = new RingBufferTracer();
+        Tracing.setTracer(tracer);
+        assertTrue(Tracing.isEnabled());
+        assertSame(tracer, Tracing.getTracer());
+        
+        Thread thread = new Thread(mainLoop);
+        thread.setDaemon(true);
+        thread.start();
+        
+        Node receiver = sender.getRemoteNode("LOCAL(" + subnet.getId() + ")");
+        sender.send(createFrame(sender.getLocalNode(), receiver, ESV.Get, (short)0x1234));
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        
+        List<TraceEvent> events = new ArrayList<TraceEvent>();
+        for (int i = 0; i < 500 && events.size() < 2; i++) {
+            Thread.sleep(10);
+            events = filter(tracer.getEvents(), subnet.getRemoteNode("LOCAL(" + sender.getId() + ")"));
+        }
+        
+        assertEquals(2, events.size());
+        assertEquals(TraceEvent.Type.FRAME_RECEIVED, events.get(0).getType());
+        assertEquals(TraceEvent.Type.FRAME_DISPATCHED, events.get(1).getType());
+        assertEquals((short)0x1234, events.get(1).getTID());
+        assertEquals(ESV.Get, events.get(1).getESV());
+        assertTrue(events.get(1).isProcessed());
+        assertTrue(events.get(0).getTime() <= events.get(1).getTime());
+        
+        Tracing.setTracer(null);
+        assertFalse(Tracing.isEnabled());
+    }
+    
+    @Test
+    public void testTransactionTracing() throws SubnetException {
+        InternalSubnet subnet = new InternalSubnet("RingBufferTracerTest.testTransactionTracing");
+        TransactionManager transactionManager = new TransactionManager(subnet);
+        
+        SetGetTransactionConfig config = new SetGetTransactionConfig();
+        config.setSenderNode(subnet.getLocalNode());
+        config.setReceiverNode(subnet.getLocalNode());
+        config.setSourceEOJ(new EOJ("05ff01"));
+        config.setDestinationEOJ(new EOJ("001101"));
+        config.addGet(EPC.x80);
+        Transaction transaction = transactionManager.createTransaction(config);
+        transaction.setTimeout(0);
+        
+        RingBufferTracer tracer = new RingBufferTracer();
+        Tracing.setTracer(tracer);
+        
+        transaction.execute();
+        Frame request = subnet.recv();
+        
+        CommonFrame replyCommonFrame = new CommonFrame(new EOJ("001101"), new EOJ("05ff01"), ESV.Get_Res);
+        replyCommonFrame.setTID(request.getTID());
+        ((StandardPayload)replyCommonFrame.getEDATA()).addFirstProperty(new Property(EPC.x80, new Data((byte)0x30)));
+        assertTrue(transactionManager.process(subnet, new Frame(subnet.getLocalNode(), subnet.getLocalNode(), replyCommonFrame), false));
+        
+        transaction.finish();
+        
+        List<TraceEvent> events = filter(tracer.getEvents(), subnet.getLocalNode());
+        List<TraceEvent.Type> types = new ArrayList<TraceEvent.Type>();
+        for (TraceEvent event : events) {
+            if (event.getTID() == transaction.getTID()) {
+                types.add(event.getType());
+            }
+        }
+        
+        assertEquals(3, types.size());
+        assertEquals(TraceEvent.Type.TRANSACTION_BEGIN, types.get(0));
+        assertEquals(TraceEvent.Type.TRANSACTION_RESPONSE, types.get(1));
+        assertEquals(TraceEvent.Type.TRANSACTION_END, types.get(2));
+        assertEquals(ESV.Get, events.get(0).getESV());
+    }
+}
@@ -0,0 +1,129 @@
+package echowand.logic;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Yoshiki Makino
+ */
+public class TIDAllocatorTest {
+    
+    @Test
+    public void testAllocate() throws TooManyObjectsException {
+        TIDAllocator allocator = new TIDAllocator();
+        short tid1 = allocator.allocate();
+        short tid2 = allocator.allocate();
+        assertTrue(tid1 != tid2);
+        assertTrue(allocator.isInFlight(tid1));
+        assertTrue(allocator.isInFlight(tid2));
+        assertEquals(2, allocator.countInFlight());
+        
+        assertTrue(allocator.release(tid1));
+        assertFalse(allocator.release(tid1));
+        assertFalse(allocator.isInFlight(tid1));
+        assertEquals(1, allocator.countInFlight());
+    }
+    
+    @Test
+    public void testAllocateRequestedTID() throws TooManyObjectsException {
+        TIDAllocator allocator = new TIDAllocator();
+        assertEquals(100, allocator.allocate((short) 100));
+        short tid = allocator.allocate((short) 100);
+        assertTrue(tid != 100);
+        assertTrue(tid != 0);
+        assertTrue(allocator.allocate((short) 0) != 0);
+    }
+    
+    @Test
+    public void testNextSkipsInFlight() throws TooManyObjectsException {
+        TIDAllocator allocator = new TIDAllocator();
+        assertEquals(1, allocator.allocate((short) 1));
+        assertEquals(2, allocator.allocate((short) 2));
+        assertEquals(3, allocator.next());
+        assertFalse(allocator.isInFlight((short) 3));
+        assertEquals(4, allocator.allocate());
+        assertEquals(5, allocator.next());
+    }
+    
+    @Test
+    public void testWrapAround() throws TooManyObjectsException {
+        TIDAllocator allocator = new TIDAllocator();
+        for (int i = 1; i <= TIDAllocator.MAX_TIDS; i++) {
+            assertEquals((short) i, allocator.next());
+        }
+        assertEquals(1, allocator.next());
+        assertEquals(0, allocator.countInFlight());
+    }
+    
+    @Test
+    public void testExhaustion() throws TooManyObjectsException {
+        TIDAllocator allocator = new TIDAllocator();
+        for (int i = 0; i < TIDAllocator.MAX_TIDS; i++) {
+            allocator.allocate();
+        }
+        assertEquals(TIDAllocator.MAX_TIDS, allocator.countInFlight());
+        
+        try {
+            allocator.allocate();
+            fail();
+        } catch (TooManyObjectsException e) {
+        }
+        
+        assertTrue(allocator.release((short) 1234));
+        assertEquals(1234, allocator.allocate());
+    }
+    
+    @Test
+    public void testConcurrentAllocate() throws InterruptedException {
+        final TIDAllocator allocator = new TIDAllocator();
+        final int threadCount = 8;
+        final int iterations = 20000;
+        final AtomicIntegerArray owners = new AtomicIntegerArray(0x10000);
+        final AtomicInteger duplicates = new AtomicInteger(0);
+        final AtomicInteger failures = new AtomicInteger(0);
+        final CountDownLatch start = new CountDownLatch(1);
+        
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    short[] held = new short[4096];
+                    try {
+                        start.await();
+                        for (int n = 0; n < iterations; n++) {
+                            int slot = n % held.length;
+                            if (n >= held.length) {
+                                owners.decrementAndGet(0xffff & held[slot]);
+                                allocator.release(held[slot]);
+                            }
+                            short tid = allocator.allocate();
+                            if (tid == 0 || owners.incrementAndGet(0xffff & tid) != 1) {
+                                duplicates.incrementAndGet();
+                            }
+                            held[slot] = tid;
+                        }
+                    } catch (InterruptedException e) {
+                        failures.incrementAndGet();
+                    } catch (TooManyObjectsException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        assertEquals(0, failures.get());
+        assertEquals(0, duplicates.get());
+        assertEquals(threadCount * 4096, allocator.countInFlight());
+    }
+}
@@ -16,6 +16,8 @@ import echowand.object.LocalObjectManager;
 import echowand.object.LocalObject;
 import echowand.info.TemperatureSensorInfo;
 import echowand.logic.SetGetTransactionConfig;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.*;
 import static org.junit.Assert.*;
 
@@ -75,4 +77,117 @@ public class TransactionManagerTest {
         assertTrue(t != null);
         assertEquals(config, t.getTransactionConfig());
     }
+    
+    @Test
+    public void testActiveTransactions() throws SubnetException {
+        InternalSubnet subnet = new InternalSubnet();
+        TransactionManager transactionManager = new TransactionManager(subnet);
+        Transaction[] transactions = new Transaction[100];
+        
+        for (int i = 0; i < transactions.length; i++) {
+            SetGetTransactionConfig config = new SetGetTransactionConfig();
+            config.setSenderNode(subnet.getLocalNode());
+            config.setReceiverNode(subnet.getLocalNode());
+            config.setSourceEOJ(new EOJ("05ff01"));
+            config.setDestinationEOJ(new EOJ("001101"));
+            transactions[i] = transactionManager.createTransaction(config);
+            transactions[i].setTimeout(0);
+            transactions[i].execute();
+            recvWithoutError(subnet);
+        }
+        assertEquals(100, transactionManager.countActiveTransactions());
+        
+        CommonFrame frame = new CommonFrame(new EOJ("001101"), new EOJ("05ff01"), ESV.Get_Res);
+        frame.setTID(transactions[42].getTID());
+        assertTrue(transactionManager.process(subnet, new Frame(subnet.getLocalNode(), subnet.getLocalNode(), frame), false));
+        assertEquals(1, transactions[42].countResponses());
+        assertEquals(0, transactions[41].countResponses());
+        
+        for (Transaction t : transactions) {
+            t.finish();
+        }
+        assertEquals(0, transactionManager.countActiveTransactions());
+        assertFalse(transactionManager.process(subnet, new Frame(subnet.getLocalNode(), subnet.getLocalNode(), frame), false));
+        transactionManager.close();
+    }
+    
+    private Transaction createGetTransaction(InternalSubnet subnet, TransactionManager transactionManager) {
+        SetGetTransactionConfig config = new SetGetTransactionConfig();
+        config.setSenderNode(subnet.getLocalNode());
+        config.setReceiverNode(subnet.getLocalNode());
+        config.setSourceEOJ(new EOJ("05ff01"));
+        config.setDestinationEOJ(new EOJ("001101"));
+        return transactionManager.createTransaction(config);
+    }
+    
+    @Test
+    public void testTimeoutExecutor() throws Exception {
+        InternalSubnet subnet = new InternalSubnet();
+        TransactionManager transactionManager = new TransactionManager(subnet);
+        assertNotNull(transactionManager.getExecutor());
+        
+        final AtomicReference<Thread> executorThread = new AtomicReference<Thread>();
+        transactionManager.setExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                Thread thread = new Thread(command);
+                executorThread.set(thread);
+                thread.start();
+            }
+        });
+        
+        final AtomicReference<Thread> finishThread = new AtomicReference<Thread>();
+        Transaction t = createGetTransaction(subnet, transactionManager);
+        t.addTransactionListener(new TransactionListener() {
+            @Override
+            public void begin(Transaction t) {}
+            @Override
+            public void receive(Transaction t, Subnet subnet, Frame frame) {}
+            @Override
+            public void finish(Transaction t) {
+                finishThread.set(Thread.currentThread());
+            }
+        });
+        t.setTimeout(50);
+        t.execute();
+        recvWithoutError(subnet);
+        t.join();
+        
+        assertNotNull(finishThread.get());
+        assertSame(executorThread.get(), finishThread.get());
+        transactionManager.close();
+    }
+    
+    @Test
+    public void testClose() throws SubnetException {
+        InternalSubnet subnet = new InternalSubnet();
+        TransactionManager transactionManager = new TransactionManager(subnet);
+        Transaction t = createGetTransaction(subnet, transactionManager);
+        t.setTimeout(0);
+        t.execute();
+        recvWithoutError(subnet);
+        assertEquals(1, transactionManager.countActiveTransactions());
+        
+        transactionManager.close();
+        assertTrue(t.isDone());
+        assertEquals(0, transactionManager.countActiveTransactions());
+        assertTrue(transactionManager.isClosed());
+    }
+    
+    @Test
+    public void testExecuteAfterClose() throws SubnetException {
+        InternalSubnet subnet = new InternalSubnet();
+        TransactionManager transactionManager = new TransactionManager(subnet);
+        transactionManager.close();
+        
+        Transaction t = createGetTransaction(subnet, transactionManager);
+        try {
+            t.execute();
+            fail();
+        } catch (SubnetException e) {
+        }
+        
+        assertNull(subnet.recvNoWait());
+        assertEquals(0, transactionManager.countActiveTransactions());
+    }
 }
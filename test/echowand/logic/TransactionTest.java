@@ -12,6 +12,9 @@ import echowand.common.ESV;
 import echowand.common.EOJ;
 import echowand.common.EPC;
 import echowand.net.Inet4Subnet;
+import echowand.util.AsyncResult;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import org.junit.*;
 import static org.junit.Assert.*;
 
@@ -72,6 +75,7 @@ public class TransactionTest {
     @After
     public void tearDown() {
         inet4Subnet.disable();
+        transactionManager.close();
     }
     
     @Test
@@ -299,6 +303,42 @@ public class TransactionTest {
         assertTrue(testCallbackFinished);
     }
     
+    @Test
+    public void testFinishListenerWithoutLock() throws SubnetException, InterruptedException {
+        final Transaction t = new Transaction(subnet, transactionManager, transactionConfig1);
+        final boolean[] result = new boolean[]{false, false};
+        t.addTransactionListener(new TransactionListener(){
+            @Override
+            public void begin(Transaction t){}
+            @Override
+            public void receive(Transaction t, Subnet subnet, Frame frame){}
+            @Override
+            public void finish(final Transaction t){
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        result[0] = t.isDone();
+                    }
+                });
+                thread.start();
+                try {
+                    thread.join(1000);
+                    t.join();
+                    result[1] = true;
+                } catch (InterruptedException e) {
+                }
+            }
+        });
+        
+        t.setTimeout(0);
+        t.execute();
+        t.finish();
+        t.join();
+        
+        assertTrue(result[0]);
+        assertTrue(result[1]);
+    }
+    
     @Test
     public void testTID() {
         Transaction t1 = new Transaction(subnet, transactionManager, transactionConfig1);
@@ -306,6 +346,37 @@ public class TransactionTest {
         assertTrue(t1.getTID() != t2.getTID());
     }
     
+    @Test
+    public void testTIDInFlight() throws SubnetException {
+        TIDAllocator allocator = transactionManager.getTIDAllocator();
+        Transaction t = new Transaction(subnet, transactionManager, transactionConfig1);
+        assertFalse(allocator.isInFlight(t.getTID()));
+        
+        t.execute();
+        assertTrue(allocator.isInFlight(t.getTID()));
+        
+        t.finish();
+        assertFalse(allocator.isInFlight(t.getTID()));
+    }
+    
+    @Test
+    public void testTIDExhaustion() throws TooManyObjectsException {
+        TIDAllocator allocator = transactionManager.getTIDAllocator();
+        for (int i = 0; i < TIDAllocator.MAX_TIDS; i++) {
+            allocator.allocate();
+        }
+        
+        Transaction t = new Transaction(subnet, transactionManager, transactionConfig1);
+        try {
+            t.execute();
+            fail();
+        } catch (SubnetException e) {
+            assertTrue(e.getInternalException() instanceof TooManyObjectsException);
+        }
+        assertFalse(t.isWaitingResponse());
+        assertEquals(0, transactionManager.countActiveTransactions());
+    }
+    
     @Test
     public void testTimeout() {
         Transaction t = new Transaction(subnet, transactionManager, transactionConfig1);
@@ -389,4 +460,49 @@ public class TransactionTest {
         
         assertEquals(1, t.countResponses());
     }
+    
+    @Test
+    public void testExecuteAsync() throws Exception {
+        Transaction t = new Transaction(subnet, transactionManager, transactionConfig1);
+        
+        AsyncResult<Transaction> result = t.executeAsync();
+        assertFalse(result.isDone());
+        assertTrue(t.isWaitingResponse());
+        
+        Frame reqFrame = subnet.recv();
+        t.recvResponse(createReplyFrame(reqFrame));
+        t.finish();
+        
+        assertTrue(result.isDone());
+        assertEquals(t, result.get(1, TimeUnit.SECONDS));
+        assertEquals(1, t.countResponses());
+        assertEquals(result, t.executeAsync());
+    }
+    
+    @Test
+    public void testExecuteAsyncTimeout() throws Exception {
+        Transaction t = new Transaction(subnet, transactionManager, transactionConfig1);
+        t.setTimeout(100);
+        
+        AsyncResult<Transaction> result = t.executeAsync();
+        assertEquals(t, result.get(1, TimeUnit.SECONDS));
+        assertTrue(t.isDone());
+        assertEquals(0, t.countResponses());
+    }
+    
+    @Test
+    public void testExecuteAsyncFailure() throws InterruptedException {
+        Transaction t = new Transaction(subnet, transactionManager, transactionConfig1);
+        transactionConfig1.setReceiverNode(inet4Subnet.getLocalNode());
+        
+        AsyncResult<Transaction> result = t.executeAsync();
+        assertTrue(result.isDone());
+        try {
+            result.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SubnetException);
+        }
+        assertEquals(0, transactionManager.countActiveTransactions());
+    }
 }
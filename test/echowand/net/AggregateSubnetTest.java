@@ -0,0 +1,155 @@
+package echowand.net;
+
+import echowand.common.EOJ;
+import echowand.common.ESV;
+import java.util.Arrays;
+import java.util.LinkedList;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Yoshiki Makino
+ */
+public class AggregateSubnetTest {
+    private InternalSubnet member1;
+    private InternalSubnet member2;
+    private InternalSubnet peer1;
+    private InternalSubnet peer2;
+    private AggregateSubnet subnet;
+    
+    @Before
+    public void setUp() {
+        member1 = new InternalSubnet("AggregateSubnetTest1");
+        peer1 = new InternalSubnet("AggregateSubnetTest1");
+        member2 = new InternalSubnet("AggregateSubnetTest2");
+        peer2 = new InternalSubnet("AggregateSubnetTest2");
+        subnet = new AggregateSubnet(member1, member2);
+    }
+    
+    @After
+    public void tearDown() {
+        subnet.close();
+    }
+    
+    public CommonFrame createFrame(short tid) {
+        CommonFrame frame = new CommonFrame();
+        
+        StandardPayload payload = new StandardPayload();
+        payload.setDEOJ(new EOJ("001101"));
+        payload.setSEOJ(new EOJ("0ef001"));
+        payload.setESV(ESV.Get);
+        frame.setEDATA(payload);
+        frame.setTID(tid);
+        
+        return frame;
+    }
+    
+    @Test
+    public void testCreation() {
+        assertEquals(Arrays.asList(member1, member2), subnet.getSubnets());
+        assertTrue(subnet.getLocalNode().isMemberOf(subnet));
+        assertTrue(subnet.getGroupNode().isMemberOf(subnet));
+        assertFalse(subnet.getLocalNode().isMemberOf(member1));
+        assertSame(member1, subnet.getSubnet(member1.getLocalNode()));
+        assertSame(member2, subnet.getSubnet(member2.getLocalNode()));
+        assertNull(subnet.getSubnet(subnet.getLocalNode()));
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testCreationWithoutSubnets() {
+        new AggregateSubnet();
+    }
+    
+    @Test
+    public void testSendToGroup() throws SubnetException {
+        assertTrue(subnet.send(new Frame(subnet.getLocalNode(), subnet.getGroupNode(), createFrame((short) 1))));
+        
+        Frame frame1 = peer1.recvNoWait();
+        Frame frame2 = peer2.recvNoWait();
+        assertEquals(1, frame1.getTID());
+        assertEquals(member1.getLocalNode(), frame1.getSender());
+        assertEquals(1, frame2.getTID());
+        assertEquals(member2.getLocalNode(), frame2.getSender());
+    }
+    
+    @Test
+    public void testSendToRemoteNode() throws SubnetException {
+        Node node = member2.getRemoteNode(((InternalNode)peer2.getLocalNode()).getName());
+        assertTrue(subnet.send(new Frame(subnet.getLocalNode(), node, createFrame((short) 2))));
+        
+        assertNull(peer1.recvNoWait());
+        Frame frame = peer2.recvNoWait();
+        assertEquals(2, frame.getTID());
+        assertEquals(member2.getLocalNode(), frame.getSender());
+        assertEquals(peer2.getLocalNode(), frame.getReceiver());
+    }
+    
+    @Test
+    public void testSendBatch() throws SubnetException {
+        Node node1 = member1.getRemoteNode(((InternalNode)peer1.getLocalNode()).getName());
+        Node node2 = member2.getRemoteNode(((InternalNode)peer2.getLocalNode()).getName());
+        LinkedList<Frame> frames = new LinkedList<Frame>();
+        frames.add(new Frame(subnet.getLocalNode(), node1, createFrame((short) 1)));
+        frames.add(new Frame(subnet.getLocalNode(), node2, createFrame((short) 2)));
+        frames.add(new Frame(subnet.getLocalNode(), node1, createFrame((short) 3)));
+        assertTrue(subnet.sendBatch(frames));
+        
+        assertEquals(1, peer1.recvNoWait().getTID());
+        assertEquals(3, peer1.recvNoWait().getTID());
+        assertNull(peer1.recvNoWait());
+        assertEquals(2, peer2.recvNoWait().getTID());
+        assertNull(peer2.recvNoWait());
+    }
+    
+    @Test
+    public void testSendWithInvalidNodes() throws SubnetException {
+        InternalSubnet other = new InternalSubnet("AggregateSubnetTest3");
+        
+        try {
+            subnet.send(new Frame(subnet.getLocalNode(), other.getLocalNode(), createFrame((short) 1)));
+            fail();
+        } catch (SubnetException e) {
+        }
+        
+        try {
+            subnet.send(new Frame(member1.getLocalNode(), member2.getLocalNode(), createFrame((short) 1)));
+            fail();
+        } catch (SubnetException e) {
+        }
+        
+        LinkedList<Frame> frames = new LinkedList<Frame>();
+        frames.add(new Frame(subnet.getLocalNode(), subnet.getGroupNode(), createFrame((short) 1)));
+        frames.add(new Frame(subnet.getLocalNode(), other.getLocalNode(), createFrame((short) 2)));
+        try {
+            subnet.sendBatch(frames);
+            fail();
+        } catch (SubnetException e) {
+        }
+        assertNull(peer1.recvNoWait());
+        assertNull(peer2.recvNoWait());
+    }
+    
+    @Test
+    public void testRecv() throws SubnetException {
+        Node node1 = peer1.getRemoteNode(((InternalNode)member1.getLocalNode()).getName());
+        peer1.send(new Frame(peer1.getLocalNode(), node1, createFrame((short) 1)));
+        peer2.send(new Frame(peer2.getLocalNode(), peer2.getGroupNode(), createFrame((short) 2)));
+        
+        Frame frame1 = subnet.recv();
+        Frame frame2 = subnet.recv();
+        assertEquals(3, frame1.getTID() + frame2.getTID());
+        
+        Frame frame = frame1.getTID() == 1 ? frame1 : frame2;
+        assertEquals(peer1.getLocalNode(), frame.getSender());
+        
+        subnet.send(new Frame(subnet.getLocalNode(), frame.getSender(), createFrame((short) 3)));
+        assertEquals(3, peer1.recvNoWait().getTID());
+    }
+    
+    @Test(expected=SubnetException.class)
+    public void testRecvAfterClose() throws SubnetException {
+        subnet.close();
+        subnet.recv();
+    }
+}
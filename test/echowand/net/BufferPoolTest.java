@@ -0,0 +1,80 @@
+package echowand.net;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Yoshiki Makino
+ */
+public class BufferPoolTest {
+    
+    @Test
+    public void testCreation() {
+        BufferPool pool = new BufferPool(100, 2);
+        assertEquals(100, pool.getBufferSize());
+        assertEquals(2, pool.getCapacity());
+        assertEquals(0, pool.countAvailable());
+        
+        pool = new BufferPool(1500);
+        assertEquals(BufferPool.DEFAULT_CAPACITY, pool.getCapacity());
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidBufferSize() {
+        new BufferPool(0);
+    }
+    
+    @Test
+    public void testAcquireAndRelease() {
+        BufferPool pool = new BufferPool(100, 2);
+        PooledBuffer buffer1 = pool.acquire();
+        assertEquals(100, buffer1.getBytes().length);
+        assertEquals(0, buffer1.getLength());
+        assertFalse(buffer1.isReleased());
+        
+        buffer1.release();
+        assertTrue(buffer1.isReleased());
+        assertEquals(1, pool.countAvailable());
+        
+        buffer1.release();
+        assertEquals(1, pool.countAvailable());
+        
+        PooledBuffer buffer2 = pool.acquire();
+        assertSame(buffer1, buffer2);
+        assertFalse(buffer2.isReleased());
+        assertEquals(0, pool.countAvailable());
+    }
+    
+    @Test
+    public void testCapacity() {
+        BufferPool pool = new BufferPool(100, 2);
+        PooledBuffer buffer1 = pool.acquire();
+        PooledBuffer buffer2 = pool.acquire();
+        PooledBuffer buffer3 = pool.acquire();
+        assertNotSame(buffer1, buffer2);
+        
+        buffer1.release();
+        buffer2.release();
+        buffer3.release();
+        assertEquals(2, pool.countAvailable());
+    }
+    
+    @Test
+    public void testFrameRelease() {
+        BufferPool pool = new BufferPool(100, 2);
+        InternalSubnet subnet = new InternalSubnet();
+        PooledBuffer buffer = pool.acquire();
+        CommonFrameView view = new CommonFrameView(buffer.getBytes(), 0, 4);
+        Frame frame = new Frame(subnet.getLocalNode(), subnet.getLocalNode(), view, buffer);
+        assertSame(buffer, frame.getBuffer());
+        
+        frame.release();
+        assertNull(frame.getBuffer());
+        assertTrue(buffer.isReleased());
+        assertEquals(1, pool.countAvailable());
+        
+        frame.release();
+        assertEquals(1, pool.countAvailable());
+    }
+}
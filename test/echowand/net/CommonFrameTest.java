@@ -103,6 +103,45 @@ public class CommonFrameTest {
         assertEquals(0, buffer.compareTo(newBuffer));
     }
     
+    @Test
+    public void testCreationFromRange() throws InvalidDataException {
+        ByteBuffer buffer = ByteBuffer.allocate(40);
+        buffer.put((byte)0xff);
+        buffer.put((byte)0x10);
+        buffer.put((byte)0x81);
+        buffer.putShort((short)0x1234);
+        buffer.put(new EOJ("123456").toBytes());
+        buffer.put(new EOJ("abcdef").toBytes());
+        buffer.put(ESV.SetC.toByte());
+        buffer.put((byte)0x01);
+        buffer.put(new Property(EPC.x88, new Data((byte)0x12, (byte)0x34)).toBytes());
+        buffer.put((byte)0x01);
+        buffer.put((byte)0x02);
+        
+        CommonFrame f = new CommonFrame(buffer.array(), 1, 16);
+        assertEquals((short)0x1234, f.getTID());
+        StandardPayload payload = (StandardPayload)f.getEDATA();
+        assertEquals(ESV.SetC, payload.getESV());
+        assertEquals(1, payload.getFirstOPC());
+        assertEquals(new Data((byte)0x12, (byte)0x34), payload.getFirstPropertyAt(0).getEDT());
+        assertEquals(16, f.toBytes().length);
+    }
+    
+    @Test(expected=InvalidDataException.class)
+    public void testCreationFromTruncatedRange() throws InvalidDataException {
+        ByteBuffer buffer = ByteBuffer.allocate(40);
+        buffer.put((byte)0x10);
+        buffer.put((byte)0x81);
+        buffer.putShort((short)0x1234);
+        buffer.put(new EOJ("123456").toBytes());
+        buffer.put(new EOJ("abcdef").toBytes());
+        buffer.put(ESV.SetC.toByte());
+        buffer.put((byte)0x01);
+        buffer.put(new Property(EPC.x88, new Data((byte)0x12, (byte)0x34)).toBytes());
+        
+        new CommonFrame(buffer.array(), 0, 15);
+    }
+    
     @Test
     public void testCreationWithInfo() {
         EOJ seoj = new EOJ("001101");
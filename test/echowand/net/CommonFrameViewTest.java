@@ -0,0 +1,196 @@
+package echowand.net;
+
+import echowand.common.Data;
+import echowand.common.ClassEOJ;
+import echowand.common.EOJ;
+import echowand.common.EPC;
+import echowand.common.ESV;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedList;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Yoshiki Makino
+ */
+public class CommonFrameViewTest {
+    
+    private byte[] createSetGetBytes() {
+        CommonFrame frame = new CommonFrame(new EOJ("001101"), new EOJ("0ef001"), ESV.SetGet);
+        frame.setTID((short)0x1234);
+        StandardPayload payload = (StandardPayload)frame.getEDATA();
+        payload.addFirstProperty(new Property(EPC.x80, new Data((byte)0x30)));
+        payload.addFirstProperty(new Property(EPC.xB0, new Data((byte)0x41, (byte)0x42)));
+        payload.addSecondProperty(new Property(EPC.x88));
+        return frame.toBytes();
+    }
+    
+    private byte[] createBytes(ESV esv, Property... properties) {
+        CommonFrame frame = new CommonFrame(new EOJ("001101"), new EOJ("0ef001"), esv);
+        StandardPayload payload = (StandardPayload)frame.getEDATA();
+        for (Property property : properties) {
+            payload.addFirstProperty(property);
+        }
+        return frame.toBytes();
+    }
+    
+    @Test
+    public void testHeader() {
+        CommonFrameView view = new CommonFrameView(createSetGetBytes());
+        assertEquals((byte)0x10, view.getEHD1());
+        assertEquals((byte)0x81, view.getEHD2());
+        assertTrue(view.isEchonetLite());
+        assertTrue(view.isStandardPayload());
+        assertEquals((short)0x1234, view.getTID());
+        assertEquals(new EOJ("001101"), view.getSEOJ());
+        assertEquals(new EOJ("0ef001"), view.getDEOJ());
+        assertTrue(view.hasSEOJ(new EOJ("001101")));
+        assertTrue(view.hasDEOJ(new EOJ("0ef001")));
+        assertFalse(view.hasDEOJ(new EOJ("0ef002")));
+        assertEquals(new ClassEOJ("0ef0").intValue(), view.getDEOJClassValue());
+        assertEquals(ESV.SetGet, view.getESV());
+        assertEquals(2, view.getFirstOPC());
+        assertEquals(1, view.getSecondOPC());
+    }
+    
+    @Test
+    public void testCursor() {
+        CommonFrameView view = new CommonFrameView(createSetGetBytes());
+        assertTrue(view.isWellFormed());
+        
+        PropertyCursor cursor = view.getFirstProperties();
+        assertEquals(2, cursor.count());
+        assertTrue(cursor.next());
+        assertEquals(0, cursor.getIndex());
+        assertEquals(EPC.x80, cursor.getEPC());
+        assertEquals(1, cursor.getPDC());
+        assertEquals((byte)0x30, cursor.getEDTAt(0));
+        assertTrue(cursor.next());
+        assertEquals(EPC.xB0, cursor.getEPC());
+        assertEquals(2, cursor.getPDC());
+        byte[] edt = new byte[2];
+        assertEquals(2, cursor.copyEDT(edt, 0));
+        assertTrue(Arrays.equals(new byte[]{0x41, 0x42}, edt));
+        assertEquals(new Data((byte)0x41, (byte)0x42), cursor.getEDT());
+        assertFalse(cursor.next());
+        
+        cursor.reset();
+        assertTrue(cursor.next());
+        assertEquals(EPC.x80, cursor.toProperty().getEPC());
+        
+        cursor = view.getSecondProperties();
+        assertTrue(cursor.next());
+        assertEquals(EPC.x88, cursor.getEPC());
+        assertEquals(0, cursor.getPDC());
+        assertNull(cursor.getEDT());
+        assertFalse(cursor.next());
+    }
+    
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testCursorEDTOutOfRange() {
+        CommonFrameView view = new CommonFrameView(createSetGetBytes());
+        PropertyCursor cursor = view.getFirstProperties();
+        cursor.next();
+        cursor.getEDTAt(1);
+    }
+    
+    @Test(expected=IllegalStateException.class)
+    public void testCursorBeforeNext() {
+        CommonFrameView view = new CommonFrameView(createSetGetBytes());
+        view.getFirstProperties().getEPC();
+    }
+    
+    @Test
+    public void testVisitor() {
+        CommonFrameView view = new CommonFrameView(createSetGetBytes());
+        final LinkedList<EPC> epcs = new LinkedList<EPC>();
+        
+        assertTrue(view.visitFirstProperties(new PropertyVisitor() {
+            @Override
+            public boolean visit(PropertyCursor cursor) {
+                epcs.add(cursor.getEPC());
+                return true;
+            }
+        }));
+        assertEquals(Arrays.asList(EPC.x80, EPC.xB0), epcs);
+        
+        epcs.clear();
+        assertFalse(view.visitFirstProperties(new PropertyVisitor() {
+            @Override
+            public boolean visit(PropertyCursor cursor) {
+                epcs.add(cursor.getEPC());
+                return false;
+            }
+        }));
+        assertEquals(Arrays.asList(EPC.x80), epcs);
+    }
+    
+    @Test
+    public void testRange() throws InvalidDataException {
+        byte[] bytes = createSetGetBytes();
+        byte[] padded = new byte[bytes.length + 10];
+        System.arraycopy(bytes, 0, padded, 5, bytes.length);
+        
+        CommonFrameView view = new CommonFrameView(padded, 5, bytes.length);
+        assertEquals(bytes.length, view.getLength());
+        assertTrue(view.isWellFormed());
+        assertTrue(view.validate());
+        assertTrue(Arrays.equals(bytes, view.toBytes()));
+        assertTrue(Arrays.equals(bytes, view.toCommonFrame().toBytes()));
+        
+        CommonFrameView copy = view.copy();
+        Arrays.fill(padded, (byte)0);
+        assertEquals((short)0x1234, copy.getTID());
+        assertTrue(Arrays.equals(bytes, copy.toBytes()));
+    }
+    
+    @Test
+    public void testMalformed() {
+        byte[] bytes = createSetGetBytes();
+        assertFalse(new CommonFrameView(bytes, 0, 3).isWellFormed());
+        assertFalse(new CommonFrameView(bytes, 0, 10).isWellFormed());
+        assertFalse(new CommonFrameView(bytes, 0, bytes.length - 1).isWellFormed());
+        assertFalse(new CommonFrameView(bytes, 0, bytes.length - 1).validate());
+        assertTrue(new CommonFrameView(bytes, 0, bytes.length).isWellFormed());
+    }
+    
+    @Test(expected=IllegalStateException.class)
+    public void testCursorOnMalformed() {
+        byte[] bytes = createSetGetBytes();
+        new CommonFrameView(bytes, 0, bytes.length - 1).getFirstProperties();
+    }
+    
+    @Test
+    public void testSimplePayload() {
+        byte[] bytes = new byte[]{0x10, (byte)0x82, 0x00, 0x01, 0x01, 0x02};
+        CommonFrameView view = new CommonFrameView(bytes);
+        assertTrue(view.isWellFormed());
+        assertFalse(view.isStandardPayload());
+        assertFalse(view.validate());
+    }
+    
+    private void assertSameValidation(byte[] bytes) throws InvalidDataException {
+        StandardPayload payload = (StandardPayload)new CommonFrame(bytes).getEDATA();
+        boolean expected = new StandardPayloadValidator().validate(payload);
+        assertEquals(expected, new CommonFrameView(bytes).validate());
+    }
+    
+    @Test
+    public void testValidate() throws InvalidDataException {
+        assertSameValidation(createSetGetBytes());
+        assertSameValidation(createBytes(ESV.Get, new Property(EPC.x80)));
+        assertSameValidation(createBytes(ESV.Get, new Property(EPC.x80, new Data((byte)0x30))));
+        assertSameValidation(createBytes(ESV.SetC, new Property(EPC.x80, new Data((byte)0x30))));
+        assertSameValidation(createBytes(ESV.SetC, new Property(EPC.x80)));
+        assertSameValidation(createBytes(ESV.SetC, new Property(EPC.x80, new Data((byte)0x30)), new Property(EPC.x81)));
+        assertSameValidation(createBytes(ESV.Get_SNA, new Property(EPC.x80)));
+        assertSameValidation(createBytes(ESV.INF));
+        assertSameValidation(createBytes(ESV.Invalid, new Property(EPC.x80)));
+        assertSameValidation(createBytes(ESV.Get, new Property(EPC.Invalid)));
+        
+        assertTrue(new CommonFrameView(createBytes(ESV.Get, new Property(EPC.x80))).validate());
+        assertFalse(new CommonFrameView(createBytes(ESV.SetC, new Property(EPC.x80))).validate());
+    }
+}
@@ -0,0 +1,164 @@
+package echowand.net;
+
+import echowand.common.Data;
+import echowand.common.EOJ;
+import echowand.common.EPC;
+import echowand.common.ESV;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Yoshiki Makino
+ */
+public class DualStackSubnetTest {
+    private InternalSubnet inet4Subnet;
+    private InternalSubnet inet6Subnet;
+    private InternalSubnet inet4Peer;
+    private InternalSubnet inet6Peer;
+    private DualStackSubnet subnet;
+    
+    @Before
+    public void setUp() {
+        inet4Subnet = new InternalSubnet("DualStackSubnetTest4");
+        inet4Peer = new InternalSubnet("DualStackSubnetTest4");
+        inet6Subnet = new InternalSubnet("DualStackSubnetTest6");
+        inet6Peer = new InternalSubnet("DualStackSubnetTest6");
+        subnet = new DualStackSubnet(inet4Subnet, inet6Subnet);
+    }
+    
+    @After
+    public void tearDown() {
+        subnet.close();
+    }
+    
+    public CommonFrame createFrame(short tid, byte id) {
+        CommonFrame frame = new CommonFrame();
+        
+        StandardPayload payload = new StandardPayload();
+        payload.setSEOJ(new EOJ("0ef001"));
+        payload.setDEOJ(new EOJ("0ef001"));
+        payload.setESV(ESV.INF);
+        payload.addFirstProperty(new Property(EPC.x83, new Data((byte)0xfe, (byte)0x00, (byte)0x00, id)));
+        frame.setEDATA(payload);
+        frame.setTID(tid);
+        
+        return frame;
+    }
+    
+    public CommonFrame createFrame(short tid) {
+        CommonFrame frame = new CommonFrame();
+        
+        StandardPayload payload = new StandardPayload();
+        payload.setSEOJ(new EOJ("001101"));
+        payload.setDEOJ(new EOJ("0ef001"));
+        payload.setESV(ESV.Get);
+        payload.addFirstProperty(new Property(EPC.x80));
+        frame.setEDATA(payload);
+        frame.setTID(tid);
+        
+        return frame;
+    }
+    
+    @Test
+    public void testCreation() {
+        assertSame(inet4Subnet, subnet.getInet4Subnet());
+        assertSame(inet6Subnet, subnet.getInet6Subnet());
+        assertSame(inet4Subnet.getLocalNode(), subnet.getCanonicalNode(inet4Subnet.getLocalNode()));
+    }
+    
+    @Test
+    public void testIdentify() throws SubnetException {
+        inet4Peer.send(new Frame(inet4Peer.getLocalNode(), inet4Peer.getGroupNode(), createFrame((short) 1, (byte) 0x01)));
+        Frame frame1 = subnet.recv();
+        assertEquals(inet4Peer.getLocalNode(), frame1.getSender());
+        
+        inet6Peer.send(new Frame(inet6Peer.getLocalNode(), inet6Peer.getGroupNode(), createFrame((short) 2, (byte) 0x01)));
+        Frame frame2 = subnet.recv();
+        assertTrue(frame2.getSender() instanceof DualStackNode);
+        DualStackNode node = (DualStackNode)frame2.getSender();
+        assertTrue(node.isMemberOf(subnet));
+        assertEquals(inet4Peer.getLocalNode(), node.getInet4Node());
+        assertEquals(inet6Peer.getLocalNode(), node.getInet6Node());
+        assertEquals(inet6Peer.getLocalNode(), node.getPreferredNode());
+        
+        inet4Peer.send(new Frame(inet4Peer.getLocalNode(), inet4Peer.getGroupNode(), createFrame((short) 3)));
+        Frame frame3 = subnet.recv();
+        assertSame(node, frame3.getSender());
+        assertEquals(inet4Peer.getLocalNode(), node.getPreferredNode());
+        assertEquals(3, frame3.getTID());
+    }
+    
+    @Test
+    public void testDifferentDevices() throws SubnetException {
+        inet4Peer.send(new Frame(inet4Peer.getLocalNode(), inet4Peer.getGroupNode(), createFrame((short) 1, (byte) 0x01)));
+        inet6Peer.send(new Frame(inet6Peer.getLocalNode(), inet6Peer.getGroupNode(), createFrame((short) 2, (byte) 0x02)));
+        
+        assertFalse(subnet.recv().getSender() instanceof DualStackNode);
+        assertFalse(subnet.recv().getSender() instanceof DualStackNode);
+    }
+    
+    @Test
+    public void testSendToDualStackNode() throws SubnetException {
+        Node inet4Node = inet4Subnet.getRemoteNode(((InternalNode)inet4Peer.getLocalNode()).getName());
+        Node inet6Node = inet6Subnet.getRemoteNode(((InternalNode)inet6Peer.getLocalNode()).getName());
+        DualStackNode node = subnet.setAlias(inet4Node, inet6Node);
+        assertSame(node, subnet.getCanonicalNode(inet4Node));
+        assertSame(node, subnet.getCanonicalNode(inet6Node));
+        
+        subnet.send(new Frame(subnet.getLocalNode(), node, createFrame((short) 1)));
+        assertEquals(1, inet4Peer.recvNoWait().getTID());
+        assertNull(inet6Peer.recvNoWait());
+        
+        inet6Peer.send(new Frame(inet6Peer.getLocalNode(), inet6Peer.getGroupNode(), createFrame((short) 2)));
+        assertSame(node, subnet.recv().getSender());
+        inet6Peer.recvNoWait();
+        
+        subnet.send(new Frame(subnet.getLocalNode(), node, createFrame((short) 3)));
+        assertNull(inet4Peer.recvNoWait());
+        assertEquals(3, inet6Peer.recvNoWait().getTID());
+        
+        assertTrue(subnet.removeAlias(inet6Node));
+        assertSame(inet4Node, subnet.getCanonicalNode(inet4Node));
+        assertFalse(subnet.removeAlias(inet4Node));
+    }
+    
+    @Test
+    public void testSameAlias() {
+        Node inet4Node = inet4Subnet.getRemoteNode(((InternalNode)inet4Peer.getLocalNode()).getName());
+        Node inet6Node = inet6Subnet.getRemoteNode(((InternalNode)inet6Peer.getLocalNode()).getName());
+        DualStackNode node = subnet.setAlias(inet4Node, inet6Node);
+        assertSame(node, subnet.setAlias(inet4Node, inet6Node));
+        
+        DualStackNode other = new DualStackNode(subnet, inet4Node, inet6Node);
+        assertEquals(node, other);
+        assertEquals(node.hashCode(), other.hashCode());
+        assertFalse(node.equals(new DualStackNode(subnet, inet4Node, inet6Subnet.getLocalNode())));
+    }
+    
+    @Test
+    public void testIdentifiedCapacity() throws SubnetException {
+        assertEquals(DualStackSubnet.DEFAULT_IDENTIFIED_CAPACITY, subnet.getIdentifiedCapacity());
+        subnet.setIdentifiedCapacity(2);
+        
+        for (int i = 0; i < 3; i++) {
+            inet4Peer.send(new Frame(inet4Peer.getLocalNode(), inet4Peer.getGroupNode(), createFrame((short) i, (byte) i)));
+            subnet.recv();
+        }
+        assertEquals(2, subnet.countIdentifiedNodes());
+        
+        inet6Peer.send(new Frame(inet6Peer.getLocalNode(), inet6Peer.getGroupNode(), createFrame((short) 3, (byte) 0)));
+        assertFalse(subnet.recv().getSender() instanceof DualStackNode);
+        
+        inet6Peer.send(new Frame(inet6Peer.getLocalNode(), inet6Peer.getGroupNode(), createFrame((short) 4, (byte) 2)));
+        assertTrue(subnet.recv().getSender() instanceof DualStackNode);
+        
+        subnet.setIdentifiedCapacity(0);
+        assertEquals(0, subnet.countIdentifiedNodes());
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidAlias() {
+        subnet.setAlias(inet6Subnet.getLocalNode(), inet4Subnet.getLocalNode());
+    }
+}
@@ -0,0 +1,100 @@
+package echowand.net;
+
+import echowand.common.Data;
+import echowand.common.EOJ;
+import echowand.common.EPC;
+import echowand.common.ESV;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Yoshiki Makino
+ */
+public class FrameEncoderTest {
+    
+    private CommonFrame createFrame() {
+        CommonFrame frame = new CommonFrame(new EOJ("001101"), new EOJ("0ef001"), ESV.SetGet);
+        frame.setTID((short)0x0102);
+        StandardPayload payload = (StandardPayload)frame.getEDATA();
+        payload.addFirstProperty(new Property(EPC.x80, new Data((byte)0x30)));
+        payload.addFirstProperty(new Property(EPC.xB0, new Data((byte)0x41, (byte)0x42)));
+        payload.addSecondProperty(new Property(EPC.x88));
+        return frame;
+    }
+    
+    private byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+    
+    @Test
+    public void testEncode() throws InvalidDataException {
+        CommonFrame frame = createFrame();
+        FrameEncoder encoder = new FrameEncoder();
+        ByteBuffer buffer = encoder.encode(frame);
+        
+        assertEquals(0, buffer.position());
+        assertEquals(frame.size(), buffer.limit());
+        assertTrue(Arrays.equals(frame.toBytes(), toArray(buffer)));
+        assertTrue(Arrays.equals(frame.toBytes(), new CommonFrame(buffer.array(), 0, buffer.limit()).toBytes()));
+        
+        ByteBuffer buffer2 = encoder.encode(new CommonFrame(new EOJ("001101"), new EOJ("0ef001"), ESV.Get));
+        assertSame(buffer, buffer2);
+        assertEquals(12, buffer2.limit());
+    }
+    
+    @Test
+    public void testEncodeDirect() {
+        CommonFrame frame = createFrame();
+        FrameEncoder encoder = new FrameEncoder(4, true);
+        ByteBuffer buffer = encoder.encode(frame);
+        
+        assertTrue(buffer.isDirect());
+        assertTrue(encoder.getCapacity() >= frame.size());
+        assertTrue(Arrays.equals(frame.toBytes(), toArray(buffer)));
+    }
+    
+    @Test
+    public void testEncodeToBuffer() {
+        CommonFrame frame = createFrame();
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+        buffer.put((byte)0x55);
+        
+        assertEquals(frame.size(), FrameEncoder.encode(frame, buffer));
+        assertEquals(1 + frame.size(), buffer.position());
+        assertEquals((byte)0x55, buffer.get(0));
+        assertTrue(Arrays.equals(frame.toBytes(), Arrays.copyOfRange(buffer.array(), 1, 1 + frame.size())));
+    }
+    
+    @Test
+    public void testGetBuffer() {
+        FrameEncoder encoder = new FrameEncoder(16, false);
+        ByteBuffer buffer = encoder.getBuffer(8);
+        assertEquals(0, buffer.position());
+        assertEquals(16, buffer.capacity());
+        buffer.put((byte) 0x01);
+        
+        buffer = encoder.getBuffer(100);
+        assertEquals(0, buffer.position());
+        assertTrue(buffer.capacity() >= 100);
+    }
+    
+    @Test(expected=BufferOverflowException.class)
+    public void testEncodeOverflow() {
+        FrameEncoder.encode(createFrame(), ByteBuffer.allocate(10));
+    }
+    
+    @Test
+    public void testSimplePayload() {
+        CommonFrame frame = new CommonFrame();
+        frame.setEDATA(new SimplePayload(new byte[]{0x01, 0x02, 0x03}));
+        ByteBuffer buffer = new FrameEncoder().encode(frame);
+        assertEquals(7, buffer.limit());
+        assertTrue(Arrays.equals(frame.toBytes(), toArray(buffer)));
+    }
+}
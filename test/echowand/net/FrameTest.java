@@ -35,4 +35,43 @@ public class FrameTest {
             fail();
         }
     }
+    
+    @Test
+    public void testCreationWithView() throws InvalidDataException {
+        InternalSubnet subnet = new InternalSubnet();
+        Node node = subnet.getLocalNode();
+        CommonFrame cf = new CommonFrame(new EOJ("001101"), new EOJ("002201"), ESV.Get);
+        cf.setTID((short)0x0102);
+        CommonFrameView view = new CommonFrameView(cf.toBytes());
+        
+        Frame frame = new Frame(node, node, view);
+        assertSame(view, frame.getView());
+        assertEquals((short)0x0102, frame.getTID());
+        assertTrue(Arrays.equals(cf.toBytes(), frame.getCommonFrame().toBytes()));
+        assertSame(frame.getCommonFrame(), frame.getCommonFrame());
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testCreationWithInvalidView() {
+        InternalSubnet subnet = new InternalSubnet();
+        Node node = subnet.getLocalNode();
+        new Frame(node, node, new CommonFrameView(new byte[]{0x10, (byte)0x81}));
+    }
+    
+    @Test
+    public void testReleaseBeforeDecode() {
+        InternalSubnet subnet = new InternalSubnet();
+        Node node = subnet.getLocalNode();
+        CommonFrame cf = new CommonFrame(new EOJ("001101"), new EOJ("002201"), ESV.Get);
+        byte[] bytes = cf.toBytes();
+        
+        BufferPool pool = new BufferPool(100);
+        PooledBuffer buffer = pool.acquire();
+        System.arraycopy(bytes, 0, buffer.getBytes(), 0, bytes.length);
+        Frame frame = new Frame(node, node, new CommonFrameView(buffer.getBytes(), 0, bytes.length), buffer);
+        
+        frame.release();
+        Arrays.fill(buffer.getBytes(), (byte)0);
+        assertTrue(Arrays.equals(bytes, frame.getCommonFrame().toBytes()));
+    }
 }
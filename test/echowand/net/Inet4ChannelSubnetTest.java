@@ -0,0 +1,168 @@
+package echowand.net;
+
+import echowand.common.EOJ;
+import echowand.common.EPC;
+import echowand.common.ESV;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Arrays;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Yoshiki Makino
+ */
+public class Inet4ChannelSubnetTest {
+    private Inet4ChannelSubnet subnet;
+
+    @Before
+    public void setUp() throws SubnetException {
+        subnet = new Inet4ChannelSubnet();
+    }
+
+    @After
+    public void tearDown() {
+        subnet.disable();
+    }
+
+    public CommonFrame createFrame() {
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(14);
+            buffer.put((byte) 0x10);
+            buffer.put((byte) 0x81);
+            buffer.putShort((short) 0x01);
+            buffer.put(new EOJ("001101").toBytes());
+            buffer.put(new EOJ("001101").toBytes());
+            buffer.put(ESV.Get.toByte());
+            buffer.put((byte) 0x01);
+            buffer.put(new Property(EPC.x80).toBytes());
+            return new CommonFrame(buffer.array());
+        } catch (InvalidDataException e) {
+            e.printStackTrace();
+            fail();
+            return null;
+        }
+    }
+
+    private Frame recvWithTimeout(long timeout) throws SubnetException, InterruptedException {
+        long end = System.currentTimeMillis() + timeout;
+        while (System.currentTimeMillis() < end) {
+            Frame frame = subnet.recvNoWait();
+            if (frame != null) {
+                return frame;
+            }
+            Thread.sleep(10);
+        }
+        return null;
+    }
+
+    @Test
+    public void testSendAndRecvNoWait() throws SubnetException, InterruptedException, UnknownHostException {
+        assertNull(subnet.recvNoWait());
+
+        Node node = subnet.getRemoteNode((Inet4Address)Inet4Address.getByName("127.0.0.1"));
+        Frame sendFrame = new Frame(subnet.getLocalNode(), node, createFrame());
+        assertTrue(subnet.send(sendFrame));
+
+        Frame recvFrame = recvWithTimeout(1000);
+        assertNotNull(recvFrame);
+        assertTrue(Arrays.equals(sendFrame.getCommonFrame().toBytes(), recvFrame.getCommonFrame().toBytes()));
+        assertEquals(subnet.getLocalNode(), recvFrame.getReceiver());
+        assertTrue(recvFrame.getSender().isMemberOf(subnet));
+    }
+
+    @Test
+    public void testRecv() throws SubnetException, UnknownHostException {
+        Node node = subnet.getRemoteNode((Inet4Address)Inet4Address.getByName("127.0.0.1"));
+        Frame sendFrame = new Frame(subnet.getLocalNode(), node, createFrame());
+        assertTrue(subnet.send(sendFrame));
+
+        Frame recvFrame = subnet.recv();
+        assertTrue(Arrays.equals(sendFrame.getCommonFrame().toBytes(), recvFrame.getCommonFrame().toBytes()));
+    }
+
+    @Test
+    public void testRegister() throws SubnetException, IOException {
+        Selector selector = Selector.open();
+        try {
+            SelectionKey key = subnet.register(selector, subnet);
+            assertSame(subnet, key.attachment());
+
+            Node node = subnet.getRemoteNode((Inet4Address)Inet4Address.getByName("127.0.0.1"));
+            subnet.send(new Frame(subnet.getLocalNode(), node, createFrame()));
+
+            assertEquals(1, selector.select(1000));
+            assertTrue(selector.selectedKeys().contains(key));
+            Inet4ChannelSubnet readable = (Inet4ChannelSubnet)key.attachment();
+            assertNotNull(readable.recvNoWait());
+        } finally {
+            selector.close();
+        }
+    }
+
+    @Test
+    public void testCreation() throws SubnetException {
+        assertFalse(subnet.enable());
+        subnet.disable();
+        assertNull(subnet.getChannel());
+        subnet = new Inet4ChannelSubnet(true);
+        assertTrue(subnet.isEnabled());
+        assertNotNull(subnet.getChannel());
+        subnet.disable();
+        subnet = new Inet4ChannelSubnet(false);
+        assertFalse(subnet.isEnabled());
+        subnet.disable();
+    }
+
+    @Test (expected=SubnetException.class)
+    public void testCreationWithNullAddress() throws SubnetException {
+        subnet.disable();
+        subnet = new Inet4ChannelSubnet((Inet4Address) null, true);
+    }
+
+    @Test
+    public void testEnable() throws SubnetException {
+        assertTrue(subnet.isEnabled());
+
+        assertTrue(subnet.disable());
+        assertFalse(subnet.isEnabled());
+        assertFalse(subnet.disable());
+
+        assertTrue(subnet.enable());
+        assertTrue(subnet.isEnabled());
+        assertFalse(subnet.enable());
+    }
+
+    @Test(expected=SubnetException.class)
+    public void testSendAfterDisable() throws SubnetException {
+        subnet.disable();
+        subnet.send(new Frame(subnet.getLocalNode(), subnet.getLocalNode(), createFrame()));
+    }
+
+    @Test(expected=SubnetException.class)
+    public void testRecvNoWaitAfterDisable() throws SubnetException {
+        subnet.disable();
+        subnet.recvNoWait();
+    }
+
+    @Test(expected=SubnetException.class)
+    public void testInvalidReceiver() throws SubnetException, UnknownHostException {
+        Inet4ChannelSubnet subnet2 = new Inet4ChannelSubnet(false);
+        Node node = subnet2.getRemoteNode((Inet4Address)Inet4Address.getByName("127.0.0.1"));
+        subnet.send(new Frame(subnet.getLocalNode(), node, createFrame()));
+    }
+
+    @Test
+    public void testNodeEquals() throws UnknownHostException {
+        Node node1 = subnet.getRemoteNode((Inet4Address)Inet4Address.getByName("192.168.1.1"));
+        Node node2 = subnet.getRemoteNode((Inet4Address)Inet4Address.getByName("192.168.1.1"), 3610);
+        Node node3 = subnet.getRemoteNode((Inet4Address)Inet4Address.getByName("192.168.1.1"), 3611);
+        assertEquals(node1, node2);
+        assertFalse(node1.equals(node3));
+    }
+}
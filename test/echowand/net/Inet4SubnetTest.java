@@ -93,6 +93,91 @@ public class Inet4SubnetTest {
         }
     }
     
+    @Test
+    public void testSendBatch() throws SubnetException {
+        LinkedList<Frame> frames = new LinkedList<Frame>();
+        for (int i = 0; i < 3; i++) {
+            CommonFrame cf = createFrame();
+            cf.setTID((short) (i + 1));
+            frames.add(new Frame(subnet.getLocalNode(), subnet.getLocalNode(), cf));
+        }
+        
+        assertTrue(subnet.sendBatch(frames));
+        
+        for (int i = 0; i < 3; i++) {
+            Frame recvFrame = subnet.recv();
+            assertEquals((short) (i + 1), recvFrame.getTID());
+            assertTrue(Arrays.equals(frames.get(i).getCommonFrame().toBytes(), recvFrame.getCommonFrame().toBytes()));
+        }
+    }
+    
+    @Test
+    public void testMultiReaderRecv() throws SubnetException {
+        subnet.disable();
+        subnet.setReceiverCount(2);
+        assertEquals(2, subnet.getReceiverCount());
+        assertEquals(0, subnet.countReaders());
+        subnet.enable();
+        
+        if (ReusePortSockets.isSupported()) {
+            assertEquals(3, subnet.countReaders());
+        } else {
+            assertEquals(2, subnet.countReaders());
+        }
+        
+        CommonFrame cf1 = createFrame();
+        cf1.setTID((short) 1);
+        CommonFrame cf2 = createFrame();
+        cf2.setTID((short) 2);
+        subnet.send(new Frame(subnet.getLocalNode(), subnet.getLocalNode(), cf1));
+        subnet.send(new Frame(subnet.getLocalNode(), subnet.getGroupNode(), cf2));
+        
+        Frame recvFrame1 = subnet.recv();
+        Frame recvFrame2 = subnet.recv();
+        assertEquals(3, recvFrame1.getTID() + recvFrame2.getTID());
+        
+        subnet.disable();
+        assertEquals(0, subnet.countReaders());
+        try {
+            subnet.recv();
+            fail();
+        } catch (SubnetException e) {
+        }
+        
+        subnet.setReceiverCount(0);
+        subnet.enable();
+        assertEquals(0, subnet.countReaders());
+        sendTest(subnet.getLocalNode(), true);
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidReceiverCount() {
+        subnet.setReceiverCount(-1);
+    }
+    
+    @Test
+    public void testPooledRecv() throws SubnetException {
+        BufferPool pool = new BufferPool(Inet4Subnet.DEFAULT_BUFSIZE, 4);
+        subnet.setBufferPool(pool);
+        assertSame(pool, subnet.getBufferPool());
+        
+        Frame sendFrame = new Frame(subnet.getLocalNode(), subnet.getLocalNode(), createFrame());
+        subnet.send(sendFrame);
+        
+        FrameReceiver receiver = new FrameReceiver(subnet);
+        receiver.start();
+        Frame recvFrame = receiver.getRecvFrame();
+        
+        assertNotNull(recvFrame);
+        assertNotNull(recvFrame.getBuffer());
+        assertEquals(14, recvFrame.getBuffer().getLength());
+        assertTrue(Arrays.equals(sendFrame.getCommonFrame().toBytes(), recvFrame.getCommonFrame().toBytes()));
+        
+        recvFrame.release();
+        assertEquals(1, pool.countAvailable());
+        assertTrue(Arrays.equals(sendFrame.getCommonFrame().toBytes(), recvFrame.getCommonFrame().toBytes()));
+    }
+    
     @Test
     public void testCreation() throws SubnetException {
         assertFalse(subnet.enable());
@@ -250,6 +335,22 @@ public class Inet4SubnetTest {
         assertEquals(3000, subnet.getBufferSize());
     }
     
+    @Test
+    public void testCanonicalNode() throws UnknownHostException {
+        Node node1 = subnet.getRemoteNode((Inet4Address)Inet4Address.getByName("192.168.1.1"));
+        Node node2 = subnet.getRemoteNode((Inet4Address)Inet4Address.getByName("192.168.1.1"), 3610);
+        assertSame(node1, node2);
+        
+        Node group = subnet.getRemoteNode((Inet4Address)Inet4Address.getByName(Inet4Subnet.MULTICAST_ADDRESS));
+        assertSame(subnet.getGroupNode(), group);
+        
+        subnet.setNodeCacheSize(0);
+        assertEquals(0, subnet.getNodeCacheSize());
+        Node node3 = subnet.getRemoteNode((Inet4Address)Inet4Address.getByName("192.168.1.1"));
+        assertNotSame(node1, node3);
+        assertEquals(node1, node3);
+    }
+    
     @Test
     public void testNodeEquals() {
         try {
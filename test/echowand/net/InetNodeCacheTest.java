@@ -0,0 +1,106 @@
+package echowand.net;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Yoshiki Makino
+ */
+public class InetNodeCacheTest {
+    private InternalSubnet subnet;
+    private int created;
+    private boolean locked;
+    
+    private InetNodeCache createCache(int capacity) {
+        return new InetNodeCache(capacity) {
+            @Override
+            protected Node createNode(InetAddress addr, int port) {
+                created++;
+                locked |= Thread.holdsLock(this);
+                return subnet.getRemoteNode(addr.getHostAddress() + ":" + port);
+            }
+        };
+    }
+    
+    @Before
+    public void setUp() {
+        subnet = new InternalSubnet();
+        created = 0;
+        locked = false;
+    }
+    
+    @Test
+    public void testGet() throws UnknownHostException {
+        InetNodeCache cache = createCache(10);
+        InetAddress addr1 = InetAddress.getByName("192.168.1.1");
+        InetAddress addr2 = InetAddress.getByName("192.168.1.2");
+        
+        Node node1 = cache.get(addr1, 3610);
+        assertSame(node1, cache.get(InetAddress.getByName("192.168.1.1"), 3610));
+        assertEquals(1, created);
+        
+        Node node2 = cache.get(addr1, 3611);
+        assertNotSame(node1, node2);
+        assertSame(node2, cache.get(addr1, 3611));
+        assertSame(node1, cache.get(addr1, 3610));
+        assertEquals(2, created);
+        assertEquals(2, cache.size());
+        
+        cache.get(addr2, 3610);
+        assertEquals(3, cache.size());
+        assertEquals(3, created);
+        assertFalse(locked);
+    }
+    
+    @Test
+    public void testCapacityPerPort() throws UnknownHostException {
+        InetNodeCache cache = createCache(4);
+        InetAddress addr1 = InetAddress.getByName("192.168.1.1");
+        InetAddress addr2 = InetAddress.getByName("192.168.1.2");
+        
+        Node node = cache.get(addr2, 3610);
+        for (int port = 10000; port < 10100; port++) {
+            cache.get(addr1, port);
+            assertTrue(cache.size() <= 4);
+        }
+        assertEquals(4, cache.size());
+        assertSame(cache.get(addr1, 10099), cache.get(addr1, 10099));
+        assertEquals(101, created);
+        
+        assertNotSame(node, cache.get(addr2, 3610));
+        assertEquals(1, cache.size());
+        
+        cache.setCapacity(0);
+        assertEquals(0, cache.size());
+    }
+    
+    @Test
+    public void testCapacity() throws UnknownHostException {
+        InetNodeCache cache = createCache(2);
+        assertEquals(2, cache.getCapacity());
+        InetAddress addr1 = InetAddress.getByName("192.168.1.1");
+        InetAddress addr2 = InetAddress.getByName("192.168.1.2");
+        InetAddress addr3 = InetAddress.getByName("192.168.1.3");
+        
+        Node node1 = cache.get(addr1, 3610);
+        Node node2 = cache.get(addr2, 3610);
+        assertSame(node1, cache.get(addr1, 3610));
+        cache.get(addr3, 3610);
+        assertEquals(2, cache.size());
+        
+        assertSame(node1, cache.get(addr1, 3610));
+        assertEquals(3, created);
+        assertNotSame(node2, cache.get(addr2, 3610));
+        assertEquals(4, created);
+        
+        cache.setCapacity(1);
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getCapacity());
+        
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+}
@@ -58,4 +58,62 @@ public class InternalNetworkTest {
         assertTrue(sendFrame.getCommonFrame().toString().equals(recvFrame2.getCommonFrame().toString()));
         assertTrue(port2.recvNoWait() == null);
     }
+    
+    @Test
+    public void routeTest() throws SubnetException {
+        InternalNetwork network = new InternalNetwork();
+        InternalSubnet subnet = new InternalSubnet("InternalNetworkTestRoute");
+        InternalNetworkPort port1 = new InternalNetworkPort("NODE1");
+        InternalNetworkPort port2 = new InternalNetworkPort("NODE2");
+        InternalNetworkPort port3 = new InternalNetworkPort();
+        
+        network.addPort(port1);
+        network.addPort(port2);
+        network.addPort(port3);
+        assertSame(port1, network.getPort("NODE1"));
+        assertNull(network.getPort("NODE3"));
+        
+        network.route(new Frame(null, subnet.getRemoteNode("NODE1"), new CommonFrame()));
+        assertNotNull(port1.recvNoWait());
+        assertNull(port2.recvNoWait());
+        assertNull(port3.recvNoWait());
+        
+        Frame groupFrame = new Frame(null, subnet.getGroupNode(), new CommonFrame());
+        network.route(groupFrame);
+        Frame recvFrame1 = port1.recvNoWait();
+        assertSame(groupFrame, recvFrame1);
+        assertSame(recvFrame1, port2.recvNoWait());
+        assertSame(recvFrame1, port3.recvNoWait());
+        
+        network.removePort(port1);
+        assertNull(network.getPort("NODE1"));
+        network.route(new Frame(null, subnet.getRemoteNode("NODE1"), new CommonFrame()));
+        assertNull(port1.recvNoWait());
+        assertNotNull(port2.recvNoWait());
+        assertNotNull(port3.recvNoWait());
+    }
+    
+    @Test
+    public void concurrentNameTest() throws InterruptedException {
+        final InternalNetwork[] results = new InternalNetwork[8];
+        Thread[] threads = new Thread[results.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    results[index] = InternalNetwork.getByName("CONCURRENT");
+                }
+            });
+            threads[i].start();
+        }
+        
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        for (InternalNetwork network : results) {
+            assertSame(results[0], network);
+        }
+    }
 }
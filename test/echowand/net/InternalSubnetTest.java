@@ -3,6 +3,7 @@ package echowand.net;
 import echowand.common.EOJ;
 import echowand.common.ESV;
 import java.util.Arrays;
+import java.util.LinkedList;
 import org.junit.*;
 import static org.junit.Assert.*;
 
@@ -69,6 +70,60 @@ public class InternalSubnetTest {
         assertEquals(subnet.getLocalNode(), recvFrame.getReceiver());
     }
     
+    @Test
+    public void testSendBatch() throws SubnetException {
+        InternalSubnet subnet = new InternalSubnet();
+        LinkedList<Frame> frames = new LinkedList<Frame>();
+        for (int i = 0; i < 3; i++) {
+            CommonFrame cf = createFrame();
+            cf.setTID((short) (i + 1));
+            frames.add(new Frame(subnet.getLocalNode(), subnet.getLocalNode(), cf));
+        }
+        
+        assertTrue(subnet.sendBatch(frames));
+        
+        for (int i = 0; i < 3; i++) {
+            Frame recvFrame = subnet.recvNoWait();
+            assertEquals((short) (i + 1), recvFrame.getTID());
+            assertTrue(Arrays.equals(frames.get(i).getCommonFrame().toBytes(), recvFrame.getCommonFrame().toBytes()));
+        }
+        assertNull(subnet.recvNoWait());
+    }
+    
+    @Test
+    public void testSendBatchWithInvalidSender() throws SubnetException {
+        InternalSubnet subnet = new InternalSubnet();
+        InternalSubnet subnet2 = new InternalSubnet("OTHER");
+        LinkedList<Frame> frames = new LinkedList<Frame>();
+        frames.add(new Frame(subnet.getLocalNode(), subnet.getLocalNode(), createFrame()));
+        frames.add(new Frame(subnet2.getLocalNode(), subnet.getLocalNode(), createFrame()));
+        
+        try {
+            subnet.sendBatch(frames);
+            fail();
+        } catch (SubnetException e) {
+        }
+        
+        assertNull(subnet.recvNoWait());
+    }
+    
+    @Test
+    public void testUnicastRouting() throws SubnetException {
+        InternalSubnet subnet1 = new InternalSubnet("InternalSubnetTestRouting");
+        InternalSubnet subnet2 = new InternalSubnet("InternalSubnetTestRouting");
+        InternalSubnet subnet3 = new InternalSubnet("InternalSubnetTestRouting");
+        
+        Node node2 = subnet1.getRemoteNode(((InternalNode)subnet2.getLocalNode()).getName());
+        subnet1.send(new Frame(subnet1.getLocalNode(), node2, createFrame()));
+        
+        Frame frame = subnet2.recvNoWait();
+        assertNotNull(frame);
+        assertTrue(frame.getSender().isMemberOf(subnet2));
+        assertEquals(subnet1.getLocalNode(), frame.getSender());
+        assertNull(subnet3.recvNoWait());
+        assertNull(subnet1.recvNoWait());
+    }
+    
     @Test
     public void testRecvNoWait() {
         InternalSubnet subnet = new InternalSubnet();
@@ -0,0 +1,145 @@
+package echowand.object;
+
+import echowand.common.ClassEOJ;
+import echowand.common.EPC;
+import echowand.common.PropertyMap;
+import java.util.Arrays;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Yoshiki Makino
+ */
+public class PropertyCapabilitiesTest {
+
+    private PropertyMap createPropertyMap(EPC... epcs) {
+        PropertyMap propertyMap = new PropertyMap();
+        for (EPC epc : epcs) {
+            propertyMap.set(epc);
+        }
+        return propertyMap;
+    }
+
+    private PropertyCapabilities createCapabilities() {
+        PropertyMap getMap = createPropertyMap(EPC.x80, EPC.x9D, EPC.x9E, EPC.x9F, EPC.xE0, EPC.xFF);
+        PropertyMap setMap = createPropertyMap(EPC.x80, EPC.xC0);
+        PropertyMap annoMap = createPropertyMap(EPC.x80, EPC.x81);
+        return new PropertyCapabilities(getMap, setMap, annoMap);
+    }
+
+    @Test
+    public void testAccess() {
+        PropertyCapabilities capabilities = createCapabilities();
+
+        assertTrue(capabilities.isGettable(EPC.x80));
+        assertTrue(capabilities.isGettable(EPC.xFF));
+        assertFalse(capabilities.isGettable(EPC.xC0));
+        assertTrue(capabilities.isSettable(EPC.xC0));
+        assertFalse(capabilities.isSettable(EPC.xE0));
+        assertTrue(capabilities.isObservable(EPC.x81));
+        assertFalse(capabilities.isObservable(EPC.x9F));
+        assertTrue(capabilities.contains(EPC.x81));
+        assertFalse(capabilities.contains(EPC.xF0));
+        assertFalse(capabilities.contains(EPC.Invalid));
+        assertFalse(capabilities.isGettable(EPC.Invalid));
+    }
+
+    @Test
+    public void testEPCs() {
+        PropertyCapabilities capabilities = createCapabilities();
+
+        assertEquals(8, capabilities.size());
+        assertEquals(Arrays.asList(EPC.x80, EPC.x81, EPC.x9D, EPC.x9E, EPC.x9F, EPC.xC0, EPC.xE0, EPC.xFF), capabilities.getEPCs());
+        assertEquals(EPC.x80, capabilities.getEPC(0));
+        assertEquals(EPC.xFF, capabilities.getEPC(7));
+        assertNull(capabilities.getEPC(8));
+        assertNull(capabilities.getEPC(-1));
+        assertEquals(5, capabilities.indexOf(EPC.xC0));
+        assertEquals(-1, capabilities.indexOf(EPC.xF0));
+    }
+
+    @Test
+    public void testFromObjectData() {
+        PropertyCapabilities capabilities = createCapabilities();
+        PropertyCapabilities other = new PropertyCapabilities(
+                new ObjectData(createPropertyMap(EPC.x80, EPC.x9D, EPC.x9E, EPC.x9F, EPC.xE0, EPC.xFF).toBytes()),
+                new ObjectData(createPropertyMap(EPC.x80, EPC.xC0).toBytes()),
+                new ObjectData(createPropertyMap(EPC.x80, EPC.x81).toBytes()));
+
+        assertEquals(capabilities, other);
+        assertEquals(capabilities.hashCode(), other.hashCode());
+        assertFalse(capabilities.equals(new PropertyCapabilities(new PropertyMap(), new PropertyMap(), new PropertyMap())));
+    }
+
+    @Test
+    public void testMissingPropertyMap() {
+        ObjectData getMap = new ObjectData(createPropertyMap(EPC.x80, EPC.x9F).toBytes());
+        PropertyCapabilities capabilities = new PropertyCapabilities(getMap, null, null);
+
+        assertTrue(capabilities.isGettable(EPC.x80));
+        assertFalse(capabilities.isSettable(EPC.x80));
+        assertFalse(capabilities.isObservable(EPC.x80));
+        assertEquals(2, capabilities.size());
+        assertEquals(capabilities, new PropertyCapabilities(createPropertyMap(EPC.x80, EPC.x9F), new PropertyMap(), new PropertyMap()));
+    }
+
+    @Test
+    public void testLargePropertyMap() {
+        PropertyMap getMap = new PropertyMap();
+        for (int code = 0x80; code <= 0xff; code += 2) {
+            getMap.set(EPC.fromByte((byte)code));
+        }
+        PropertyCapabilities capabilities = new PropertyCapabilities(new ObjectData(getMap.toBytes()), new ObjectData(new PropertyMap().toBytes()), new ObjectData(new PropertyMap().toBytes()));
+
+        assertEquals(64, capabilities.size());
+        assertTrue(capabilities.isGettable(EPC.xFE));
+        assertFalse(capabilities.isGettable(EPC.xFF));
+        assertEquals(EPC.xFE, capabilities.getEPC(63));
+    }
+
+    @Test
+    public void testIntern() {
+        ClassEOJ classEOJ = new ClassEOJ("0011");
+        ObjectData manufacturerCode = new ObjectData((byte)0x00, (byte)0x00, (byte)0x77);
+        int count = PropertyCapabilities.countInterned();
+
+        PropertyCapabilities first = PropertyCapabilities.intern(classEOJ, manufacturerCode, createCapabilities());
+        PropertyCapabilities second = PropertyCapabilities.intern(classEOJ, new ObjectData((byte)0x00, (byte)0x00, (byte)0x77), createCapabilities());
+        assertSame(first, second);
+        assertEquals(count + 1, PropertyCapabilities.countInterned());
+
+        PropertyCapabilities otherManufacturer = PropertyCapabilities.intern(classEOJ, new ObjectData((byte)0x00, (byte)0x00, (byte)0x78), createCapabilities());
+        assertNotSame(first, otherManufacturer);
+        PropertyCapabilities otherClass = PropertyCapabilities.intern(new ClassEOJ("0012"), manufacturerCode, createCapabilities());
+        assertNotSame(first, otherClass);
+        PropertyCapabilities unknownManufacturer = PropertyCapabilities.intern(classEOJ, null, createCapabilities());
+        assertSame(unknownManufacturer, PropertyCapabilities.intern(classEOJ, null, createCapabilities()));
+        assertEquals(count + 4, PropertyCapabilities.countInterned());
+    }
+
+    @Test
+    public void testInternLimit() {
+        PropertyCapabilities.clearInterned();
+        assertEquals(0, PropertyCapabilities.countInterned());
+        ClassEOJ classEOJ = new ClassEOJ("0011");
+
+        for (int i = 0; i < PropertyCapabilities.MAX_INTERNED; i++) {
+            ObjectData manufacturerCode = new ObjectData((byte)0x00, (byte)(i >> 8), (byte)i);
+            PropertyCapabilities.intern(classEOJ, manufacturerCode, createCapabilities());
+        }
+        assertEquals(PropertyCapabilities.MAX_INTERNED, PropertyCapabilities.countInterned());
+
+        PropertyCapabilities first = PropertyCapabilities.intern(classEOJ, new ObjectData((byte)0x00, (byte)0x00, (byte)0x00), createCapabilities());
+        assertSame(first, PropertyCapabilities.intern(classEOJ, new ObjectData((byte)0x00, (byte)0x00, (byte)0x00), createCapabilities()));
+
+        ObjectData overflow = new ObjectData((byte)0x01, (byte)0x00, (byte)0x00);
+        PropertyCapabilities capabilities = createCapabilities();
+        assertSame(capabilities, PropertyCapabilities.intern(classEOJ, overflow, capabilities));
+        assertNotSame(capabilities, PropertyCapabilities.intern(classEOJ, overflow, createCapabilities()));
+        assertEquals(PropertyCapabilities.MAX_INTERNED, PropertyCapabilities.countInterned());
+
+        PropertyCapabilities.clearInterned();
+        assertEquals(0, PropertyCapabilities.countInterned());
+    }
+}
@@ -0,0 +1,193 @@
+package echowand.object;
+
+import echowand.common.Data;
+import echowand.common.EOJ;
+import echowand.common.EPC;
+import echowand.common.ESV;
+import echowand.net.CommonFrame;
+import echowand.net.Frame;
+import echowand.net.InternalSubnet;
+import echowand.net.Property;
+import echowand.net.StandardPayload;
+import echowand.object.RemoteObjectTestFixture.GetCountListener;
+import java.util.Arrays;
+import java.util.EnumMap;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Yoshiki Makino
+ */
+public class RemoteObjectCacheTest {
+    private RemoteObjectTestFixture fixture;
+    private InternalSubnet clientSubnet;
+    private LocalObject deviceObject;
+    private RemoteObject remoteObject;
+    private GetCountListener counter;
+
+    private void createDeviceObject(String networkName) throws Exception {
+        counter = new GetCountListener();
+        fixture = new RemoteObjectTestFixture(networkName, counter);
+        clientSubnet = fixture.clientSubnet;
+        deviceObject = fixture.deviceObject;
+        remoteObject = fixture.remoteObject;
+    }
+
+    @After
+    public void tearDown() {
+        if (fixture != null) {
+            fixture.close();
+        }
+    }
+
+    @Test
+    public void testReadThrough() throws Exception {
+        createDeviceObject("RemoteObjectCacheTest.testReadThrough");
+        RemoteObjectCache cache = new RemoteObjectCache(remoteObject);
+        assertEquals(deviceObject.getEOJ(), cache.getEOJ());
+        assertFalse(cache.isCached(EPC.x80));
+        assertNull(cache.getCachedData(EPC.x80));
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(new ObjectData((byte)0x30), cache.getData(EPC.x80));
+        }
+        assertTrue(cache.isCached(EPC.x80));
+        assertEquals(1, counter.count.get());
+
+        RemoteObjectCache.Statistics statistics = cache.getStatistics();
+        assertEquals(99, statistics.getHits());
+        assertEquals(1, statistics.getMisses());
+        assertEquals(0, statistics.getStaleHits());
+        assertEquals(0.99, statistics.getHitRatio(), 0.0001);
+
+        cache.invalidate(EPC.x80);
+        assertFalse(cache.isCached(EPC.x80));
+        assertEquals(new ObjectData((byte)0x30), cache.getData(EPC.x80));
+        assertEquals(2, counter.count.get());
+
+        cache.resetStatistics();
+        assertEquals(0, cache.getStatistics().getHits());
+        assertEquals(0.0, cache.getStatistics().getHitRatio(), 0.0001);
+    }
+
+    @Test
+    public void testGetDataMap() throws Exception {
+        createDeviceObject("RemoteObjectCacheTest.testGetDataMap");
+        RemoteObjectCache cache = new RemoteObjectCache(remoteObject);
+
+        assertEquals(new ObjectData((byte)0x30), cache.getData(EPC.x80));
+        EnumMap<EPC, ObjectData> dataMap = cache.getData(Arrays.asList(EPC.x80, EPC.xE0, EPC.x81));
+        assertEquals(3, dataMap.size());
+        assertEquals(new ObjectData((byte)0x01, (byte)0x02), dataMap.get(EPC.xE0));
+        assertEquals(2, counter.count.get());
+        assertEquals(1, cache.getStatistics().getHits());
+        assertEquals(3, cache.getStatistics().getMisses());
+
+        cache.getData(Arrays.asList(EPC.x80, EPC.xE0, EPC.x81));
+        assertEquals(2, counter.count.get());
+
+        assertTrue(cache.isGettable(EPC.x80));
+        assertTrue(cache.isSettable(EPC.x81));
+        assertFalse(cache.isSettable(EPC.x80));
+        assertTrue(cache.contains(EPC.xE0));
+        int count = counter.count.get();
+        assertTrue(cache.isGettable(EPC.xE0));
+        assertEquals(count, counter.count.get());
+    }
+
+    @Test
+    public void testTimeToLive() throws Exception {
+        createDeviceObject("RemoteObjectCacheTest.testTimeToLive");
+        RemoteObjectCache cache = new RemoteObjectCache(remoteObject);
+
+        assertEquals(RemoteObjectCache.DEFAULT_TIME_TO_LIVE, cache.getTimeToLive(EPC.x80));
+        assertFalse(cache.setTimeToLive(EPC.x80, -1));
+        assertTrue(cache.setTimeToLive(EPC.x80, 0));
+        assertEquals(0, cache.getTimeToLive(EPC.x80));
+        assertEquals(RemoteObjectCache.DEFAULT_TIME_TO_LIVE, cache.getTimeToLive(EPC.xE0));
+
+        cache.getData(EPC.x80);
+        cache.getData(EPC.x80);
+        cache.getData(EPC.xE0);
+        cache.getData(EPC.xE0);
+        assertEquals(3, counter.count.get());
+
+        cache.removeTimeToLive(EPC.x80);
+        cache.getData(EPC.x80);
+        assertEquals(3, counter.count.get());
+
+        assertFalse(cache.setDefaultTimeToLive(-1));
+        assertTrue(cache.setDefaultTimeToLive(0));
+        cache.getData(EPC.xE0);
+        assertEquals(4, counter.count.get());
+    }
+
+    @Test
+    public void testStaleWhileRevalidate() throws Exception {
+        createDeviceObject("RemoteObjectCacheTest.testStaleWhileRevalidate");
+        RemoteObjectCache cache = new RemoteObjectCache(remoteObject);
+        cache.setTimeToLive(EPC.x80, 50);
+        assertFalse(cache.setStaleWhileRevalidate(-1));
+        assertTrue(cache.setStaleWhileRevalidate(60000));
+
+        assertEquals(new ObjectData((byte)0x30), cache.getData(EPC.x80));
+        deviceObject.setInternalData(EPC.x80, new ObjectData((byte)0x31));
+        Thread.sleep(100);
+
+        assertEquals(new ObjectData((byte)0x30), cache.getData(EPC.x80));
+        assertEquals(1, cache.getStatistics().getStaleHits());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!new ObjectData((byte)0x31).equals(cache.getCachedData(EPC.x80))) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        assertEquals(2, counter.count.get());
+        assertEquals(1, cache.getStatistics().getMisses());
+    }
+
+    @Test
+    public void testAnnounce() throws Exception {
+        createDeviceObject("RemoteObjectCacheTest.testAnnounce");
+        RemoteObjectManager remoteManager = new RemoteObjectManager();
+        remoteManager.add(remoteObject);
+        AnnounceRequestProcessor processor = new AnnounceRequestProcessor(new LocalObjectManager(), remoteManager);
+        RemoteObjectCache cache = new RemoteObjectCache(remoteObject);
+
+        CommonFrame commonFrame = new CommonFrame(remoteObject.getEOJ(), new EOJ("0ef001"), ESV.INF);
+        ((StandardPayload)commonFrame.getEDATA()).addFirstProperty(new Property(EPC.x80, new Data((byte)0x31)));
+        Frame frame = new Frame(remoteObject.getNode(), clientSubnet.getLocalNode(), commonFrame);
+
+        assertTrue(cache.isUpdateOnAnnounce());
+        processor.processINF(clientSubnet, frame, false);
+        assertEquals(new ObjectData((byte)0x31), cache.getData(EPC.x80));
+        assertEquals(0, counter.count.get());
+        assertEquals(1, cache.getStatistics().getAnnounceUpdates());
+
+        cache.setUpdateOnAnnounce(false);
+        processor.processINF(clientSubnet, frame, false);
+        assertFalse(cache.isCached(EPC.x80));
+        assertEquals(new ObjectData((byte)0x30), cache.getData(EPC.x80));
+        assertEquals(1, counter.count.get());
+
+        cache.close();
+        assertEquals(0, remoteObject.countObservers());
+        processor.processINF(clientSubnet, frame, false);
+        assertEquals(new ObjectData((byte)0x30), cache.getData(EPC.x80));
+    }
+
+    @Test
+    public void testSetDataInvalidates() throws Exception {
+        createDeviceObject("RemoteObjectCacheTest.testSetDataInvalidates");
+        RemoteObjectCache cache = new RemoteObjectCache(remoteObject);
+
+        assertEquals(new ObjectData((byte)0x00), cache.getData(EPC.x81));
+        assertTrue(cache.setData(EPC.x81, new ObjectData((byte)0x05)));
+        assertFalse(cache.isCached(EPC.x81));
+        assertEquals(new ObjectData((byte)0x05), cache.getData(EPC.x81));
+
+        cache.invalidateAll();
+        assertFalse(cache.isCached(EPC.x81));
+    }
+}
@@ -4,6 +4,7 @@ import echowand.object.RemoteObject;
 import echowand.object.RemoteObjectObserver;
 import echowand.object.EchonetObjectException;
 import echowand.object.ObjectData;
+import echowand.object.RemoteObjectTestFixture.GetCountListener;
 import echowand.net.CommonFrame;
 import echowand.net.Frame;
 import echowand.net.Property;
@@ -11,12 +12,30 @@ import echowand.net.StandardPayload;
 import echowand.net.InternalSubnet;
 import echowand.net.SubnetException;
 import echowand.net.Subnet;
+import echowand.net.Node;
+import echowand.logic.Listener;
 import echowand.common.EOJ;
 import echowand.common.ESV;
 import echowand.common.EPC;
 import echowand.common.PropertyMap;
 import echowand.common.Data;
 import echowand.logic.TransactionManager;
+import echowand.logic.RequestDispatcher;
+import echowand.info.TemperatureSensorInfo;
+import echowand.util.VirtualThreads;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import echowand.util.AsyncResult;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import static org.junit.Assert.*;
@@ -29,35 +48,46 @@ import org.junit.*;
 public class RemoteObjectTest {
     
     private Data data = new Data((byte)0x41);
+    private LinkedList<RemoteObjectTestFixture> fixtures = new LinkedList<RemoteObjectTestFixture>();
+    
+    @After
+    public void tearDown() {
+        for (RemoteObjectTestFixture fixture : fixtures) {
+            fixture.close();
+        }
+    }
     
     public Frame createGetFrame(Subnet subnet, Frame reqFrame) {
         short tid = reqFrame.getCommonFrame().getTID();
         CommonFrame cf = new CommonFrame(new EOJ("001101"), new EOJ("0EF001"), ESV.Get_Res);
         StandardPayload payload = (StandardPayload)cf.getEDATA();
-        EPC epc = ((StandardPayload)reqFrame.getCommonFrame().getEDATA()).getFirstPropertyAt(0).getEPC();
-        if (epc == EPC.x80) {
-            payload.addFirstProperty(new Property(EPC.x80, data));
-        } else if (epc == EPC.x80) {
-            payload.addFirstProperty(new Property(EPC.xE0, new Data((byte)0x12, (byte)0x34)));
-        } else if (epc == EPC.x9D) {
-            PropertyMap pmap = new PropertyMap();
-            pmap.set(EPC.x80);
-            payload.addFirstProperty(new Property(EPC.x9D, new Data(pmap.toBytes())));
-        } else if (epc == EPC.x9E) {
-            PropertyMap pmap = new PropertyMap();
-            pmap.set(EPC.x80);
-            payload.addFirstProperty(new Property(EPC.x9E, new Data(pmap.toBytes())));
-        } else if (epc == EPC.x9F) {
-            PropertyMap pmap = new PropertyMap();
-            pmap.set(EPC.x80);
-            pmap.set(EPC.x9D);
-            pmap.set(EPC.x9E);
-            pmap.set(EPC.x9F);
-            pmap.set(EPC.xE0);
-            payload.addFirstProperty(new Property(EPC.x9F, new Data(pmap.toBytes())));
-        } else if (epc == EPC.xE0) {
-            Data bigData = new Data(new byte[253]);
-            payload.addFirstProperty(new Property(EPC.xE0, bigData));
+        StandardPayload reqPayload = (StandardPayload)reqFrame.getCommonFrame().getEDATA();
+        for (int i = 0; i < reqPayload.getFirstOPC(); i++) {
+            EPC epc = reqPayload.getFirstPropertyAt(i).getEPC();
+            if (epc == EPC.x80) {
+                payload.addFirstProperty(new Property(EPC.x80, data));
+            } else if (epc == EPC.x80) {
+                payload.addFirstProperty(new Property(EPC.xE0, new Data((byte)0x12, (byte)0x34)));
+            } else if (epc == EPC.x9D) {
+                PropertyMap pmap = new PropertyMap();
+                pmap.set(EPC.x80);
+                payload.addFirstProperty(new Property(EPC.x9D, new Data(pmap.toBytes())));
+            } else if (epc == EPC.x9E) {
+                PropertyMap pmap = new PropertyMap();
+                pmap.set(EPC.x80);
+                payload.addFirstProperty(new Property(EPC.x9E, new Data(pmap.toBytes())));
+            } else if (epc == EPC.x9F) {
+                PropertyMap pmap = new PropertyMap();
+                pmap.set(EPC.x80);
+                pmap.set(EPC.x9D);
+                pmap.set(EPC.x9E);
+                pmap.set(EPC.x9F);
+                pmap.set(EPC.xE0);
+                payload.addFirstProperty(new Property(EPC.x9F, new Data(pmap.toBytes())));
+            } else if (epc == EPC.xE0) {
+                Data bigData = new Data(new byte[253]);
+                payload.addFirstProperty(new Property(EPC.xE0, bigData));
+            }
         }
         cf.setTID(tid);
         Frame frame = new Frame(subnet.getLocalNode(), subnet.getLocalNode(), cf);
@@ -318,15 +348,11 @@ public class RemoteObjectTest {
         TransactionManager transactionManager = new TransactionManager(subnet);
         RemoteObject object = new RemoteObject(subnet, subnet.getLocalNode(), new EOJ("001101"), transactionManager);
         try {
-            new ResponseThread(subnet, transactionManager).start();
+            new ResponseThread(subnet, transactionManager, true).start();
             assertTrue(object.isGettable(EPC.x80));
-            new ResponseThread(subnet, transactionManager).start();
             assertTrue(object.isGettable(EPC.xE0));
-            new ResponseThread(subnet, transactionManager).start();
             assertFalse(object.isSettable(EPC.xE0));
-            new ResponseThread(subnet, transactionManager).start();
             assertFalse(object.isObservable(EPC.xE0));
-            new ResponseThread(subnet, transactionManager, true).start();
             assertTrue(object.contains(EPC.x80));
             assertTrue(object.contains(EPC.x9D));
             assertTrue(object.contains(EPC.x9E));
@@ -339,4 +365,422 @@ public class RemoteObjectTest {
             fail();
         }
     }
+    
+    @Test
+    public void testGetDataAsync() throws Exception {
+        InternalSubnet subnet = new InternalSubnet();
+        TransactionManager transactionManager = new TransactionManager(subnet);
+        RemoteObject object = new RemoteObject(subnet, subnet.getLocalNode(), new EOJ("001101"), transactionManager);
+        
+        new ResponseThread(subnet, transactionManager, true).start();
+        
+        LinkedList<AsyncResult<ObjectData>> results = new LinkedList<AsyncResult<ObjectData>>();
+        for (int i = 0; i < 100; i++) {
+            results.add(object.getDataAsync(EPC.x80));
+        }
+        
+        for (AsyncResult<ObjectData> result : results) {
+            assertEquals(new ObjectData((byte) 0x41), result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(0, transactionManager.countActiveTransactions());
+    }
+    
+    @Test
+    public void testGetDataAsyncFail() throws Exception {
+        InternalSubnet subnet = new InternalSubnet();
+        TransactionManager transactionManager = new TransactionManager(subnet);
+        RemoteObject object = new RemoteObject(subnet, subnet.getLocalNode(), new EOJ("001101"), transactionManager);
+        object.setTimeout(100);
+        
+        AsyncResult<ObjectData> result = object.getDataAsync(EPC.x80);
+        try {
+            result.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof EchonetObjectException);
+        }
+    }
+    
+    @Test
+    public void testSetDataAsync() throws Exception {
+        InternalSubnet subnet = new InternalSubnet();
+        TransactionManager transactionManager = new TransactionManager(subnet);
+        RemoteObject object = new RemoteObject(subnet, subnet.getLocalNode(), new EOJ("001101"), transactionManager);
+        
+        new ResponseThread(subnet, transactionManager).start();
+        assertTrue(object.setDataAsync(EPC.x80, new ObjectData((byte) 0x42)).get(5, TimeUnit.SECONDS));
+        
+        new ResponseThread(subnet, transactionManager).start();
+        assertFalse(object.setDataAsync(EPC.xE0, new ObjectData((byte) 0x42)).get(5, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    public void testConcurrentGetDataOnVirtualThreads() throws Exception {
+        Assume.assumeTrue(VirtualThreads.isSupported());
+        
+        String networkName = "RemoteObjectTest.testConcurrentGetDataOnVirtualThreads";
+        int deviceCount = 10;
+        int requestCount = 10000;
+        ExecutorService executor = VirtualThreads.newExecutor();
+        
+        InternalSubnet clientSubnet = new InternalSubnet(networkName);
+        TransactionManager transactionManager = new TransactionManager(clientSubnet);
+        RemoteObjectTestFixture.startMainLoop(clientSubnet, executor, transactionManager);
+        
+        final RemoteObject[] objects = new RemoteObject[deviceCount];
+        for (int i = 0; i < deviceCount; i++) {
+            InternalSubnet deviceSubnet = new InternalSubnet(networkName);
+            LocalObjectManager manager = new LocalObjectManager();
+            LocalObject object = new LocalObject(new TemperatureSensorInfo());
+            object.setInternalData(EPC.x80, new ObjectData((byte)0x30));
+            manager.add(object);
+            RequestDispatcher dispatcher = new RequestDispatcher();
+            dispatcher.addRequestProcessor(new SetGetRequestProcessor(manager));
+            RemoteObjectTestFixture.startMainLoop(deviceSubnet, executor, dispatcher);
+            
+            Node node = clientSubnet.getRemoteNode("LOCAL(" + deviceSubnet.getId() + ")");
+            objects[i] = new RemoteObject(clientSubnet, node, object.getEOJ(), transactionManager);
+            objects[i].setTimeout(30000);
+        }
+        
+        LinkedList<Future<ObjectData>> results = new LinkedList<Future<ObjectData>>();
+        for (int i = 0; i < requestCount; i++) {
+            final RemoteObject object = objects[i % deviceCount];
+            results.add(executor.submit(new Callable<ObjectData>() {
+                @Override
+                public ObjectData call() throws EchonetObjectException {
+                    return object.getData(EPC.x80);
+                }
+            }));
+        }
+        
+        for (Future<ObjectData> result : results) {
+            assertEquals(new ObjectData((byte)0x30), result.get(60, TimeUnit.SECONDS));
+        }
+        assertEquals(0, transactionManager.countActiveTransactions());
+        
+        executor.shutdown();
+    }
+    
+    private RemoteObject createDeviceObject(String networkName, Listener... listeners) throws Exception {
+        RemoteObjectTestFixture fixture = new RemoteObjectTestFixture(networkName, listeners);
+        fixtures.add(fixture);
+        return fixture.remoteObject;
+    }
+    
+    @Test
+    public void testGetDataMap() throws Exception {
+        GetCountListener counter = new GetCountListener();
+        RemoteObject object = createDeviceObject("RemoteObjectTest.testGetDataMap", counter);
+        object.setTimeout(5000);
+        
+        long begin = System.nanoTime();
+        EnumMap<EPC, ObjectData> dataMap = object.getDataMap(EPC.x80, EPC.xE0, EPC.xF0, EPC.x80);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        
+        assertEquals(2, dataMap.size());
+        assertEquals(new ObjectData((byte)0x30), dataMap.get(EPC.x80));
+        assertEquals(new ObjectData((byte)0x01, (byte)0x02), dataMap.get(EPC.xE0));
+        assertFalse(dataMap.containsKey(EPC.xF0));
+        assertEquals(1, counter.count.get());
+        assertTrue(elapsed < 4000);
+        
+        assertTrue(object.getData(new LinkedList<EPC>()).isEmpty());
+    }
+    
+    @Test
+    public void testGetDataMapSplitFrames() throws Exception {
+        GetCountListener counter = new GetCountListener();
+        RemoteObject object = createDeviceObject("RemoteObjectTest.testGetDataMapSplitFrames", counter);
+        
+        assertEquals(RemoteObject.DEFAULT_MAX_GET_PROPERTIES, object.getMaxGetProperties());
+        assertFalse(object.setMaxGetProperties(0));
+        assertFalse(object.setMaxGetProperties(RemoteObject.MAX_OPC + 1));
+        assertTrue(object.setMaxGetProperties(2));
+        assertEquals(2, object.getMaxGetProperties());
+        
+        EnumMap<EPC, ObjectData> dataMap = object.getData(Arrays.asList(EPC.x80, EPC.xE0, EPC.x9F, EPC.x81, EPC.x88));
+        assertEquals(5, dataMap.size());
+        assertEquals(new ObjectData((byte)0x30), dataMap.get(EPC.x80));
+        assertEquals(3, counter.count.get());
+    }
+    
+    @Test(expected = EchonetObjectException.class)
+    public void testGetDataMapNoResponse() throws Exception {
+        RemoteObject object = createDeviceObject("RemoteObjectTest.testGetDataMapNoResponse");
+        RemoteObject missingObject = new RemoteObject(object.getSubnet(), object.getNode(), new EOJ("001102"), object.getListener());
+        missingObject.setTimeout(100);
+        missingObject.getDataMap(EPC.x80, EPC.xE0);
+    }
+    
+    @Test
+    public void testGetDataMapInterrupted() throws Exception {
+        InternalSubnet subnet = new InternalSubnet();
+        TransactionManager transactionManager = new TransactionManager(subnet);
+        final RemoteObject object = new RemoteObject(subnet, subnet.getLocalNode(), new EOJ("001101"), transactionManager);
+        object.setTimeout(5000);
+        
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    object.getDataMap(EPC.x80, EPC.xE0);
+                } catch (EchonetObjectException e) {
+                    error.set(e.getInternalException());
+                }
+            }
+        });
+        thread.start();
+        
+        assertEquals(ESV.Get, subnet.recv().getESV());
+        thread.interrupt();
+        thread.join(1000);
+        
+        assertTrue(error.get() instanceof InterruptedException);
+        assertEquals(0, transactionManager.countActiveTransactions());
+        transactionManager.close();
+    }
+    
+    @Test
+    public void testSetDataMap() throws Exception {
+        GetCountListener counter = new GetCountListener(ESV.SetC);
+        RemoteObject object = createDeviceObject("RemoteObjectTest.testSetDataMap", counter);
+        object.setTimeout(5000);
+        
+        EnumMap<EPC, ObjectData> dataMap = new EnumMap<EPC, ObjectData>(EPC.class);
+        dataMap.put(EPC.x81, new ObjectData((byte)0x05));
+        dataMap.put(EPC.x80, new ObjectData((byte)0x31));
+        
+        EnumMap<EPC, Boolean> results = object.setData(dataMap);
+        assertEquals(2, results.size());
+        assertTrue(results.get(EPC.x81));
+        assertFalse(results.get(EPC.x80));
+        assertEquals(1, counter.count.get());
+        assertEquals(new ObjectData((byte)0x05), object.getData(EPC.x81));
+        assertEquals(new ObjectData((byte)0x30), object.getData(EPC.x80));
+        
+        assertTrue(object.setData(new EnumMap<EPC, ObjectData>(EPC.class)).isEmpty());
+    }
+    
+    @Test
+    public void testSetDataMapSplitFrames() throws Exception {
+        GetCountListener counter = new GetCountListener(ESV.SetC);
+        RemoteObject object = createDeviceObject("RemoteObjectTest.testSetDataMapSplitFrames", counter);
+        
+        assertEquals(RemoteObject.DEFAULT_MAX_SET_PROPERTIES, object.getMaxSetProperties());
+        assertFalse(object.setMaxSetProperties(0));
+        assertFalse(object.setMaxSetProperties(RemoteObject.MAX_OPC + 1));
+        assertTrue(object.setMaxSetProperties(1));
+        
+        EnumMap<EPC, ObjectData> dataMap = new EnumMap<EPC, ObjectData>(EPC.class);
+        dataMap.put(EPC.x81, new ObjectData((byte)0x05));
+        dataMap.put(EPC.x80, new ObjectData((byte)0x31));
+        dataMap.put(EPC.xE0, new ObjectData((byte)0x00, (byte)0x10));
+        
+        EnumMap<EPC, Boolean> results = object.setData(dataMap);
+        assertEquals(3, results.size());
+        assertTrue(results.get(EPC.x81));
+        assertFalse(results.get(EPC.x80));
+        assertFalse(results.get(EPC.xE0));
+        assertEquals(3, counter.count.get());
+    }
+    
+    @Test
+    public void testSetGetData() throws Exception {
+        GetCountListener counter = new GetCountListener(ESV.SetGet);
+        RemoteObject object = createDeviceObject("RemoteObjectTest.testSetGetData", counter);
+        object.setTimeout(5000);
+        
+        EnumMap<EPC, ObjectData> dataMap = new EnumMap<EPC, ObjectData>(EPC.class);
+        dataMap.put(EPC.x81, new ObjectData((byte)0x07));
+        dataMap.put(EPC.x80, new ObjectData((byte)0x31));
+        
+        SetGetResult result = object.setGetData(dataMap, Arrays.asList(EPC.x81, EPC.x80, EPC.xF0));
+        assertTrue(result.isSetAccepted(EPC.x81));
+        assertFalse(result.isSetAccepted(EPC.x80));
+        assertFalse(result.isAllSetAccepted());
+        assertEquals(new ObjectData((byte)0x07), result.getData(EPC.x81));
+        assertEquals(new ObjectData((byte)0x30), result.getData(EPC.x80));
+        assertNull(result.getData(EPC.xF0));
+        assertEquals(1, counter.count.get());
+    }
+    
+    private static class BlockingListener implements Listener {
+        public CountDownLatch latch = new CountDownLatch(1);
+        
+        @Override
+        public boolean process(Subnet subnet, Frame frame, boolean processed) {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+            }
+            return false;
+        }
+    }
+    
+    @Test
+    public void testCoalescedGetData() throws Exception {
+        BlockingListener blocker = new BlockingListener();
+        GetCountListener counter = new GetCountListener();
+        RemoteObject object = createDeviceObject("RemoteObjectTest.testCoalescedGetData", blocker, counter);
+        assertFalse(object.isCoalescingEnabled());
+        object.setCoalescingEnabled(true);
+        assertTrue(object.isCoalescingEnabled());
+        
+        LinkedList<AsyncResult<ObjectData>> results = new LinkedList<AsyncResult<ObjectData>>();
+        for (int i = 0; i < 5; i++) {
+            results.add(object.getDataAsync(EPC.x80));
+        }
+        assertEquals(4, object.countSharedRequests());
+        
+        results.getFirst().cancel(true);
+        blocker.latch.countDown();
+        
+        for (AsyncResult<ObjectData> result : results.subList(1, results.size())) {
+            assertEquals(new ObjectData((byte)0x30), result.get(5, TimeUnit.SECONDS));
+        }
+        assertTrue(results.getFirst().isCancelled());
+        assertEquals(1, counter.count.get());
+        
+        assertEquals(new ObjectData((byte)0x30), object.getData(EPC.x80));
+        assertEquals(2, counter.count.get());
+    }
+    
+    @Test
+    public void testCoalescedGetDataMerge() throws Exception {
+        GetCountListener counter = new GetCountListener();
+        RemoteObject object = createDeviceObject("RemoteObjectTest.testCoalescedGetDataMerge", counter);
+        object.setCoalescingEnabled(true);
+        assertFalse(object.setMergeDelay(-1));
+        assertTrue(object.setMergeDelay(100));
+        assertEquals(100, object.getMergeDelay());
+        
+        final AtomicInteger executed = new AtomicInteger();
+        final Executor executor = object.getListener().getExecutor();
+        object.getListener().setExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                executed.incrementAndGet();
+                executor.execute(command);
+            }
+        });
+        
+        AsyncResult<ObjectData> result1 = object.getDataAsync(EPC.x80);
+        AsyncResult<ObjectData> result2 = object.getDataAsync(EPC.xE0);
+        AsyncResult<ObjectData> result3 = object.getDataAsync(EPC.x80);
+        AsyncResult<ObjectData> result4 = object.getDataAsync(EPC.xF0);
+        
+        assertEquals(new ObjectData((byte)0x30), result1.get(5, TimeUnit.SECONDS));
+        assertEquals(new ObjectData((byte)0x01, (byte)0x02), result2.get(5, TimeUnit.SECONDS));
+        assertEquals(new ObjectData((byte)0x30), result3.get(5, TimeUnit.SECONDS));
+        try {
+            result4.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof EchonetObjectException);
+        }
+        assertEquals(1, counter.count.get());
+        assertEquals(1, executed.get());
+    }
+    
+    @Test
+    public void testCoalescedGetDataMergeLimit() throws Exception {
+        GetCountListener counter = new GetCountListener();
+        RemoteObject object = createDeviceObject("RemoteObjectTest.testCoalescedGetDataMergeLimit", counter);
+        object.setCoalescingEnabled(true);
+        object.setMergeDelay(60000);
+        object.setMaxGetProperties(2);
+        
+        AsyncResult<ObjectData> result1 = object.getDataAsync(EPC.x80);
+        AsyncResult<ObjectData> result2 = object.getDataAsync(EPC.xE0);
+        
+        assertEquals(new ObjectData((byte)0x30), result1.get(5, TimeUnit.SECONDS));
+        assertEquals(new ObjectData((byte)0x01, (byte)0x02), result2.get(5, TimeUnit.SECONDS));
+        assertEquals(1, counter.count.get());
+    }
+    
+    @Test
+    public void testCapabilities() throws Exception {
+        GetCountListener counter = new GetCountListener();
+        RemoteObject object = createDeviceObject("RemoteObjectTest.testCapabilities", counter);
+        
+        PropertyCapabilities capabilities = object.getCapabilities();
+        assertEquals(1, counter.count.get());
+        assertTrue(object.isGettable(EPC.xE0));
+        assertTrue(object.isSettable(EPC.x81));
+        assertFalse(object.isSettable(EPC.x80));
+        assertTrue(object.isObservable(EPC.x80));
+        assertTrue(object.contains(EPC.x9F));
+        assertFalse(object.contains(EPC.xF0));
+        assertSame(capabilities, object.getCapabilities());
+        assertEquals(1, counter.count.get());
+        
+        RemoteObject otherObject = createDeviceObject("RemoteObjectTest.testCapabilities2");
+        assertSame(capabilities, otherObject.getCapabilities());
+        
+        object.clearCapabilities();
+        assertSame(capabilities, object.getCapabilities());
+        assertEquals(2, counter.count.get());
+    }
+    
+    @Test
+    public void testCapabilityCheck() throws Exception {
+        GetCountListener counter = new GetCountListener();
+        GetCountListener setGetCounter = new GetCountListener(ESV.SetGet);
+        RemoteObject object = createDeviceObject("RemoteObjectTest.testCapabilityCheck", counter, setGetCounter);
+        object.setTimeout(5000);
+        assertFalse(object.isCapabilityCheckEnabled());
+        object.setCapabilityCheckEnabled(true);
+        assertTrue(object.isCapabilityCheckEnabled());
+        
+        long begin = System.nanoTime();
+        try {
+            object.getData(EPC.xF0);
+            fail();
+        } catch (EchonetObjectException e) {
+        }
+        try {
+            object.getDataAsync(EPC.xF0).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof EchonetObjectException);
+        }
+        assertFalse(object.setData(EPC.x80, new ObjectData((byte)0x31)));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin) < 4000);
+        assertEquals(1, counter.count.get());
+        
+        EnumMap<EPC, ObjectData> dataMap = object.getData(Arrays.asList(EPC.x80, EPC.xF0));
+        assertEquals(1, dataMap.size());
+        assertEquals(new ObjectData((byte)0x30), dataMap.get(EPC.x80));
+        assertEquals(2, counter.count.get());
+        
+        EnumMap<EPC, ObjectData> setDataMap = new EnumMap<EPC, ObjectData>(EPC.class);
+        setDataMap.put(EPC.x81, new ObjectData((byte)0x07));
+        setDataMap.put(EPC.x80, new ObjectData((byte)0x31));
+        SetGetResult result = object.setGetData(setDataMap, Arrays.asList(EPC.x81, EPC.xF0));
+        assertTrue(result.isSetAccepted(EPC.x81));
+        assertFalse(result.isSetAccepted(EPC.x80));
+        assertEquals(new ObjectData((byte)0x07), result.getData(EPC.x81));
+        assertNull(result.getData(EPC.xF0));
+        assertEquals(1, setGetCounter.count.get());
+        
+        result = object.setGetData(setDataMap, Arrays.asList(EPC.xF0));
+        assertTrue(result.isSetAccepted(EPC.x81));
+        assertFalse(result.isSetAccepted(EPC.x80));
+        assertTrue(result.getDataMap().isEmpty());
+        assertEquals(1, setGetCounter.count.get());
+        
+        EnumMap<EPC, Boolean> setResults = object.setData(setDataMap);
+        assertTrue(setResults.get(EPC.x81));
+        assertFalse(setResults.get(EPC.x80));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetGetDataWithoutGet() throws Exception {
+        RemoteObject object = createDeviceObject("RemoteObjectTest.testSetGetDataWithoutGet");
+        EnumMap<EPC, ObjectData> dataMap = new EnumMap<EPC, ObjectData>(EPC.class);
+        dataMap.put(EPC.x81, new ObjectData((byte)0x07));
+        object.setGetData(dataMap, new LinkedList<EPC>());
+    }
 }
@@ -0,0 +1,100 @@
+package echowand.object;
+
+import echowand.common.EPC;
+import echowand.common.ESV;
+import echowand.info.TemperatureSensorInfo;
+import echowand.logic.Listener;
+import echowand.logic.MainLoop;
+import echowand.logic.RequestDispatcher;
+import echowand.logic.TooManyObjectsException;
+import echowand.logic.TransactionManager;
+import echowand.net.Frame;
+import echowand.net.InternalSubnet;
+import echowand.net.Node;
+import echowand.net.Subnet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * RemoteObjectのテストで利用する、InternalSubnet上の機器オブジェクトとそれを参照するRemoteObjectの組
+ * @author Yoshiki Makino
+ */
+class RemoteObjectTestFixture {
+    public InternalSubnet clientSubnet;
+    public TransactionManager transactionManager;
+    public LocalObject deviceObject;
+    public RemoteObject remoteObject;
+
+    /**
+     * 指定されたESVの受信数を数えるListener
+     */
+    public static class GetCountListener implements Listener {
+        public AtomicInteger count = new AtomicInteger();
+        private ESV esv;
+
+        public GetCountListener() {
+            this(ESV.Get);
+        }
+
+        public GetCountListener(ESV esv) {
+            this.esv = esv;
+        }
+
+        @Override
+        public boolean process(Subnet subnet, Frame frame, boolean processed) {
+            if (frame.getESV() == esv) {
+                count.incrementAndGet();
+            }
+            return false;
+        }
+    }
+
+    public static MainLoop startMainLoop(Subnet subnet, ExecutorService executor, Listener... listeners) {
+        MainLoop mainLoop = new MainLoop();
+        mainLoop.setSubnet(subnet);
+        mainLoop.setExecutor(executor);
+        for (Listener listener : listeners) {
+            mainLoop.addListener(listener);
+        }
+
+        Thread thread = new Thread(mainLoop);
+        thread.setDaemon(true);
+        thread.start();
+        return mainLoop;
+    }
+
+    /**
+     * 温度センサオブジェクトを持つ機器と、それを参照するRemoteObjectを生成する。
+     * @param networkName InternalSubnetのネットワーク名
+     * @param listeners 機器側でSetGetRequestProcessorより先に呼び出すListener
+     * @throws TooManyObjectsException 機器のオブジェクトを追加できない場合
+     */
+    public RemoteObjectTestFixture(String networkName, Listener... listeners) throws TooManyObjectsException {
+        clientSubnet = new InternalSubnet(networkName);
+        transactionManager = new TransactionManager(clientSubnet);
+        startMainLoop(clientSubnet, null, transactionManager);
+
+        InternalSubnet deviceSubnet = new InternalSubnet(networkName);
+        LocalObjectManager manager = new LocalObjectManager();
+        deviceObject = new LocalObject(new TemperatureSensorInfo());
+        deviceObject.setInternalData(EPC.x80, new ObjectData((byte)0x30));
+        deviceObject.setInternalData(EPC.xE0, new ObjectData((byte)0x01, (byte)0x02));
+        manager.add(deviceObject);
+        RequestDispatcher dispatcher = new RequestDispatcher();
+        dispatcher.addRequestProcessor(new SetGetRequestProcessor(manager));
+        Listener[] deviceListeners = new Listener[listeners.length + 1];
+        System.arraycopy(listeners, 0, deviceListeners, 0, listeners.length);
+        deviceListeners[listeners.length] = dispatcher;
+        startMainLoop(deviceSubnet, null, deviceListeners);
+
+        Node node = clientSubnet.getRemoteNode("LOCAL(" + deviceSubnet.getId() + ")");
+        remoteObject = new RemoteObject(clientSubnet, node, deviceObject.getEOJ(), transactionManager);
+    }
+
+    /**
+     * RemoteObjectが利用するTransactionManagerを終了する。
+     */
+    public void close() {
+        transactionManager.close();
+    }
+}
@@ -0,0 +1,109 @@
+package echowand.util;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Yoshiki Makino
+ */
+public class AsyncResultTest {
+
+    private static class DummyCallback implements AsyncCallback<String> {
+        public int count = 0;
+        public String result;
+        public Exception exception;
+
+        @Override
+        public void completed(String result) {
+            count++;
+            this.result = result;
+        }
+
+        @Override
+        public void failed(Exception exception) {
+            count++;
+            this.exception = exception;
+        }
+    }
+
+    @Test
+    public void testComplete() throws Exception {
+        AsyncResult<String> result = new AsyncResult<String>();
+        DummyCallback callback = new DummyCallback();
+        result.addCallback(callback);
+
+        assertFalse(result.isDone());
+        assertEquals(0, callback.count);
+
+        assertTrue(result.complete("OK"));
+        assertFalse(result.complete("NG"));
+        assertFalse(result.fail(new Exception()));
+
+        assertTrue(result.isDone());
+        assertFalse(result.isCancelled());
+        assertEquals("OK", result.get());
+        assertEquals(1, callback.count);
+        assertEquals("OK", callback.result);
+
+        DummyCallback callback2 = new DummyCallback();
+        result.addCallback(callback2);
+        assertEquals(1, callback2.count);
+        assertEquals("OK", callback2.result);
+    }
+
+    @Test
+    public void testFail() throws InterruptedException {
+        AsyncResult<String> result = new AsyncResult<String>();
+        DummyCallback callback = new DummyCallback();
+        result.addCallback(callback);
+
+        Exception exception = new Exception("failed");
+        assertTrue(result.fail(exception));
+        assertEquals(exception, callback.exception);
+
+        try {
+            result.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals(exception, e.getCause());
+        }
+    }
+
+    @Test(expected=CancellationException.class)
+    public void testCancel() throws Exception {
+        AsyncResult<String> result = new AsyncResult<String>();
+        assertTrue(result.cancel(true));
+        assertTrue(result.isCancelled());
+        assertTrue(result.isDone());
+        assertFalse(result.complete("OK"));
+        result.get();
+    }
+
+    @Test(expected=TimeoutException.class)
+    public void testGetTimeout() throws Exception {
+        AsyncResult<String> result = new AsyncResult<String>();
+        result.get(50, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void testCompleteFromOtherThread() throws Exception {
+        final AsyncResult<String> result = new AsyncResult<String>();
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                }
+                result.complete("OK");
+            }
+        }.start();
+
+        assertEquals("OK", result.get(1, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,90 @@
+package echowand.util;
+
+import java.util.concurrent.CountDownLatch;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Yoshiki Makino
+ */
+public class CopyOnWriteArrayTest {
+
+    @Test
+    public void testAddAndRemove() {
+        CopyOnWriteArray<String> array = new CopyOnWriteArray<String>(String.class);
+        assertEquals(0, array.size());
+        assertEquals(0, array.getArray().length);
+
+        array.add("A");
+        array.add("B");
+        array.add("C");
+        array.add("B");
+        assertEquals(4, array.size());
+        assertArrayEquals(new String[]{"A", "B", "C", "B"}, array.getArray());
+        assertTrue(array.contains("C"));
+        assertFalse(array.contains("D"));
+
+        assertTrue(array.remove("B"));
+        assertArrayEquals(new String[]{"A", "C", "B"}, array.getArray());
+        assertFalse(array.remove("D"));
+        assertTrue(array.remove("B"));
+        assertTrue(array.remove("A"));
+        assertArrayEquals(new String[]{"C"}, array.getArray());
+
+        array.clear();
+        assertEquals(0, array.size());
+    }
+
+    @Test
+    public void testSnapshot() {
+        CopyOnWriteArray<String> array = new CopyOnWriteArray<String>(String.class);
+        array.add("A");
+        array.add("B");
+
+        String[] snapshot = array.getArray();
+        assertSame(snapshot, array.getArray());
+
+        array.add("C");
+        array.remove("A");
+        assertArrayEquals(new String[]{"A", "B"}, snapshot);
+        assertArrayEquals(new String[]{"B", "C"}, array.getArray());
+    }
+
+    @Test
+    public void testConcurrentAdd() throws InterruptedException {
+        final CopyOnWriteArray<Integer> array = new CopyOnWriteArray<Integer>(Integer.class);
+        final int threadCount = 8;
+        final int addCount = 500;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+
+        for (int i = 0; i < threadCount; i++) {
+            final int base = i * addCount;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < addCount; j++) {
+                        array.add(base + j);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(threadCount * addCount, array.size());
+        for (int i = 0; i < threadCount * addCount; i++) {
+            assertTrue(array.contains(i));
+        }
+    }
+}
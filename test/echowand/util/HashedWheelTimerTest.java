@@ -0,0 +1,155 @@
+package echowand.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Yoshiki Makino
+ */
+public class HashedWheelTimerTest {
+
+    private static class CountTask implements Runnable {
+        public AtomicInteger count = new AtomicInteger(0);
+        public CountDownLatch latch;
+
+        public CountTask(int n) {
+            latch = new CountDownLatch(n);
+        }
+
+        @Override
+        public void run() {
+            count.incrementAndGet();
+            latch.countDown();
+        }
+    }
+
+    @Test
+    public void testSchedule() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer(5, 8);
+        CountTask task = new CountTask(1);
+
+        long start = System.nanoTime();
+        HashedWheelTimer.Timeout timeout = timer.schedule(task, 50);
+        assertEquals(1, timer.countPendingTimeouts());
+        assertFalse(timeout.isExpired());
+
+        assertTrue(task.latch.await(1, TimeUnit.SECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsed >= 50);
+        assertEquals(1, task.count.get());
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+        assertEquals(0, timer.countPendingTimeouts());
+
+        timer.stop();
+    }
+
+    @Test
+    public void testScheduleMultipleRounds() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer(5, 4);
+        CountTask task = new CountTask(1);
+
+        long start = System.nanoTime();
+        timer.schedule(task, 100);
+
+        assertTrue(task.latch.await(1, TimeUnit.SECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsed >= 100);
+
+        timer.stop();
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer(5, 8);
+        CountTask task = new CountTask(1);
+
+        HashedWheelTimer.Timeout timeout = timer.schedule(task, 30);
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        assertEquals(0, timer.countPendingTimeouts());
+
+        assertFalse(task.latch.await(100, TimeUnit.MILLISECONDS));
+        assertEquals(0, task.count.get());
+        assertFalse(timeout.isExpired());
+
+        timer.stop();
+    }
+
+    @Test
+    public void testManyTimeouts() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer();
+        int n = 10000;
+        CountTask task = new CountTask(n / 2);
+
+        for (int i = 0; i < n; i++) {
+            HashedWheelTimer.Timeout timeout = timer.schedule(task, 100 + i % 100);
+            if (i % 2 == 0) {
+                assertTrue(timeout.cancel());
+            }
+        }
+
+        assertTrue(task.latch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertEquals(n / 2, task.count.get());
+        assertEquals(0, timer.countPendingTimeouts());
+
+        timer.stop();
+    }
+
+    @Test
+    public void testScheduleAfterIdle() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer(5, 8);
+        CountTask task1 = new CountTask(1);
+        timer.schedule(task1, 10);
+        assertTrue(task1.latch.await(1, TimeUnit.SECONDS));
+        assertEquals(0, timer.countPendingTimeouts());
+
+        Thread.sleep(200);
+
+        CountTask task2 = new CountTask(1);
+        long start = System.nanoTime();
+        timer.schedule(task2, 30);
+        assertFalse(task2.latch.await(10, TimeUnit.MILLISECONDS));
+        assertTrue(task2.latch.await(1, TimeUnit.SECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsed >= 30);
+
+        timer.stop();
+    }
+
+    @Test
+    public void testTaskException() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer(5, 8);
+        CountTask task = new CountTask(1);
+
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                throw new RuntimeException("test");
+            }
+        }, 10);
+        timer.schedule(task, 20);
+
+        assertTrue(task.latch.await(1, TimeUnit.SECONDS));
+
+        timer.stop();
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testScheduleAfterStop() {
+        HashedWheelTimer timer = new HashedWheelTimer();
+        timer.stop();
+        timer.schedule(new CountTask(1), 10);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidTickDuration() {
+        new HashedWheelTimer(0, 8);
+    }
+}
@@ -0,0 +1,100 @@
+package echowand.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Yoshiki Makino
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketIndex() {
+        assertEquals(0, LatencyHistogram.getBucketIndex(0));
+        assertEquals(0, LatencyHistogram.getBucketIndex(999));
+        assertEquals(1, LatencyHistogram.getBucketIndex(TimeUnit.MICROSECONDS.toNanos(1)));
+        assertEquals(2, LatencyHistogram.getBucketIndex(TimeUnit.MICROSECONDS.toNanos(2)));
+        assertEquals(2, LatencyHistogram.getBucketIndex(TimeUnit.MICROSECONDS.toNanos(3)));
+        assertEquals(10, LatencyHistogram.getBucketIndex(TimeUnit.MILLISECONDS.toNanos(1)));
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.getBucketIndex(Long.MAX_VALUE));
+        assertEquals(0, LatencyHistogram.getBucketIndex(-1));
+
+        assertEquals(1, LatencyHistogram.getUpperBoundMicros(0));
+        assertEquals(1024, LatencyHistogram.getUpperBoundMicros(10));
+    }
+
+    @Test
+    public void testRecordAndSnapshot() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        LatencyHistogram.Snapshot empty = histogram.snapshot();
+        assertEquals(0, empty.getCount());
+        assertEquals(0, empty.getMeanNanos());
+        assertEquals(0, empty.getPercentileMicros(0.99));
+
+        for (int i = 0; i < 99; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(10));
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100, snapshot.getCount());
+        assertEquals(99, snapshot.getCounts()[LatencyHistogram.getBucketIndex(TimeUnit.MICROSECONDS.toNanos(100))]);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(10), snapshot.getMaxNanos());
+        assertEquals(99 * TimeUnit.MICROSECONDS.toNanos(100) + TimeUnit.MILLISECONDS.toNanos(10), snapshot.getTotalNanos());
+        assertEquals(snapshot.getTotalNanos() / 100, snapshot.getMeanNanos());
+        assertEquals(128, snapshot.getPercentileMicros(0.5));
+        assertEquals(128, snapshot.getPercentileMicros(0.99));
+        assertEquals(16384, snapshot.getPercentileMicros(1.0));
+
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().getCount());
+        assertEquals(100, snapshot.getCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRatio() {
+        new LatencyHistogram().snapshot().getPercentileMicros(1.5);
+    }
+
+    @Test
+    public void testConcurrentRecord() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram(3);
+        assertEquals(4, histogram.getStripes());
+        final int threadCount = 8;
+        final int recordCount = 10000;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+
+        for (int i = 0; i < threadCount; i++) {
+            final long nanos = TimeUnit.MICROSECONDS.toNanos(i + 1);
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < recordCount; j++) {
+                        histogram.record(nanos);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(threadCount * recordCount, snapshot.getCount());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(threadCount), snapshot.getMaxNanos());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(36) * recordCount, snapshot.getTotalNanos());
+        assertEquals(recordCount, snapshot.getCounts()[LatencyHistogram.getBucketIndex(TimeUnit.MICROSECONDS.toNanos(1))]);
+    }
+}
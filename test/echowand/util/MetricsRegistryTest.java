@@ -0,0 +1,166 @@
+package echowand.util;
+
+import echowand.common.EOJ;
+import echowand.common.EPC;
+import echowand.common.ESV;
+import echowand.info.TemperatureSensorInfo;
+import echowand.logic.Listener;
+import echowand.logic.MainLoop;
+import echowand.logic.RequestDispatcher;
+import echowand.logic.TransactionManager;
+import echowand.net.InternalSubnet;
+import echowand.net.Node;
+import echowand.object.*;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Yoshiki Makino
+ */
+public class MetricsRegistryTest {
+
+    @After
+    public void tearDown() {
+        MetricsRegistry.setCurrent(null);
+    }
+
+    @Test
+    public void testRecordAndSnapshot() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.recordReceived(ESV.Get);
+        registry.recordReceived(ESV.Get);
+        registry.recordReceived(ESV.Get_SNA);
+        registry.recordSent(ESV.Get_Res);
+        registry.recordSent(ESV.SetC_SNA);
+        registry.recordSent(ESV.INF_SNA);
+        registry.recordParseError();
+        registry.recordTransactionBegin();
+        registry.recordTransactionBegin();
+        registry.recordTransactionBegin();
+        registry.recordTransactionEnd(false);
+        registry.recordTransactionEnd(true);
+        registry.recordResponseLatency(TimeUnit.MICROSECONDS.toNanos(100));
+        registry.recordDispatchTime(TimeUnit.MICROSECONDS.toNanos(10));
+
+        MetricsSnapshot snapshot = registry.snapshot();
+        assertEquals(2, snapshot.getReceived(ESV.Get));
+        assertEquals(0, snapshot.getReceived(ESV.SetC));
+        assertEquals(1, snapshot.getReceivedSNA());
+        assertEquals(1, snapshot.getSent(ESV.Get_Res));
+        assertEquals(2, snapshot.getSentSNA());
+        assertEquals(2, snapshot.getReceivedCounts().size());
+        assertEquals(1, snapshot.getParseErrors());
+        assertEquals(3, snapshot.getStartedTransactions());
+        assertEquals(1, snapshot.getCompletedTransactions());
+        assertEquals(1, snapshot.getTimedOutTransactions());
+        assertEquals(1, snapshot.getActiveTransactions());
+        assertEquals(1, snapshot.getResponseLatency().getCount());
+        assertEquals(1, snapshot.getDispatchTime().getCount());
+
+        registry.reset();
+        MetricsSnapshot resetSnapshot = registry.snapshot();
+        assertEquals(0, resetSnapshot.getReceived(ESV.Get));
+        assertEquals(0, resetSnapshot.getStartedTransactions());
+        assertEquals(0, resetSnapshot.getResponseLatency().getCount());
+        assertEquals(2, snapshot.getReceived(ESV.Get));
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        ObjectName name = new ObjectName("echowand:type=MetricsRegistry,name=MetricsRegistryTest");
+        assertEquals(name, registry.registerMBean(name));
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            registry.recordParseError();
+            registry.recordSent(ESV.Get_SNA);
+            registry.recordTransactionBegin();
+            assertEquals(1L, server.getAttribute(name, "ParseErrorCount"));
+            assertEquals(1L, server.getAttribute(name, "SentSNACount"));
+            assertEquals(1L, server.getAttribute(name, "ActiveTransactionCount"));
+            assertNotNull(server.getAttribute(name, "SentCounts"));
+            assertEquals(LatencyHistogram.BUCKET_COUNT, ((long[])server.getAttribute(name, "ResponseLatencyHistogram")).length);
+
+            server.invoke(name, "reset", new Object[0], new String[0]);
+            assertEquals(0L, server.getAttribute(name, "ParseErrorCount"));
+        } finally {
+            registry.unregisterMBean();
+        }
+
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+
+    private void startMainLoop(InternalSubnet subnet, Listener listener) {
+        MainLoop mainLoop = new MainLoop();
+        mainLoop.setSubnet(subnet);
+        mainLoop.addListener(listener);
+        Thread thread = new Thread(mainLoop);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Test
+    public void testProtocolMetrics() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        MetricsRegistry.setCurrent(registry);
+        assertSame(registry, MetricsRegistry.getCurrent());
+
+        String networkName = "MetricsRegistryTest.testProtocolMetrics";
+        InternalSubnet clientSubnet = new InternalSubnet(networkName);
+        TransactionManager transactionManager = new TransactionManager(clientSubnet);
+        startMainLoop(clientSubnet, transactionManager);
+
+        InternalSubnet deviceSubnet = new InternalSubnet(networkName);
+        LocalObjectManager manager = new LocalObjectManager();
+        LocalObject object = new LocalObject(new TemperatureSensorInfo());
+        object.setInternalData(EPC.x80, new ObjectData((byte)0x30));
+        manager.add(object);
+        RequestDispatcher dispatcher = new RequestDispatcher();
+        dispatcher.addRequestProcessor(new SetGetRequestProcessor(manager));
+        startMainLoop(deviceSubnet, dispatcher);
+
+        Node node = clientSubnet.getRemoteNode("LOCAL(" + deviceSubnet.getId() + ")");
+        RemoteObject remoteObject = new RemoteObject(clientSubnet, node, object.getEOJ(), transactionManager);
+        remoteObject.setTimeout(5000);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(new ObjectData((byte)0x30), remoteObject.getData(EPC.x80));
+        }
+
+        remoteObject.setTimeout(100);
+        try {
+            remoteObject.getData(EPC.xF0);
+        } catch (EchonetObjectException e) {
+        }
+
+        RemoteObject missingObject = new RemoteObject(clientSubnet, node, new EOJ("001102"), transactionManager);
+        missingObject.setTimeout(100);
+        try {
+            missingObject.getData(EPC.x80);
+        } catch (EchonetObjectException e) {
+        }
+
+        MetricsSnapshot snapshot = registry.snapshot();
+        assertEquals(5, snapshot.getSent(ESV.Get));
+        assertEquals(5, snapshot.getReceived(ESV.Get));
+        assertEquals(3, snapshot.getSent(ESV.Get_Res));
+        assertEquals(3, snapshot.getReceived(ESV.Get_Res));
+        assertEquals(1, snapshot.getSentSNA());
+        assertEquals(1, snapshot.getReceivedSNA());
+        assertEquals(5, snapshot.getStartedTransactions());
+        assertEquals(3, snapshot.getCompletedTransactions());
+        assertEquals(2, snapshot.getTimedOutTransactions());
+        assertEquals(0, snapshot.getActiveTransactions());
+        assertEquals(4, snapshot.getResponseLatency().getCount());
+        assertTrue(snapshot.getDispatchTime().getCount() >= 9);
+
+        Map<String, Long> sentCounts = registry.getSentCounts();
+        assertEquals(Long.valueOf(5), sentCounts.get("Get"));
+    }
+}
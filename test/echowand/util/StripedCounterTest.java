@@ -0,0 +1,65 @@
+package echowand.util;
+
+import java.util.concurrent.CountDownLatch;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Yoshiki Makino
+ */
+public class StripedCounterTest {
+
+    @Test
+    public void testAddAndReset() {
+        StripedCounter counter = new StripedCounter(3);
+        assertEquals(4, counter.getStripes());
+        assertEquals(0, counter.sum());
+
+        counter.increment();
+        counter.add(10);
+        counter.add(-3);
+        assertEquals(8, counter.sum());
+
+        counter.reset();
+        assertEquals(0, counter.sum());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidStripes() {
+        new StripedCounter(0);
+    }
+
+    @Test
+    public void testConcurrentIncrement() throws InterruptedException {
+        final StripedCounter counter = new StripedCounter(8);
+        final int threadCount = 8;
+        final int incrementCount = 10000;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < incrementCount; j++) {
+                        counter.increment();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(threadCount * incrementCount, counter.sum());
+    }
+}